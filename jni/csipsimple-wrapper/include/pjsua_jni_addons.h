@@ -151,13 +151,119 @@ typedef struct csipsimple_acc_config {
 
 } csipsimple_acc_config;
 
+/**
+ * Flat quality statistics of the audio stream of a call
+ */
+typedef struct csipsimple_stream_stats {
+
+	/**
+	 * Encoding name of the codec in use
+	 */
+	char codec[32];
+
+	/**
+	 * Clock rate of the codec, in Hz
+	 */
+	int clock_rate;
+
+	/**
+	 * Packet time, in ms
+	 */
+	int ptime;
+
+	/**
+	 * Number of packets received
+	 */
+	int rx_packets;
+
+	/**
+	 * Number of packets lost on reception
+	 */
+	int rx_loss;
+
+	/**
+	 * Mean jitter of reception, in usec
+	 */
+	int rx_jitter_mean;
+
+	/**
+	 * Max jitter of reception, in usec
+	 */
+	int rx_jitter_max;
+
+	/**
+	 * Number of packets sent
+	 */
+	int tx_packets;
+
+	/**
+	 * Number of packets sent lost, as reported by remote RTCP
+	 */
+	int tx_loss;
+
+	/**
+	 * Mean jitter of sent packets, as reported by remote RTCP, in usec
+	 */
+	int tx_jitter_mean;
+
+	/**
+	 * Mean round trip time, in usec
+	 */
+	int rtt_mean;
+
+	/**
+	 * Latest round trip time, in usec
+	 */
+	int rtt_last;
+
+	/**
+	 * Current jitter buffer size, in frames
+	 */
+	int jb_size;
+
+	/**
+	 * Current jitter buffer prefetch, in frames
+	 */
+	int jb_prefetch;
+
+	/**
+	 * Average jitter buffer delay, in ms
+	 */
+	int jb_avg_delay;
+
+} csipsimple_stream_stats;
+
+/**
+ * Number of integer values filled by call_get_flat_info.
+ * Values are in order : id, state (as pjsip_inv_state), media_status
+ * (as pjsua_call_media_status), acc_id, conf_slot, connect_duration (in ms),
+ * last_status (as pjsip_status_code), length of remote info bytes and
+ * length of last status text bytes
+ */
+#define CSIPSIMPLE_CALL_INFO_VALUES 9
+
+/**
+ * Size of the bytes buffer filled by call_get_flat_info.
+ * It holds the UTF-8 bytes of remote info followed by the UTF-8 bytes of last
+ * status text, none of them being null terminated
+ */
+#define CSIPSIMPLE_CALL_INFO_STRINGS 384
+
+/**
+ * Max number of bytes of remote info in the bytes buffer
+ */
+#define CSIPSIMPLE_CALL_INFO_REMOTE_INFO_MAX 256
+
 
 // methods
 PJ_DECL(pj_status_t) send_dtmf_info(int current_call, pj_str_t digits);
 PJ_DECL(pj_str_t) call_dump(pjsua_call_id call_id, pj_bool_t with_media, const char *indent);
 PJ_DECL(pj_str_t) call_secure_info(pjsua_call_id call_id);
+PJ_DECL(pj_status_t) call_get_audio_stats(pjsua_call_id call_id, csipsimple_stream_stats *stats);
+PJ_DECL(pj_status_t) call_get_flat_info(pjsua_call_id call_id, int values[CSIPSIMPLE_CALL_INFO_VALUES], signed char strings[CSIPSIMPLE_CALL_INFO_STRINGS]);
 PJ_DECL(pj_str_t) get_error_message(int status);
 PJ_DECL(int) get_event_status_code(pjsip_event *e);
+PJ_DECL(pj_status_t) csipsimple_register_thread(void);
 
 PJ_DECL(void) csipsimple_config_default(csipsimple_config *css_cfg);
 PJ_DECL(void) csipsimple_acc_config_default(csipsimple_acc_config* css_acc_cfg);
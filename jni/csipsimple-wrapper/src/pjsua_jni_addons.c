@@ -30,6 +30,7 @@
 #endif
 
 #include <dlfcn.h>
+#include <stdlib.h>
 #include "pj_loader.h"
 
 #define THIS_FILE		"pjsua_jni_addons.c"
@@ -51,6 +52,116 @@ struct css_data css_var;
 	return pj_str(some_buf);
 }
 
+/**
+ * Get quality statistics of the first active audio stream of a call
+ */PJ_DECL(pj_status_t) call_get_audio_stats(pjsua_call_id call_id, csipsimple_stream_stats *stats) {
+	pjsua_call_info call_info;
+	pjsua_stream_info stream_info;
+	pjsua_stream_stat stream_stat;
+	pj_status_t status;
+	unsigned i;
+	int med_idx = -1;
+	pj_ssize_t len;
+
+	pj_bzero(stats, sizeof(csipsimple_stream_stats));
+
+	status = pjsua_call_get_info(call_id, &call_info);
+	if (status != PJ_SUCCESS) {
+		return status;
+	}
+	for (i = 0; i < call_info.media_cnt; i++) {
+		if (call_info.media[i].type == PJMEDIA_TYPE_AUDIO
+				&& call_info.media[i].status != PJSUA_CALL_MEDIA_NONE
+				&& call_info.media[i].status != PJSUA_CALL_MEDIA_ERROR) {
+			med_idx = call_info.media[i].index;
+			break;
+		}
+	}
+	if (med_idx < 0) {
+		return PJ_ENOTFOUND;
+	}
+
+	status = pjsua_call_get_stream_info(call_id, med_idx, &stream_info);
+	if (status != PJ_SUCCESS) {
+		return status;
+	}
+	len = stream_info.info.aud.fmt.encoding_name.slen;
+	if (len > (pj_ssize_t) sizeof(stats->codec) - 1) {
+		len = sizeof(stats->codec) - 1;
+	}
+	pj_memcpy(stats->codec, stream_info.info.aud.fmt.encoding_name.ptr, len);
+	stats->codec[len] = '\0';
+	stats->clock_rate = stream_info.info.aud.fmt.clock_rate;
+	if (stream_info.info.aud.param) {
+		stats->ptime = stream_info.info.aud.param->info.frm_ptime
+				* stream_info.info.aud.param->setting.frm_per_pkt;
+	}
+
+	status = pjsua_call_get_stream_stat(call_id, med_idx, &stream_stat);
+	if (status != PJ_SUCCESS) {
+		return status;
+	}
+	stats->rx_packets = stream_stat.rtcp.rx.pkt;
+	stats->rx_loss = stream_stat.rtcp.rx.loss;
+	stats->rx_jitter_mean = stream_stat.rtcp.rx.jitter.mean;
+	stats->rx_jitter_max = stream_stat.rtcp.rx.jitter.max;
+	stats->tx_packets = stream_stat.rtcp.tx.pkt;
+	stats->tx_loss = stream_stat.rtcp.tx.loss;
+	stats->tx_jitter_mean = stream_stat.rtcp.tx.jitter.mean;
+	stats->rtt_mean = stream_stat.rtcp.rtt.mean;
+	stats->rtt_last = stream_stat.rtcp.rtt.last;
+	stats->jb_size = stream_stat.jbuf.size;
+	stats->jb_prefetch = stream_stat.jbuf.prefetch;
+	stats->jb_avg_delay = stream_stat.jbuf.avg_delay;
+	return PJ_SUCCESS;
+}
+
+/**
+ * Copy at most max bytes of a string, without cutting an UTF-8 sequence
+ */static pj_ssize_t copy_utf8_bytes(signed char *dst, const pj_str_t *src, pj_ssize_t max) {
+	pj_ssize_t len = src->slen;
+	if (len > max) {
+		len = max;
+		// Back to the first byte of the cut sequence
+		while (len > 0 && (src->ptr[len] & 0xC0) == 0x80) {
+			len--;
+		}
+	}
+	if (len > 0) {
+		pj_memcpy(dst, src->ptr, len);
+	}
+	return len < 0 ? 0 : len;
+}
+
+/**
+ * Get infos of a call as flat values and bytes, so that they are read from
+ * java in one native call without allocating nested structures
+ */PJ_DECL(pj_status_t) call_get_flat_info(pjsua_call_id call_id, int values[CSIPSIMPLE_CALL_INFO_VALUES], signed char strings[CSIPSIMPLE_CALL_INFO_STRINGS]) {
+	pjsua_call_info call_info;
+	pj_status_t status;
+	pj_ssize_t remote_len, text_len;
+
+	status = pjsua_call_get_info(call_id, &call_info);
+	if (status != PJ_SUCCESS) {
+		return status;
+	}
+	remote_len = copy_utf8_bytes(strings, &call_info.remote_info,
+			CSIPSIMPLE_CALL_INFO_REMOTE_INFO_MAX);
+	text_len = copy_utf8_bytes(strings + remote_len, &call_info.last_status_text,
+			CSIPSIMPLE_CALL_INFO_STRINGS - remote_len);
+
+	values[0] = call_info.id;
+	values[1] = call_info.state;
+	values[2] = call_info.media_status;
+	values[3] = call_info.acc_id;
+	values[4] = call_info.conf_slot;
+	values[5] = PJ_TIME_VAL_MSEC(call_info.connect_duration);
+	values[6] = call_info.last_status;
+	values[7] = (int) remote_len;
+	values[8] = (int) text_len;
+	return PJ_SUCCESS;
+}
+
 /**
  * Send dtmf with info method
  */PJ_DECL(pj_status_t) send_dtmf_info(int current_call, pj_str_t digits) {
@@ -294,6 +405,25 @@ PJ_DECL(pj_str_t) get_error_message(int status) {
 	return pj_strerror(status, errmsg, sizeof(errmsg));
 }
 
+/**
+ * Register the calling thread with pjlib if not done yet, so that a thread
+ * not created by the stack can call its thread safe functions. The thread
+ * descriptor must outlive the thread registration, so it is kept for the
+ * life of the process : callers must only register long lived threads.
+ */PJ_DECL(pj_status_t) csipsimple_register_thread(void) {
+	pj_thread_desc *a_thread_desc;
+	pj_thread_t *a_thread;
+
+	if (pj_thread_is_registered()) {
+		return PJ_SUCCESS;
+	}
+	a_thread_desc = calloc(1, sizeof(pj_thread_desc));
+	if (!a_thread_desc) {
+		return PJ_ENOMEM;
+	}
+	return pj_thread_register("java_thread", *a_thread_desc, &a_thread);
+}
+
 // External value
 #define DEFAULT_TCP_KA 180
 #define DEFAULT_TLS_KA 180
@@ -7,6 +7,8 @@
 #include <pj/lock.h>
 #include <pj/log.h>
 
+#include <stdlib.h>
+
 #define HEAP_PARENT(X)	(X == 0 ? 0 : (((X) - 1) / 2))
 #define HEAP_LEFT(X)	(((X)+(X))+1)
 
@@ -348,7 +350,7 @@ PJ_BEGIN_DECL
 PJ_DEF(pj_status_t) pj_timer_fire(int entry_code_id){
 
 
-    pj_thread_desc a_thread_desc;
+	pj_thread_desc *a_thread_desc;
 	pj_thread_t *a_thread;
 	unsigned i, j;
 	int entry_id, heap_id;
@@ -363,12 +365,19 @@ PJ_DEF(pj_status_t) pj_timer_fire(int entry_code_id){
 	}
 
 	// First step is to register the thread if not already done
+	// Fires are dispatched by a long lived java thread, so the descriptor
+	// must outlive this call : it is allocated once per thread and kept for
+	// the whole life of the thread
 	if (!pj_thread_is_registered()) {
 		char thread_name[160];
 		int len = pj_ansi_snprintf(thread_name, sizeof(thread_name),
 				"timer_thread_%d", entry_code_id);
 		thread_name[len] = '\0';
-		pj_thread_register(thread_name, a_thread_desc, &a_thread);
+		a_thread_desc = (pj_thread_desc *) calloc(1, sizeof(pj_thread_desc));
+		if (a_thread_desc == NULL) {
+			return PJ_ENOMEM;
+		}
+		pj_thread_register(thread_name, *a_thread_desc, &a_thread);
 		PJ_LOG(5, (THIS_FILE, "Registered thread %s", thread_name));
 	}
 
@@ -21153,6 +21153,461 @@ SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_delete_1csipsimple_1acc_1c
 }
 
 
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1codec_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jstring jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  char *arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = 0;
+  if (jarg2) {
+    arg2 = (char *)jenv->GetStringUTFChars(jarg2, 0);
+    if (!arg2) return ;
+  }
+  {
+    if(arg2) {
+      strncpy((char*)arg1->codec, (const char *)arg2, 32-1);
+      arg1->codec[32-1] = 0;
+    } else {
+      arg1->codec[0] = 0;
+    }
+  }
+  
+  if (arg2) jenv->ReleaseStringUTFChars(jarg2, (const char *)arg2);
+}
+
+
+SWIGEXPORT jstring JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1codec_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jstring jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  char *result = 0 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (char *)(char *) ((arg1)->codec);
+  if (result) jresult = jenv->NewStringUTF((const char *)result);
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1clock_1rate_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->clock_rate = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1clock_1rate_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->clock_rate);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1ptime_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->ptime = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1ptime_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->ptime);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1packets_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->rx_packets = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1packets_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->rx_packets);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1loss_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->rx_loss = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1loss_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->rx_loss);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1mean_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->rx_jitter_mean = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1mean_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->rx_jitter_mean);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1max_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->rx_jitter_max = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1max_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->rx_jitter_max);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1packets_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->tx_packets = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1packets_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->tx_packets);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1loss_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->tx_loss = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1loss_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->tx_loss);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1jitter_1mean_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->tx_jitter_mean = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1jitter_1mean_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->tx_jitter_mean);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1mean_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->rtt_mean = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1mean_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->rtt_mean);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1last_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->rtt_last = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1last_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->rtt_last);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1size_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->jb_size = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1size_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->jb_size);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1prefetch_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->jb_prefetch = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1prefetch_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->jb_prefetch);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1avg_1delay_1set(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_, jint jarg2) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int arg2 ;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  arg2 = (int)jarg2; 
+  if (arg1) (arg1)->jb_avg_delay = arg2;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1avg_1delay_1get(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
+  jint jresult = 0 ;
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  int result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg1_;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  result = (int) ((arg1)->jb_avg_delay);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT jlong JNICALL Java_org_pjsip_pjsua_pjsuaJNI_new_1csipsimple_1stream_1stats(JNIEnv *jenv, jclass jcls) {
+  jlong jresult = 0 ;
+  csipsimple_stream_stats *result = 0 ;
+  
+  (void)jenv;
+  (void)jcls;
+  result = (csipsimple_stream_stats *)new csipsimple_stream_stats();
+  *(csipsimple_stream_stats **)&jresult = result; 
+  return jresult;
+}
+
+
+SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_delete_1csipsimple_1stream_1stats(JNIEnv *jenv, jclass jcls, jlong jarg1) {
+  csipsimple_stream_stats *arg1 = (csipsimple_stream_stats *) 0 ;
+  
+  (void)jenv;
+  (void)jcls;
+  arg1 = *(csipsimple_stream_stats **)&jarg1; 
+  delete arg1;
+}
+
+
 SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_send_1dtmf_1info(JNIEnv *jenv, jclass jcls, jint jarg1, jlong jarg2, jobject jarg2_) {
   jint jresult = 0 ;
   int arg1 ;
@@ -21213,6 +21668,59 @@ SWIGEXPORT jlong JNICALL Java_org_pjsip_pjsua_pjsuaJNI_call_1secure_1info(JNIEnv
 }
 
 
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_call_1get_1audio_1stats(JNIEnv *jenv, jclass jcls, jint jarg1, jlong jarg2, jobject jarg2_) {
+  jint jresult = 0 ;
+  pjsua_call_id arg1 ;
+  csipsimple_stream_stats *arg2 = (csipsimple_stream_stats *) 0 ;
+  pj_status_t result;
+  
+  (void)jenv;
+  (void)jcls;
+  (void)jarg2_;
+  arg1 = (pjsua_call_id)jarg1; 
+  arg2 = *(csipsimple_stream_stats **)&jarg2; 
+  result = (pj_status_t)call_get_audio_stats(arg1,arg2);
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_call_1get_1flat_1info(JNIEnv *jenv, jclass jcls, jint jarg1, jintArray jarg2, jbyteArray jarg3) {
+  jint jresult = 0 ;
+  pjsua_call_id arg1 ;
+  int *arg2 ;
+  signed char *arg3 ;
+  jint *jarr2 ;
+  jbyte *jarr3 ;
+  pj_status_t result;
+  
+  (void)jenv;
+  (void)jcls;
+  arg1 = (pjsua_call_id)jarg1; 
+  if (jarg2 && jenv->GetArrayLength(jarg2) != 9) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaIndexOutOfBoundsException, "incorrect array size");
+    return 0;
+  }
+  if (jarg3 && jenv->GetArrayLength(jarg3) != 384) {
+    SWIG_JavaThrowException(jenv, SWIG_JavaIndexOutOfBoundsException, "incorrect array size");
+    return 0;
+  }
+  if (!SWIG_JavaArrayInInt(jenv, &jarr2, &arg2, jarg2)) return 0; 
+  if (!SWIG_JavaArrayInSchar(jenv, &jarr3, &arg3, jarg3)) {
+    SWIG_JavaArrayArgoutInt(jenv, jarr2, arg2, jarg2); 
+    delete [] arg2; 
+    return 0; 
+  }
+  result = (pj_status_t)call_get_flat_info(arg1,arg2,arg3);
+  jresult = (jint)result; 
+  SWIG_JavaArrayArgoutInt(jenv, jarr2, arg2, jarg2); 
+  SWIG_JavaArrayArgoutSchar(jenv, jarr3, arg3, jarg3); 
+  delete [] arg2; 
+  delete [] arg3; 
+  return jresult;
+}
+
+
 SWIGEXPORT jlong JNICALL Java_org_pjsip_pjsua_pjsuaJNI_get_1error_1message(JNIEnv *jenv, jclass jcls, jint jarg1) {
   jlong jresult = 0 ;
   int arg1 ;
@@ -21242,6 +21750,18 @@ SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_get_1event_1status_1code(J
 }
 
 
+SWIGEXPORT jint JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1register_1thread(JNIEnv *jenv, jclass jcls) {
+  jint jresult = 0 ;
+  pj_status_t result;
+  
+  (void)jenv;
+  (void)jcls;
+  result = (pj_status_t)csipsimple_register_thread();
+  jresult = (jint)result; 
+  return jresult;
+}
+
+
 SWIGEXPORT void JNICALL Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1config_1default(JNIEnv *jenv, jclass jcls, jlong jarg1, jobject jarg1_) {
   csipsimple_config *arg1 = (csipsimple_config *) 0 ;
   
@@ -22987,11 +23507,46 @@ JNIEXPORT jint JNI_OnLoad(JavaVM *vm, void *reserved) {
 {"csipsimple_acc_config_p_preferred_identity_get", "(JLorg/pjsip/pjsua/csipsimple_acc_config;)J", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1acc_1config_1p_1preferred_1identity_1get},
 {"new_csipsimple_acc_config", "()J", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_new_1csipsimple_1acc_1config},
 {"delete_csipsimple_acc_config", "(J)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_delete_1csipsimple_1acc_1config},
+{"csipsimple_stream_stats_codec_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;Ljava/lang/String;)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1codec_1set},
+{"csipsimple_stream_stats_codec_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)Ljava/lang/String;", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1codec_1get},
+{"csipsimple_stream_stats_clock_rate_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1clock_1rate_1set},
+{"csipsimple_stream_stats_clock_rate_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1clock_1rate_1get},
+{"csipsimple_stream_stats_ptime_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1ptime_1set},
+{"csipsimple_stream_stats_ptime_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1ptime_1get},
+{"csipsimple_stream_stats_rx_packets_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1packets_1set},
+{"csipsimple_stream_stats_rx_packets_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1packets_1get},
+{"csipsimple_stream_stats_rx_loss_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1loss_1set},
+{"csipsimple_stream_stats_rx_loss_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1loss_1get},
+{"csipsimple_stream_stats_rx_jitter_mean_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1mean_1set},
+{"csipsimple_stream_stats_rx_jitter_mean_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1mean_1get},
+{"csipsimple_stream_stats_rx_jitter_max_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1max_1set},
+{"csipsimple_stream_stats_rx_jitter_max_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rx_1jitter_1max_1get},
+{"csipsimple_stream_stats_tx_packets_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1packets_1set},
+{"csipsimple_stream_stats_tx_packets_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1packets_1get},
+{"csipsimple_stream_stats_tx_loss_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1loss_1set},
+{"csipsimple_stream_stats_tx_loss_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1loss_1get},
+{"csipsimple_stream_stats_tx_jitter_mean_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1jitter_1mean_1set},
+{"csipsimple_stream_stats_tx_jitter_mean_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1tx_1jitter_1mean_1get},
+{"csipsimple_stream_stats_rtt_mean_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1mean_1set},
+{"csipsimple_stream_stats_rtt_mean_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1mean_1get},
+{"csipsimple_stream_stats_rtt_last_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1last_1set},
+{"csipsimple_stream_stats_rtt_last_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1rtt_1last_1get},
+{"csipsimple_stream_stats_jb_size_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1size_1set},
+{"csipsimple_stream_stats_jb_size_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1size_1get},
+{"csipsimple_stream_stats_jb_prefetch_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1prefetch_1set},
+{"csipsimple_stream_stats_jb_prefetch_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1prefetch_1get},
+{"csipsimple_stream_stats_jb_avg_delay_set", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;I)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1avg_1delay_1set},
+{"csipsimple_stream_stats_jb_avg_delay_get", "(JLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1stream_1stats_1jb_1avg_1delay_1get},
+{"new_csipsimple_stream_stats", "()J", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_new_1csipsimple_1stream_1stats},
+{"delete_csipsimple_stream_stats", "(J)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_delete_1csipsimple_1stream_1stats},
 {"send_dtmf_info", "(IJLorg/pjsip/pjsua/pj_str_t;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_send_1dtmf_1info},
 {"call_dump__SWIG_1", "(IILjava/lang/String;)J", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_call_1dump_1_1SWIG_11},
 {"call_secure_info", "(I)J", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_call_1secure_1info},
+{"call_get_audio_stats", "(IJLorg/pjsip/pjsua/csipsimple_stream_stats;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_call_1get_1audio_1stats},
+{"call_get_flat_info", "(I[I[B)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_call_1get_1flat_1info},
 {"get_error_message", "(I)J", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_get_1error_1message},
 {"get_event_status_code", "(JLorg/pjsip/pjsua/pjsip_event;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_get_1event_1status_1code},
+{"csipsimple_register_thread", "()I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1register_1thread},
 {"csipsimple_config_default", "(JLorg/pjsip/pjsua/csipsimple_config;)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1config_1default},
 {"csipsimple_acc_config_default", "(JLorg/pjsip/pjsua/csipsimple_acc_config;)V", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1acc_1config_1default},
 {"csipsimple_init", "(JLorg/pjsip/pjsua/pjsua_config;JLorg/pjsip/pjsua/pjsua_logging_config;JLorg/pjsip/pjsua/pjsua_media_config;JLorg/pjsip/pjsua/csipsimple_config;Ljava/lang/Object;)I", (void*)& Java_org_pjsip_pjsua_pjsuaJNI_csipsimple_1init},
@@ -3036,12 +3036,32 @@ typedef struct csipsimple_acc_config {
 	int use_zrtp;
 	pj_str_t p_preferred_identity;
 } csipsimple_acc_config;
+typedef struct csipsimple_stream_stats {
+	char codec[32];
+	int clock_rate;
+	int ptime;
+	int rx_packets;
+	int rx_loss;
+	int rx_jitter_mean;
+	int rx_jitter_max;
+	int tx_packets;
+	int tx_loss;
+	int tx_jitter_mean;
+	int rtt_mean;
+	int rtt_last;
+	int jb_size;
+	int jb_prefetch;
+	int jb_avg_delay;
+} csipsimple_stream_stats;
 // methods
 PJ_DECL(pj_status_t) send_dtmf_info(int current_call, pj_str_t digits);
 PJ_DECL(pj_str_t) call_dump(pjsua_call_id call_id, pj_bool_t with_media, const char *indent);
 PJ_DECL(pj_str_t) call_secure_info(pjsua_call_id call_id);
+PJ_DECL(pj_status_t) call_get_audio_stats(pjsua_call_id call_id, csipsimple_stream_stats *stats);
+PJ_DECL(pj_status_t) call_get_flat_info(pjsua_call_id call_id, int values[9], signed char strings[384]);
 PJ_DECL(pj_str_t) get_error_message(int status);
 PJ_DECL(int) get_event_status_code(pjsip_event *e);
+PJ_DECL(pj_status_t) csipsimple_register_thread(void);
 PJ_DECL(void) csipsimple_config_default(csipsimple_config *css_cfg);
 PJ_DECL(void) csipsimple_acc_config_default(csipsimple_acc_config* css_acc_cfg);
 PJ_DECL(pj_status_t) csipsimple_init(pjsua_config *ua_cfg,
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ *  This file and this file only is also released under Apache license as an API file
+ */
+
+package com.csipsimple.api;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Quality statistics of the audio stream of a call at a given time <br/>
+ * Values are cumulated since the stream was created, as RTCP counts them.
+ * Jitters and round trip times are in microseconds. <br/>
+ * <b>Changing these fields has no effect on the call</b> : it's only a
+ * structured holder for datas <br/>
+ */
+public class MediaStreamStats implements Parcelable {
+
+    /**
+     * Wall clock time of the sample, in ms
+     */
+    public long timestamp = 0;
+    /**
+     * Encoding name of the codec in use
+     */
+    public String codec = "";
+    /**
+     * Clock rate of the codec, in Hz
+     */
+    public int clockRate = 0;
+    /**
+     * Packet time, in ms
+     */
+    public int ptime = 0;
+    /**
+     * Number of packets received
+     */
+    public int rxPackets = 0;
+    /**
+     * Number of packets lost on reception
+     */
+    public int rxLoss = 0;
+    /**
+     * Mean jitter of reception, in usec
+     */
+    public int rxJitterMean = 0;
+    /**
+     * Max jitter of reception, in usec
+     */
+    public int rxJitterMax = 0;
+    /**
+     * Number of packets sent
+     */
+    public int txPackets = 0;
+    /**
+     * Number of packets sent lost, as reported by the remote party
+     */
+    public int txLoss = 0;
+    /**
+     * Mean jitter of sent packets, as reported by the remote party, in usec
+     */
+    public int txJitterMean = 0;
+    /**
+     * Mean round trip time, in usec
+     */
+    public int rttMean = 0;
+    /**
+     * Latest round trip time, in usec
+     */
+    public int rttLast = 0;
+    /**
+     * Current jitter buffer size, in frames
+     */
+    public int jbSize = 0;
+    /**
+     * Current jitter buffer prefetch, in frames
+     */
+    public int jbPrefetch = 0;
+    /**
+     * Average jitter buffer delay, in ms
+     */
+    public int jbAvgDelay = 0;
+
+    /**
+     * Constructor for a stats object with all values to zero.
+     */
+    public MediaStreamStats() {
+        // Nothing to do in default constructor
+    }
+
+    /**
+     * Construct from parcelable <br/>
+     * Only used by {@link #CREATOR}
+     * 
+     * @param in parcelable to build from
+     */
+    private MediaStreamStats(Parcel in) {
+        timestamp = in.readLong();
+        codec = in.readString();
+        clockRate = in.readInt();
+        ptime = in.readInt();
+        rxPackets = in.readInt();
+        rxLoss = in.readInt();
+        rxJitterMean = in.readInt();
+        rxJitterMax = in.readInt();
+        txPackets = in.readInt();
+        txLoss = in.readInt();
+        txJitterMean = in.readInt();
+        rttMean = in.readInt();
+        rttLast = in.readInt();
+        jbSize = in.readInt();
+        jbPrefetch = in.readInt();
+        jbAvgDelay = in.readInt();
+    }
+
+    /**
+     * Get the part of packets lost on reception.
+     * 
+     * @return lost packets per thousand expected packets
+     */
+    public int getRxLossPermil() {
+        return permil(rxLoss, rxPackets);
+    }
+
+    /**
+     * Get the part of sent packets lost, as reported by the remote party.
+     * 
+     * @return lost packets per thousand sent packets
+     */
+    public int getTxLossPermil() {
+        return permil(txLoss, txPackets);
+    }
+
+    private static int permil(int loss, int received) {
+        int expected = loss + received;
+        return (expected > 0) ? (int) (loss * 1000L / expected) : 0;
+    }
+
+    /**
+     * Parcelable creator. So that it can be passed as an argument of the aidl
+     * interface
+     */
+    public static final Parcelable.Creator<MediaStreamStats> CREATOR = new Parcelable.Creator<MediaStreamStats>() {
+        public MediaStreamStats createFromParcel(Parcel in) {
+            return new MediaStreamStats(in);
+        }
+
+        public MediaStreamStats[] newArray(int size) {
+            return new MediaStreamStats[size];
+        }
+    };
+
+    /**
+     * @see Parcelable#describeContents()
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * @see Parcelable#writeToParcel(Parcel, int)
+     */
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(timestamp);
+        dest.writeString(codec);
+        dest.writeInt(clockRate);
+        dest.writeInt(ptime);
+        dest.writeInt(rxPackets);
+        dest.writeInt(rxLoss);
+        dest.writeInt(rxJitterMean);
+        dest.writeInt(rxJitterMax);
+        dest.writeInt(txPackets);
+        dest.writeInt(txLoss);
+        dest.writeInt(txJitterMean);
+        dest.writeInt(rttMean);
+        dest.writeInt(rttLast);
+        dest.writeInt(jbSize);
+        dest.writeInt(jbPrefetch);
+        dest.writeInt(jbAvgDelay);
+    }
+
+    @Override
+    public String toString() {
+        return codec + "/" + clockRate + " " + ptime + "ms rx " + rxPackets + " lost " + rxLoss
+                + " jitter " + rxJitterMean + "us, tx " + txPackets + " lost " + txLoss
+                + ", rtt " + rttMean + "us, jb " + jbSize + "/" + jbPrefetch;
+    }
+}
@@ -23,9 +23,11 @@
 
 package com.csipsimple.api;
 
+import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.os.SystemClock;
+import android.text.TextUtils;
 
 /**
  * Represents state of a call session<br/>
@@ -205,6 +207,8 @@ public final class SipCallSession implements Parcelable {
     private String mediaSecureInfo = "";
     private boolean canRecord = false;
     private boolean isRecording = false;
+    // Not parceled, so that the parcel layout stays stable for api clients
+    private MediaStreamStats mediaStats = null;
 
     /**
      * Construct from parcelable <br/>
@@ -242,6 +246,32 @@ public final class SipCallSession implements Parcelable {
         // Nothing to do in default constructor
     }
 
+    /**
+     * Copy constructor.
+     * 
+     * @param callInfo the call session to copy values from
+     */
+    public SipCallSession(SipCallSession callInfo) {
+        primaryKey = callInfo.primaryKey;
+        callStart = callInfo.callStart;
+        callId = callInfo.callId;
+        callState = callInfo.callState;
+        remoteContact = callInfo.remoteContact;
+        isIncoming = callInfo.isIncoming;
+        confPort = callInfo.confPort;
+        accId = callInfo.accId;
+        mediaStatus = callInfo.mediaStatus;
+        mediaSecure = callInfo.mediaSecure;
+        mediaHasVideoStream = callInfo.mediaHasVideoStream;
+        connectStart = callInfo.connectStart;
+        lastStatusCode = callInfo.lastStatusCode;
+        lastStatusComment = callInfo.lastStatusComment;
+        mediaSecureInfo = callInfo.mediaSecureInfo;
+        canRecord = callInfo.canRecord;
+        isRecording = callInfo.isRecording;
+        mediaStats = callInfo.mediaStats;
+    }
+
     /**
      * @see Parcelable#describeContents()
      */
@@ -670,4 +700,165 @@ public final class SipCallSession implements Parcelable {
     public boolean canRecord() {
         return canRecord;
     }
+    
+    /**
+     * Set the latest quality statistics of the audio stream <br/>
+     * This method should be only used by CSipSimple service
+     * 
+     * @param stats the statistics, null if not known. Must not be modified
+     *            anymore.
+     */
+    public void setMediaStats(MediaStreamStats stats) {
+        mediaStats = stats;
+    }
+    
+    /**
+     * Get the latest quality statistics of the audio stream of the call.
+     * Statistics are sampled periodically while media is active. <br/>
+     * They are not part of the parcel, so they are only available inside
+     * CSipSimple service. Other processes should use
+     * {@link ISipService#getCallStats(int)}.
+     * 
+     * @return the statistics, null if not yet sampled or if the session comes
+     *         from a parcel. Must not be modified.
+     */
+    public MediaStreamStats getMediaStats() {
+        return mediaStats;
+    }
+
+    // Keys of changes bundles, short since they are sent on each call change
+    private static final String CHANGE_ALL_VALUES = "all";
+    private static final String CHANGE_PRIMARY_KEY = "pk";
+    private static final String CHANGE_CALL_ID = "id";
+    private static final String CHANGE_CALL_STATE = "st";
+    private static final String CHANGE_MEDIA_STATUS = "ms";
+    private static final String CHANGE_REMOTE_CONTACT = "rc";
+    private static final String CHANGE_INCOMING = "in";
+    private static final String CHANGE_CONF_PORT = "cp";
+    private static final String CHANGE_ACC_ID = "ac";
+    private static final String CHANGE_LAST_STATUS_CODE = "lc";
+    private static final String CHANGE_MEDIA_SECURE_INFO = "si";
+    private static final String CHANGE_CONNECT_START = "cs";
+    private static final String CHANGE_MEDIA_SECURE = "se";
+    private static final String CHANGE_LAST_STATUS_COMMENT = "lt";
+    private static final String CHANGE_MEDIA_HAS_VIDEO = "vi";
+    private static final String CHANGE_CAN_RECORD = "cr";
+    private static final String CHANGE_IS_RECORDING = "re";
+
+    /**
+     * Get the values of this session that differ from a previous state of
+     * the same call. Only values part of the parcel are compared. <br/>
+     * This method should be only used by CSipSimple service
+     * 
+     * @param previous the previous state of the call, null to get all values
+     * @return the changed values, always with the call id
+     */
+    public Bundle getChangesSince(SipCallSession previous) {
+        Bundle changes = new Bundle();
+        changes.putInt(CHANGE_CALL_ID, callId);
+        if (previous == null) {
+            changes.putBoolean(CHANGE_ALL_VALUES, true);
+        }
+        if (previous == null || previous.primaryKey != primaryKey) {
+            changes.putInt(CHANGE_PRIMARY_KEY, primaryKey);
+        }
+        if (previous == null || previous.callState != callState) {
+            changes.putInt(CHANGE_CALL_STATE, callState);
+        }
+        if (previous == null || previous.mediaStatus != mediaStatus) {
+            changes.putInt(CHANGE_MEDIA_STATUS, mediaStatus);
+        }
+        if (previous == null || !TextUtils.equals(previous.remoteContact, remoteContact)) {
+            changes.putString(CHANGE_REMOTE_CONTACT, remoteContact);
+        }
+        if (previous == null || previous.isIncoming != isIncoming) {
+            changes.putBoolean(CHANGE_INCOMING, isIncoming);
+        }
+        if (previous == null || previous.confPort != confPort) {
+            changes.putInt(CHANGE_CONF_PORT, confPort);
+        }
+        if (previous == null || previous.accId != accId) {
+            changes.putLong(CHANGE_ACC_ID, accId);
+        }
+        if (previous == null || previous.lastStatusCode != lastStatusCode) {
+            changes.putInt(CHANGE_LAST_STATUS_CODE, lastStatusCode);
+        }
+        if (previous == null || !TextUtils.equals(previous.mediaSecureInfo, mediaSecureInfo)) {
+            changes.putString(CHANGE_MEDIA_SECURE_INFO, mediaSecureInfo);
+        }
+        if (previous == null || previous.connectStart != connectStart) {
+            changes.putLong(CHANGE_CONNECT_START, connectStart);
+        }
+        if (previous == null || previous.mediaSecure != mediaSecure) {
+            changes.putBoolean(CHANGE_MEDIA_SECURE, mediaSecure);
+        }
+        if (previous == null || !TextUtils.equals(previous.lastStatusComment, lastStatusComment)) {
+            changes.putString(CHANGE_LAST_STATUS_COMMENT, lastStatusComment);
+        }
+        if (previous == null || previous.mediaHasVideoStream != mediaHasVideoStream) {
+            changes.putBoolean(CHANGE_MEDIA_HAS_VIDEO, mediaHasVideoStream);
+        }
+        if (previous == null || previous.canRecord != canRecord) {
+            changes.putBoolean(CHANGE_CAN_RECORD, canRecord);
+        }
+        if (previous == null || previous.isRecording != isRecording) {
+            changes.putBoolean(CHANGE_IS_RECORDING, isRecording);
+        }
+        return changes;
+    }
+
+    /**
+     * Get the call id of changes.
+     * 
+     * @param changes changes got with {@link #getChangesSince(SipCallSession)}
+     * @return the call id
+     */
+    public static int getChangesCallId(Bundle changes) {
+        return changes.getInt(CHANGE_CALL_ID, INVALID_CALL_ID);
+    }
+
+    /**
+     * Whether changes hold all values of the session, so that they can be
+     * applied to a new session.
+     * 
+     * @param changes changes got with {@link #getChangesSince(SipCallSession)}
+     * @return true if the changes were got without previous state
+     */
+    public static boolean hasAllValues(Bundle changes) {
+        return changes.getBoolean(CHANGE_ALL_VALUES, false);
+    }
+
+    /**
+     * Get a copy of this session with changes applied.
+     * 
+     * @param changes changes got with {@link #getChangesSince(SipCallSession)}
+     *            from the state of the call this session holds
+     * @return the new session
+     */
+    public SipCallSession withChanges(Bundle changes) {
+        SipCallSession session = new SipCallSession(this);
+        session.callId = changes.getInt(CHANGE_CALL_ID, callId);
+        session.primaryKey = changes.getInt(CHANGE_PRIMARY_KEY, primaryKey);
+        session.callState = changes.getInt(CHANGE_CALL_STATE, callState);
+        session.mediaStatus = changes.getInt(CHANGE_MEDIA_STATUS, mediaStatus);
+        if (changes.containsKey(CHANGE_REMOTE_CONTACT)) {
+            session.remoteContact = changes.getString(CHANGE_REMOTE_CONTACT);
+        }
+        session.isIncoming = changes.getBoolean(CHANGE_INCOMING, isIncoming);
+        session.confPort = changes.getInt(CHANGE_CONF_PORT, confPort);
+        session.accId = changes.getLong(CHANGE_ACC_ID, accId);
+        session.lastStatusCode = changes.getInt(CHANGE_LAST_STATUS_CODE, lastStatusCode);
+        if (changes.containsKey(CHANGE_MEDIA_SECURE_INFO)) {
+            session.mediaSecureInfo = changes.getString(CHANGE_MEDIA_SECURE_INFO);
+        }
+        session.connectStart = changes.getLong(CHANGE_CONNECT_START, connectStart);
+        session.mediaSecure = changes.getBoolean(CHANGE_MEDIA_SECURE, mediaSecure);
+        if (changes.containsKey(CHANGE_LAST_STATUS_COMMENT)) {
+            session.lastStatusComment = changes.getString(CHANGE_LAST_STATUS_COMMENT);
+        }
+        session.mediaHasVideoStream = changes.getBoolean(CHANGE_MEDIA_HAS_VIDEO, mediaHasVideoStream);
+        session.canRecord = changes.getBoolean(CHANGE_CAN_RECORD, canRecord);
+        session.isRecording = changes.getBoolean(CHANGE_IS_RECORDING, isRecording);
+        return session;
+    }
 }
@@ -298,6 +298,15 @@ public class SipConfigManager {
      * If true the user can manage one list per bandwidth speed (fast/slow)
      */
     public static final String CODECS_PER_BANDWIDTH = "codecs_per_bandwidth";
+    /**
+     * Adapt codec and packet time of calls to the network quality ?<br/>
+     * If true, a call whose loss, jitter or round trip time degrades is
+     * re-invited with a larger packet time, then with a lower bitrate codec,
+     * and goes back to preferred settings once the network recovers.
+     * 
+     * @see #setPreferenceBooleanValue(Context, String, boolean)
+     */
+    public static final String ADAPTIVE_MEDIA = "adaptive_media";
     /**
      * Backend implementation to use for audio calls.<br/>
      * Since android has several ways to plug to audio layer <br/>
@@ -923,6 +932,15 @@ public class SipConfigManager {
      */
     public static final String NETWORK_ROUTES_POLLING = "network_route_polling";
     
+    /**
+     * Delay in ms to wait for network to settle after a connectivity change. <br/>
+     * Network events received meanwhile are merged so that the sip stack is
+     * adapted only once to the final network state.
+     * 
+     * @see #setPreferenceIntegerValue(Context, String, Integer)
+     */
+    public static final String NETWORK_CHANGE_DEBOUNCE = "network_change_debounce";
+    
     /**
      * Enable wifi for incoming calls
      * 
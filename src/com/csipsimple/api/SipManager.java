@@ -148,7 +148,17 @@ public final class SipManager {
      * <ul>
      * <li>{@link #EXTRA_CALL_INFO} a {@link SipCallSession} containing infos of
      * the call</li>
+     * <li>{@link #EXTRA_CALLS_CHANGED} the changes of all calls since the
+     * previous broadcast</li>
+     * <li>{@link #EXTRA_CALLS_PREVIOUS_VERSION} the calls version of the
+     * previous broadcast</li>
+     * <li>{@link #EXTRA_CALLS_VERSION} the calls version once changes are
+     * applied, as returned by {@link ISipService#getCallsVersion()}</li>
      * </ul>
+     * A client that knows the calls at the previous version can apply the
+     * changes with {@link SipCallSession#withChanges(android.os.Bundle)}.
+     * Otherwise it missed a broadcast and should get all calls with
+     * {@link ISipService#getCalls()}.
      * </p>
      */
     public static final String ACTION_SIP_CALL_CHANGED = "com.csipsimple.service.CALL_CHANGED";
@@ -335,6 +345,28 @@ public final class SipManager {
      * The final latest status text for this call.
      */
     public static final String CALLLOG_STATUS_TEXT_FIELD = "status_text";
+    /**
+     * The codec of the audio stream at the end of this call.
+     * Null if the call had no media.
+     */
+    public static final String CALLLOG_CODEC_FIELD = "codec";
+    /**
+     * The packets lost on reception for this call, per thousand packets.
+     */
+    public static final String CALLLOG_RX_LOSS_FIELD = "rx_loss";
+    /**
+     * The packets sent lost for this call as reported by the remote party,
+     * per thousand packets.
+     */
+    public static final String CALLLOG_TX_LOSS_FIELD = "tx_loss";
+    /**
+     * The mean jitter of reception for this call, in ms.
+     */
+    public static final String CALLLOG_JITTER_FIELD = "jitter";
+    /**
+     * The mean round trip time for this call, in ms.
+     */
+    public static final String CALLLOG_RTT_FIELD = "rtt";
 
     // Content Provider - filter
     /**
@@ -368,6 +400,23 @@ public final class SipManager {
      * @see SipCallSession
      */
     public static final String EXTRA_CALL_INFO = "call_info";
+    /**
+     * Extra key to contain the array of {@link android.os.Bundle} of calls
+     * changes since previous {@link #ACTION_SIP_CALL_CHANGED} broadcast. Each
+     * one only holds the call id and the values that changed, as returned by
+     * {@link SipCallSession#getChangesSince(SipCallSession)}.
+     */
+    public static final String EXTRA_CALLS_CHANGED = "calls_changed";
+    /**
+     * Extra key to contain the int calls version after a change.
+     * @see ISipService#getCallsVersion()
+     */
+    public static final String EXTRA_CALLS_VERSION = "calls_version";
+    /**
+     * Extra key to contain the int calls version before a change.
+     * @see ISipService#getCallsVersion()
+     */
+    public static final String EXTRA_CALLS_PREVIOUS_VERSION = "calls_previous_version";
     
 
     /**
@@ -29,7 +29,6 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Parcel;
@@ -1124,244 +1123,248 @@ public class SipProfile implements Parcelable {
      * @param c cursor on the database
      */
     private final void createFromDb(Cursor c) {
-        ContentValues args = new ContentValues();
-        DatabaseUtils.cursorRowToContentValues(c, args);
-        createFromContentValue(args);
+        createFromCursor(c, new CursorBinder(c));
     }
 
     /**
-     * Create account wrapper with content values pairs.
+     * Create account wrapper with cursor datas.<br/>
+     * Columns missing from the cursor projection or null leave fields unchanged.
      * 
-     * @param args the content value to unpack.
+     * @param c cursor on the database, on the row to unpack
+     * @param binder the binder created for this cursor
      */
-    private final void createFromContentValue(ContentValues args) {
-        Integer tmp_i;
-        String tmp_s;
-        
+    private final void createFromCursor(Cursor c, CursorBinder binder) {
         // Application specific settings
-        tmp_i = args.getAsInteger(FIELD_ID);
-        if (tmp_i != null) {
-            id = tmp_i;
-        }
-        tmp_s = args.getAsString(FIELD_DISPLAY_NAME);
-        if (tmp_s != null) {
-            display_name = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_WIZARD);
-        if (tmp_s != null) {
-            wizard = tmp_s;
-        }
-        tmp_i = args.getAsInteger(FIELD_TRANSPORT);
-        if (tmp_i != null) {
-            transport = tmp_i;
-        }
+        id = binder.getLong(c, binder.id, id);
+        display_name = binder.getString(c, binder.displayName, display_name);
+        wizard = binder.getString(c, binder.wizard, wizard);
+        transport = binder.getInt(c, binder.transport, transport);
 
-        tmp_i = args.getAsInteger(FIELD_ACTIVE);
-        if (tmp_i != null) {
-            active = (tmp_i != 0);
-        } else {
-            active = true;
-        }
-        tmp_s = args.getAsString(FIELD_ANDROID_GROUP);
-        if (tmp_s != null) {
-            android_group = tmp_s;
-        }
+        active = (binder.getInt(c, binder.active, 1) != 0);
+        android_group = binder.getString(c, binder.androidGroup, android_group);
 
         // General account settings
-        tmp_i = args.getAsInteger(FIELD_PRIORITY);
-        if (tmp_i != null) {
-            priority = tmp_i;
-        }
-        tmp_s = args.getAsString(FIELD_ACC_ID);
-        if (tmp_s != null) {
-            acc_id = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_REG_URI);
-        if (tmp_s != null) {
-            reg_uri = tmp_s;
-        }
-        tmp_i = args.getAsInteger(FIELD_PUBLISH_ENABLED);
-        if (tmp_i != null) {
-            publish_enabled = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_REG_TIMEOUT);
-        if (tmp_i != null && tmp_i >= 0) {
-            reg_timeout = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_REG_DELAY_BEFORE_REFRESH);
-        if (tmp_i != null && tmp_i >= 0) {
-            reg_delay_before_refresh = tmp_i;
-        }
-
-        tmp_i = args.getAsInteger(FIELD_KA_INTERVAL);
-        if (tmp_i != null && tmp_i >= 0) {
-            ka_interval = tmp_i;
-        }
-        tmp_s = args.getAsString(FIELD_PIDF_TUPLE_ID);
-        if (tmp_s != null) {
-            pidf_tuple_id = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_FORCE_CONTACT);
-        if (tmp_s != null) {
-            force_contact = tmp_s;
-        }
-        tmp_i = args.getAsInteger(FIELD_ALLOW_CONTACT_REWRITE);
-        if (tmp_i != null) {
-            allow_contact_rewrite = (tmp_i == 1);
-        }
-        tmp_i = args.getAsInteger(FIELD_CONTACT_REWRITE_METHOD);
-        if (tmp_i != null) {
-            contact_rewrite_method = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_ALLOW_VIA_REWRITE);
-        if (tmp_i != null) {
-            allow_via_rewrite = (tmp_i == 1);
-        }
-
-        tmp_i = args.getAsInteger(FIELD_USE_SRTP);
-        if (tmp_i != null && tmp_i >= 0) {
-            use_srtp = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_USE_ZRTP);
-        if (tmp_i != null && tmp_i >= 0) {
-            use_zrtp = tmp_i;
-        }
+        priority = binder.getInt(c, binder.priority, priority);
+        acc_id = binder.getString(c, binder.accId, acc_id);
+        reg_uri = binder.getString(c, binder.regUri, reg_uri);
+        publish_enabled = binder.getInt(c, binder.publishEnabled, publish_enabled);
+        reg_timeout = binder.getPositiveInt(c, binder.regTimeout, reg_timeout);
+        reg_delay_before_refresh = binder.getPositiveInt(c, binder.regDelayBeforeRefresh, reg_delay_before_refresh);
+
+        ka_interval = binder.getPositiveInt(c, binder.kaInterval, ka_interval);
+        pidf_tuple_id = binder.getString(c, binder.pidfTupleId, pidf_tuple_id);
+        force_contact = binder.getString(c, binder.forceContact, force_contact);
+        allow_contact_rewrite = (binder.getInt(c, binder.allowContactRewrite, allow_contact_rewrite ? 1 : 0) == 1);
+        contact_rewrite_method = binder.getInt(c, binder.contactRewriteMethod, contact_rewrite_method);
+        allow_via_rewrite = (binder.getInt(c, binder.allowViaRewrite, allow_via_rewrite ? 1 : 0) == 1);
+
+        use_srtp = binder.getPositiveInt(c, binder.useSrtp, use_srtp);
+        use_zrtp = binder.getPositiveInt(c, binder.useZrtp, use_zrtp);
 
         // Proxy
-        tmp_s = args.getAsString(FIELD_PROXY);
-        if (tmp_s != null) {
-            proxies = TextUtils.split(tmp_s, Pattern.quote(PROXIES_SEPARATOR));
-        }
-        tmp_i = args.getAsInteger(FIELD_REG_USE_PROXY);
-        if (tmp_i != null && tmp_i >= 0) {
-            reg_use_proxy = tmp_i;
+        String proxy = binder.getString(c, binder.proxy, null);
+        if (proxy != null) {
+            proxies = TextUtils.split(proxy, Pattern.quote(PROXIES_SEPARATOR));
         }
+        reg_use_proxy = binder.getPositiveInt(c, binder.regUseProxy, reg_use_proxy);
 
         // Auth
-        tmp_s = args.getAsString(FIELD_REALM);
-        if (tmp_s != null) {
-            realm = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_SCHEME);
-        if (tmp_s != null) {
-            scheme = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_USERNAME);
-        if (tmp_s != null) {
-            username = tmp_s;
-        }
-        tmp_i = args.getAsInteger(FIELD_DATATYPE);
-        if (tmp_i != null) {
-            datatype = tmp_i;
-        }
-        tmp_s = args.getAsString(FIELD_DATA);
-        if (tmp_s != null) {
-            data = tmp_s;
-        }
+        realm = binder.getString(c, binder.realm, realm);
+        scheme = binder.getString(c, binder.scheme, scheme);
+        username = binder.getString(c, binder.username, username);
+        datatype = binder.getInt(c, binder.datatype, datatype);
+        data = binder.getString(c, binder.data, data);
 
-        tmp_i = args.getAsInteger(FIELD_SIP_STACK);
-        if (tmp_i != null && tmp_i >= 0) {
-            sip_stack = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_MWI_ENABLED);
-        if(tmp_i != null && tmp_i >= 0) {
-            mwi_enabled = (tmp_i == 1);
-        }
-        tmp_s = args.getAsString(FIELD_VOICE_MAIL_NBR);
-        if (tmp_s != null) {
-            vm_nbr = tmp_s;
-        }
-        tmp_i = args.getAsInteger(FIELD_TRY_CLEAN_REGISTERS);
-        if (tmp_i != null && tmp_i >= 0) {
-            try_clean_registers = tmp_i;
-        }
+        sip_stack = binder.getPositiveInt(c, binder.sipStack, sip_stack);
+        mwi_enabled = (binder.getPositiveInt(c, binder.mwiEnabled, mwi_enabled ? 1 : 0) == 1);
+        vm_nbr = binder.getString(c, binder.voiceMailNbr, vm_nbr);
+        try_clean_registers = binder.getPositiveInt(c, binder.tryCleanRegisters, try_clean_registers);
 
         // RFC 5626
-        tmp_i = args.getAsInteger(FIELD_USE_RFC5626);
-        if (tmp_i != null && tmp_i >= 0) {
-            use_rfc5626 = (tmp_i != 0);
-        }
-        tmp_s = args.getAsString(FIELD_RFC5626_INSTANCE_ID);
-        if (tmp_s != null) {
-            rfc5626_instance_id = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_RFC5626_REG_ID);
-        if (tmp_s != null) {
-            rfc5626_reg_id = tmp_s;
-        }
+        use_rfc5626 = (binder.getPositiveInt(c, binder.useRfc5626, use_rfc5626 ? 1 : 0) != 0);
+        rfc5626_instance_id = binder.getString(c, binder.rfc5626InstanceId, rfc5626_instance_id);
+        rfc5626_reg_id = binder.getString(c, binder.rfc5626RegId, rfc5626_reg_id);
 
         // Video
-        tmp_i = args.getAsInteger(FIELD_VID_IN_AUTO_SHOW);
-        if (tmp_i != null && tmp_i >= 0) {
-            vid_in_auto_show = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_VID_OUT_AUTO_TRANSMIT);
-        if (tmp_i != null && tmp_i >= 0) {
-            vid_out_auto_transmit = tmp_i;
-        }
+        vid_in_auto_show = binder.getPositiveInt(c, binder.vidInAutoShow, vid_in_auto_show);
+        vid_out_auto_transmit = binder.getPositiveInt(c, binder.vidOutAutoTransmit, vid_out_auto_transmit);
 
         // RTP cfg
-        tmp_i = args.getAsInteger(FIELD_RTP_PORT);
-        if (tmp_i != null && tmp_i >= 0) {
-            rtp_port = tmp_i;
-        }
-        tmp_s = args.getAsString(FIELD_RTP_PUBLIC_ADDR);
-        if (tmp_s != null) {
-            rtp_public_addr = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_RTP_BOUND_ADDR);
-        if (tmp_s != null) {
-            rtp_bound_addr = tmp_s;
-        }
-        tmp_i = args.getAsInteger(FIELD_RTP_ENABLE_QOS);
-        if (tmp_i != null && tmp_i >= 0) {
-            rtp_enable_qos = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_RTP_QOS_DSCP);
-        if (tmp_i != null && tmp_i >= 0) {
-            rtp_qos_dscp = tmp_i;
-        }
+        rtp_port = binder.getPositiveInt(c, binder.rtpPort, rtp_port);
+        rtp_public_addr = binder.getString(c, binder.rtpPublicAddr, rtp_public_addr);
+        rtp_bound_addr = binder.getString(c, binder.rtpBoundAddr, rtp_bound_addr);
+        rtp_enable_qos = binder.getPositiveInt(c, binder.rtpEnableQos, rtp_enable_qos);
+        rtp_qos_dscp = binder.getPositiveInt(c, binder.rtpQosDscp, rtp_qos_dscp);
         
 
-        tmp_i = args.getAsInteger(FIELD_SIP_STUN_USE);
-        if (tmp_i != null && tmp_i >= 0) {
-            sip_stun_use = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_MEDIA_STUN_USE);
-        if (tmp_i != null && tmp_i >= 0) {
-            media_stun_use = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_ICE_CFG_USE);
-        if (tmp_i != null && tmp_i >= 0) {
-            ice_cfg_use = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_ICE_CFG_ENABLE);
-        if (tmp_i != null && tmp_i >= 0) {
-            ice_cfg_enable = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_TURN_CFG_USE);
-        if (tmp_i != null && tmp_i >= 0) {
-            turn_cfg_use = tmp_i;
-        }
-        tmp_i = args.getAsInteger(FIELD_ICE_CFG_ENABLE);
-        if (tmp_i != null && tmp_i >= 0) {
-            turn_cfg_enable = tmp_i;
-        }
-        tmp_s = args.getAsString(FIELD_TURN_CFG_SERVER);
-        if (tmp_s != null) {
-            turn_cfg_server = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_TURN_CFG_USER);
-        if (tmp_s != null) {
-            turn_cfg_user = tmp_s;
-        }
-        tmp_s = args.getAsString(FIELD_TURN_CFG_PASSWORD);
-        if (tmp_s != null) {
-            turn_cfg_password = tmp_s;
-        }
-        tmp_i = args.getAsInteger(FIELD_IPV6_MEDIA_USE);
-        if (tmp_i != null && tmp_i >= 0) {
-            ipv6_media_use = tmp_i;
+        sip_stun_use = binder.getPositiveInt(c, binder.sipStunUse, sip_stun_use);
+        media_stun_use = binder.getPositiveInt(c, binder.mediaStunUse, media_stun_use);
+        ice_cfg_use = binder.getPositiveInt(c, binder.iceCfgUse, ice_cfg_use);
+        ice_cfg_enable = binder.getPositiveInt(c, binder.iceCfgEnable, ice_cfg_enable);
+        turn_cfg_use = binder.getPositiveInt(c, binder.turnCfgUse, turn_cfg_use);
+        turn_cfg_enable = binder.getPositiveInt(c, binder.iceCfgEnable, turn_cfg_enable);
+        turn_cfg_server = binder.getString(c, binder.turnCfgServer, turn_cfg_server);
+        turn_cfg_user = binder.getString(c, binder.turnCfgUser, turn_cfg_user);
+        turn_cfg_password = binder.getString(c, binder.turnCfgPassword, turn_cfg_password);
+        ipv6_media_use = binder.getPositiveInt(c, binder.ipv6MediaUse, ipv6_media_use);
+    }
+
+    /**
+     * Read sip profiles from a cursor on accounts.<br/>
+     * Column indexes of the cursor projection are resolved once when the binder
+     * is created. Each row is then read straight into profile fields without
+     * building intermediate {@link ContentValues}.<br/>
+     * A binder must only be used with the cursor it was created for.
+     */
+    public static final class CursorBinder {
+        private final int id;
+        private final int displayName;
+        private final int wizard;
+        private final int transport;
+        private final int active;
+        private final int androidGroup;
+        private final int priority;
+        private final int accId;
+        private final int regUri;
+        private final int publishEnabled;
+        private final int regTimeout;
+        private final int regDelayBeforeRefresh;
+        private final int kaInterval;
+        private final int pidfTupleId;
+        private final int forceContact;
+        private final int allowContactRewrite;
+        private final int contactRewriteMethod;
+        private final int allowViaRewrite;
+        private final int useSrtp;
+        private final int useZrtp;
+        private final int proxy;
+        private final int regUseProxy;
+        private final int realm;
+        private final int scheme;
+        private final int username;
+        private final int datatype;
+        private final int data;
+        private final int sipStack;
+        private final int mwiEnabled;
+        private final int voiceMailNbr;
+        private final int tryCleanRegisters;
+        private final int useRfc5626;
+        private final int rfc5626InstanceId;
+        private final int rfc5626RegId;
+        private final int vidInAutoShow;
+        private final int vidOutAutoTransmit;
+        private final int rtpPort;
+        private final int rtpPublicAddr;
+        private final int rtpBoundAddr;
+        private final int rtpEnableQos;
+        private final int rtpQosDscp;
+        private final int sipStunUse;
+        private final int mediaStunUse;
+        private final int iceCfgUse;
+        private final int iceCfgEnable;
+        private final int turnCfgUse;
+        private final int turnCfgServer;
+        private final int turnCfgUser;
+        private final int turnCfgPassword;
+        private final int ipv6MediaUse;
+
+        /**
+         * Create a binder for a cursor.
+         * 
+         * @param c cursor on the database queried from {@link SipProfile#ACCOUNT_URI}
+         */
+        public CursorBinder(Cursor c) {
+            id = c.getColumnIndex(FIELD_ID);
+            displayName = c.getColumnIndex(FIELD_DISPLAY_NAME);
+            wizard = c.getColumnIndex(FIELD_WIZARD);
+            transport = c.getColumnIndex(FIELD_TRANSPORT);
+            active = c.getColumnIndex(FIELD_ACTIVE);
+            androidGroup = c.getColumnIndex(FIELD_ANDROID_GROUP);
+            priority = c.getColumnIndex(FIELD_PRIORITY);
+            accId = c.getColumnIndex(FIELD_ACC_ID);
+            regUri = c.getColumnIndex(FIELD_REG_URI);
+            publishEnabled = c.getColumnIndex(FIELD_PUBLISH_ENABLED);
+            regTimeout = c.getColumnIndex(FIELD_REG_TIMEOUT);
+            regDelayBeforeRefresh = c.getColumnIndex(FIELD_REG_DELAY_BEFORE_REFRESH);
+            kaInterval = c.getColumnIndex(FIELD_KA_INTERVAL);
+            pidfTupleId = c.getColumnIndex(FIELD_PIDF_TUPLE_ID);
+            forceContact = c.getColumnIndex(FIELD_FORCE_CONTACT);
+            allowContactRewrite = c.getColumnIndex(FIELD_ALLOW_CONTACT_REWRITE);
+            contactRewriteMethod = c.getColumnIndex(FIELD_CONTACT_REWRITE_METHOD);
+            allowViaRewrite = c.getColumnIndex(FIELD_ALLOW_VIA_REWRITE);
+            useSrtp = c.getColumnIndex(FIELD_USE_SRTP);
+            useZrtp = c.getColumnIndex(FIELD_USE_ZRTP);
+            proxy = c.getColumnIndex(FIELD_PROXY);
+            regUseProxy = c.getColumnIndex(FIELD_REG_USE_PROXY);
+            realm = c.getColumnIndex(FIELD_REALM);
+            scheme = c.getColumnIndex(FIELD_SCHEME);
+            username = c.getColumnIndex(FIELD_USERNAME);
+            datatype = c.getColumnIndex(FIELD_DATATYPE);
+            data = c.getColumnIndex(FIELD_DATA);
+            sipStack = c.getColumnIndex(FIELD_SIP_STACK);
+            mwiEnabled = c.getColumnIndex(FIELD_MWI_ENABLED);
+            voiceMailNbr = c.getColumnIndex(FIELD_VOICE_MAIL_NBR);
+            tryCleanRegisters = c.getColumnIndex(FIELD_TRY_CLEAN_REGISTERS);
+            useRfc5626 = c.getColumnIndex(FIELD_USE_RFC5626);
+            rfc5626InstanceId = c.getColumnIndex(FIELD_RFC5626_INSTANCE_ID);
+            rfc5626RegId = c.getColumnIndex(FIELD_RFC5626_REG_ID);
+            vidInAutoShow = c.getColumnIndex(FIELD_VID_IN_AUTO_SHOW);
+            vidOutAutoTransmit = c.getColumnIndex(FIELD_VID_OUT_AUTO_TRANSMIT);
+            rtpPort = c.getColumnIndex(FIELD_RTP_PORT);
+            rtpPublicAddr = c.getColumnIndex(FIELD_RTP_PUBLIC_ADDR);
+            rtpBoundAddr = c.getColumnIndex(FIELD_RTP_BOUND_ADDR);
+            rtpEnableQos = c.getColumnIndex(FIELD_RTP_ENABLE_QOS);
+            rtpQosDscp = c.getColumnIndex(FIELD_RTP_QOS_DSCP);
+            sipStunUse = c.getColumnIndex(FIELD_SIP_STUN_USE);
+            mediaStunUse = c.getColumnIndex(FIELD_MEDIA_STUN_USE);
+            iceCfgUse = c.getColumnIndex(FIELD_ICE_CFG_USE);
+            iceCfgEnable = c.getColumnIndex(FIELD_ICE_CFG_ENABLE);
+            turnCfgUse = c.getColumnIndex(FIELD_TURN_CFG_USE);
+            turnCfgServer = c.getColumnIndex(FIELD_TURN_CFG_SERVER);
+            turnCfgUser = c.getColumnIndex(FIELD_TURN_CFG_USER);
+            turnCfgPassword = c.getColumnIndex(FIELD_TURN_CFG_PASSWORD);
+            ipv6MediaUse = c.getColumnIndex(FIELD_IPV6_MEDIA_USE);
+        }
+
+        /**
+         * Create a profile from the current row of the cursor.
+         * 
+         * @param c the cursor this binder was created for
+         * @return a new profile with values of the row
+         */
+        public SipProfile newProfile(Cursor c) {
+            SipProfile profile = new SipProfile();
+            profile.createFromCursor(c, this);
+            return profile;
+        }
+
+        private static boolean hasValue(Cursor c, int index) {
+            return index >= 0 && !c.isNull(index);
+        }
+
+        private String getString(Cursor c, int index, String defaultValue) {
+            return hasValue(c, index) ? c.getString(index) : defaultValue;
+        }
+
+        private int getInt(Cursor c, int index, int defaultValue) {
+            return hasValue(c, index) ? c.getInt(index) : defaultValue;
+        }
+
+        private long getLong(Cursor c, int index, long defaultValue) {
+            return hasValue(c, index) ? c.getLong(index) : defaultValue;
+        }
+
+        /**
+         * Negative values are ignored
+         */
+        private int getPositiveInt(Cursor c, int index, int defaultValue) {
+            if (hasValue(c, index)) {
+                int value = c.getInt(index);
+                if (value >= 0) {
+                    return value;
+                }
+            }
+            return defaultValue;
         }
     }
 
@@ -1655,8 +1658,9 @@ public class SipProfile implements Parcelable {
         if (c != null) {
             try {
                 if (c.moveToFirst()) {
+                    CursorBinder binder = new CursorBinder(c);
                     do {
-                        result.add(new SipProfile(c));
+                        result.add(binder.newProfile(c));
                     } while (c.moveToNext());
                 }
             } catch (Exception e) {
@@ -170,6 +170,27 @@ public class SipProfileState implements Parcelable, Serializable{
 		
 	}
 
+	/**
+     * Should not be used for external use of the API.
+	 * Copy constructor.
+	 *
+	 * @param state The state to copy.
+	 */
+	public SipProfileState(SipProfileState state) {
+		primaryKey = state.primaryKey;
+		databaseId = state.databaseId;
+		pjsuaId = state.pjsuaId;
+		wizard = state.wizard;
+		active = state.active;
+		statusCode = state.statusCode;
+		statusText = state.statusText;
+		addedStatus = state.addedStatus;
+		expires = state.expires;
+		displayName = state.displayName;
+		priority = state.priority;
+		regUri = state.regUri;
+	}
+
     /**
      * Construct a sip state wrapper from a cursor retrieved with a
      * {@link ContentProvider} query on {@link SipProfile#ACCOUNT_STATUS_URI}.
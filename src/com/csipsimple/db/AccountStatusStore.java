@@ -0,0 +1,358 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.db;
+
+import android.content.ContentValues;
+import android.text.TextUtils;
+
+import com.csipsimple.api.SipProfile;
+import com.csipsimple.api.SipProfileState;
+import com.csipsimple.utils.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registration and stack adding state of accounts, for the sip stack process.<br/>
+ * States are published as {@link SipProfileState} that are never modified
+ * once stored, so that readers get them without any lock. Each write is
+ * compared to the previous state of the account and listeners only receive
+ * an {@link AccountStatusChange} when something actually changed.<br/>
+ * {@link DBProvider} exposes this store as {@link SipProfile#ACCOUNT_STATUS_URI}
+ * for other processes and external applications.
+ */
+public final class AccountStatusStore {
+
+    private static final String THIS_FILE = "AccountStatusStore";
+
+    /**
+     * Listener for account status changes.
+     */
+    public interface OnAccountStatusChangeListener {
+        /**
+         * Called for each effective change, in the order of changes and from
+         * the thread doing the change while the store lock is held. It must
+         * return quickly and must not change the store.
+         *
+         * @param change the change of one account status
+         */
+        void onAccountStatusChanged(AccountStatusChange change);
+    }
+
+    /**
+     * Difference between two states of one account.
+     */
+    public static final class AccountStatusChange {
+        /**
+         * Pjsip id or stack adding status changed
+         */
+        public static final int CHANGED_STACK = 1 << 0;
+        /**
+         * Registration status code, text or expires changed
+         */
+        public static final int CHANGED_REGISTRATION = 1 << 1;
+        /**
+         * Account infos copied from the profile changed : active, wizard,
+         * display name, priority, registration uri
+         */
+        public static final int CHANGED_PROFILE = 1 << 2;
+
+        private final long accountId;
+        private final SipProfileState previous;
+        private final SipProfileState current;
+        private final int changes;
+
+        private AccountStatusChange(long aAccountId, SipProfileState aPrevious,
+                SipProfileState aCurrent, int aChanges) {
+            accountId = aAccountId;
+            previous = aPrevious;
+            current = aCurrent;
+            changes = aChanges;
+        }
+
+        /**
+         * @return the account id in database
+         */
+        public long getAccountId() {
+            return accountId;
+        }
+
+        /**
+         * @return the state before the change, null if the account had no
+         *         state. Must not be modified.
+         */
+        public SipProfileState getPrevious() {
+            return previous;
+        }
+
+        /**
+         * @return the state after the change, null if the state of the
+         *         account was removed. Must not be modified.
+         */
+        public SipProfileState getCurrent() {
+            return current;
+        }
+
+        /**
+         * @param what some of CHANGED_* flags
+         * @return true if any of these parts changed
+         */
+        public boolean hasChanged(int what) {
+            return (changes & what) != 0;
+        }
+
+        /**
+         * @return true if the account became valid or invalid for calls
+         * @see SipProfileState#isValidForCall()
+         */
+        public boolean isValidForCallChanged() {
+            boolean wasValid = (previous != null && previous.isValidForCall());
+            boolean isValid = (current != null && current.isValidForCall());
+            return wasValid != isValid;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("account ");
+            sb.append(accountId);
+            sb.append(": ");
+            if (previous == null) {
+                sb.append("added");
+            } else if (current == null) {
+                sb.append("removed");
+            } else {
+                sb.append(previous.getStatusCode());
+                sb.append(" -> ");
+                sb.append(current.getStatusCode());
+            }
+            if (current != null) {
+                sb.append(", expires ");
+                sb.append(current.getExpires());
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final AccountStatusStore INSTANCE = new AccountStatusStore();
+
+    private final ConcurrentHashMap<Long, SipProfileState> states = new ConcurrentHashMap<Long, SipProfileState>();
+    private final CopyOnWriteArrayList<OnAccountStatusChangeListener> listeners = new CopyOnWriteArrayList<OnAccountStatusChangeListener>();
+
+    private AccountStatusStore() {
+        // Singleton
+    }
+
+    /**
+     * @return the store of the current process
+     */
+    public static AccountStatusStore getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(OnAccountStatusChangeListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(OnAccountStatusChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the state of an account.
+     *
+     * @param accountId the account id in database
+     * @return the state, null if the account has no state. Must not be
+     *         modified.
+     */
+    public SipProfileState get(long accountId) {
+        return states.get(accountId);
+    }
+
+    /**
+     * Get all states.
+     *
+     * @return a new array of states. States must not be modified.
+     */
+    public SipProfileState[] getAll() {
+        return states.values().toArray(new SipProfileState[0]);
+    }
+
+    /**
+     * Set the whole state of an account, as when it's added to the stack.
+     *
+     * @param state the state. The account id is the one of the state. It is
+     *            copied.
+     * @return the change, null if nothing changed
+     */
+    public synchronized AccountStatusChange put(SipProfileState state) {
+        return publish(state.getAccountId(), new SipProfileState(state));
+    }
+
+    /**
+     * Set the whole states of several accounts in one go.
+     *
+     * @param newStates the states. Account ids are the ones of the states.
+     *            They are copied.
+     */
+    public synchronized void putAll(List<SipProfileState> newStates) {
+        for (SipProfileState state : newStates) {
+            put(state);
+        }
+    }
+
+    /**
+     * Set the stack adding status of an account.
+     *
+     * @param accountId the account id in database
+     * @param addedStatus the status of the stack add or modify call
+     * @return the change, null if nothing changed
+     */
+    public synchronized AccountStatusChange setAddedStatus(long accountId, int addedStatus) {
+        SipProfileState state = getForUpdate(accountId);
+        state.setAddedStatus(addedStatus);
+        return publish(accountId, state);
+    }
+
+    /**
+     * Set the latest registration result of an account.
+     *
+     * @param accountId the account id in database
+     * @param statusCode the sip status code of latest registration
+     * @param statusText the sip status text of latest registration
+     * @param expires the expires of latest registration
+     * @return the change, null if nothing changed
+     */
+    public synchronized AccountStatusChange setRegistrationStatus(long accountId, int statusCode,
+            String statusText, int expires) {
+        SipProfileState state = getForUpdate(accountId);
+        state.setStatusCode(statusCode);
+        state.setStatusText(statusText);
+        state.setExpires(expires);
+        return publish(accountId, state);
+    }
+
+    /**
+     * Update the state of an account with content values. Keys missing in
+     * values are left unchanged.
+     *
+     * @param accountId the account id in database
+     * @param values the values as described by {@link SipProfileState}
+     * @return the change, null if nothing changed
+     */
+    public synchronized AccountStatusChange update(long accountId, ContentValues values) {
+        SipProfileState state = getForUpdate(accountId);
+        state.createFromContentValue(values);
+        state.setDatabaseId((int) accountId);
+        return publish(accountId, state);
+    }
+
+    /**
+     * Remove the state of an account.
+     *
+     * @param accountId the account id in database
+     * @return the change, null if account had no state
+     */
+    public synchronized AccountStatusChange remove(long accountId) {
+        SipProfileState previous = states.remove(accountId);
+        if (previous == null) {
+            return null;
+        }
+        AccountStatusChange change = new AccountStatusChange(accountId, previous, null,
+                AccountStatusChange.CHANGED_STACK | AccountStatusChange.CHANGED_REGISTRATION
+                        | AccountStatusChange.CHANGED_PROFILE);
+        dispatch(change);
+        return change;
+    }
+
+    /**
+     * Remove the states of all accounts.
+     *
+     * @return the changes, one per removed account
+     */
+    public synchronized List<AccountStatusChange> removeAll() {
+        List<AccountStatusChange> changes = new ArrayList<AccountStatusChange>();
+        for (Long accountId : new ArrayList<Long>(states.keySet())) {
+            AccountStatusChange change = remove(accountId);
+            if (change != null) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    private SipProfileState getForUpdate(long accountId) {
+        SipProfileState current = states.get(accountId);
+        if (current != null) {
+            return new SipProfileState(current);
+        }
+        SipProfileState state = new SipProfileState();
+        state.setDatabaseId((int) accountId);
+        return state;
+    }
+
+    private AccountStatusChange publish(long accountId, SipProfileState state) {
+        SipProfileState previous = states.get(accountId);
+        int changes = diff(previous, state);
+        if (changes == 0) {
+            return null;
+        }
+        states.put(accountId, state);
+        AccountStatusChange change = new AccountStatusChange(accountId, previous, state, changes);
+        dispatch(change);
+        return change;
+    }
+
+    private void dispatch(AccountStatusChange change) {
+        Log.d(THIS_FILE, "Status changed " + change);
+        for (OnAccountStatusChangeListener listener : listeners) {
+            listener.onAccountStatusChanged(change);
+        }
+    }
+
+    private static int diff(SipProfileState previous, SipProfileState current) {
+        if (previous == null) {
+            return AccountStatusChange.CHANGED_STACK | AccountStatusChange.CHANGED_REGISTRATION
+                    | AccountStatusChange.CHANGED_PROFILE;
+        }
+        int changes = 0;
+        if (previous.getPjsuaId() != current.getPjsuaId()
+                || previous.getAddedStatus() != current.getAddedStatus()) {
+            changes |= AccountStatusChange.CHANGED_STACK;
+        }
+        if (previous.getStatusCode() != current.getStatusCode()
+                || previous.getExpires() != current.getExpires()
+                || !TextUtils.equals(previous.getStatusText(), current.getStatusText())) {
+            changes |= AccountStatusChange.CHANGED_REGISTRATION;
+        }
+        if (previous.isActive() != current.isActive()
+                || previous.getPriority() != current.getPriority()
+                || !TextUtils.equals(previous.getWizard(), current.getWizard())
+                || !TextUtils.equals(previous.getDisplayName(), current.getDisplayName())
+                || !TextUtils.equals(previous.getRegUri(), current.getRegUri())) {
+            changes |= AccountStatusChange.CHANGED_PROFILE;
+        }
+        return changes;
+    }
+}
@@ -35,6 +35,27 @@ import com.csipsimple.utils.Log;
 
 public class DBAdapter {
 	private final static String THIS_FILE = "SIP ACC_DB";
+	
+	/**
+	 * Table summarizing messages per remote party. Maintained by triggers on messages table.
+	 */
+	final static String THREADS_TABLE_NAME = "threads";
+	/**
+	 * Remote party of the thread
+	 */
+	final static String THREADS_FIELD_ORDERING = "message_ordering";
+	/**
+	 * Id of the last message of the thread
+	 */
+	final static String THREADS_FIELD_LAST_ID = "last_id";
+	/**
+	 * Number of unread messages in the thread
+	 */
+	final static String THREADS_FIELD_UNREAD = "unread";
+	/**
+	 * Number of messages in the thread
+	 */
+	final static String THREADS_FIELD_COUNTER = "counter";
 
 	private final Context context;
 	private DatabaseHelper databaseHelper;
@@ -46,7 +67,7 @@ public class DBAdapter {
 
 	public static class DatabaseHelper extends SQLiteOpenHelper {
 		
-		private static final int DATABASE_VERSION = 35;
+		private static final int DATABASE_VERSION = 38;
 
 		// Creation sql command
 		private static final String TABLE_ACCOUNT_CREATE = "CREATE TABLE IF NOT EXISTS "
@@ -137,7 +158,12 @@ public class DBAdapter {
 				+ CallLog.Calls.TYPE				+ " INTEGER,"
 		        + SipManager.CALLLOG_PROFILE_ID_FIELD     + " INTEGER,"
 		        + SipManager.CALLLOG_STATUS_CODE_FIELD    + " INTEGER,"
-		        + SipManager.CALLLOG_STATUS_TEXT_FIELD    + " TEXT"
+		        + SipManager.CALLLOG_STATUS_TEXT_FIELD    + " TEXT,"
+		        + SipManager.CALLLOG_CODEC_FIELD          + " TEXT,"
+		        + SipManager.CALLLOG_RX_LOSS_FIELD        + " INTEGER,"
+		        + SipManager.CALLLOG_TX_LOSS_FIELD        + " INTEGER,"
+		        + SipManager.CALLLOG_JITTER_FIELD         + " INTEGER,"
+		        + SipManager.CALLLOG_RTT_FIELD            + " INTEGER"
 			+");";
 		
 		private static final String TABLE_FILTERS_CREATE =  "CREATE TABLE IF NOT EXISTS "
@@ -171,6 +197,169 @@ public class DBAdapter {
 		
 		
 		
+		private final static String TABLE_THREADS_CREATE = "CREATE TABLE IF NOT EXISTS "
+			+ THREADS_TABLE_NAME
+			+ " ("
+				+ THREADS_FIELD_ORDERING			+ " TEXT PRIMARY KEY,"
+				+ THREADS_FIELD_LAST_ID			+ " INTEGER,"
+				+ SipMessage.FIELD_FROM				+ " TEXT,"
+				+ SipMessage.FIELD_FROM_FULL		+ " TEXT,"
+				+ SipMessage.FIELD_TO				+ " TEXT,"
+				+ SipMessage.FIELD_BODY				+ " TEXT,"
+				+ SipMessage.FIELD_DATE				+ " INTEGER,"
+				+ THREADS_FIELD_UNREAD				+ " INTEGER,"
+				+ THREADS_FIELD_COUNTER			+ " INTEGER"
+			+");";
+		
+		/**
+		 * Remote party of a message row
+		 * @param row the row alias, NEW or OLD in triggers, null for current row
+		 */
+		private static String threadOrdering(String row) {
+			String prefix = (row == null) ? "" : row + ".";
+			return "(CASE WHEN " + prefix + SipMessage.FIELD_FROM + "='SELF' THEN " + prefix + SipMessage.FIELD_TO
+					+ " ELSE " + prefix + SipMessage.FIELD_FROM + " END)";
+		}
+		
+		/**
+		 * 1 if a message row is unread, else 0
+		 * @param row the row alias, NEW or OLD in triggers, null for current row
+		 */
+		private static String messageUnread(String row) {
+			String prefix = (row == null) ? "" : row + ".";
+			return "(CASE WHEN " + prefix + SipMessage.FIELD_READ + "=0 THEN 1 ELSE 0 END)";
+		}
+		
+		/**
+		 * Statement inserting threads computed from messages table.
+		 * Date and bare columns are taken from the last message of each thread.
+		 * @param where restriction on messages, null for all messages
+		 */
+		private static String threadsComputeFromMessages(String where) {
+			return "INSERT OR REPLACE INTO " + THREADS_TABLE_NAME + " ("
+					+ THREADS_FIELD_ORDERING + ", " + THREADS_FIELD_LAST_ID + ", "
+					+ SipMessage.FIELD_FROM + ", " + SipMessage.FIELD_FROM_FULL + ", " + SipMessage.FIELD_TO + ", "
+					+ SipMessage.FIELD_BODY + ", " + SipMessage.FIELD_DATE + ", "
+					+ THREADS_FIELD_UNREAD + ", " + THREADS_FIELD_COUNTER + ")"
+					+ " SELECT " + threadOrdering(null) + ", " + SipMessage.FIELD_ID + ", "
+					+ SipMessage.FIELD_FROM + ", " + SipMessage.FIELD_FROM_FULL + ", " + SipMessage.FIELD_TO + ", "
+					+ SipMessage.FIELD_BODY + ", MAX(" + SipMessage.FIELD_DATE + "), "
+					+ "SUM(" + messageUnread(null) + "), COUNT(" + SipMessage.FIELD_ID + ")"
+					+ " FROM " + SipMessage.MESSAGES_TABLE_NAME
+					+ ((where == null) ? "" : " WHERE " + where)
+					+ " GROUP BY " + threadOrdering(null);
+		}
+		
+		/**
+		 * Statements recomputing one thread from its messages.
+		 * Messages are selected so that from and to indexes are used.
+		 * @param ordering the thread remote party expression
+		 */
+		private static String threadRecompute(String ordering) {
+			return "DELETE FROM " + THREADS_TABLE_NAME + " WHERE " + THREADS_FIELD_ORDERING + "=" + ordering + ";"
+					+ threadsComputeFromMessages(
+							"(" + SipMessage.FIELD_FROM + "=" + ordering + " AND " + SipMessage.FIELD_FROM + "!='SELF')"
+							+ " OR (" + SipMessage.FIELD_FROM + "='SELF' AND " + SipMessage.FIELD_TO + "=" + ordering + ")") + ";";
+		}
+		
+		// New message is added to its thread, becoming last message if it's the most recent
+		private final static String TRIGGER_THREADS_INSERT_CREATE = "CREATE TRIGGER IF NOT EXISTS "
+			+ THREADS_TABLE_NAME + "_on_insert AFTER INSERT ON " + SipMessage.MESSAGES_TABLE_NAME
+			+ " WHEN " + threadOrdering("NEW") + " IS NOT NULL"
+			+ " BEGIN "
+				+ "INSERT OR IGNORE INTO " + THREADS_TABLE_NAME + " ("
+					+ THREADS_FIELD_ORDERING + ", " + THREADS_FIELD_UNREAD + ", " + THREADS_FIELD_COUNTER + ")"
+					+ " VALUES (" + threadOrdering("NEW") + ", 0, 0);"
+				+ "UPDATE " + THREADS_TABLE_NAME + " SET "
+					+ THREADS_FIELD_COUNTER + "=" + THREADS_FIELD_COUNTER + "+1, "
+					+ THREADS_FIELD_UNREAD + "=" + THREADS_FIELD_UNREAD + "+" + messageUnread("NEW") + ", "
+					+ lastMessageSet(THREADS_FIELD_LAST_ID, SipMessage.FIELD_ID) + ", "
+					+ lastMessageSet(SipMessage.FIELD_FROM, SipMessage.FIELD_FROM) + ", "
+					+ lastMessageSet(SipMessage.FIELD_FROM_FULL, SipMessage.FIELD_FROM_FULL) + ", "
+					+ lastMessageSet(SipMessage.FIELD_TO, SipMessage.FIELD_TO) + ", "
+					+ lastMessageSet(SipMessage.FIELD_BODY, SipMessage.FIELD_BODY) + ", "
+					+ lastMessageSet(SipMessage.FIELD_DATE, SipMessage.FIELD_DATE)
+					+ " WHERE " + THREADS_FIELD_ORDERING + "=" + threadOrdering("NEW") + ";"
+			+ " END;";
+		
+		private static String lastMessageSet(String threadField, String messageField) {
+			return threadField + "=(CASE WHEN " + SipMessage.FIELD_DATE + " IS NULL OR NEW." + SipMessage.FIELD_DATE + ">=" + SipMessage.FIELD_DATE
+					+ " THEN NEW." + messageField + " ELSE " + threadField + " END)";
+		}
+		
+		// Deleted message is removed from its thread counters. If it was last message, thread is recomputed
+		private final static String TRIGGER_THREADS_DELETE_CREATE = "CREATE TRIGGER IF NOT EXISTS "
+			+ THREADS_TABLE_NAME + "_on_delete AFTER DELETE ON " + SipMessage.MESSAGES_TABLE_NAME
+			+ " WHEN " + threadOrdering("OLD") + " IS NOT NULL"
+			+ " BEGIN "
+				+ "UPDATE " + THREADS_TABLE_NAME + " SET "
+					+ THREADS_FIELD_COUNTER + "=" + THREADS_FIELD_COUNTER + "-1, "
+					+ THREADS_FIELD_UNREAD + "=" + THREADS_FIELD_UNREAD + "-" + messageUnread("OLD")
+					+ " WHERE " + THREADS_FIELD_ORDERING + "=" + threadOrdering("OLD")
+					+ " AND " + THREADS_FIELD_LAST_ID + "!=OLD." + SipMessage.FIELD_ID + ";"
+				+ "DELETE FROM " + THREADS_TABLE_NAME
+					+ " WHERE " + THREADS_FIELD_ORDERING + "=" + threadOrdering("OLD")
+					+ " AND (" + THREADS_FIELD_LAST_ID + "=OLD." + SipMessage.FIELD_ID + " OR " + THREADS_FIELD_COUNTER + "<=0);"
+				+ threadsComputeFromMessages(
+						"((" + SipMessage.FIELD_FROM + "=" + threadOrdering("OLD") + " AND " + SipMessage.FIELD_FROM + "!='SELF')"
+						+ " OR (" + SipMessage.FIELD_FROM + "='SELF' AND " + SipMessage.FIELD_TO + "=" + threadOrdering("OLD") + "))"
+						+ " AND NOT EXISTS (SELECT 1 FROM " + THREADS_TABLE_NAME
+						+ " WHERE " + THREADS_FIELD_ORDERING + "=" + threadOrdering("OLD") + ")") + ";"
+			+ " END;";
+		
+		/**
+		 * Whether an update of a message keeps it in the same thread at the same date
+		 */
+		private final static String MESSAGE_UPDATE_IN_PLACE = "IFNULL(" 
+				+ threadOrdering("OLD") + "=" + threadOrdering("NEW") 
+				+ " AND OLD." + SipMessage.FIELD_DATE + "=NEW." + SipMessage.FIELD_DATE + ", 0)";
+		
+		// Message updated in place (read, status...) only changes unread count and last message content
+		private final static String TRIGGER_THREADS_UPDATE_CREATE = "CREATE TRIGGER IF NOT EXISTS "
+			+ THREADS_TABLE_NAME + "_on_update AFTER UPDATE ON " + SipMessage.MESSAGES_TABLE_NAME
+			+ " WHEN " + MESSAGE_UPDATE_IN_PLACE
+			+ " BEGIN "
+				+ "UPDATE " + THREADS_TABLE_NAME + " SET "
+					+ THREADS_FIELD_UNREAD + "=" + THREADS_FIELD_UNREAD + "+" + messageUnread("NEW") + "-" + messageUnread("OLD") + ", "
+					+ SipMessage.FIELD_BODY + "=(CASE WHEN " + THREADS_FIELD_LAST_ID + "=NEW." + SipMessage.FIELD_ID
+						+ " THEN NEW." + SipMessage.FIELD_BODY + " ELSE " + SipMessage.FIELD_BODY + " END)"
+					+ " WHERE " + THREADS_FIELD_ORDERING + "=" + threadOrdering("NEW") + ";"
+			+ " END;";
+		
+		// Message moved to another thread or date, both threads are recomputed
+		private final static String TRIGGER_THREADS_MOVE_CREATE = "CREATE TRIGGER IF NOT EXISTS "
+			+ THREADS_TABLE_NAME + "_on_move AFTER UPDATE ON " + SipMessage.MESSAGES_TABLE_NAME
+			+ " WHEN NOT " + MESSAGE_UPDATE_IN_PLACE
+			+ " BEGIN "
+				+ threadRecompute(threadOrdering("OLD"))
+				+ threadRecompute(threadOrdering("NEW"))
+			+ " END;";
+		
+		// Indexes
+		// Threads are listed by date
+		private final static String INDEX_THREADS_DATE_CREATE = "CREATE INDEX IF NOT EXISTS "
+			+ THREADS_TABLE_NAME + "_date_idx ON "
+			+ THREADS_TABLE_NAME + " (" + SipMessage.FIELD_DATE + ");";
+		// Call logs are always listed by date
+		private final static String INDEX_CALLLOGS_DATE_CREATE = "CREATE INDEX IF NOT EXISTS "
+			+ SipManager.CALLLOGS_TABLE_NAME + "_date_idx ON "
+			+ SipManager.CALLLOGS_TABLE_NAME + " (" + CallLog.Calls.DATE + ");";
+		// Thread of a remote party selects messages by from and type or by to and type, ordered by date
+		private final static String INDEX_MESSAGES_FROM_CREATE = "CREATE INDEX IF NOT EXISTS "
+			+ SipMessage.MESSAGES_TABLE_NAME + "_from_idx ON "
+			+ SipMessage.MESSAGES_TABLE_NAME + " (" + SipMessage.FIELD_FROM + ", " + SipMessage.FIELD_TYPE + ", " + SipMessage.FIELD_DATE + ");";
+		private final static String INDEX_MESSAGES_TO_CREATE = "CREATE INDEX IF NOT EXISTS "
+			+ SipMessage.MESSAGES_TABLE_NAME + "_to_idx ON "
+			+ SipMessage.MESSAGES_TABLE_NAME + " (" + SipMessage.FIELD_TO + ", " + SipMessage.FIELD_TYPE + ", " + SipMessage.FIELD_DATE + ");";
+		// Queued messages are selected by type
+		private final static String INDEX_MESSAGES_TYPE_CREATE = "CREATE INDEX IF NOT EXISTS "
+			+ SipMessage.MESSAGES_TABLE_NAME + "_type_idx ON "
+			+ SipMessage.MESSAGES_TABLE_NAME + " (" + SipMessage.FIELD_TYPE + ");";
+		// Filters are selected by account, ordered by priority
+		private final static String INDEX_FILTERS_ACCOUNT_CREATE = "CREATE INDEX IF NOT EXISTS "
+			+ SipManager.FILTERS_TABLE_NAME + "_account_idx ON "
+			+ SipManager.FILTERS_TABLE_NAME + " (" + Filter.FIELD_ACCOUNT + ", " + Filter.FIELD_PRIORITY + ");";
+		
 		DatabaseHelper(Context context) {
 			super(context, SipManager.AUTHORITY, null, DATABASE_VERSION);
 		}
@@ -181,6 +370,22 @@ public class DBAdapter {
 			db.execSQL(TABLE_CALLLOGS_CREATE);
 			db.execSQL(TABLE_FILTERS_CREATE);
 			db.execSQL(TABLE_MESSAGES_CREATE);
+			createThreads(db);
+			
+			db.execSQL(INDEX_CALLLOGS_DATE_CREATE);
+			db.execSQL(INDEX_MESSAGES_FROM_CREATE);
+			db.execSQL(INDEX_MESSAGES_TO_CREATE);
+			db.execSQL(INDEX_MESSAGES_TYPE_CREATE);
+			db.execSQL(INDEX_FILTERS_ACCOUNT_CREATE);
+		}
+		
+		private void createThreads(SQLiteDatabase db) {
+			db.execSQL(TABLE_THREADS_CREATE);
+			db.execSQL(TRIGGER_THREADS_INSERT_CREATE);
+			db.execSQL(TRIGGER_THREADS_DELETE_CREATE);
+			db.execSQL(TRIGGER_THREADS_UPDATE_CREATE);
+			db.execSQL(TRIGGER_THREADS_MOVE_CREATE);
+			db.execSQL(INDEX_THREADS_DATE_CREATE);
 		}
 
 		@Override
@@ -400,6 +605,31 @@ public class DBAdapter {
                 }catch(SQLiteException e) {
                     Log.e(THIS_FILE, "Upgrade fail... maybe a crappy rom...", e);
                 }
+            }
+            // From 36 indexes are created by onCreate below
+            if(oldVersion < 37) {
+                try {
+                    // Threads summary table, filled from existing messages
+                    db.execSQL(TABLE_MESSAGES_CREATE);
+                    createThreads(db);
+                    db.execSQL(threadsComputeFromMessages(threadOrdering(null) + " IS NOT NULL"));
+                    Log.d(THIS_FILE, "Upgrade done");
+                }catch(SQLiteException e) {
+                    Log.e(THIS_FILE, "Upgrade fail... maybe a crappy rom...", e);
+                }
+            }
+            if(oldVersion < 38) {
+                try {
+                    // Call logs media quality
+                    addColumn(db, SipManager.CALLLOGS_TABLE_NAME, SipManager.CALLLOG_CODEC_FIELD, "TEXT");
+                    addColumn(db, SipManager.CALLLOGS_TABLE_NAME, SipManager.CALLLOG_RX_LOSS_FIELD, "INTEGER");
+                    addColumn(db, SipManager.CALLLOGS_TABLE_NAME, SipManager.CALLLOG_TX_LOSS_FIELD, "INTEGER");
+                    addColumn(db, SipManager.CALLLOGS_TABLE_NAME, SipManager.CALLLOG_JITTER_FIELD, "INTEGER");
+                    addColumn(db, SipManager.CALLLOGS_TABLE_NAME, SipManager.CALLLOG_RTT_FIELD, "INTEGER");
+                    Log.d(THIS_FILE, "Upgrade done");
+                }catch(SQLiteException e) {
+                    Log.e(THIS_FILE, "Upgrade fail... maybe a crappy rom...", e);
+                }
             }
 			onCreate(db);
 		}
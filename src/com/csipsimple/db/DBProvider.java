@@ -21,9 +21,12 @@
 package com.csipsimple.db;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.MatrixCursor;
@@ -40,20 +43,30 @@ import com.csipsimple.api.SipManager;
 import com.csipsimple.api.SipMessage;
 import com.csipsimple.api.SipProfile;
 import com.csipsimple.api.SipProfileState;
+import com.csipsimple.db.AccountStatusStore.AccountStatusChange;
 import com.csipsimple.db.DBAdapter.DatabaseHelper;
 import com.csipsimple.models.Filter;
-import com.csipsimple.utils.Log;
+import com.csipsimple.models.SipProfileCache;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
 public class DBProvider extends ContentProvider {
 	
 	private DatabaseHelper mOpenHelper;
 	private static final String UNKNOWN_URI_LOG = "Unknown URI ";
+	
+	/**
+	 * Max number of rows kept in call logs table
+	 */
+	private static final int CALLLOGS_MAX_ROWS = 500;
+	/**
+	 * Number of call logs inserted between two trims of the call logs table
+	 */
+	private static final int CALLLOGS_TRIM_INTERVAL = 20;
+	/**
+	 * Call logs inserted since last trim. Starts at interval so that first insert trims the table.
+	 */
+	private int callLogsInsertedSinceTrim = CALLLOGS_TRIM_INTERVAL;
     
 	// Ids for matcher
     private static final int ACCOUNTS = 1, ACCOUNTS_ID = 2;
@@ -178,8 +191,35 @@ public class DBProvider extends ContentProvider {
 
 	private static final String THIS_FILE = "DBProvider";
 
-	// Map active account id (id for sql settings database) with SipProfileState that contains stack id and other status infos
-	private final Map<Long, ContentValues> profilesStatus = new HashMap<Long, ContentValues>();
+	/**
+	 * Columns of account status cursors, as {@link SipProfileState#getAsContentValue()}
+	 */
+	private static final String[] STATUS_COLUMNS = new String[] {
+	    SipProfileState.ACCOUNT_ID,
+	    SipProfileState.ACTIVE,
+	    SipProfileState.ADDED_STATUS,
+	    SipProfileState.DISPLAY_NAME,
+	    SipProfileState.EXPIRES,
+	    SipProfileState.PJSUA_ID,
+	    SipProfileState.PRIORITY,
+	    SipProfileState.REG_URI,
+	    SipProfileState.STATUS_CODE,
+	    SipProfileState.STATUS_TEXT,
+	    SipProfileState.WIZARD
+	};
+
+	/**
+	 * Announce account status changes to other processes.
+	 * Only effective changes are notified, on the uri of the account.
+	 */
+	private final AccountStatusStore.OnAccountStatusChangeListener statusListener = new AccountStatusStore.OnAccountStatusChangeListener() {
+        @Override
+        public void onAccountStatusChanged(AccountStatusChange change) {
+            getContext().getContentResolver().notifyChange(
+                    ContentUris.withAppendedId(SipProfile.ACCOUNT_STATUS_ID_URI_BASE, change.getAccountId()), null);
+            broadcastRegistrationChange(change.getAccountId());
+        }
+    };
 	
 
 	@Override
@@ -217,6 +257,7 @@ public class DBProvider extends ContentProvider {
 	@Override
 	public boolean onCreate() {
 		mOpenHelper = new DatabaseHelper(getContext());
+		AccountStatusStore.getInstance().addListener(statusListener);
         // Assumes that any failures will be reported by a thrown exception.
         return true;
 	}
@@ -243,15 +284,15 @@ public class DBProvider extends ContentProvider {
         int matched = URI_MATCHER.match(uri);
         Uri regUri = uri;
         
-        ArrayList<Long> oldRegistrationsAccounts = null;
-        
         switch (matched) {
             case ACCOUNTS:
                 count = db.delete(SipProfile.ACCOUNTS_TABLE_NAME, where, whereArgs);
+                SipProfileCache.resetCache();
                 break;
             case ACCOUNTS_ID:
             	finalWhere = DatabaseUtilsCompat.concatenateWhere(SipProfile.FIELD_ID + " = " + ContentUris.parseId(uri), where);
                 count = db.delete(SipProfile.ACCOUNTS_TABLE_NAME, finalWhere, whereArgs);
+                SipProfileCache.resetCache(ContentUris.parseId(uri));
                 break;
             case CALLLOGS:
                 count = db.delete(SipManager.CALLLOGS_TABLE_NAME, where, whereArgs);
@@ -286,46 +327,25 @@ public class DBProvider extends ContentProvider {
                 regUri = SipMessage.MESSAGE_URI;
                 break;
             case ACCOUNTS_STATUS:
-                oldRegistrationsAccounts = new ArrayList<Long>();
-            	synchronized (profilesStatus) {
-            	    for(Long accId : profilesStatus.keySet()) {
-            	        oldRegistrationsAccounts.add(accId);
-            	    }
-        			profilesStatus.clear();
-        		}
-            	break;
+                // Status store notifies the changes
+                return AccountStatusStore.getInstance().removeAll().size();
             case ACCOUNTS_STATUS_ID:
-            	long id = ContentUris.parseId(uri);
-            	synchronized (profilesStatus) {
-        			profilesStatus.remove(id);
-        		}
-            	break;
+                return (AccountStatusStore.getInstance().remove(ContentUris.parseId(uri)) != null) ? 1 : 0;
             default:
                 throw new IllegalArgumentException(UNKNOWN_URI_LOG + uri);
         }
 
         getContext().getContentResolver().notifyChange(regUri, null);
 
-        if(matched == ACCOUNTS_ID || matched == ACCOUNTS_STATUS_ID) {
+        if(matched == ACCOUNTS_ID) {
         	long rowId = ContentUris.parseId(uri);
         	if(rowId >= 0) {
-        	    if(matched == ACCOUNTS_ID) {
-        	        broadcastAccountChange(rowId);
-        	    }else if(matched == ACCOUNTS_STATUS_ID) {
-        	        broadcastRegistrationChange(rowId);
-        	    }
+        	    broadcastAccountChange(rowId);
         	}
         }
         if (matched == FILTERS || matched == FILTERS_ID) {
             Filter.resetCache();
         }
-        if(matched == ACCOUNTS_STATUS && oldRegistrationsAccounts != null) {
-            for(Long accId : oldRegistrationsAccounts) {
-                if(accId != null) {
-                    broadcastRegistrationChange(accId);
-                }
-            }
-        }
         
 		return count;
 	}
@@ -358,20 +378,8 @@ public class DBProvider extends ContentProvider {
             baseInsertedUri = SipMessage.MESSAGE_ID_URI_BASE;
 		    break;
 		case ACCOUNTS_STATUS_ID:
-			long id = ContentUris.parseId(uri);
-			synchronized (profilesStatus){
-				SipProfileState ps = new SipProfileState();
-				if(profilesStatus.containsKey(id)) {
-					ContentValues currentValues = profilesStatus.get(id);
-					ps.createFromContentValue(currentValues);
-				}
-				ps.createFromContentValue(initialValues);
-				ContentValues cv = ps.getAsContentValue();
-				cv.put(SipProfileState.ACCOUNT_ID, id);
-				profilesStatus.put(id, cv);
-				Log.d(THIS_FILE, "Added "+cv);
-			}
-            getContext().getContentResolver().notifyChange(uri, null);
+		    // Status store notifies the change if any
+		    AccountStatusStore.getInstance().update(ContentUris.parseId(uri), initialValues);
 			return uri;
 		default:
 			break;
@@ -396,6 +404,9 @@ public class DBProvider extends ContentProvider {
         // If the insert succeeded, the row ID exists.
         if (rowId >= 0) {
         	// TODO : for inserted account register it here
+            if(matched == ACCOUNTS || matched == ACCOUNTS_ID) {
+                SipProfileCache.resetCache(rowId);
+            }
         	
             Uri retUri = ContentUris.withAppendedId(baseInsertedUri, rowId);
             getContext().getContentResolver().notifyChange(retUri, null);
@@ -404,12 +415,7 @@ public class DBProvider extends ContentProvider {
             	broadcastAccountChange(rowId);
             }
             if(matched == CALLLOGS || matched == CALLLOGS_ID) {
-            	db.delete(SipManager.CALLLOGS_TABLE_NAME, CallLog.Calls._ID + " IN " +
-            			"(SELECT "+CallLog.Calls._ID+" FROM "+SipManager.CALLLOGS_TABLE_NAME+" ORDER BY " + 
-            				CallLog.Calls.DEFAULT_SORT_ORDER + " LIMIT -1 OFFSET 500)", null);
-            }
-            if(matched == ACCOUNTS_STATUS || matched == ACCOUNTS_STATUS_ID) {
-                broadcastRegistrationChange(rowId);
+                trimCallLogs(db, 1);
             }
             if (matched == FILTERS || matched == FILTERS_ID) {
                 Filter.resetCache();
@@ -420,6 +426,87 @@ public class DBProvider extends ContentProvider {
         
         throw new SQLException("Failed to insert row into " + uri);
 	}
+	
+	/**
+	 * Insert several rows in one transaction.
+	 * Call logs and messages are inserted in one transaction with only one change notification.
+	 * Other uris fallback to one insert per row.
+	 */
+	@Override
+	public int bulkInsert(Uri uri, ContentValues[] values) {
+	    int matched = URI_MATCHER.match(uri);
+	    String matchedTable = null;
+	    Uri notifyUri = null;
+	    switch (matched) {
+	        case CALLLOGS:
+	            matchedTable = SipManager.CALLLOGS_TABLE_NAME;
+	            notifyUri = SipManager.CALLLOG_URI;
+	            break;
+	        case MESSAGES:
+	            matchedTable = SipMessage.MESSAGES_TABLE_NAME;
+	            notifyUri = SipMessage.MESSAGE_URI;
+	            break;
+	        default:
+	            return super.bulkInsert(uri, values);
+	    }
+	    
+	    SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+	    int count = 0;
+	    db.beginTransaction();
+	    try {
+	        for(ContentValues value : values) {
+	            if(db.insert(matchedTable, null, value) >= 0) {
+	                count ++;
+	            }
+	        }
+	        db.setTransactionSuccessful();
+	    } finally {
+	        db.endTransaction();
+	    }
+	    
+	    if(count > 0) {
+	        if(matched == CALLLOGS) {
+	            trimCallLogs(db, count);
+	        }
+	        getContext().getContentResolver().notifyChange(notifyUri, null);
+	    }
+	    return count;
+	}
+	
+	/**
+	 * Apply operations in one database transaction.
+	 */
+	@Override
+	public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+	        throws OperationApplicationException {
+	    SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+	    db.beginTransaction();
+	    try {
+	        ContentProviderResult[] results = super.applyBatch(operations);
+	        db.setTransactionSuccessful();
+	        return results;
+	    } finally {
+	        db.endTransaction();
+	    }
+	}
+	
+	/**
+	 * Remove oldest call logs over {@link #CALLLOGS_MAX_ROWS} once every {@link #CALLLOGS_TRIM_INTERVAL} inserts.
+	 * @param db the database to trim
+	 * @param inserted number of call logs just inserted
+	 */
+	private void trimCallLogs(SQLiteDatabase db, int inserted) {
+	    synchronized (this) {
+	        callLogsInsertedSinceTrim += inserted;
+	        if(callLogsInsertedSinceTrim < CALLLOGS_TRIM_INTERVAL) {
+	            return;
+	        }
+	        callLogsInsertedSinceTrim = 0;
+	    }
+	    db.delete(SipManager.CALLLOGS_TABLE_NAME, CallLog.Calls._ID + " IN " +
+	            "(SELECT "+CallLog.Calls._ID+" FROM "+SipManager.CALLLOGS_TABLE_NAME+" ORDER BY " + 
+	            CallLog.Calls.DEFAULT_SORT_ORDER + " LIMIT -1 OFFSET " + CALLLOGS_MAX_ROWS + ")", null);
+	}
 
 
 	@Override
@@ -449,7 +536,6 @@ public class DBProvider extends ContentProvider {
         }
 
     	Cursor c;
-    	long id;
         switch (type) {
             case ACCOUNTS:
                 qb.setTables(SipProfile.ACCOUNTS_TABLE_NAME);
@@ -496,30 +582,23 @@ public class DBProvider extends ContentProvider {
                 finalSelectionArgs = DatabaseUtilsCompat.appendSelectionArgs(selectionArgs, new String[] { uri.getLastPathSegment() });
                 break;
             case THREADS:
-                qb.setTables(SipMessage.MESSAGES_TABLE_NAME);
+                // Threads summary is maintained by triggers on messages table
+                qb.setTables(DBAdapter.THREADS_TABLE_NAME);
                 if(sortOrder == null) {
                     finalSortOrder = SipMessage.FIELD_DATE + " DESC";
                 }
                 projection = new String[]{
-                    "ROWID AS _id",
+                    DBAdapter.THREADS_FIELD_LAST_ID + " AS _id",
                     SipMessage.FIELD_FROM, 
                     SipMessage.FIELD_FROM_FULL, 
                     SipMessage.FIELD_TO, 
-                    "CASE " + 
-                            "WHEN " + SipMessage.FIELD_FROM + "='SELF' THEN "
-                                + SipMessage.FIELD_TO + 
-                            " WHEN " + SipMessage.FIELD_FROM + "!='SELF' THEN " 
-                                + SipMessage.FIELD_FROM
-                    + " END AS message_ordering",
+                    DBAdapter.THREADS_FIELD_ORDERING,
                     SipMessage.FIELD_BODY, 
-                    "MAX(" + SipMessage.FIELD_DATE + ") AS " + SipMessage.FIELD_DATE,
-                    "MIN(" + SipMessage.FIELD_READ + ") AS " + SipMessage.FIELD_READ,
-                    //SipMessage.FIELD_READ,
-                    "COUNT(" + SipMessage.FIELD_DATE + ") AS counter"
+                    SipMessage.FIELD_DATE,
+                    "CASE WHEN " + DBAdapter.THREADS_FIELD_UNREAD + ">0 THEN 0 ELSE 1 END AS " + SipMessage.FIELD_READ,
+                    DBAdapter.THREADS_FIELD_UNREAD,
+                    DBAdapter.THREADS_FIELD_COUNTER
                 };
-                //qb.appendWhere(SipMessage.FIELD_TYPE + " in (" + SipMessage.MESSAGE_TYPE_INBOX
-                //        + "," + SipMessage.MESSAGE_TYPE_SENT + ")");
-                finalGrouping = "message_ordering";
                 regUri = SipMessage.MESSAGE_URI;
                 break;
             case THREADS_ID:
@@ -544,28 +623,17 @@ public class DBProvider extends ContentProvider {
                 regUri = SipMessage.MESSAGE_URI;
                 break;
             case ACCOUNTS_STATUS:
-            	synchronized (profilesStatus) {
-            		ContentValues[] cvs = new ContentValues[profilesStatus.size()];
-            		int i = 0;
-            		for(ContentValues  ps : profilesStatus.values()) {
-            			cvs[i] = ps;
-            			i++;
-            		}
-            		c = getCursor(cvs);
-				}
+                c = getStatusCursor(AccountStatusStore.getInstance().getAll());
             	if(c != null) {
             		c.setNotificationUri(getContext().getContentResolver(), uri);
             	}
                 return c;
             case ACCOUNTS_STATUS_ID:
-            	id = ContentUris.parseId(uri);
-            	synchronized (profilesStatus) {
-            		ContentValues cv = profilesStatus.get(id);
-            		if(cv == null) {
-            			return null;
-            		}
-            		c = getCursor(new ContentValues[] {cv});
-				}
+            	SipProfileState state = AccountStatusStore.getInstance().get(ContentUris.parseId(uri));
+            	if(state == null) {
+            	    return null;
+            	}
+            	c = getStatusCursor(new SipProfileState[] {state});
                 c.setNotificationUri(getContext().getContentResolver(), uri);
                 return c;
             default:
@@ -591,10 +659,12 @@ public class DBProvider extends ContentProvider {
         switch (matched) {
             case ACCOUNTS:
                 count = db.update(SipProfile.ACCOUNTS_TABLE_NAME, values, where, whereArgs);
+                SipProfileCache.resetCache();
                 break;
             case ACCOUNTS_ID:
                 finalWhere = DatabaseUtilsCompat.concatenateWhere(SipProfile.FIELD_ID + " = " + ContentUris.parseId(uri), where);
                 count = db.update(SipProfile.ACCOUNTS_TABLE_NAME, values, finalWhere, whereArgs);
+                SipProfileCache.resetCache(ContentUris.parseId(uri));
                 break;
             case CALLLOGS:
                 count = db.update(SipManager.CALLLOGS_TABLE_NAME, values, where, whereArgs);
@@ -618,21 +688,9 @@ public class DBProvider extends ContentProvider {
                 count = db.update(SipMessage.MESSAGES_TABLE_NAME, values, where, whereArgs);
                 break;
             case ACCOUNTS_STATUS_ID:
-    			long id = ContentUris.parseId(uri);
-    			synchronized (profilesStatus){
-    				SipProfileState ps = new SipProfileState();
-    				if(profilesStatus.containsKey(id)) {
-    					ContentValues currentValues = profilesStatus.get(id);
-    					ps.createFromContentValue(currentValues);
-    				}
-    				ps.createFromContentValue(values);
-    				ContentValues cv = ps.getAsContentValue();
-    				cv.put(SipProfileState.ACCOUNT_ID, id);
-    				profilesStatus.put(id, cv);
-    				Log.d(THIS_FILE, "Updated "+cv);
-    			}
-    			count = 1;
-    			break;
+                // Status store notifies the change if any
+                AccountStatusStore.getInstance().update(ContentUris.parseId(uri), values);
+                return 1;
             default:
                 throw new IllegalArgumentException(UNKNOWN_URI_LOG + uri);
         }
@@ -640,7 +698,7 @@ public class DBProvider extends ContentProvider {
         getContext().getContentResolver().notifyChange(uri, null);
 
         long rowId = -1;
-        if (matched == ACCOUNTS_ID || matched == ACCOUNTS_STATUS_ID) {
+        if (matched == ACCOUNTS_ID) {
             rowId = ContentUris.parseId(uri);
         }
         if (rowId >= 0) {
@@ -657,8 +715,6 @@ public class DBProvider extends ContentProvider {
                 if(doBroadcast) {
                     broadcastAccountChange(rowId);
                 }
-            } else if (matched == ACCOUNTS_STATUS_ID) {
-                broadcastRegistrationChange(rowId);
             }
         }
         if (matched == FILTERS || matched == FILTERS_ID) {
@@ -672,34 +728,29 @@ public class DBProvider extends ContentProvider {
 	
 	
 	/**
-	 * Build a {@link Cursor} with a single row that contains all values
-	 * provided through the given {@link ContentValues}.
+	 * Build a {@link Cursor} with one row per account status.
 	 */
-	private Cursor getCursor(ContentValues[] contentValues) {
-		if(contentValues.length > 0) {
-	        final Set<Entry<String, Object>> valueSet = contentValues[0].valueSet();
-	        int colSize = valueSet.size();
-	        final String[] keys = new String[colSize];
-	
-	        int i = 0;
-	        for (Entry<String, Object> entry : valueSet) {
-	            keys[i] = entry.getKey();
-	            i++;
-	        }
-	
-	        final MatrixCursor cursor = new MatrixCursor(keys);
-	        for (ContentValues cv : contentValues) {
-		        final Object[] values = new Object[colSize];
-		        i = 0;
-		        for (Entry<String, Object> entry : cv.valueSet()) {
-		            values[i] = entry.getValue();
-		            i++;
-		        }
-	            cursor.addRow(values);
-	        }
-	        return cursor;
-		}
-		return null;
+	private Cursor getStatusCursor(SipProfileState[] states) {
+	    if(states.length == 0) {
+	        return null;
+	    }
+	    final MatrixCursor cursor = new MatrixCursor(STATUS_COLUMNS, states.length);
+	    for(SipProfileState state : states) {
+	        cursor.addRow(new Object[] {
+	                state.getAccountId(),
+	                state.isActive(),
+	                state.getAddedStatus(),
+	                state.getDisplayName(),
+	                state.getExpires(),
+	                state.getPjsuaId(),
+	                state.getPriority(),
+	                state.getRegUri(),
+	                state.getStatusCode(),
+	                state.getStatusText(),
+	                state.getWizard()
+	        });
+	    }
+	    return cursor;
     }
 	
 	/**
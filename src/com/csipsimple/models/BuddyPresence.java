@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.models;
+
+import android.text.TextUtils;
+
+import com.csipsimple.api.SipManager.PresenceStatus;
+
+/**
+ * Presence of a buddy as last notified by the sip stack. Immutable.
+ */
+public final class BuddyPresence {
+
+    private final String buddyUri;
+    private final PresenceStatus status;
+    private final String statusText;
+
+    /**
+     * @param aBuddyUri the buddy uri without sip: scheme, as stored in contacts
+     * @param aStatus the presence status
+     * @param aStatusText the status text, may be empty
+     */
+    public BuddyPresence(String aBuddyUri, PresenceStatus aStatus, String aStatusText) {
+        buddyUri = aBuddyUri;
+        status = aStatus;
+        statusText = (aStatusText == null) ? "" : aStatusText;
+    }
+
+    /**
+     * @return the buddy uri without sip: scheme
+     */
+    public String getBuddyUri() {
+        return buddyUri;
+    }
+
+    /**
+     * @return the presence status
+     */
+    public PresenceStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the status text, empty if none
+     */
+    public String getStatusText() {
+        return statusText;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BuddyPresence)) {
+            return false;
+        }
+        BuddyPresence other = (BuddyPresence) o;
+        return buddyUri.equals(other.buddyUri) && status == other.status
+                && TextUtils.equals(statusText, other.statusText);
+    }
+
+    @Override
+    public int hashCode() {
+        return buddyUri.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return buddyUri + " " + status + " " + statusText;
+    }
+}
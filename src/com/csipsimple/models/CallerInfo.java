@@ -34,6 +34,7 @@ import com.csipsimple.api.SipUri;
 import com.csipsimple.api.SipUri.ParsedSipContactInfos;
 import com.csipsimple.utils.Log;
 import com.csipsimple.utils.contacts.ContactsWrapper;
+import com.csipsimple.utils.contacts.ContactsWrapper.ContactsDataObserver;
 
 /**
  * Looks up caller information for the given phone number.
@@ -65,40 +66,108 @@ public class CallerInfo {
     public Uri contactContentUri;
     
     
-    private static LruCache<String, CallerInfo> callerCache;
+    /**
+     * Max weight of the cache, in estimated bytes
+     */
+    private static final int CACHE_MAX_SIZE = 256 * 1024;
     
+    private static CallerInfoLruCache callerCache;
     
+    /**
+     * Caller infos looked up by remote sip uri.<br/>
+     * Uris not matching any contact are also kept, as a CallerInfo for which contact doesn't exist.
+     * The whole cache is dropped each time contacts data change, but not on
+     * status updates such as the buddies presence we write.
+     * Lookups are done in {@link #create(String)} that is not called under the cache lock.
+     */
     private static class CallerInfoLruCache extends LruCache<String, CallerInfo> {
         final Context mContext;
+        /**
+         * Incremented each time contacts change so that a lookup done meanwhile is not stored
+         */
+        private int generation = 0;
+        
+        private final ContactsDataObserver contactsObserver;
+        
         public CallerInfoLruCache(Context context) {
-            super(4 * 1024 * 1024);
+            super(CACHE_MAX_SIZE);
             mContext = context;
+            contactsObserver = new ContactsDataObserver(mContext) {
+                @Override
+                protected void onContactsDataChange() {
+                    Log.d(THIS_FILE, "Contacts changed, drop caller infos");
+                    synchronized (CallerInfoLruCache.this) {
+                        generation++;
+                    }
+                    evictAll();
+                }
+            };
+            contactsObserver.register();
+        }
+        
+        private synchronized int getGeneration() {
+            return generation;
         }
         
         @Override
         protected CallerInfo create(String sipUri) {
-            CallerInfo callerInfo = null;
-            ParsedSipContactInfos uriInfos = SipUri.parseSipContact(sipUri);
-            String phoneNumber = SipUri.getPhoneNumber(uriInfos);
-            if (!TextUtils.isEmpty(phoneNumber)) {
-                Log.d(THIS_FILE, "Number found " + phoneNumber + ", try People lookup");
-                callerInfo = ContactsWrapper.getInstance().findCallerInfo(mContext, phoneNumber);
+            int lookupGeneration = getGeneration();
+            CallerInfo callerInfo = lookup(mContext, sipUri);
+            if(lookupGeneration != getGeneration()) {
+                // Contacts changed while looking up, do not cache the result
+                return null;
             }
-
-            if (callerInfo == null || !callerInfo.contactExists) {
-                // We can now search by sip uri
-                callerInfo = ContactsWrapper.getInstance().findCallerInfoForUri(mContext,
-                        uriInfos.getContactAddress());
-            }
-            
-            if(callerInfo == null) {
-                callerInfo = new CallerInfo();
-                callerInfo.phoneNumber = sipUri;
-            }
-            
             return callerInfo;
         }
         
+        @Override
+        protected int sizeOf(String sipUri, CallerInfo callerInfo) {
+            return estimateSize(sipUri) + callerInfo.estimateSize();
+        }
+        
+    }
+    
+    /**
+     * Look up caller infos in contacts, first by phone number, then by sip uri.
+     * @return the caller info, with contactExists false if no contact found
+     */
+    private static CallerInfo lookup(Context context, String sipUri) {
+        CallerInfo callerInfo = null;
+        ParsedSipContactInfos uriInfos = SipUri.parseSipContact(sipUri);
+        String phoneNumber = SipUri.getPhoneNumber(uriInfos);
+        if (!TextUtils.isEmpty(phoneNumber)) {
+            Log.d(THIS_FILE, "Number found " + phoneNumber + ", try People lookup");
+            callerInfo = ContactsWrapper.getInstance().findCallerInfo(context, phoneNumber);
+        }
+
+        if (callerInfo == null || !callerInfo.contactExists) {
+            // We can now search by sip uri
+            callerInfo = ContactsWrapper.getInstance().findCallerInfoForUri(context,
+                    uriInfos.getContactAddress());
+        }
+        
+        if(callerInfo == null) {
+            callerInfo = new CallerInfo();
+            callerInfo.phoneNumber = sipUri;
+        }
+        return callerInfo;
+    }
+    
+    private static int estimateSize(String str) {
+        return (str == null) ? 0 : 40 + 2 * str.length();
+    }
+    
+    private static int estimateSize(Uri uri) {
+        return (uri == null) ? 0 : 120;
+    }
+    
+    /**
+     * @return approximate memory used by this object, in bytes
+     */
+    private int estimateSize() {
+        return 80 + estimateSize(name) + estimateSize(phoneNumber) + estimateSize(phoneLabel)
+                + estimateSize(numberLabel) + estimateSize(photoUri)
+                + estimateSize(contactRingtoneUri) + estimateSize(contactContentUri);
     }
     
 
@@ -113,12 +182,19 @@ public class CallerInfo {
         if (TextUtils.isEmpty(sipUri)) {
             return EMPTY;
         }
-        if(callerCache == null) {
-            callerCache = new CallerInfoLruCache(context);
+        CallerInfoLruCache cache;
+        synchronized (CallerInfo.class) {
+            if(callerCache == null) {
+                callerCache = new CallerInfoLruCache(context.getApplicationContext());
+            }
+            cache = callerCache;
         }
-        synchronized (callerCache) {
-            return callerCache.get(sipUri);
+        CallerInfo callerInfo = cache.get(sipUri);
+        if(callerInfo == null) {
+            // Contacts changed during lookup, look up again without caching
+            callerInfo = lookup(context, sipUri);
         }
+        return callerInfo;
     }
 
     public static CallerInfo getCallerInfoForSelf(Context context) {
@@ -192,31 +192,61 @@ public class Filter {
 		Log.e(THIS_FILE, "Invalid pattern ", e);
 	}
 	
-	public boolean canCall(String number) {
-		//Log.d(THIS_FILE, "Check if filter is valid for "+number+" >> "+action+" and "+matchPattern);
-		if(action == ACTION_CANT_CALL) {
+	/**
+	 * Match pattern source {@link #compiledPattern} was compiled from
+	 */
+	private String compiledMatchPattern = null;
+	private Pattern compiledPattern = null;
+	
+	/**
+	 * Get the compiled match pattern.
+	 * The pattern is compiled once as long as {@link #matchPattern} does not change.
+	 * @return the compiled pattern or null if match pattern is not a valid regexp
+	 */
+	private Pattern getPattern() {
+		if(matchPattern == null) {
+			return null;
+		}
+		if(!matchPattern.equals(compiledMatchPattern)) {
+			Pattern pattern = null;
 			try {
-				return !Pattern.matches(matchPattern, number);
+				pattern = Pattern.compile(matchPattern);
 			}catch(PatternSyntaxException e) {
 				logInvalidPattern(e);
 			}
-			
+			compiledPattern = pattern;
+			compiledMatchPattern = matchPattern;
+		}
+		return compiledPattern;
+	}
+	
+	private boolean matches(String number) {
+		Pattern pattern = getPattern();
+		if(pattern == null) {
+			return false;
+		}
+		return pattern.matcher(number).matches();
+	}
+	
+	private boolean isBluetoothMatcher() {
+		return BLUETOOTH_MATCHER_KEY.equals(matchPattern);
+	}
+	
+	public boolean canCall(String number) {
+		//Log.d(THIS_FILE, "Check if filter is valid for "+number+" >> "+action+" and "+matchPattern);
+		if(action == ACTION_CANT_CALL) {
+			return !matches(number);
 		}
 		return true;
 	}
 	
 	public boolean mustCall(Context ctxt, String number) {
 		if(action == ACTION_DIRECTLY_CALL) {
-		    if(BLUETOOTH_MATCHER_KEY.equals(matchPattern)) {
+		    if(isBluetoothMatcher()) {
 		        return BluetoothWrapper.getInstance(ctxt).isBTHeadsetConnected();
 		    }else {
-    			try {
-    				return Pattern.matches(matchPattern, number);
-    			}catch(PatternSyntaxException e) {
-    				logInvalidPattern(e);
-    			}
+		        return matches(number);
 		    }
-			
 		}
 		return false;
 	}
@@ -224,11 +254,7 @@ public class Filter {
 	public boolean stopProcessing(String number) {
 		//Log.d(THIS_FILE, "Should stop processing "+number+" ? ");
 		if(action == ACTION_CAN_CALL || action == ACTION_DIRECTLY_CALL) {
-			try {
-				return Pattern.matches(matchPattern, number);
-			}catch(PatternSyntaxException e) {
-				logInvalidPattern(e);
-			}
+			return matches(number);
 		}
 		//Log.d(THIS_FILE, "Response : false");
 		return false;
@@ -236,14 +262,14 @@ public class Filter {
 	
 	public String rewrite(String number) {
 		if(action == ACTION_REPLACE) {
-			try {
-				Pattern pattern = Pattern.compile(matchPattern);
-				Matcher matcher = pattern.matcher(number);
-				return matcher.replaceAll(replacePattern); 
-			}catch(PatternSyntaxException e) {
-				logInvalidPattern(e);
-			}catch(ArrayIndexOutOfBoundsException e) {
-				Log.e(THIS_FILE, "Out of bounds ", e);
+			Pattern pattern = getPattern();
+			if(pattern != null) {
+				try {
+					Matcher matcher = pattern.matcher(number);
+					return matcher.replaceAll(replacePattern); 
+				}catch(ArrayIndexOutOfBoundsException e) {
+					Log.e(THIS_FILE, "Out of bounds ", e);
+				}
 			}
 		}
 		return number;
@@ -251,16 +277,27 @@ public class Filter {
 
 	public boolean autoAnswer(String number) {
 		if(action == ACTION_AUTO_ANSWER) {
-			try {
-				//TODO : get contact part
-				return Pattern.matches(matchPattern, number);
-			}catch(PatternSyntaxException e) {
-				logInvalidPattern(e);
-			}
+			//TODO : get contact part
+			return matches(number);
 		}
 		return false;
 	}
 	
+	/**
+	 * @return the sip code to answer with for an auto answer filter
+	 */
+	private int getAutoAnswerCode() {
+		if (TextUtils.isEmpty(replacePattern)) {
+			return 200;
+		}
+		try {
+			return Integer.parseInt(replacePattern);
+		} catch (NumberFormatException e) {
+			Log.e(THIS_FILE, "Invalid autoanswer code : " + replacePattern);
+		}
+		return 200;
+	}
+	
 	
 	//Utilities functions
 	private static int getForPosition(SparseArray<Integer> positions, Integer key) {
@@ -578,35 +615,85 @@ public class Filter {
 	
 	//Static utility method
 
-    public static boolean isCallableNumber(Context ctxt, long accountId, String number) {
-        boolean canCall = true;
+    /**
+     * Result of the processing of a number through the filters of an account.
+     */
+    public static final class ProcessedNumber {
+        /**
+         * Whether the account can be used to call the number
+         */
+        public boolean canCall = true;
+        /**
+         * Whether the account must be used to call the number
+         */
+        public boolean mustCall = false;
+        /**
+         * Number rewritten for use with the account
+         */
+        public String number;
+        /**
+         * Sip code to auto answer with, 0 if calls from the number should not be auto answered
+         */
+        public int autoAnswerCode = 0;
+    }
+    
+    /**
+     * Process a number through the filters of an account in one single pass.<br/>
+     * Filters are walked by priority. Rewrite filters are applied to the number,
+     * and processing stops at the first "can call" or "directly call" filter matching the number.
+     * The first matching "directly call" and "auto answer" filters reached give must call and auto answer results.
+     * 
+     * @param ctxt The application context.
+     * @param accountId The account id to use for the call
+     * @param number The number to process
+     * @return the processing result
+     */
+    public static ProcessedNumber processNumber(Context ctxt, long accountId, String number) {
+        ProcessedNumber result = new ProcessedNumber();
+        boolean autoAnswerFound = false;
         List<Filter> filterList = getFiltersForAccount(ctxt, accountId);
         for (Filter f : filterList) {
-            Log.d(THIS_FILE, "Test filter " + f.matchPattern);
-            canCall &= f.canCall(number);
-
-            // Stop processing & rewrite
-            if (f.stopProcessing(number)) {
-                return canCall;
+            if (f.action == null) {
+                continue;
+            }
+            int action = f.action;
+            if (action == ACTION_REPLACE) {
+                number = f.rewrite(number);
+                continue;
+            }
+            if (action == ACTION_DIRECTLY_CALL && f.isBluetoothMatcher()) {
+                if (!result.mustCall) {
+                    result.mustCall = BluetoothWrapper.getInstance(ctxt).isBTHeadsetConnected();
+                }
+                continue;
+            }
+            if (!f.matches(number)) {
+                continue;
+            }
+            if (action == ACTION_CANT_CALL) {
+                result.canCall = false;
+            } else if (action == ACTION_AUTO_ANSWER) {
+                if (!autoAnswerFound) {
+                    autoAnswerFound = true;
+                    result.autoAnswerCode = f.getAutoAnswerCode();
+                }
+            } else if (action == ACTION_DIRECTLY_CALL) {
+                result.mustCall = true;
+                break;
+            } else if (action == ACTION_CAN_CALL) {
+                break;
             }
-            number = f.rewrite(number);
         }
-        return canCall;
+        result.number = number;
+        return result;
+    }
+
+    public static boolean isCallableNumber(Context ctxt, long accountId, String number) {
+        return processNumber(ctxt, accountId, number).canCall;
     }
 
 	public static boolean isMustCallNumber(Context ctxt, long accountId, String number) {
-	    List<Filter> filterList = getFiltersForAccount(ctxt, accountId);
-        for (Filter f : filterList) {
-			if(f.mustCall(ctxt, number)) {
-				return true;
-			}
-			//Stop processing & rewrite
-			if(f.stopProcessing(number)) {
-				return false;
-			}
-			number = f.rewrite(number);
-		}
-		return false;
+	    return processNumber(ctxt, accountId, number).mustCall;
 	}
 	
 	/**
@@ -618,38 +705,11 @@ public class Filter {
 	 * @return Rewritten number
 	 */
 	public static String rewritePhoneNumber(Context ctxt, long accountId, String number) {
-        List<Filter> filterList = getFiltersForAccount(ctxt, accountId);
-        for (Filter f : filterList) {
-			//Log.d(THIS_FILE, "RW > Test filter "+f.matches);
-			number = f.rewrite(number);
-			if(f.stopProcessing(number)) {
-				return number;
-			}
-		}
-		return number;
+	    return processNumber(ctxt, accountId, number).number;
 	}
 	
 	public static int isAutoAnswerNumber(Context ctxt, long accountId, String number) {
-        List<Filter> filterList = getFiltersForAccount(ctxt, accountId);
-        for (Filter f : filterList) {
-            if (f.autoAnswer(number)) {
-                if (TextUtils.isEmpty(f.replacePattern)) {
-                    return 200;
-                }
-                try {
-                    return Integer.parseInt(f.replacePattern);
-                } catch (NumberFormatException e) {
-                    Log.e(THIS_FILE, "Invalid autoanswer code : " + f.replacePattern);
-                }
-                return 200;
-            }
-            // Stop processing & rewrite
-            if (f.stopProcessing(number)) {
-                return 0;
-            }
-            number = f.rewrite(number);
-        }
-        return 0;
+        return processNumber(ctxt, accountId, number).autoAnswerCode;
     }
 	
 	
@@ -677,17 +737,29 @@ public class Filter {
 		return filter;
 	}
 	
-	private static Map<Long, List<Filter>> FILTERS_PER_ACCOUNT = new HashMap<Long, List<Filter>>();
+	private static volatile Map<Long, List<Filter>> FILTERS_PER_ACCOUNT = new HashMap<Long, List<Filter>>();
 	
+	/**
+	 * Get the filter chain of an account, ordered by priority.
+	 * The chain is loaded from database and its patterns compiled once, 
+	 * until {@link #resetCache()} is called.
+	 */
 	private static List<Filter> getFiltersForAccount(Context ctxt, long accountId){
-        if (!FILTERS_PER_ACCOUNT.containsKey(accountId)) {
+	    Map<Long, List<Filter>> filtersPerAccount = FILTERS_PER_ACCOUNT;
+	    List<Filter> filters;
+	    synchronized (filtersPerAccount) {
+	        filters = filtersPerAccount.get(accountId);
+	    }
+        if (filters == null) {
             ArrayList<Filter> aList = new ArrayList<Filter>();
             Cursor c = getFiltersCursorForAccount(ctxt, accountId);
             if (c != null) {
                 try {
                     if (c.moveToFirst()) {
                         do {
-                            aList.add(new Filter(c));
+                            Filter f = new Filter(c);
+                            f.getPattern();
+                            aList.add(f);
                         } while (c.moveToNext());
                     }
                 } catch (Exception e) {
@@ -696,9 +768,12 @@ public class Filter {
                     c.close();
                 }
             }
-            FILTERS_PER_ACCOUNT.put(accountId, aList);
+            filters = aList;
+            synchronized (filtersPerAccount) {
+                filtersPerAccount.put(accountId, filters);
+            }
         }
-        return FILTERS_PER_ACCOUNT.get(accountId);
+        return filters;
 	}
 	
 	public static void resetCache() {
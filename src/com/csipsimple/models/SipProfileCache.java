@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.models;
+
+import android.content.Context;
+import android.support.v4.util.LruCache;
+
+import com.csipsimple.api.SipProfile;
+import com.csipsimple.db.DBProvider;
+
+/**
+ * Cache of accounts fully loaded from database with
+ * {@link DBProvider#ACCOUNT_FULL_PROJECTION}.<br/>
+ * Entries are dropped by {@link DBProvider} each time the corresponding row of
+ * the accounts table is inserted, updated or deleted. Profiles returned are
+ * shared and must not be modified by callers.
+ */
+public class SipProfileCache {
+
+    private static final int MAX_PROFILES = 32;
+
+    private static final LruCache<Long, SipProfile> PROFILES = new LruCache<Long, SipProfile>(MAX_PROFILES);
+
+    /**
+     * Incremented each time cache entries are dropped so that a profile loaded
+     * from database while it was changing is not stored.
+     */
+    private static int generation = 0;
+
+    private SipProfileCache() {
+        // Static helper only
+    }
+
+    /**
+     * Get an account fully loaded from database.
+     *
+     * @param ctxt the context used to query the database on cache miss
+     * @param accountId the account id in database
+     * @return the profile. If not found in database the profile has
+     *         {@link SipProfile#INVALID_ID} as id.
+     */
+    public static SipProfile getProfile(Context ctxt, long accountId) {
+        int loadGeneration;
+        synchronized (PROFILES) {
+            SipProfile profile = PROFILES.get(accountId);
+            if (profile != null) {
+                return profile;
+            }
+            loadGeneration = generation;
+        }
+        SipProfile profile = SipProfile.getProfileFromDbId(ctxt, accountId,
+                DBProvider.ACCOUNT_FULL_PROJECTION);
+        if (profile.id != SipProfile.INVALID_ID) {
+            synchronized (PROFILES) {
+                if (loadGeneration == generation) {
+                    PROFILES.put(accountId, profile);
+                }
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Drop one account from cache.
+     *
+     * @param accountId the account id in database
+     */
+    public static void resetCache(long accountId) {
+        synchronized (PROFILES) {
+            generation++;
+            PROFILES.remove(accountId);
+        }
+    }
+
+    /**
+     * Drop all accounts from cache.
+     */
+    public static void resetCache() {
+        synchronized (PROFILES) {
+            generation++;
+            PROFILES.evictAll();
+        }
+    }
+
+    /**
+     * @return number of lookups served from cache
+     */
+    public static int getHitCount() {
+        synchronized (PROFILES) {
+            return PROFILES.hitCount();
+        }
+    }
+
+    /**
+     * @return number of lookups that had to query the database
+     */
+    public static int getMissCount() {
+        synchronized (PROFILES) {
+            return PROFILES.missCount();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.pjsip;
+
+import android.util.SparseArray;
+
+import com.csipsimple.api.MediaStreamStats;
+import com.csipsimple.api.SipConfigManager;
+import com.csipsimple.pjsip.AdaptiveMediaPolicy.Decision;
+import com.csipsimple.service.SipService.SameThreadException;
+import com.csipsimple.utils.Log;
+
+import org.pjsip.pjsua.pjsua;
+
+import java.util.List;
+
+/**
+ * Applies decisions of {@link AdaptiveMediaPolicy} to calls.<br/>
+ * All methods are to be run on the sip executor, where samples of
+ * {@link CallStatsSampler} are taken. When the level of a call changes,
+ * codecs settings of the stack are overridden and the call is re-invited so
+ * that the new offer is negotiated.<br/>
+ * Codecs settings are global in the stack, so overrides are only kept until
+ * the media of the call is updated, and preferences settings are then
+ * restored.
+ */
+final class AdaptiveMediaController {
+
+    private static final String THIS_FILE = "AdaptiveMedia";
+
+    /**
+     * Low bitrate codecs, best first
+     */
+    private static final String[] LOW_BITRATE_CODECS = new String[] {
+            "G729/8000", "AMR/8000", "SILK/8000", "speex/8000", "iLBC/8000", "GSM/8000"
+    };
+    /**
+     * Highest codec priority of the stack, priorities are 8 bits values
+     */
+    private static final short MAX_CODEC_PRIORITY = 255;
+    /**
+     * Maximum packet time reached by larger packet time level, in ms
+     */
+    private static final int MAX_PTIME = 80;
+
+    private final PjSipService pjService;
+    private final SparseArray<AdaptiveMediaPolicy> policies = new SparseArray<AdaptiveMediaPolicy>(5);
+    /**
+     * Last sample of each call taken at preferred level, to know the
+     * preferred codec once the call uses a low bitrate one
+     */
+    private final SparseArray<MediaStreamStats> preferredSamples = new SparseArray<MediaStreamStats>(5);
+    /**
+     * Call for which codecs settings are overridden until its next media
+     * update, -1 if none
+     */
+    private int overridingCallId = -1;
+
+    AdaptiveMediaController(PjSipService aPjService) {
+        pjService = aPjService;
+    }
+
+    /**
+     * Feed a sample of a call with active media.
+     *
+     * @param callId the call
+     * @param stats the sample
+     */
+    void onSample(int callId, MediaStreamStats stats) throws SameThreadException {
+        if (!pjService.prefsWrapper.getPreferenceBooleanValue(SipConfigManager.ADAPTIVE_MEDIA)) {
+            return;
+        }
+        AdaptiveMediaPolicy policy = policies.get(callId);
+        if (policy == null) {
+            policy = new AdaptiveMediaPolicy();
+            policies.put(callId, policy);
+        }
+        if (policy.getLevel() == AdaptiveMediaPolicy.LEVEL_PREFERRED) {
+            preferredSamples.put(callId, stats);
+        }
+        Decision decision = policy.onSample(stats);
+        if (decision == null) {
+            return;
+        }
+        Log.i(THIS_FILE, "Call " + callId + " with " + stats.codec + "/" + stats.clockRate
+                + " ptime " + stats.ptime + " : " + decision);
+        if (!decision.rateLimited && !apply(callId, decision.level, stats)) {
+            policy.revert(decision);
+        }
+    }
+
+    /**
+     * Media of a call was updated. Restore codecs settings if they were
+     * overridden for this call.
+     *
+     * @param callId the call
+     */
+    void onMediaUpdated(int callId) throws SameThreadException {
+        if (overridingCallId == callId) {
+            restore();
+        }
+    }
+
+    /**
+     * Forget a call that ended.
+     *
+     * @param callId the call
+     */
+    void stop(int callId) throws SameThreadException {
+        policies.remove(callId);
+        preferredSamples.remove(callId);
+        onMediaUpdated(callId);
+    }
+
+    /**
+     * Forget all calls. To be called before the stack is destroyed.
+     */
+    void stopAll() {
+        policies.clear();
+        preferredSamples.clear();
+        overridingCallId = -1;
+    }
+
+    /**
+     * @return true if the call was re-invited at the new level
+     */
+    private boolean apply(int callId, int level, MediaStreamStats stats) throws SameThreadException {
+        if (overridingCallId >= 0) {
+            restore();
+        }
+        if (level == AdaptiveMediaPolicy.LEVEL_LARGER_PTIME) {
+            // Stepping up from low bitrate, the call does not use the
+            // preferred codec anymore
+            MediaStreamStats preferred = preferredSamples.get(callId);
+            if (preferred == null) {
+                preferred = stats;
+            }
+            String codec = findCodec(preferred.codec + "/" + preferred.clockRate);
+            if (codec == null || preferred.ptime <= 0) {
+                Log.w(THIS_FILE, "No stack codec for " + preferred.codec);
+                return false;
+            }
+            String codecKey = SipConfigManager.getCodecKey(codec, SipConfigManager.FRAMES_PER_PACKET_SUFFIX);
+            Integer fpp = pjService.prefsWrapper.getPreferenceIntegerValueOrNull(codecKey);
+            int currentFpp = (fpp != null && fpp > 0) ? fpp : 1;
+            int framePtime = Math.max(1, preferred.ptime / currentFpp);
+            int newFpp = Math.min(currentFpp * 2, MAX_PTIME / framePtime);
+            if (newFpp <= currentFpp) {
+                Log.d(THIS_FILE, "Packet time of " + codec + " already at maximum");
+                return false;
+            }
+            Log.d(THIS_FILE, "Set codec " + codec + " fpp : " + newFpp);
+            pjsua.codec_set_frames_per_packet(pjsua.pj_str_copy(codec), newFpp);
+        } else if (level == AdaptiveMediaPolicy.LEVEL_LOW_BITRATE) {
+            String codec = findLowBitrateCodec();
+            if (codec == null) {
+                Log.w(THIS_FILE, "No low bitrate codec enabled");
+                return false;
+            }
+            if (codec.toLowerCase().startsWith(stats.codec.toLowerCase() + "/")) {
+                Log.d(THIS_FILE, "Call already uses " + codec);
+                return false;
+            }
+            setFirstCodec(codec);
+        }
+        if (level != AdaptiveMediaPolicy.LEVEL_PREFERRED) {
+            overridingCallId = callId;
+        }
+        int status = pjService.callReinvite(callId, false);
+        if (status != pjsua.PJ_SUCCESS) {
+            Log.w(THIS_FILE, "Unable to re-invite call " + callId + " : " + status);
+            onMediaUpdated(callId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Give a codec a priority strictly above the one of all other codecs.
+     * When another codec already has the highest priority, it is lowered by
+     * one since the codec can't go above.
+     *
+     * @param codec the identifier of the stack codec
+     */
+    private void setFirstCodec(String codec) {
+        String bandType = pjService.getCurrentBandType();
+        short maxPriority = 0;
+        for (String other : pjService.getAudioCodecs()) {
+            if (!other.equals(codec)) {
+                maxPriority = (short) Math.max(maxPriority,
+                        pjService.prefsWrapper.getCodecPriority(other, bandType, "-1"));
+            }
+        }
+        short priority = (short) Math.min(maxPriority + 1, MAX_CODEC_PRIORITY);
+        if (maxPriority >= MAX_CODEC_PRIORITY) {
+            for (String other : pjService.getAudioCodecs()) {
+                if (!other.equals(codec) && pjService.prefsWrapper.getCodecPriority(other,
+                        bandType, "-1") >= MAX_CODEC_PRIORITY) {
+                    pjsua.codec_set_priority(pjsua.pj_str_copy(other),
+                            (short) (MAX_CODEC_PRIORITY - 1));
+                }
+            }
+        }
+        Log.d(THIS_FILE, "Set codec " + codec + " first : " + priority);
+        pjsua.codec_set_priority(pjsua.pj_str_copy(codec), priority);
+    }
+
+    private void restore() throws SameThreadException {
+        Log.d(THIS_FILE, "Restore codecs settings");
+        overridingCallId = -1;
+        pjService.setCodecsPriorities();
+    }
+
+    /**
+     * @param prefix codec name and clock rate
+     * @return the identifier of the stack codec, null if none
+     */
+    private String findCodec(String prefix) {
+        String lowerPrefix = prefix.toLowerCase() + "/";
+        for (String codec : pjService.getAudioCodecs()) {
+            if (codec.toLowerCase().startsWith(lowerPrefix)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the identifier of the best low bitrate codec enabled by user
+     *         for current network, null if none
+     */
+    private String findLowBitrateCodec() {
+        String bandType = pjService.getCurrentBandType();
+        if (bandType == null) {
+            return null;
+        }
+        List<String> stackCodecs = pjService.getAudioCodecs();
+        for (String candidate : LOW_BITRATE_CODECS) {
+            String lowerPrefix = candidate.toLowerCase() + "/";
+            for (String codec : stackCodecs) {
+                if (codec.toLowerCase().startsWith(lowerPrefix)
+                        && pjService.prefsWrapper.getCodecPriority(codec, bandType, "-1") > 0) {
+                    return codec;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.pjsip;
+
+import com.csipsimple.api.MediaStreamStats;
+
+/**
+ * Policy deciding the media level of one call from its stream statistics.<br/>
+ * Each sample is compared to the previous one so that loss is measured on the
+ * last period only. The level steps down after a few bad periods and steps
+ * back up after a longer run of good periods. Changes are rate limited.<br/>
+ * The policy only depends on samples, including for time.
+ */
+public final class AdaptiveMediaPolicy {
+
+    /**
+     * Preferred codecs and packet time
+     */
+    public static final int LEVEL_PREFERRED = 0;
+    /**
+     * Larger packet time for the current codec
+     */
+    public static final int LEVEL_LARGER_PTIME = 1;
+    /**
+     * Lower bitrate codec
+     */
+    public static final int LEVEL_LOW_BITRATE = 2;
+    private static final int MAX_LEVEL = LEVEL_LOW_BITRATE;
+
+    // A period is bad if any of these is reached
+    static final int BAD_LOSS_PERMIL = 50;
+    static final int BAD_JITTER_MS = 60;
+    static final int BAD_RTT_MS = 400;
+    // A period is good if all of these are not reached
+    static final int GOOD_LOSS_PERMIL = 20;
+    static final int GOOD_JITTER_MS = 30;
+    static final int GOOD_RTT_MS = 250;
+
+    /**
+     * Expected packets below which a period is not significant, as on hold
+     */
+    static final int MIN_PACKETS = 50;
+    static final int BAD_PERIODS_TO_DEGRADE = 2;
+    static final int GOOD_PERIODS_TO_RECOVER = 6;
+    /**
+     * Minimum time between two level changes, in ms
+     */
+    static final long MIN_CHANGE_INTERVAL = 30000;
+    /**
+     * Maximum level changes during a call
+     */
+    static final int MAX_CHANGES = 6;
+
+    /**
+     * Level change decided by the policy.
+     */
+    public static final class Decision {
+        /**
+         * The level to switch to
+         */
+        public final int level;
+        /**
+         * Time of the sample that triggered the decision
+         */
+        public final long timestamp;
+        /**
+         * Whether the change is deferred because of rate limiting
+         */
+        public final boolean rateLimited;
+        /**
+         * Metrics of the period that triggered the decision
+         */
+        public final String reason;
+
+        private Decision(int aLevel, long aTimestamp, boolean aRateLimited, String aReason) {
+            level = aLevel;
+            timestamp = aTimestamp;
+            rateLimited = aRateLimited;
+            reason = aReason;
+        }
+
+        @Override
+        public String toString() {
+            return (rateLimited ? "deferred " : "") + "level " + level + " at " + timestamp
+                    + " : " + reason;
+        }
+    }
+
+    private MediaStreamStats previous = null;
+    private int level = LEVEL_PREFERRED;
+    private int badPeriods = 0;
+    private int goodPeriods = 0;
+    private int changes = 0;
+    private long lastChange = 0;
+    private int levelBeforeChange = LEVEL_PREFERRED;
+    private long lastChangeBeforeChange = 0;
+
+    /**
+     * @return the current level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Feed a new sample.
+     *
+     * @param stats the sample, newer than previous ones
+     * @return the decision if the level should change, null otherwise.
+     *         Deferred decisions are only returned once, the change happens
+     *         at a later sample when allowed.
+     */
+    public Decision onSample(MediaStreamStats stats) {
+        MediaStreamStats prev = previous;
+        previous = stats;
+        if (prev == null) {
+            return null;
+        }
+        int rxPackets = stats.rxPackets - prev.rxPackets;
+        int rxLoss = stats.rxLoss - prev.rxLoss;
+        if (rxPackets < 0 || rxLoss < 0 || !stats.codec.equals(prev.codec)) {
+            // New stream after a re-invite, sample is the new reference
+            return null;
+        }
+        if (rxPackets + rxLoss < MIN_PACKETS) {
+            return null;
+        }
+        int txPackets = Math.max(0, stats.txPackets - prev.txPackets);
+        int txLoss = Math.max(0, stats.txLoss - prev.txLoss);
+        int loss = Math.max(permil(rxLoss, rxPackets), permil(txLoss, txPackets));
+        int jitter = stats.rxJitterMean / 1000;
+        int rtt = stats.rttLast / 1000;
+
+        if (loss >= BAD_LOSS_PERMIL || jitter >= BAD_JITTER_MS || rtt >= BAD_RTT_MS) {
+            badPeriods++;
+            goodPeriods = 0;
+        } else if (loss < GOOD_LOSS_PERMIL && jitter < GOOD_JITTER_MS && rtt < GOOD_RTT_MS) {
+            goodPeriods++;
+            badPeriods = 0;
+        } else {
+            badPeriods = 0;
+            goodPeriods = 0;
+        }
+
+        int target = level;
+        boolean firstTrigger = false;
+        if (badPeriods >= BAD_PERIODS_TO_DEGRADE && level < MAX_LEVEL) {
+            target = level + 1;
+            firstTrigger = (badPeriods == BAD_PERIODS_TO_DEGRADE);
+        } else if (goodPeriods >= GOOD_PERIODS_TO_RECOVER && level > LEVEL_PREFERRED) {
+            target = level - 1;
+            firstTrigger = (goodPeriods == GOOD_PERIODS_TO_RECOVER);
+        }
+        if (target == level) {
+            return null;
+        }
+
+        String reason = "loss " + loss + "/1000, jitter " + jitter + " ms, rtt " + rtt + " ms";
+        if (changes >= MAX_CHANGES
+                || (changes > 0 && stats.timestamp - lastChange < MIN_CHANGE_INTERVAL)) {
+            return firstTrigger ? new Decision(target, stats.timestamp, true, reason) : null;
+        }
+        levelBeforeChange = level;
+        lastChangeBeforeChange = lastChange;
+        level = target;
+        changes++;
+        lastChange = stats.timestamp;
+        badPeriods = 0;
+        goodPeriods = 0;
+        return new Decision(target, stats.timestamp, false, reason);
+    }
+
+    /**
+     * Cancel the last decision because it could not be applied to the call.
+     * The level is back to the one before the decision and the change is
+     * not counted.
+     *
+     * @param decision the last decision returned by {@link #onSample(MediaStreamStats)}
+     */
+    public void revert(Decision decision) {
+        if (decision.rateLimited || decision.level != level || changes == 0) {
+            return;
+        }
+        level = levelBeforeChange;
+        lastChange = lastChangeBeforeChange;
+        changes--;
+    }
+
+    private static int permil(int loss, int received) {
+        int expected = loss + received;
+        return (expected > 0) ? (int) (loss * 1000L / expected) : 0;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.pjsip;
+
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.csipsimple.api.SipCallSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of known call sessions, keyed by pjsip call id.<br/>
+ * Readers get immutable snapshots without any lock. Writers have to
+ * synchronize on the registry, get a copy of the session with
+ * {@link #getForUpdate(int)}, modify it and publish it with
+ * {@link #put(SipCallSession)}. Published sessions must never be modified.
+ */
+public final class CallSessionsRegistry {
+
+    /**
+     * Versions are unique in the process so that a version read from a
+     * previous registry never matches the current one.
+     */
+    private static final AtomicInteger VERSIONS = new AtomicInteger(0);
+
+    private static final class Snapshot {
+        private final int version;
+        private final SparseArray<SipCallSession> sessions;
+        /**
+         * Version at which each session was published, by call id
+         */
+        private final SparseIntArray sessionsVersions;
+        private final SipCallSession[] sessionsArray;
+
+        private Snapshot(int aVersion, SparseArray<SipCallSession> aSessions,
+                SparseIntArray aSessionsVersions) {
+            version = aVersion;
+            sessions = aSessions;
+            sessionsVersions = aSessionsVersions;
+            sessionsArray = new SipCallSession[aSessions.size()];
+            for (int i = 0; i < sessionsArray.length; i++) {
+                sessionsArray[i] = aSessions.valueAt(i);
+            }
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(VERSIONS.incrementAndGet(),
+            new SparseArray<SipCallSession>(), new SparseIntArray());
+
+    /**
+     * Get the published session of a call.
+     *
+     * @param callId the pjsip call id
+     * @return the session, null if no session known for this call. Must not
+     *         be modified.
+     */
+    public SipCallSession get(int callId) {
+        return snapshot.sessions.get(callId);
+    }
+
+    /**
+     * Get all published sessions.
+     *
+     * @return a new array of the sessions. Sessions must not be modified.
+     */
+    public SipCallSession[] getAll() {
+        return snapshot.sessionsArray.clone();
+    }
+
+    /**
+     * Get the version of the registry content. It changes each time a
+     * session is published.
+     *
+     * @return the current version
+     */
+    public int getVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * Whether sessions were published since a given version.
+     *
+     * @param version a version previously read with {@link #getVersion()}
+     * @return true if sessions changed since this version
+     */
+    public boolean hasChangedSince(int version) {
+        return snapshot.version != version;
+    }
+
+    /**
+     * Get sessions published since a given version.
+     *
+     * @param version a version previously read with {@link #getVersion()}
+     * @return the sessions published after this version. Sessions must not be
+     *         modified.
+     */
+    public List<SipCallSession> getChangedSince(int version) {
+        Snapshot current = snapshot;
+        List<SipCallSession> changed = new ArrayList<SipCallSession>();
+        for (int i = 0; i < current.sessionsVersions.size(); i++) {
+            if (current.sessionsVersions.valueAt(i) > version) {
+                changed.add(current.sessions.get(current.sessionsVersions.keyAt(i)));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Get a session to modify. Caller must hold the registry lock until the
+     * session is published with {@link #put(SipCallSession)}.
+     *
+     * @param callId the pjsip call id
+     * @return a copy of the published session or a new session for this call
+     *         id
+     */
+    public synchronized SipCallSession getForUpdate(int callId) {
+        SipCallSession session = snapshot.sessions.get(callId);
+        if (session != null) {
+            return new SipCallSession(session);
+        }
+        session = new SipCallSession();
+        session.setCallId(callId);
+        return session;
+    }
+
+    /**
+     * Publish a session. The session must not be modified anymore.
+     *
+     * @param session the session to publish
+     */
+    public synchronized void put(SipCallSession session) {
+        SparseArray<SipCallSession> current = snapshot.sessions;
+        SparseArray<SipCallSession> sessions = new SparseArray<SipCallSession>(current.size() + 1);
+        for (int i = 0; i < current.size(); i++) {
+            sessions.put(current.keyAt(i), current.valueAt(i));
+        }
+        sessions.put(session.getCallId(), session);
+        SparseIntArray currentVersions = snapshot.sessionsVersions;
+        SparseIntArray sessionsVersions = new SparseIntArray(currentVersions.size() + 1);
+        for (int i = 0; i < currentVersions.size(); i++) {
+            sessionsVersions.put(currentVersions.keyAt(i), currentVersions.valueAt(i));
+        }
+        int version = VERSIONS.incrementAndGet();
+        sessionsVersions.put(session.getCallId(), version);
+        snapshot = new Snapshot(version, sessions, sessionsVersions);
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.pjsip;
+
+import android.util.SparseArray;
+
+import com.csipsimple.api.MediaStreamStats;
+import com.csipsimple.api.SipCallSession;
+import com.csipsimple.service.SipService.SameThreadException;
+import com.csipsimple.service.SipService.SipRunnable;
+
+import org.pjsip.pjsua.csipsimple_stream_stats;
+import org.pjsip.pjsua.pjsua;
+import org.pjsip.pjsua.pjsuaConstants;
+
+/**
+ * Periodic sampler of calls audio stream statistics.<br/>
+ * While at least one call has active media, statistics of each such call are
+ * read from the stack into one reused native record and kept in a fixed size
+ * ring per call. The latest sample is also published in the call session and
+ * given to {@link AdaptiveMediaController}.
+ */
+final class CallStatsSampler {
+
+    /**
+     * Period of sampling, in ms
+     */
+    static final long SAMPLE_PERIOD = 5000;
+    /**
+     * Number of samples kept per call
+     */
+    static final int RING_SIZE = 24;
+
+    private final PjSipService pjService;
+    private final SparseArray<StatsRing> rings = new SparseArray<StatsRing>(5);
+    private csipsimple_stream_stats nativeStats;
+    /**
+     * Task scheduled for next period, null if none
+     */
+    private Runnable scheduledSample = null;
+
+    CallStatsSampler(PjSipService aPjService) {
+        pjService = aPjService;
+    }
+
+    /**
+     * Start periodic sampling if not already running. It stops by itself
+     * once no call has active media.
+     */
+    synchronized void start() {
+        if (scheduledSample == null) {
+            // A new task for each period : the executor wake lock is held
+            // per task and released once the running one ends
+            scheduledSample = new SampleRunnable();
+            pjService.service.getExecutor().executeDelayed(scheduledSample, SAMPLE_PERIOD);
+        }
+    }
+
+    /**
+     * Take a sample of a call now, for example before it is hung up.
+     *
+     * @param callId the call
+     * @return the sample, null if the call has no active audio stream
+     */
+    MediaStreamStats sample(int callId) throws SameThreadException {
+        if (nativeStats == null) {
+            nativeStats = new csipsimple_stream_stats();
+        }
+        if (pjsua.call_get_audio_stats(callId, nativeStats) != pjsuaConstants.PJ_SUCCESS) {
+            return null;
+        }
+        MediaStreamStats stats = new MediaStreamStats();
+        stats.timestamp = System.currentTimeMillis();
+        stats.codec = nativeStats.getCodec();
+        stats.clockRate = nativeStats.getClock_rate();
+        stats.ptime = nativeStats.getPtime();
+        stats.rxPackets = nativeStats.getRx_packets();
+        stats.rxLoss = nativeStats.getRx_loss();
+        stats.rxJitterMean = nativeStats.getRx_jitter_mean();
+        stats.rxJitterMax = nativeStats.getRx_jitter_max();
+        stats.txPackets = nativeStats.getTx_packets();
+        stats.txLoss = nativeStats.getTx_loss();
+        stats.txJitterMean = nativeStats.getTx_jitter_mean();
+        stats.rttMean = nativeStats.getRtt_mean();
+        stats.rttLast = nativeStats.getRtt_last();
+        stats.jbSize = nativeStats.getJb_size();
+        stats.jbPrefetch = nativeStats.getJb_prefetch();
+        stats.jbAvgDelay = nativeStats.getJb_avg_delay();
+
+        synchronized (this) {
+            StatsRing ring = rings.get(callId);
+            if (ring == null) {
+                ring = new StatsRing();
+                rings.put(callId, ring);
+            }
+            ring.add(stats);
+        }
+        if (pjService.userAgentReceiver != null) {
+            pjService.userAgentReceiver.updateCallMediaStats(callId, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Get samples of a call.
+     *
+     * @param callId the call
+     * @return the samples kept, oldest first. Empty if none.
+     */
+    synchronized MediaStreamStats[] getSamples(int callId) {
+        StatsRing ring = rings.get(callId);
+        if (ring == null) {
+            return new MediaStreamStats[0];
+        }
+        return ring.toArray();
+    }
+
+    /**
+     * Forget samples of a call that ended.
+     *
+     * @param callId the call
+     */
+    synchronized void stop(int callId) {
+        rings.remove(callId);
+    }
+
+    /**
+     * Forget all samples and release the native record. To be called before
+     * the stack is destroyed.
+     */
+    void stopAll() {
+        Runnable sampleTask;
+        synchronized (this) {
+            rings.clear();
+            sampleTask = scheduledSample;
+            scheduledSample = null;
+        }
+        if (sampleTask != null) {
+            pjService.service.getExecutor().cancelDelayed(sampleTask);
+        }
+        if (nativeStats != null) {
+            nativeStats.delete();
+            nativeStats = null;
+        }
+    }
+
+    /**
+     * @return true if at least one call has active media
+     */
+    private boolean sampleActiveCalls() throws SameThreadException {
+        if (pjService.userAgentReceiver == null) {
+            return false;
+        }
+        boolean hasActiveCalls = false;
+        for (SipCallSession callInfo : pjService.userAgentReceiver.getCalls()) {
+            if (callInfo.isActive() && callInfo.getMediaStatus() == SipCallSession.MediaState.ACTIVE) {
+                int callId = callInfo.getCallId();
+                MediaStreamStats stats = sample(callId);
+                if (stats != null) {
+                    pjService.adaptiveMedia.onSample(callId, stats);
+                }
+                hasActiveCalls = true;
+            }
+        }
+        return hasActiveCalls;
+    }
+
+    /**
+     * Sample active calls and schedule next period while some remain.
+     */
+    private final class SampleRunnable extends SipRunnable {
+        @Override
+        protected void doRun() throws SameThreadException {
+            synchronized (CallStatsSampler.this) {
+                if (scheduledSample != this) {
+                    // Stopped
+                    return;
+                }
+                scheduledSample = null;
+            }
+            if (sampleActiveCalls()) {
+                start();
+            }
+        }
+    }
+
+    /**
+     * Fixed size ring of samples of one call.
+     */
+    private static final class StatsRing {
+        private final MediaStreamStats[] samples = new MediaStreamStats[RING_SIZE];
+        private int written = 0;
+
+        void add(MediaStreamStats stats) {
+            samples[written % RING_SIZE] = stats;
+            written++;
+        }
+
+        MediaStreamStats[] toArray() {
+            int count = Math.min(written, RING_SIZE);
+            MediaStreamStats[] result = new MediaStreamStats[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = samples[(written - count + i) % RING_SIZE];
+            }
+            return result;
+        }
+    }
+}
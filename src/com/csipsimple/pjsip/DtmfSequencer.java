@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.pjsip;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import com.csipsimple.service.SipService.SameThreadException;
+import com.csipsimple.service.SipService.SipRunnable;
+import com.csipsimple.utils.Log;
+import com.csipsimple.utils.PreferencesProviderWrapper;
+
+import org.pjsip.pjsua.pjsua;
+import org.pjsip.pjsua.pjsuaConstants;
+
+/**
+ * Sequencer of DTMF dial strings, one sequence per call.<br/>
+ * A dial string is parsed once into a compact array of events : tones runs
+ * and pauses. Events are run in the call queue of the sip executor, and
+ * delays are scheduled with the executor too, so that no other timer thread
+ * is needed. Each step is due at a time computed from the start of the
+ * sequence and the length of previous steps, so that scheduling latency does
+ * not add up along the sequence.<br/>
+ * Strings sent while a sequence is running for the call are appended to it
+ * instead of being interleaved.<br/>
+ * In band tone generators are owned by the sequencer and released when the
+ * call ends or the stack is destroyed.
+ */
+final class DtmfSequencer {
+
+    private static final String THIS_FILE = "DtmfSequencer";
+
+    /**
+     * Pause for ',' in dial string
+     */
+    static final int PAUSE_LENGTH = 300;
+    /**
+     * Pause for ';' in dial string
+     */
+    static final int WAIT_LENGTH = 2000;
+    /**
+     * Time to play one tone in the audio stream, on + off time of
+     * {@link PjStreamDialtoneGenerator} that is also about the time of a
+     * RFC 2833 event
+     */
+    static final int TONE_LENGTH = 300;
+
+    // Events : type in higher bits, payload in lower bits
+    private static final int EVENT_TONES = 0;
+    private static final int EVENT_PAUSE = 1;
+    private static final int TYPE_SHIFT = 28;
+    private static final int PAYLOAD_MASK = (1 << TYPE_SHIFT) - 1;
+    // Tones payload : start in digits and count
+    private static final int TONES_START_SHIFT = 12;
+    private static final int TONES_COUNT_MASK = (1 << TONES_START_SHIFT) - 1;
+
+    private final PjSipService pjService;
+    private final SparseArray<Sequence> sequences = new SparseArray<Sequence>(5);
+    /**
+     * Dial strings of outgoing calls, started once calls are confirmed
+     */
+    private final SparseArray<String> pendingDialStrings = new SparseArray<String>(5);
+    private final SparseArray<PjStreamDialtoneGenerator> generators = new SparseArray<PjStreamDialtoneGenerator>(5);
+
+    DtmfSequencer(PjSipService aPjService) {
+        pjService = aPjService;
+    }
+
+    /**
+     * Keep a dial string to send once the call is confirmed.
+     *
+     * @param callId the call
+     * @param dialString the dial string, may be empty
+     */
+    synchronized void setPending(int callId, String dialString) {
+        if (TextUtils.isEmpty(dialString)) {
+            pendingDialStrings.remove(callId);
+        } else {
+            pendingDialStrings.put(callId, dialString);
+        }
+    }
+
+    /**
+     * Start the dial string kept for a call, if any.
+     *
+     * @param callId the call
+     */
+    void startPending(int callId) throws SameThreadException {
+        String dialString;
+        synchronized (this) {
+            dialString = pendingDialStrings.get(callId);
+            pendingDialStrings.remove(callId);
+        }
+        if (dialString != null) {
+            Log.d(THIS_FILE, "Send pending dtmf " + dialString + " for " + callId);
+            send(callId, dialString);
+        }
+    }
+
+    /**
+     * Send a dial string on a call. Leading tones are sent right away, the
+     * rest is scheduled.
+     *
+     * @param callId the call
+     * @param dialString digits with ',' and ';' pauses
+     * @return the status of the first tones sent, success if the string was
+     *         appended to a running sequence or only contains pauses
+     */
+    int send(int callId, String dialString) throws SameThreadException {
+        Sequence sequence;
+        synchronized (this) {
+            sequence = sequences.get(callId);
+            if (sequence != null) {
+                sequence.append(dialString);
+                return pjsuaConstants.PJ_SUCCESS;
+            }
+            sequence = new Sequence(callId, dialString);
+            if (sequence.isDone()) {
+                return pjsuaConstants.PJ_SUCCESS;
+            }
+            sequence.dueTime = SystemClock.uptimeMillis();
+            sequences.put(callId, sequence);
+        }
+        return runSteps(sequence);
+    }
+
+    /**
+     * Cancel running and pending sequences of a call and release its tone
+     * generator.
+     *
+     * @param callId the call
+     */
+    void stop(int callId) {
+        PjStreamDialtoneGenerator generator;
+        Runnable step = null;
+        synchronized (this) {
+            pendingDialStrings.remove(callId);
+            Sequence sequence = sequences.get(callId);
+            if (sequence != null) {
+                step = sequence.scheduledStep;
+                sequence.scheduledStep = null;
+            }
+            sequences.remove(callId);
+            generator = generators.get(callId);
+            generators.remove(callId);
+        }
+        if (step != null) {
+            pjService.service.getExecutor().cancelDelayed(step);
+        }
+        if (generator != null) {
+            generator.stopDialtoneGenerator();
+        }
+    }
+
+    /**
+     * Cancel all sequences and release all tone generators. To be called
+     * before the stack is destroyed.
+     */
+    void stopAll() {
+        int[] callIds;
+        synchronized (this) {
+            callIds = new int[sequences.size() + generators.size() + pendingDialStrings.size()];
+            int i = 0;
+            for (int j = 0; j < sequences.size(); j++) {
+                callIds[i++] = sequences.keyAt(j);
+            }
+            for (int j = 0; j < generators.size(); j++) {
+                callIds[i++] = generators.keyAt(j);
+            }
+            for (int j = 0; j < pendingDialStrings.size(); j++) {
+                callIds[i++] = pendingDialStrings.keyAt(j);
+            }
+        }
+        for (int callId : callIds) {
+            stop(callId);
+        }
+    }
+
+    /**
+     * Run steps that are due and schedule the next one.
+     *
+     * @return the status of the first tones sent
+     */
+    private int runSteps(Sequence sequence) throws SameThreadException {
+        int res = pjsuaConstants.PJ_SUCCESS;
+        boolean sentTones = false;
+        while (true) {
+            int event;
+            long now = SystemClock.uptimeMillis();
+            synchronized (this) {
+                if (sequences.get(sequence.callId) != sequence) {
+                    // Cancelled
+                    return res;
+                }
+                if (sequence.isDone()) {
+                    sequences.remove(sequence.callId);
+                    return res;
+                }
+                if (sequence.dueTime > now) {
+                    // A new task for each step : the executor wake lock is
+                    // held per task and released once the running one ends
+                    sequence.scheduledStep = new StepRunnable(sequence);
+                    pjService.service.getExecutor().executeForCallDelayed(sequence.callId,
+                            sequence.scheduledStep, sequence.dueTime - now);
+                    return res;
+                }
+                sequence.scheduledStep = null;
+                event = sequence.events[sequence.next++];
+            }
+            int payload = event & PAYLOAD_MASK;
+            if ((event >>> TYPE_SHIFT) == EVENT_PAUSE) {
+                sequence.dueTime += payload;
+            } else {
+                int start = payload >>> TONES_START_SHIFT;
+                int count = payload & TONES_COUNT_MASK;
+                String tones = sequence.digits.substring(start, start + count);
+                int status = sendTones(sequence.callId, tones);
+                if (!sentTones) {
+                    res = status;
+                    sentTones = true;
+                }
+                // Tones are anchored on the time they are actually sent so
+                // that a late executor never shortens the pause that follows
+                sequence.dueTime = Math.max(sequence.dueTime, now) + count * TONE_LENGTH;
+            }
+        }
+    }
+
+    /**
+     * Send tones using the transport configured in preferences.
+     *
+     * @return the pjsip status
+     */
+    private int sendTones(int callId, String tones) throws SameThreadException {
+        if (pjsua.call_is_active(callId) != pjsuaConstants.PJ_TRUE) {
+            return -1;
+        }
+        PreferencesProviderWrapper prefsWrapper = pjService.prefsWrapper;
+        int res = -1;
+        if (prefsWrapper.useSipInfoDtmf()) {
+            res = pjsua.send_dtmf_info(callId, pjsua.pj_str_copy(tones));
+            Log.d(THIS_FILE, "Has been sent DTMF INFO : " + res);
+        } else {
+            if (!prefsWrapper.forceDtmfInBand()) {
+                // Generate using RTP
+                res = pjsua.call_dial_dtmf(callId, pjsua.pj_str_copy(tones));
+                Log.d(THIS_FILE, "Has been sent in RTP DTMF : " + res);
+            }
+
+            if (res != pjsua.PJ_SUCCESS && !prefsWrapper.forceDtmfRTP()) {
+                // Generate using analogic inband
+                PjStreamDialtoneGenerator generator;
+                synchronized (this) {
+                    generator = generators.get(callId);
+                    if (generator == null) {
+                        generator = new PjStreamDialtoneGenerator(callId);
+                        generators.put(callId, generator);
+                    }
+                }
+                res = generator.sendPjMediaDialTone(tones);
+                Log.d(THIS_FILE, "Has been sent DTMF analogic : " + res);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Run due steps of a sequence.
+     */
+    private final class StepRunnable extends SipRunnable {
+        private final Sequence sequence;
+
+        StepRunnable(Sequence aSequence) {
+            sequence = aSequence;
+        }
+
+        @Override
+        protected void doRun() throws SameThreadException {
+            runSteps(sequence);
+        }
+    }
+
+    /**
+     * Events of a call, with the index of the next one to run.
+     */
+    private final class Sequence {
+        final int callId;
+        final StringBuilder digits = new StringBuilder();
+        int[] events = new int[8];
+        int count = 0;
+        int next = 0;
+        /**
+         * Uptime at which next event is due
+         */
+        long dueTime;
+
+        /**
+         * Task scheduled to run next step, null if none
+         */
+        Runnable scheduledStep = null;
+
+        Sequence(int aCallId, String dialString) {
+            callId = aCallId;
+            append(dialString);
+        }
+
+        boolean isDone() {
+            return next >= count;
+        }
+
+        /**
+         * Parse a dial string and add its events. Consecutive digits are
+         * merged in one tones event, consecutive pauses in one pause event.
+         */
+        void append(String dialString) {
+            int tonesStart = -1;
+            for (int i = 0; i < dialString.length(); i++) {
+                char c = dialString.charAt(i);
+                if (c == ',' || c == ';') {
+                    if (tonesStart >= 0) {
+                        addTones(tonesStart);
+                        tonesStart = -1;
+                    }
+                    int length = (c == ',') ? PAUSE_LENGTH : WAIT_LENGTH;
+                    if (count > next && (events[count - 1] >>> TYPE_SHIFT) == EVENT_PAUSE) {
+                        events[count - 1] += length;
+                    } else {
+                        addEvent(EVENT_PAUSE, length);
+                    }
+                } else {
+                    if (tonesStart < 0) {
+                        tonesStart = digits.length();
+                    }
+                    digits.append(c);
+                }
+            }
+            if (tonesStart >= 0) {
+                addTones(tonesStart);
+            }
+        }
+
+        private void addTones(int start) {
+            int tonesCount = digits.length() - start;
+            while (tonesCount > 0) {
+                int chunk = Math.min(tonesCount, TONES_COUNT_MASK);
+                addEvent(EVENT_TONES, (start << TONES_START_SHIFT) | chunk);
+                start += chunk;
+                tonesCount -= chunk;
+            }
+        }
+
+        private void addEvent(int type, int payload) {
+            if (count == events.length) {
+                int[] newEvents = new int[events.length * 2];
+                System.arraycopy(events, 0, newEvents, 0, count);
+                events = newEvents;
+            }
+            events[count++] = (type << TYPE_SHIFT) | payload;
+        }
+    }
+}
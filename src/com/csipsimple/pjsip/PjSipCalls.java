@@ -28,13 +28,13 @@ import com.csipsimple.api.SipCallSession;
 import com.csipsimple.service.SipService.SameThreadException;
 import com.csipsimple.utils.Log;
 
-import org.pjsip.pjsua.pj_time_val;
+import java.io.UnsupportedEncodingException;
+
 import org.pjsip.pjsua.pjmedia_dir;
 import org.pjsip.pjsua.pjsip_event;
 import org.pjsip.pjsua.pjsip_inv_state;
 import org.pjsip.pjsua.pjsua;
 import org.pjsip.pjsua.pjsuaConstants;
-import org.pjsip.pjsua.pjsua_call_info;
 
 /**
  * Singleton class to manage pjsip calls. It allows to convert retrieve pjsip
@@ -48,41 +48,69 @@ public final class PjSipCalls {
 
     private static final String THIS_FILE = "PjSipCalls";
 
+    // Indexes of values filled by call_get_flat_info
+    private static final int INFO_ID = 0;
+    private static final int INFO_STATE = 1;
+    private static final int INFO_MEDIA_STATUS = 2;
+    private static final int INFO_ACC_ID = 3;
+    private static final int INFO_CONF_SLOT = 4;
+    private static final int INFO_CONNECT_DURATION = 5;
+    private static final int INFO_LAST_STATUS = 6;
+    private static final int INFO_REMOTE_INFO_LEN = 7;
+    private static final int INFO_LAST_STATUS_TEXT_LEN = 8;
+    private static final int INFO_VALUES_COUNT = 9;
+    private static final int INFO_STRINGS_SIZE = 384;
+
     /**
-     * Update the call session infos
+     * Flat call info buffers. They are filled in one native call and only
+     * used from the sip stack thread so that they are reused by all updates.
+     * Strings are UTF-8 bytes, remote info followed by last status text.
+     */
+    private static final int[] infoValues = new int[INFO_VALUES_COUNT];
+    private static final byte[] infoStrings = new byte[INFO_STRINGS_SIZE];
+
+    /**
+     * Update the call session infos.<br/>
+     * Secure and video infos are queried again only if the media status
+     * changed or if the update is not due to a call state event, that is on
+     * incoming call, media state or secure transport change.
      * 
      * @param session The session to update (input/output). Must have a correct
      *            call id set
+     * @param e the event that raised the update, null if not a call state
+     *            event
      * @param service PjSipService Sip service to retrieve pjsip accounts infos
      * @throws SameThreadException
      */
     public static void updateSessionFromPj(SipCallSession session, pjsip_event e, PjSipService service)
             throws SameThreadException {
         Log.d(THIS_FILE, "Update call " + session.getCallId());
-        pjsua_call_info pjInfo = new pjsua_call_info();
-        int status = pjsua.call_get_info(session.getCallId(), pjInfo);
+        int status = pjsua.call_get_flat_info(session.getCallId(), infoValues, infoStrings);
 
         if (status == pjsua.PJ_SUCCESS) {
-            // Transform pjInfo into CallSession object
-            updateSession(session, pjInfo, service);
+            int previousMediaStatus = session.getMediaStatus();
+            // Transform flat infos into CallSession object
+            updateSession(session, infoValues, infoStrings, service);
             
             // Update state here because we have pjsip_event here and can get q.850 state
             if(e != null) {
                 int status_code = pjsua.get_event_status_code(e);
                 if(status_code == 0) {
-                    try {
-                        status_code = pjInfo.getLast_status().swigValue();
-                    } catch (IllegalArgumentException err) {
-                        // The status code does not exist in enum ignore it
-                    }
+                    status_code = infoValues[INFO_LAST_STATUS];
                 }
                 session.setLastStatusCode(status_code);
                 Log.d(THIS_FILE, "Last status code is " + status_code);
                 // TODO - get comment from q.850 state as well
-                String status_text = PjSipService.pjStrToString(pjInfo.getLast_status_text());
+                String status_text = utf8String(infoStrings,
+                        infoValues[INFO_REMOTE_INFO_LEN], infoValues[INFO_LAST_STATUS_TEXT_LEN]);
                 session.setLastStatusComment(status_text);
             }
             
+            if (e != null && session.getMediaStatus() == previousMediaStatus) {
+                // Media did not change, keep secure and video infos
+                return;
+            }
+
             // And now, about secure information
             String secureInfo = PjSipService.pjStrToString(pjsua.call_secure_info(session
                     .getCallId()));
@@ -105,31 +133,47 @@ public final class PjSipCalls {
     }
 
     /**
-     * Copy infos from pjsua call info object to SipCallSession object
+     * Copy infos from flat call infos to SipCallSession object
      * 
      * @param session the session to copy info to (output)
-     * @param pjCallInfo the call info from pjsip
+     * @param values the call info values from pjsip
+     * @param strings the call info strings bytes from pjsip
      * @param service PjSipService Sip service to retrieve pjsip accounts infos
      */
-    private static void updateSession(SipCallSession session, pjsua_call_info pjCallInfo,
+    private static void updateSession(SipCallSession session, int[] values, byte[] strings,
             PjSipService service) {
         // Should be unecessary cause we usually copy infos from a valid
-        session.setCallId(pjCallInfo.getId());
+        session.setCallId(values[INFO_ID]);
 
         // Nothing to think about here cause we have a
         // bijection between int / state
-        session.setCallState(pjCallInfo.getState().swigValue());
-        session.setMediaStatus(pjCallInfo.getMedia_status().swigValue());
-        session.setRemoteContact(PjSipService.pjStrToString(pjCallInfo.getRemote_info()));
-        session.setConfPort(pjCallInfo.getConf_slot());
+        session.setCallState(values[INFO_STATE]);
+        session.setMediaStatus(values[INFO_MEDIA_STATUS]);
+        session.setRemoteContact(utf8String(strings, 0, values[INFO_REMOTE_INFO_LEN]));
+        session.setConfPort(values[INFO_CONF_SLOT]);
 
         // Try to retrieve sip account related to this call
-        int pjAccId = pjCallInfo.getAcc_id();
+        int pjAccId = values[INFO_ACC_ID];
         session.setAccId(service.getAccountIdForPjsipId(pjAccId));
 
-        pj_time_val duration = pjCallInfo.getConnect_duration();
-        session.setConnectStart(SystemClock.elapsedRealtime() - duration.getSec() * 1000
-                - duration.getMsec());
+        session.setConnectStart(SystemClock.elapsedRealtime() - values[INFO_CONNECT_DURATION]);
+    }
+
+    /**
+     * Decode UTF-8 bytes filled by the native side
+     * 
+     * @param bytes the bytes buffer
+     * @param offset start of the string in the buffer
+     * @param length number of bytes of the string
+     * @return the decoded string
+     */
+    private static String utf8String(byte[] bytes, int offset, int length) {
+        try {
+            return new String(bytes, offset, length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            Log.e(THIS_FILE, "Unsupported UTF-8 encoding", e);
+            return "";
+        }
     }
 
     /**
@@ -21,11 +21,8 @@
 
 package com.csipsimple.pjsip;
 
-import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.media.AudioManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
@@ -38,6 +35,7 @@ import android.view.KeyCharacterMap;
 import android.view.KeyEvent;
 
 import com.csipsimple.R;
+import com.csipsimple.api.MediaStreamStats;
 import com.csipsimple.api.SipCallSession;
 import com.csipsimple.api.SipConfigManager;
 import com.csipsimple.api.SipManager;
@@ -46,6 +44,8 @@ import com.csipsimple.api.SipProfile;
 import com.csipsimple.api.SipProfileState;
 import com.csipsimple.api.SipUri;
 import com.csipsimple.api.SipUri.ParsedSipContactInfos;
+import com.csipsimple.db.AccountStatusStore;
+import com.csipsimple.db.AccountStatusStore.AccountStatusChange;
 import com.csipsimple.service.MediaManager;
 import com.csipsimple.service.SipService;
 import com.csipsimple.service.SipService.SameThreadException;
@@ -84,16 +84,13 @@ import org.pjsip.pjsua.pjsua_transport_config;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class PjSipService {
     private static final String THIS_FILE = "PjService";
-    private static final int DTMF_TONE_PAUSE_LENGTH = 300;
-    private static final int DTMF_TONE_WAIT_LENGTH = 2000;
     public SipService service;
 
     private boolean created = false;
@@ -112,10 +109,20 @@ public class PjSipService {
     public UAStateReceiver userAgentReceiver;
     public MediaManager mediaManager;
 
-    private Timer tasksTimer;
-    private SparseArray<String> dtmfToAutoSend = new SparseArray<String>(5);
-    private SparseArray<TimerTask> dtmfTasks = new SparseArray<TimerTask>(5);
-    private SparseArray<PjStreamDialtoneGenerator> dtmfDialtoneGenerators = new SparseArray<PjStreamDialtoneGenerator>(5);
+    private final DtmfSequencer dtmfSequencer = new DtmfSequencer(this);
+    final CallStatsSampler callStatsSampler = new CallStatsSampler(this);
+    final AdaptiveMediaController adaptiveMedia = new AdaptiveMediaController(this);
+    
+    /**
+     * Index of accounts currently added to pjsua. Map pjsua account id to database account id.
+     * Maintained when accounts are added to / removed from the stack so that callbacks
+     * can resolve the account without querying the account status provider.
+     */
+    private final SparseArray<Long> accountIdsByPjsuaId = new SparseArray<Long>();
+    /**
+     * Reverse index of {@link #accountIdsByPjsuaId}
+     */
+    private final HashMap<Long, Integer> pjsuaIdsByAccountId = new HashMap<Long, Integer>();
     
     
     // -------
@@ -188,6 +195,8 @@ public class PjSipService {
         // Ensure the stack is not already created or is being created
         if (!created) {
             Log.d(THIS_FILE, "Starting sip stack");
+            long startTime = System.currentTimeMillis();
+            int startPrefsMisses = PreferencesProviderWrapper.getSnapshotMisses();
 
             // Pj timer
             TimerWrapper.create(service);
@@ -559,6 +568,12 @@ public class PjSipService {
             setCodecsPriorities();
 
             created = true;
+            synchronized (levelsLock) {
+                levelsReadable = true;
+            }
+            Log.d(THIS_FILE, "Sip stack started in " + (System.currentTimeMillis() - startTime)
+                    + "ms with " + (PreferencesProviderWrapper.getSnapshotMisses() - startPrefsMisses)
+                    + " preferences provider queries");
 
             return true;
         }
@@ -586,11 +601,6 @@ public class PjSipService {
         if (created) {
             cleanPjsua();
         }
-        if(tasksTimer != null) {
-            tasksTimer.cancel();
-            tasksTimer.purge();
-            tasksTimer = null;
-        }
         return true;
     }
 
@@ -602,8 +612,16 @@ public class PjSipService {
         if(!prefsWrapper.isValidConnectionForOutgoing()) {
             flags = 3;
         }
+        dtmfSequencer.stopAll();
+        callStatsSampler.stopAll();
+        adaptiveMedia.stopAll();
+        synchronized (levelsLock) {
+            // No level is read from the level meter thread from now on
+            levelsReadable = false;
+        }
         pjsua.csipsimple_destroy(flags);
-        service.getContentResolver().delete(SipProfile.ACCOUNT_STATUS_URI, null, null);
+        clearAccountsIndex();
+        AccountStatusStore.getInstance().removeAll();
         if (userAgentReceiver != null) {
             userAgentReceiver.stopService();
             userAgentReceiver = null;
@@ -716,6 +734,45 @@ public class PjSipService {
     }
 
     public boolean addAccount(SipProfile profile) throws SameThreadException {
+        return addAccount(profile, null);
+    }
+
+    /**
+     * Add several accounts to the stack.<br/>
+     * Accounts are added to pjsip in the given order, so that the first ones
+     * start registering first. Their states are published together once all
+     * accounts are added.
+     * 
+     * @param profiles the accounts to add, in order of priority
+     * @return the number of accounts successfully added
+     * @throws SameThreadException
+     */
+    public int addAccounts(List<SipProfile> profiles) throws SameThreadException {
+        int added = 0;
+        ArrayList<SipProfileState> states = new ArrayList<SipProfileState>(profiles.size());
+        try {
+            for (SipProfile profile : profiles) {
+                if (addAccount(profile, states)) {
+                    added++;
+                }
+            }
+        } finally {
+            AccountStatusStore.getInstance().putAll(states);
+        }
+        return added;
+    }
+
+    /**
+     * Add an account to the stack.
+     * 
+     * @param profile the account to add
+     * @param pendingStates the list to add the account state to, null to
+     *            publish it right now
+     * @return true if successfully added
+     * @throws SameThreadException
+     */
+    private boolean addAccount(SipProfile profile, List<SipProfileState> pendingStates)
+            throws SameThreadException {
         int status = pjsuaConstants.PJ_FALSE;
         if (!created) {
             Log.e(THIS_FILE, "PJSIP is not started here, nothing can be done");
@@ -754,11 +811,14 @@ public class PjSipService {
         if (currentAccountStatus.isAddedToStack()) {
             pjsua.csipsimple_set_acc_user_data(account.cfg, account.css_cfg);
             status = pjsua.acc_modify(currentAccountStatus.getPjsuaId(), account.cfg);
-            ContentValues cv = new ContentValues();
-            cv.put(SipProfileState.ADDED_STATUS, status);
-            service.getContentResolver().update(
-                    ContentUris.withAppendedId(SipProfile.ACCOUNT_STATUS_ID_URI_BASE, profile.id),
-                    cv, null, null);
+            indexAccount(currentAccountStatus.getPjsuaId(), profile.id);
+            if (pendingStates != null) {
+                SipProfileState ps = new SipProfileState(currentAccountStatus);
+                ps.setAddedStatus(status);
+                pendingStates.add(ps);
+            } else {
+                AccountStatusStore.getInstance().setAddedStatus(profile.id, status);
+            }
 
             if (!account.wizard.equalsIgnoreCase(WizardUtils.LOCAL_WIZARD_TAG)) {
                 // Re register
@@ -806,12 +866,15 @@ public class PjSipService {
             }
 
             if (status == pjsuaConstants.PJ_SUCCESS) {
+                indexAccount(accId[0], profile.id);
                 SipProfileState ps = new SipProfileState(profile);
                 ps.setAddedStatus(status);
                 ps.setPjsuaId(accId[0]);
-                service.getContentResolver().insert(
-                        ContentUris.withAppendedId(SipProfile.ACCOUNT_STATUS_ID_URI_BASE,
-                                account.id), ps.getAsContentValue());
+                if (pendingStates != null) {
+                    pendingStates.add(ps);
+                } else {
+                    AccountStatusStore.getInstance().put(ps);
+                }
 
                 pjsua.acc_set_online_status(accId[0], 1);
             }
@@ -837,25 +900,20 @@ public class PjSipService {
             pjAccountInfo = new pjsua_acc_info();
             success = pjsua.acc_get_info(pjsuaId, pjAccountInfo);
             if (success == pjsuaConstants.PJ_SUCCESS && pjAccountInfo != null) {
-                ContentValues cv = new ContentValues();
-
+                int statusCode;
                 try {
                     // Should be fine : status code are coherent with RFC
                     // status codes
-                    cv.put(SipProfileState.STATUS_CODE, pjAccountInfo.getStatus().swigValue());
+                    statusCode = pjAccountInfo.getStatus().swigValue();
                 } catch (IllegalArgumentException e) {
-                    cv.put(SipProfileState.STATUS_CODE,
-                            SipCallSession.StatusCode.INTERNAL_SERVER_ERROR);
+                    statusCode = SipCallSession.StatusCode.INTERNAL_SERVER_ERROR;
                 }
 
-                cv.put(SipProfileState.STATUS_TEXT, pjStrToString(pjAccountInfo.getStatus_text()));
-                cv.put(SipProfileState.EXPIRES, pjAccountInfo.getExpires());
-
-                service.getContentResolver().update(
-                        ContentUris.withAppendedId(SipProfile.ACCOUNT_STATUS_ID_URI_BASE, accId),
-                        cv, null, null);
+                AccountStatusChange change = AccountStatusStore.getInstance().setRegistrationStatus(accId,
+                        statusCode, pjStrToString(pjAccountInfo.getStatus_text()),
+                        pjAccountInfo.getExpires());
 
-                Log.d(THIS_FILE, "Profile state UP : " + cv);
+                Log.d(THIS_FILE, "Profile state UP : " + ((change != null) ? change : "unchanged"));
             }
         }
     }
@@ -872,23 +930,11 @@ public class PjSipService {
         if(account.id == SipProfile.INVALID_ID) {
             return null;
         }
-        SipProfileState accountInfo = new SipProfileState(account);
-        Cursor c = service.getContentResolver().query(
-                ContentUris.withAppendedId(SipProfile.ACCOUNT_STATUS_ID_URI_BASE, account.id),
-                null, null, null, null);
-        if (c != null) {
-            try {
-                if (c.getCount() > 0) {
-                    c.moveToFirst();
-                    accountInfo.createFromDb(c);
-                }
-            } catch (Exception e) {
-                Log.e(THIS_FILE, "Error on looping over sip profiles states", e);
-            } finally {
-                c.close();
-            }
+        SipProfileState currentState = AccountStatusStore.getInstance().get(account.id);
+        if (currentState != null) {
+            return new SipProfileState(currentState);
         }
-        return accountInfo;
+        return new SipProfileState(account);
     }
 
     private static ArrayList<String> codecs = new ArrayList<String>();
@@ -964,27 +1010,46 @@ public class PjSipService {
     }
 
     /**
-     * Set the codec priority in pjsip stack layer based on preference store
-     * @throws SameThreadException
+     * Get the band type of codecs preferences for the active network
+     * @return {@link SipConfigManager#CODEC_WB} or {@link SipConfigManager#CODEC_NB}, null if no active network
      */
-    private void setCodecsPriorities() throws SameThreadException {
+    String getCurrentBandType() {
         ConnectivityManager cm = ((ConnectivityManager) service
                 .getSystemService(Context.CONNECTIVITY_SERVICE));
-        
+        NetworkInfo ni = cm.getActiveNetworkInfo();
+        if (ni == null) {
+            return null;
+        }
+        return prefsWrapper.getPreferenceStringValue(
+                SipConfigManager.getBandTypeKey(ni.getType(), ni.getSubtype()),
+                SipConfigManager.CODEC_WB);
+    }
+
+    /**
+     * Get the audio codecs of the stack
+     * @return a copy of codecs identifiers, empty if not yet initialized
+     */
+    List<String> getAudioCodecs() {
+        synchronized (codecs) {
+            return new ArrayList<String>(codecs);
+        }
+    }
+
+    /**
+     * Set the codec priority in pjsip stack layer based on preference store
+     * @throws SameThreadException
+     */
+    void setCodecsPriorities() throws SameThreadException {
         synchronized (codecs) {
             if (codecs_initialized) {
-                NetworkInfo ni = cm.getActiveNetworkInfo();
-                if (ni != null) {
+                String currentBandType = getCurrentBandType();
+                if (currentBandType != null) {
                     
                     StringBuilder audioSb = new StringBuilder();
                     StringBuilder videoSb = new StringBuilder();
                     audioSb.append("Audio codecs : ");
                     videoSb.append("Video codecs : ");
                     
-                    String currentBandType = prefsWrapper.getPreferenceStringValue(
-                            SipConfigManager.getBandTypeKey(ni.getType(), ni.getSubtype()),
-                            SipConfigManager.CODEC_WB);
-                    
                     synchronized (codecs) {
                         
                         for (String codec : codecs) {
@@ -997,7 +1062,7 @@ public class PjSipService {
                             }
                             
                             String codecKey = SipConfigManager.getCodecKey(codec, SipConfigManager.FRAMES_PER_PACKET_SUFFIX);
-                            Integer frmPerPacket = SipConfigManager.getPreferenceIntegerValue(service, codecKey);
+                            Integer frmPerPacket = prefsWrapper.getPreferenceIntegerValueOrNull(codecKey);
                             if(frmPerPacket != null && frmPerPacket > 0) {
                                 Log.d(THIS_FILE, "Set codec " + codec + " fpp : " + frmPerPacket);
                                 pjsua.codec_set_frames_per_packet(codecStr, frmPerPacket);
@@ -1013,8 +1078,8 @@ public class PjSipService {
                             }
                             Log.d(THIS_FILE, "Video codec : " + codec);
                             if(codec.startsWith("H264")) {
-                                int h264profile = SipConfigManager.getPreferenceIntegerValue(service, SipConfigManager.H264_PROFILE, 66);
-                                int h264level = SipConfigManager.getPreferenceIntegerValue(service, SipConfigManager.H264_LEVEL, 30);
+                                int h264profile = prefsWrapper.getPreferenceIntegerValue(SipConfigManager.H264_PROFILE, 66);
+                                int h264level = prefsWrapper.getPreferenceIntegerValue(SipConfigManager.H264_LEVEL, 30);
                                 if(h264level > 0 && h264profile > 0) {
                                     pjsua.codec_h264_set_profile(h264profile, h264level, 0, 0, 15, 0, 0);
                                     Log.d(THIS_FILE, "Set h264 profile : " + h264profile + ", " + h264level);
@@ -1069,6 +1134,9 @@ public class PjSipService {
      */
     public int callHangup(int callId, int code) throws SameThreadException {
         if (created) {
+            // Media is released before disconnected state is reported, so
+            // keep latest statistics for the call log now
+            callStatsSampler.sample(callId);
             return pjsua.call_hangup(callId, code, null, null);
         }
         return -1;
@@ -1124,7 +1192,7 @@ public class PjSipService {
             
             int status = pjsua.call_make_call(pjsuaAccId, uri, cs, userData, msgData, callId);
             if(status == pjsuaConstants.PJ_SUCCESS) {
-                dtmfToAutoSend.put(callId[0], toCall.getDtmf());
+                dtmfSequencer.setPending(callId[0], toCall.getDtmf());
                 Log.d(THIS_FILE, "DTMF - Store for " + callId[0] + " - "+toCall.getDtmf());
             }
             return status;
@@ -1185,100 +1253,14 @@ public class PjSipService {
         return sendDtmf(callId, keyPressed);
     }
     
-    private int sendDtmf(final int callId, String keyPressed) throws SameThreadException {
+    private int sendDtmf(int callId, String keyPressed) throws SameThreadException {
         if(TextUtils.isEmpty(keyPressed)) {
             return pjsua.PJ_SUCCESS;
         }
-        
-
         if(pjsua.call_is_active(callId) != pjsuaConstants.PJ_TRUE) {
             return -1;
         }
-        
-        String dtmfToDial = keyPressed;
-        String remainingDtmf = "";
-        int pauseBeforeRemaining = 0;
-        boolean foundSeparator = false;
-        if(keyPressed.contains(",") || keyPressed.contains(";")) {
-            dtmfToDial = "";
-            for(int i = 0; i < keyPressed.length(); i++) {
-                char c = keyPressed.charAt(i);
-                if(!foundSeparator) {
-                    if(c == ',' || c == ';') {
-                        pauseBeforeRemaining += (c == ',') ? DTMF_TONE_PAUSE_LENGTH : DTMF_TONE_WAIT_LENGTH;
-                        foundSeparator = true;
-                    } else {
-                        dtmfToDial += c;
-                    }
-                }else {
-                    if ((c == ',' || c == ';') && TextUtils.isEmpty(remainingDtmf)){
-                        pauseBeforeRemaining += (c == ',') ? DTMF_TONE_PAUSE_LENGTH : DTMF_TONE_WAIT_LENGTH;
-                    }else {
-                        remainingDtmf += c;
-                    }
-                }
-            }
-            
-        }
-        
-        
-        
-        pj_str_t pjKeyPressed = pjsua.pj_str_copy(dtmfToDial);
-        int res = -1;
-        if (prefsWrapper.useSipInfoDtmf()) {
-            res = pjsua.send_dtmf_info(callId, pjKeyPressed);
-            Log.d(THIS_FILE, "Has been sent DTMF INFO : " + res);
-        } else {
-            if (!prefsWrapper.forceDtmfInBand()) {
-                // Generate using RTP
-                res = pjsua.call_dial_dtmf(callId, pjKeyPressed);
-                Log.d(THIS_FILE, "Has been sent in RTP DTMF : " + res);
-            }
-
-            if (res != pjsua.PJ_SUCCESS && !prefsWrapper.forceDtmfRTP()) {
-                // Generate using analogic inband
-                if (dtmfDialtoneGenerators.get(callId) == null) {
-                    dtmfDialtoneGenerators.put(callId, new PjStreamDialtoneGenerator(callId));
-                }
-                res = dtmfDialtoneGenerators.get(callId).sendPjMediaDialTone(keyPressed);
-                Log.d(THIS_FILE, "Has been sent DTMF analogic : " + res);
-            }
-        }
-        
-        
-        
-        // Finally, push remaining DTMF in the future
-        if(!TextUtils.isEmpty(remainingDtmf)) {
-            if(tasksTimer == null) {
-                tasksTimer = new Timer("com.csipsimple.PjSipServiceTasks");
-            }
-            TimerTask tt = new TimerTask() {
-                @Override
-                public void run() {
-                    service.getExecutor().execute(new SipRunnable() {
-                        @Override
-                        protected void doRun() throws SameThreadException {
-                            Log.d(THIS_FILE, "Running pending DTMF send");
-                            sendPendingDtmf(callId);
-                        }
-                    });
-                }
-            };
-            dtmfToAutoSend.put(callId, remainingDtmf);
-            dtmfTasks.put(callId, tt);
-            Log.d(THIS_FILE, "Schedule DTMF " + remainingDtmf + " in "+ pauseBeforeRemaining);
-            tasksTimer.schedule(tt, pauseBeforeRemaining);
-        }else {
-            if(dtmfToAutoSend.get(callId) != null) {
-                dtmfToAutoSend.put(callId, null);
-            }
-            if(dtmfTasks.get(callId) != null) {
-                dtmfTasks.put(callId, null);
-            }
-        }
-        
-        
-        return res;
+        return dtmfSequencer.send(callId, keyPressed);
     }
 
     /**
@@ -1346,24 +1328,15 @@ public class PjSipService {
     }
     
     public void sendPendingDtmf(int callId) throws SameThreadException {
-        if(dtmfToAutoSend.get(callId) != null) {
-            Log.d(THIS_FILE, "DTMF - Send pending dtmf " + dtmfToAutoSend.get(callId) + " for " + callId);
-            sendDtmf(callId, dtmfToAutoSend.get(callId));
-        }
+        dtmfSequencer.startPending(callId);
     }
 
+    /**
+     * Cancel DTMF still to be sent on a call and release its tone generator.
+     * @param callId the call that ended
+     */
     public void stopDialtoneGenerator(int callId) {
-        if (dtmfDialtoneGenerators.get(callId) != null) {
-            dtmfDialtoneGenerators.get(callId).stopDialtoneGenerator();
-            dtmfDialtoneGenerators.put(callId, null);
-        }
-        if(dtmfToAutoSend.get(callId) != null) {
-            dtmfToAutoSend.put(callId, null);
-        }
-        if(dtmfTasks.get(callId) != null) {
-            dtmfTasks.get(callId).cancel();
-            dtmfTasks.put(callId, null);
-        }
+        dtmfSequencer.stop(callId);
     }
 
     public int callHold(int callId) throws SameThreadException {
@@ -1426,6 +1399,17 @@ public class PjSipService {
         return new SipCallSession[0];
     }
 
+    /**
+     * Get the version of the calls list, that changes each time a call is updated.
+     * @return the current version, 0 if the stack is not started
+     */
+    public int getCallsVersion() {
+        if (created && userAgentReceiver != null) {
+            return userAgentReceiver.getCallsVersion();
+        }
+        return 0;
+    }
+
     public void confAdjustTxLevel(int port, float value) throws SameThreadException {
         if (created && userAgentReceiver != null) {
             pjsua.conf_adjust_tx_level(port, value);
@@ -1492,13 +1476,12 @@ public class PjSipService {
         // since it will actually just touch the account with a modify
         if (profileState != null && profileState.isAddedToStack() && !account.wizard.equalsIgnoreCase(WizardUtils.LOCAL_WIZARD_TAG)) {
             // The account is already there in accounts list
-            service.getContentResolver().delete(
-                    ContentUris.withAppendedId(SipProfile.ACCOUNT_STATUS_URI, account.id), null,
-                    null);
+            AccountStatusStore.getInstance().remove(account.id);
             Log.d(THIS_FILE, "Account already added to stack, remove and re-load or delete");
             if (renew == 1) {
                 if (forceReAdd) {
                     status = pjsua.acc_del(profileState.getPjsuaId());
+                    unindexAccount(account.id);
                     addAccount(account);
                 } else {
                     pjsua.acc_set_online_status(profileState.getPjsuaId(), getOnlineForStatus(service.getPresence()));
@@ -1508,6 +1491,7 @@ public class PjSipService {
                 // if(status == pjsuaConstants.PJ_SUCCESS && renew == 0) {
                 Log.d(THIS_FILE, "Delete account !!");
                 status = pjsua.acc_del(profileState.getPjsuaId());
+                unindexAccount(account.id);
             }
         } else {
             if (renew == 1) {
@@ -1551,29 +1535,57 @@ public class PjSipService {
         return presence == PresenceStatus.ONLINE ? 1 : 0;
     }
 
+    /**
+     * Get the database account id of an account added to pjsua
+     * @param pjId the pjsua account id
+     * @return the database account id or {@link SipProfile#INVALID_ID} if not added to stack
+     */
     public long getAccountIdForPjsipId(int pjId) {
-        long accId = SipProfile.INVALID_ID;
-
-        Cursor c = service.getContentResolver().query(SipProfile.ACCOUNT_STATUS_URI, null, null,
-                null, null);
-        if (c != null) {
-            try {
-                c.moveToFirst();
-                do {
-                    int pjsuaId = c.getInt(c.getColumnIndex(SipProfileState.PJSUA_ID));
-                    Log.d(THIS_FILE, "Found pjsua " + pjsuaId + " searching " + pjId);
-                    if (pjsuaId == pjId) {
-                        accId = c.getInt(c.getColumnIndex(SipProfileState.ACCOUNT_ID));
-                        break;
-                    }
-                } while (c.moveToNext());
-            } catch (Exception e) {
-                Log.e(THIS_FILE, "Error on looping over sip profiles", e);
-            } finally {
-                c.close();
+        synchronized (accountIdsByPjsuaId) {
+            Long accId = accountIdsByPjsuaId.get(pjId);
+            if(accId != null) {
+                return accId;
+            }
+        }
+        return SipProfile.INVALID_ID;
+    }
+    
+    /**
+     * Register an account added to pjsua in the accounts index
+     * @param pjsuaId the pjsua account id
+     * @param accId the database account id
+     */
+    private void indexAccount(int pjsuaId, long accId) {
+        synchronized (accountIdsByPjsuaId) {
+            Integer oldPjsuaId = pjsuaIdsByAccountId.put(accId, pjsuaId);
+            if(oldPjsuaId != null && oldPjsuaId != pjsuaId) {
+                accountIdsByPjsuaId.delete(oldPjsuaId);
+            }
+            accountIdsByPjsuaId.put(pjsuaId, accId);
+        }
+    }
+    
+    /**
+     * Remove an account deleted from pjsua from the accounts index
+     * @param accId the database account id
+     */
+    private void unindexAccount(long accId) {
+        synchronized (accountIdsByPjsuaId) {
+            Integer pjsuaId = pjsuaIdsByAccountId.remove(accId);
+            if(pjsuaId != null) {
+                Long indexedAccId = accountIdsByPjsuaId.get(pjsuaId);
+                if(indexedAccId != null && indexedAccId == accId) {
+                    accountIdsByPjsuaId.delete(pjsuaId);
+                }
             }
         }
-        return accId;
+    }
+    
+    private void clearAccountsIndex() {
+        synchronized (accountIdsByPjsuaId) {
+            accountIdsByPjsuaId.clear();
+            pjsuaIdsByAccountId.clear();
+        }
     }
 
     public SipProfile getAccountForPjsipId(int pjId) {
@@ -1645,25 +1657,11 @@ public class PjSipService {
             }
             // If default account is not active
             if (!valid) {
-                Cursor c = service.getContentResolver().query(SipProfile.ACCOUNT_STATUS_URI, null,
-                        null, null, null);
-                if (c != null) {
-                    try {
-                        if (c.getCount() > 0) {
-                            c.moveToFirst();
-                            do {
-                                SipProfileState ps = new SipProfileState(c);
-                                if (ps.isValidForCall()) {
-                                    finalAccountId = ps.getAccountId();
-                                    pjsipAccountId = ps.getPjsuaId();
-                                    break;
-                                }
-                            } while (c.moveToNext());
-                        }
-                    } catch (Exception e) {
-                        Log.e(THIS_FILE, "Error on looping over sip profiles state", e);
-                    } finally {
-                        c.close();
+                for (SipProfileState ps : AccountStatusStore.getInstance().getAll()) {
+                    if (ps.isValidForCall()) {
+                        finalAccountId = ps.getAccountId();
+                        pjsipAccountId = ps.getPjsuaId();
+                        break;
                     }
                 }
             } else {
@@ -2065,6 +2063,22 @@ public class PjSipService {
         }
     }
 
+    /**
+     * Renew registration of all accounts added to the stack that have a registrar.
+     * 
+     * @throws SameThreadException
+     */
+    public void reRegisterAllAccounts() throws SameThreadException {
+        if (!created) {
+            return;
+        }
+        for (SipProfileState state : AccountStatusStore.getInstance().getAll()) {
+            if (state.isAddedToStack() && !TextUtils.isEmpty(state.getRegUri())) {
+                pjsua.acc_set_registration(state.getPjsuaId(), 1);
+            }
+        }
+    }
+
     public void updateTransportIp(String oldIPAddress) throws SameThreadException {
         if (!created) {
             return;
@@ -2078,14 +2092,15 @@ public class PjSipService {
             if (pjStr != null) {
                 // If there's utf-8 ptr length is possibly lower than slen
                 int len = pjStr.getSlen();
-                if(len > 0 && pjStr.getPtr() != null) {
-                    // Be robust to smaller length detected
-                    if(pjStr.getPtr().length() < len) {
-                        len = pjStr.getPtr().length();
-                    }
-                
-                    if (len > 0) {
-                        return pjStr.getPtr().substring(0, len);
+                if(len > 0) {
+                    // Each getPtr() is a native call creating a new string
+                    String ptr = pjStr.getPtr();
+                    if(ptr != null) {
+                        // Be robust to smaller length detected
+                        if(ptr.length() <= len) {
+                            return ptr;
+                        }
+                        return ptr.substring(0, len);
                     }
                 }
             }
@@ -2095,11 +2110,68 @@ public class PjSipService {
         return "";
     }
 
+    /**
+     * Guards levels arrays, and the stack against destroy while levels are
+     * read from another thread than the sip stack one
+     */
+    private final Object levelsLock = new Object();
+    private boolean levelsReadable = false;
+    private final long[] rxLevel = new long[1];
+    private final long[] txLevel = new long[1];
+
     public long getRxTxLevel(int port) {
-        long[] rx_level = new long[1];
-        long[] tx_level = new long[1];
-        pjsua.conf_get_signal_level(port, tx_level, rx_level);
-        return (rx_level[0] << 8 | tx_level[0] );
+        synchronized (levelsLock) {
+            pjsua.conf_get_signal_level(port, txLevel, rxLevel);
+            return (rxLevel[0] << 8 | txLevel[0] );
+        }
+    }
+
+    /**
+     * Sample signal levels of the sound device port and of ports of calls
+     * with active media.<br/>
+     * Unlike other stack methods it is called from a long lived thread other
+     * than the sip stack one, that is registered with pjlib on first use.
+     * Conference bridge levels are read under the bridge lock, and the stack
+     * is not destroyed while they are read.
+     * 
+     * @param levels the array to fill with samples, each one packed as
+     *            (port << 16) | (rx level << 8) | tx level
+     * @return the number of samples written
+     */
+    public int getConfLevels(long[] levels) {
+        if (levels.length == 0) {
+            return 0;
+        }
+        UAStateReceiver receiver = userAgentReceiver;
+        SipCallSession[] calls = (receiver != null) ? receiver.getCalls() : new SipCallSession[0];
+        synchronized (levelsLock) {
+            if (!levelsReadable || pjsua.csipsimple_register_thread() != pjsua.PJ_SUCCESS) {
+                return 0;
+            }
+            int count = 0;
+            levels[count++] = getRxTxLevel(0);
+            for (SipCallSession callInfo : calls) {
+                if (count >= levels.length) {
+                    break;
+                }
+                int port = callInfo.getConfPort();
+                if (port > 0 && callInfo.getMediaStatus() == SipCallSession.MediaState.ACTIVE) {
+                    levels[count++] = ((long) port << 16) | getRxTxLevel(port);
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Get quality statistics samples of the audio stream of a call.
+     * Samples are read from memory, so it can be called from any thread.
+     * 
+     * @param callId the call
+     * @return the samples kept, oldest first. Empty if none.
+     */
+    public MediaStreamStats[] getCallStats(int callId) {
+        return callStatsSampler.getSamples(callId);
     }
 
 
@@ -26,6 +26,7 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
@@ -37,8 +38,10 @@ import android.provider.CallLog;
 import android.provider.CallLog.Calls;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
+import android.util.SparseArray;
 
 import com.csipsimple.R;
+import com.csipsimple.api.MediaStreamStats;
 import com.csipsimple.api.SipCallSession;
 import com.csipsimple.api.SipConfigManager;
 import com.csipsimple.api.SipManager;
@@ -53,6 +56,7 @@ import com.csipsimple.service.SipNotifications;
 import com.csipsimple.service.SipService.SameThreadException;
 import com.csipsimple.service.SipService.SipRunnable;
 import com.csipsimple.utils.CallLogHelper;
+import com.csipsimple.utils.CallLogWriter;
 import com.csipsimple.utils.Log;
 import com.csipsimple.utils.Threading;
 import com.csipsimple.utils.TimerWrapper;
@@ -70,9 +74,7 @@ import org.pjsip.pjsua.pjsua_buddy_info;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -138,7 +140,7 @@ public class UAStateReceiver extends Callback {
 		}
 		
 		try {
-            SipCallSession callInfo = updateCallInfoFromStack(callId, null);
+            SipCallSession callInfo = updateCallInfoFromStack(callId, null, true);
 			Log.d(THIS_FILE, "Incoming call << for account " + accId);
             
             //Extra check if set reference counted is false ???
@@ -147,7 +149,6 @@ public class UAStateReceiver extends Callback {
             }
             
             final String remContact = callInfo.getRemoteContact();
-            callInfo.setIncoming(true);
             notificationManager.showNotificationForCall(callInfo);
 
             //Auto answer feature
@@ -207,6 +208,13 @@ public class UAStateReceiver extends Callback {
 				}
 				// Call is now ended
 				pjService.stopDialtoneGenerator(callId);
+				pjService.callStatsSampler.stop(callId);
+				pjService.service.getExecutor().execute(new SipRunnable() {
+					@Override
+					protected void doRun() throws SameThreadException {
+						pjService.adaptiveMedia.stop(callId);
+					}
+				});
 				pjService.stopRecording(callId);
 				pjService.stopPlaying(callId);
 			} else {
@@ -415,6 +423,14 @@ public class UAStateReceiver extends Callback {
         try {
             final SipCallSession callInfo = updateCallInfoFromStack(callId, null);
 
+            // Codecs settings overridden for this call are not needed anymore
+            pjService.service.getExecutor().execute(new SipRunnable() {
+                @Override
+                protected void doRun() throws SameThreadException {
+                    pjService.adaptiveMedia.onMediaUpdated(callId);
+                }
+            });
+
             /* Connect ports appropriately when media status is ACTIVE or REMOTE HOLD,
              * otherwise we should NOT connect the ports.
              */
@@ -429,6 +445,8 @@ public class UAStateReceiver extends Callback {
                     pjService.mediaManager.setSoftwareVolume();
                 }
                 
+                pjService.callStatsSampler.start();
+                
                 // Auto record
                 if (pjService.canRecord(callId)
                         &&
@@ -536,7 +554,7 @@ public class UAStateReceiver extends Callback {
 
 	public void updateZrtpInfos(int dataPtr) {
 		final int callId = pjsua.jzrtp_getCallId(dataPtr);
-		pjService.service.getExecutor().execute(new SipRunnable() {
+		pjService.service.getExecutor().executeForCall(callId, new SipRunnable() {
 			@Override
 			public void doRun() throws SameThreadException {
 				SipCallSession callInfo = updateCallInfoFromStack(callId, null);
@@ -599,49 +617,99 @@ public class UAStateReceiver extends Callback {
 	 * This is cache of known session maintained by the UA state receiver.
 	 * The UA state receiver is in charge to maintain calls list integrity for {@link PjSipService}.
 	 * All information it gets comes from the stack. Except recording status that comes from service.
+	 * Sessions are published as immutable snapshots so that readers never wait for the pjsip thread.
+	 */
+	private final CallSessionsRegistry callsList = new CallSessionsRegistry();
+	private final Object broadcastLock = new Object();
+	/**
+	 * Calls version sent with the latest call changed broadcast
 	 */
-	private HashMap<Integer, SipCallSession> callsList = new HashMap<Integer, SipCallSession>();
+	private int lastBroadcastVersion = callsList.getVersion();
+	/**
+	 * Sessions as sent with call changed broadcasts, changes of the next broadcast are relative to them
+	 */
+	private final SparseArray<SipCallSession> broadcastSessions = new SparseArray<SipCallSession>();
+	
+	private SipCallSession updateCallInfoFromStack(Integer callId, pjsip_event e) throws SameThreadException {
+	    return updateCallInfoFromStack(callId, e, false);
+	}
 	
 	/**
 	 * Update the call information from pjsip stack by calling pjsip primitives.
 	 * @param callId The id to the call to update
 	 * @param e the pjsip_even that raised the update request
-	 * @return The built sip call session. It's also stored in cache.
+	 * @param incoming whether the update is for a new incoming call
+	 * @return The built sip call session. It's also published in cache and must not be modified.
 	 * @throws SameThreadException if we are calling that from outside the pjsip thread. It's a virtual exception to make sure not called from bad place.
 	 */
-	private SipCallSession updateCallInfoFromStack(Integer callId, pjsip_event e) throws SameThreadException {
+	private SipCallSession updateCallInfoFromStack(Integer callId, pjsip_event e, boolean incoming) throws SameThreadException {
 		SipCallSession callInfo;
 		Log.d(THIS_FILE, "Updating call infos from the stack");
 		synchronized (callsList) {
-			callInfo = callsList.get(callId);
-			if(callInfo == null) {
-				callInfo = new SipCallSession();
-				callInfo.setCallId(callId);
+			callInfo = callsList.getForUpdate(callId);
+			boolean wasEnded = callInfo.isAfterEnded();
+			// We update session infos. callInfo is both in/out and will be updated
+			PjSipCalls.updateSessionFromPj(callInfo, e, pjService);
+			if(wasEnded && !callInfo.isAfterEnded()) {
+			    // Call id reused by the stack for a new call
+			    callInfo.setIncoming(false);
+			    callInfo.callStart = 0;
+			    callInfo.setMediaStats(null);
+			}
+			if(incoming) {
+			    callInfo.setIncoming(true);
+			}
+			// If state is confirmed and not already intialized
+			if(callInfo.getCallState() == SipCallSession.InvState.CONFIRMED && callInfo.callStart == 0) {
+			    callInfo.callStart = System.currentTimeMillis();
+			}
+			callsList.put(callInfo);
+			// We update from our current recording state, that depends on published media state
+			boolean isRecording = pjService.isRecording(callId);
+			boolean canRecord = pjService.canRecord(callId);
+			if(callInfo.isRecording() != isRecording || callInfo.canRecord() != canRecord) {
+			    callInfo = callsList.getForUpdate(callId);
+			    callInfo.setIsRecording(isRecording);
+			    callInfo.setCanRecord(canRecord);
+			    callsList.put(callInfo);
 			}
 		}
-		// We update session infos. callInfo is both in/out and will be updated
-		PjSipCalls.updateSessionFromPj(callInfo, e, pjService);
-		// We update from our current recording state
-		callInfo.setIsRecording(pjService.isRecording(callId));
-		callInfo.setCanRecord(pjService.canRecord(callId));
+		return callInfo;
+	}
+	
+	/**
+	 * Publish latest media statistics of a call in its session.
+	 * @param callId the id of the call
+	 * @param stats the statistics
+	 */
+	void updateCallMediaStats(int callId, MediaStreamStats stats) {
 		synchronized (callsList) {
-    		// Re-add to list mainly for case newly added session
-    		callsList.put(callId, callInfo);
+			SipCallSession callInfo = callsList.get(callId);
+			if(callInfo == null || callInfo.isAfterEnded()) {
+				return;
+			}
+			callInfo = callsList.getForUpdate(callId);
+			callInfo.setMediaStats(stats);
+			callsList.put(callInfo);
 		}
-		return callInfo;
 	}
 	
 	/**
 	 * Get call info for a given call id.
 	 * @param callId the id of the call we want infos for
-	 * @return the call session infos.
+	 * @return the call session infos. Must not be modified.
 	 */
 	public SipCallSession getCallInfo(Integer callId) {
-		SipCallSession callInfo;
-		synchronized (callsList) {
-			callInfo = callsList.get(callId);
-		}
-		return callInfo;
+		return callsList.get(callId);
+	}
+	
+	/**
+	 * Get the version of the calls list.
+	 * It changes each time a call session is updated.
+	 * @return the current version
+	 */
+	public int getCallsVersion() {
+	    return callsList.getVersion();
 	}
 	
 	/**
@@ -649,34 +717,10 @@ public class UAStateReceiver extends Callback {
 	 * @return List of calls.
 	 */
 	public SipCallSession[] getCalls() {
-		if(callsList != null ) {
-			
-			SipCallSession[] callsInfos = new SipCallSession[callsList.size()];
-			int i = 0;
-			for( Entry<Integer, SipCallSession> entry : callsList.entrySet()) {
-				callsInfos[i] = entry.getValue();
-				/*
-				if(callsInfos[i] != null) {
-				    Log.d(THIS_FILE, "Has one call with id " + callsInfos[i].getCallId() + " " + callsInfos[i]);
-				}else {
-				    Log.w(THIS_FILE, "One of the cached calls is not valid... at index " + i);
-				}
-				*/
-				i++;
-			}
-			return callsInfos;
-		}
-		return new SipCallSession[0];
+		return callsList.getAll();
 	}
-
 	
-
-	private WorkerHandler msgHandler;
-	private HandlerThread handlerThread;
-	private WakeLock ongoingCallLock;
-
-	private WakeLock eventLock;
-
+	
 
 	//private static final int ON_INCOMING_CALL = 1;
 	private static final int ON_CALL_STATE = 2;
@@ -735,10 +779,6 @@ public class UAStateReceiver extends Callback {
 					if(callState == SipCallSession.InvState.CONFIRMED) {
 					    stateReceiver.sendPendingDtmf(callInfo.getCallId());
                     }
-					// If state is confirmed and not already intialized
-					if(callState == SipCallSession.InvState.CONFIRMED && callInfo.callStart == 0) {
-						callInfo.callStart = System.currentTimeMillis();
-					}
 					break;
 				case SipCallSession.InvState.DISCONNECTED:
 					if(stateReceiver.pjService.mediaManager != null) {
@@ -760,8 +800,6 @@ public class UAStateReceiver extends Callback {
 					//CallLog
 					ContentValues cv = CallLogHelper.logValuesForCall(stateReceiver.pjService.service, callInfo, callInfo.callStart);
 					
-					//Fill our own database
-					stateReceiver.pjService.service.getContentResolver().insert(SipManager.CALLLOG_URI, cv);
 					Integer isNew = cv.getAsInteger(CallLog.Calls.NEW);
 					if(isNew != null && isNew == 1) {
 					    stateReceiver.notificationManager.showNotificationForMissedCall(cv);
@@ -774,40 +812,50 @@ public class UAStateReceiver extends Callback {
 					}
 					
 					// If needed fill native database
+					ContentValues nativeCv = null;
+					ContentValues extraCv = null;
 					if(stateReceiver.pjService.prefsWrapper.getPreferenceBooleanValue(SipConfigManager.INTEGRATE_WITH_CALLLOGS)) {
+						// Our own values are written later, so work on a copy
+						nativeCv = new ContentValues(cv);
 						//Don't add with new flag
-						cv.put(CallLog.Calls.NEW, false);
+						nativeCv.put(CallLog.Calls.NEW, false);
 						// Remove csipsimple custom entries
-						cv.remove(SipManager.CALLLOG_PROFILE_ID_FIELD);
-						cv.remove(SipManager.CALLLOG_STATUS_CODE_FIELD);
-                        cv.remove(SipManager.CALLLOG_STATUS_TEXT_FIELD);
+						nativeCv.remove(SipManager.CALLLOG_PROFILE_ID_FIELD);
+						nativeCv.remove(SipManager.CALLLOG_STATUS_CODE_FIELD);
+                        nativeCv.remove(SipManager.CALLLOG_STATUS_TEXT_FIELD);
+                        nativeCv.remove(SipManager.CALLLOG_CODEC_FIELD);
+                        nativeCv.remove(SipManager.CALLLOG_RX_LOSS_FIELD);
+                        nativeCv.remove(SipManager.CALLLOG_TX_LOSS_FIELD);
+                        nativeCv.remove(SipManager.CALLLOG_JITTER_FIELD);
+                        nativeCv.remove(SipManager.CALLLOG_RTT_FIELD);
 						
 						//Reformat number for callogs
-						ParsedSipContactInfos callerInfos = SipUri.parseSipContact(cv.getAsString(Calls.NUMBER));
+						ParsedSipContactInfos callerInfos = SipUri.parseSipContact(nativeCv.getAsString(Calls.NUMBER));
+						String phoneNumber = null;
 						if (callerInfos != null) {
-							String phoneNumber = SipUri.getPhoneNumber(callerInfos);
+							phoneNumber = SipUri.getPhoneNumber(callerInfos);
+						}
+						//Only log numbers that can be called by GSM too.
+						// TODO : if android 2.3 add sip uri also
+						if(!TextUtils.isEmpty(phoneNumber)) {
+							nativeCv.put(Calls.NUMBER, phoneNumber);
+							// For log in call logs => don't add as new calls... we manage it ourselves.
+							nativeCv.put(Calls.NEW, false);
+							extraCv = new ContentValues();
 							
-							//Only log numbers that can be called by GSM too.
-							// TODO : if android 2.3 add sip uri also
-							if(!TextUtils.isEmpty(phoneNumber)) {
-								cv.put(Calls.NUMBER, phoneNumber);
-								// For log in call logs => don't add as new calls... we manage it ourselves.
-								cv.put(Calls.NEW, false);
-								ContentValues extraCv = new ContentValues();
-								
-								if(callInfo.getAccId() != SipProfile.INVALID_ID) {
-									SipProfile acc = stateReceiver.pjService.service.getAccount(callInfo.getAccId());
-									if(acc != null && acc.display_name != null) {
-										extraCv.put(CallLogHelper.EXTRA_SIP_PROVIDER, acc.display_name);
-									}
+							if(callInfo.getAccId() != SipProfile.INVALID_ID) {
+								SipProfile acc = stateReceiver.pjService.service.getAccount(callInfo.getAccId());
+								if(acc != null && acc.display_name != null) {
+									extraCv.put(CallLogHelper.EXTRA_SIP_PROVIDER, acc.display_name);
 								}
-								CallLogHelper.addCallLog(stateReceiver.pjService.service, cv, extraCv);
 							}
+						}else {
+						    nativeCv = null;
 						}
 					}
-					callInfo.setIncoming(false);
-					callInfo.callStart = 0;
 					
+					//Fill our own database, and native one if needed
+					stateReceiver.callLogWriter.addCallLog(cv, nativeCv, extraCv);
 					break;
 				default:
 					break;
@@ -817,9 +865,8 @@ public class UAStateReceiver extends Callback {
 			}
 			case ON_MEDIA_STATE:{
 				SipCallSession mediaCallInfo = (SipCallSession) msg.obj;
-				SipCallSession callInfo = stateReceiver.callsList.get(mediaCallInfo.getCallId());
-				callInfo.setMediaStatus(mediaCallInfo.getMediaStatus());
-				stateReceiver.callsList.put(mediaCallInfo.getCallId(), callInfo);
+				// Media status is already published, broadcast latest infos
+				SipCallSession callInfo = stateReceiver.getCallInfo(mediaCallInfo.getCallId());
 				stateReceiver.onBroadcastCallState(callInfo);
 				break;
 			}
@@ -839,6 +886,11 @@ public class UAStateReceiver extends Callback {
 		pjService = srv;
 		notificationManager = pjService.service.notificationManager;
 		
+		if(callLogWriter == null) {
+		    callLogWriter = new CallLogWriter(pjService.service);
+		}
+		callLogWriter.start();
+		
 		if(handlerThread == null) {
 			handlerThread = new HandlerThread("UAStateAsyncWorker");
 			handlerThread.start();
@@ -867,6 +919,10 @@ public class UAStateReceiver extends Callback {
 		handlerThread = null;
 		msgHandler = null;
 		
+		if(callLogWriter != null) {
+		    callLogWriter.stop();
+		}
+		
 		//Ensure lock is released since this lock is a ref counted one.
 		if( eventLock != null ) {
 			while (eventLock.isHeld()) {
@@ -888,8 +944,22 @@ public class UAStateReceiver extends Callback {
 		//Internal event
 		Intent callStateChangedIntent = new Intent(SipManager.ACTION_SIP_CALL_CHANGED);
 		callStateChangedIntent.putExtra(SipManager.EXTRA_CALL_INFO, callInfo);
-		pjService.service.sendBroadcast(callStateChangedIntent, SipManager.PERMISSION_USE_SIP);
-		
+		// Broadcasts are built and sent in order so that each one continues the previous one
+		synchronized (broadcastLock) {
+			int version = callsList.getVersion();
+			List<SipCallSession> changed = callsList.getChangedSince(lastBroadcastVersion);
+			Bundle[] changes = new Bundle[changed.size()];
+			for(int i = 0; i < changes.length; i++) {
+				SipCallSession session = changed.get(i);
+				changes[i] = session.getChangesSince(broadcastSessions.get(session.getCallId()));
+				broadcastSessions.put(session.getCallId(), session);
+			}
+			callStateChangedIntent.putExtra(SipManager.EXTRA_CALLS_CHANGED, changes);
+			callStateChangedIntent.putExtra(SipManager.EXTRA_CALLS_PREVIOUS_VERSION, lastBroadcastVersion);
+			callStateChangedIntent.putExtra(SipManager.EXTRA_CALLS_VERSION, version);
+			lastBroadcastVersion = version;
+			pjService.service.sendBroadcast(callStateChangedIntent, SipManager.PERMISSION_USE_SIP);
+		}
 		
 	}
 
@@ -950,8 +1020,7 @@ public class UAStateReceiver extends Callback {
 	 */
 	public SipCallSession getActiveCallInProgress() {
 		// Go through the whole list of calls and find the first active state.
-		for (Integer i : callsList.keySet()) { 
-			SipCallSession callInfo = getCallInfo(i);
+		for (SipCallSession callInfo : getCalls()) { 
 			if (callInfo.isActive()) {
 				return callInfo;
 			}
@@ -966,8 +1035,7 @@ public class UAStateReceiver extends Callback {
      */
     public SipCallSession getActiveCallOngoing() {
         // Go through the whole list of calls and find the first active state.
-        for (Integer i : callsList.keySet()) { 
-            SipCallSession callInfo = getCallInfo(i);
+        for (SipCallSession callInfo : getCalls()) { 
             if (callInfo.isActive() && callInfo.isOngoing()) {
                 return callInfo;
             }
@@ -992,7 +1060,7 @@ public class UAStateReceiver extends Callback {
     				(state == SipCallSession.InvState.INCOMING || 
     				state == SipCallSession.InvState.EARLY)) {
     			if(pjService != null && pjService.service != null ) {
-    				pjService.service.getExecutor().execute(new SipRunnable() {
+    				pjService.service.getExecutor().executeForCall(callInfo.getCallId(), new SipRunnable() {
 						@Override
 						protected void doRun() throws SameThreadException {
 							
@@ -1013,7 +1081,7 @@ public class UAStateReceiver extends Callback {
 				// the call should be cleared.
 				//
     			if(pjService != null && pjService.service != null ) {
-    				pjService.service.getExecutor().execute(new SipRunnable() {
+    				pjService.service.getExecutor().executeForCall(callInfo.getCallId(), new SipRunnable() {
 						@Override
 						protected void doRun() throws SameThreadException {
 							int preferedAction = pjService.prefsWrapper.getHeadsetAction();
@@ -1040,18 +1108,18 @@ public class UAStateReceiver extends Callback {
 	 * @param isRecording if we are currently recording the call
 	 */
     public void updateRecordingStatus(int callId, boolean canRecord, boolean isRecording) {
-        SipCallSession callInfo = getCallInfo(callId);
-        callInfo.setCanRecord(canRecord);
-        callInfo.setIsRecording(isRecording);
+        SipCallSession callInfo;
         synchronized (callsList) {
-            // Re-add it just to be sure
-            callsList.put(callId, callInfo);
+            callInfo = callsList.getForUpdate(callId);
+            callInfo.setCanRecord(canRecord);
+            callInfo.setIsRecording(isRecording);
+            callsList.put(callInfo);
         }
         onBroadcastCallState(callInfo);
     }
 	
     private void sendPendingDtmf(final int callId) {
-        pjService.service.getExecutor().execute(new SipRunnable() {
+        pjService.service.getExecutor().executeForCall(callId, new SipRunnable() {
             @Override
             protected void doRun() throws SameThreadException {
                 pjService.sendPendingDtmf(callId);
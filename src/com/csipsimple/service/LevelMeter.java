@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+
+import com.csipsimple.api.ISipLevelsListener;
+import com.csipsimple.utils.Log;
+import com.csipsimple.utils.Threading;
+
+/**
+ * Conference bridge level meter.<br/>
+ * While at least one listener is registered, levels are sampled at a fixed
+ * rate into a ring buffer and delivered to all listeners by batches. Sampling
+ * runs on the meter own thread, so that the sip executor is not used at all :
+ * reading levels of the conference bridge is thread safe once the thread is
+ * registered with pjlib. The thread is kept until the meter is stopped, so
+ * that it is registered only once.
+ */
+public class LevelMeter {
+
+    private static final String THIS_FILE = "LevelMeter";
+
+    /**
+     * Delay between two samples of levels
+     */
+    private static final long SAMPLE_PERIOD = 50;
+    /**
+     * Number of sample periods between two deliveries to listeners
+     */
+    private static final int SAMPLES_PER_BATCH = 4;
+    /**
+     * Maximum number of ports sampled at once
+     */
+    private static final int MAX_PORTS = 8;
+    /**
+     * Size of the ring buffer, enough for a few batches
+     */
+    private static final int RING_SIZE = MAX_PORTS * SAMPLES_PER_BATCH * 4;
+
+    private final SipService service;
+
+    private final RemoteCallbackList<ISipLevelsListener> listeners = new RemoteCallbackList<ISipLevelsListener>() {
+        @Override
+        public void onCallbackDied(ISipLevelsListener listener) {
+            onListenerRemoved();
+        }
+    };
+    private int listenersCount = 0;
+
+    private HandlerThread meterThread;
+    private Handler meterHandler;
+    private volatile boolean metering = false;
+    private int ticks = 0;
+
+    // Ring buffer of samples, only used from meter thread
+    private final long[] ring = new long[RING_SIZE];
+    private long written = 0;
+    private long read = 0;
+
+    private final long[] sampleBuffer = new long[MAX_PORTS];
+
+    public LevelMeter(SipService srv) {
+        service = srv;
+    }
+
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!metering) {
+                return;
+            }
+            try {
+                int count = service.getConfLevels(sampleBuffer);
+                for (int i = 0; i < count; i++) {
+                    ring[(int) (written % RING_SIZE)] = sampleBuffer[i];
+                    written++;
+                }
+                ticks++;
+                if (ticks % SAMPLES_PER_BATCH == 0) {
+                    deliver();
+                }
+            } finally {
+                scheduleTick(SAMPLE_PERIOD);
+            }
+        }
+    };
+
+    /**
+     * Register a listener, starting the meter if needed.
+     * 
+     * @param listener the listener to register
+     */
+    public synchronized void register(ISipLevelsListener listener) {
+        if (listener != null && listeners.register(listener)) {
+            listenersCount++;
+            if (!metering) {
+                Log.d(THIS_FILE, "Start level meter");
+                if (meterThread == null) {
+                    meterThread = new HandlerThread("LevelMeter");
+                    meterThread.start();
+                    meterHandler = new Handler(meterThread.getLooper());
+                }
+                metering = true;
+                scheduleTick(0);
+            }
+        }
+    }
+
+    /**
+     * Unregister a listener, stopping the meter if it was the last one.
+     * 
+     * @param listener the listener to unregister
+     */
+    public void unregister(ISipLevelsListener listener) {
+        if (listener != null && listeners.unregister(listener)) {
+            onListenerRemoved();
+        }
+    }
+
+    /**
+     * Unregister all listeners and stop the meter.
+     */
+    public synchronized void stop() {
+        listeners.kill();
+        listenersCount = 0;
+        stopMeter();
+        if (meterThread != null) {
+            Threading.stopHandlerThread(meterThread, false);
+            meterThread = null;
+            meterHandler = null;
+        }
+    }
+
+    private synchronized void onListenerRemoved() {
+        listenersCount--;
+        if (listenersCount <= 0) {
+            listenersCount = 0;
+            stopMeter();
+        }
+    }
+
+    private void stopMeter() {
+        if (metering) {
+            Log.d(THIS_FILE, "Stop level meter");
+            metering = false;
+            meterHandler.removeCallbacks(tickRunnable);
+        }
+    }
+
+    /**
+     * Schedule next tick, replacing a pending one so that only one is ever
+     * pending.
+     */
+    private synchronized void scheduleTick(long delay) {
+        if (metering && meterHandler != null) {
+            meterHandler.removeCallbacks(tickRunnable);
+            meterHandler.postDelayed(tickRunnable, delay);
+        }
+    }
+
+    /**
+     * Send samples written since the previous delivery to listeners.
+     */
+    private void deliver() {
+        if (written - read > RING_SIZE) {
+            // Listeners were too slow, drop oldest samples
+            read = written - RING_SIZE;
+        }
+        long[] levels = new long[(int) (written - read)];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = ring[(int) ((read + i) % RING_SIZE)];
+        }
+        read = written;
+        if (levels.length == 0) {
+            return;
+        }
+        int count = listeners.beginBroadcast();
+        try {
+            for (int i = 0; i < count; i++) {
+                try {
+                    listeners.getBroadcastItem(i).onLevels(levels);
+                } catch (RemoteException e) {
+                    // Dead listeners are removed by the callback list
+                }
+            }
+        } finally {
+            listeners.finishBroadcast();
+        }
+    }
+}
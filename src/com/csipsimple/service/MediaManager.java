@@ -582,7 +582,7 @@ public class MediaManager implements BluetoothChangeListener {
 			final float speakVolume = service.getPrefs().getPreferenceFloatValue(speaker_key);
 			final float micVolume = userWantMicrophoneMute? 0 : service.getPrefs().getPreferenceFloatValue(mic_key);
 			
-			service.getExecutor().execute(new SipRunnable() {
+			service.getExecutor().executeUrgent(new SipRunnable() {
 				
 				@Override
 				protected void doRun() throws SameThreadException {
@@ -32,6 +32,7 @@ import com.csipsimple.api.SipManager;
 import com.csipsimple.api.SipProfile;
 import com.csipsimple.api.SipUri;
 import com.csipsimple.models.Filter;
+import com.csipsimple.models.Filter.ProcessedNumber;
 import com.csipsimple.ui.outgoingcall.OutgoingCallChooser;
 import com.csipsimple.utils.CallHandlerPlugin;
 import com.csipsimple.utils.Log;
@@ -103,10 +104,11 @@ public class OutgoingCall extends BroadcastReceiver {
 	                gsmCallHandlerId = CallHandlerPlugin.getAccountIdForCallHandler(aContext, (new ComponentName(aContext, com.csipsimple.plugins.telephony.CallHandler.class)).flattenToString());
 	            }
 	            if(gsmCallHandlerId != SipProfile.INVALID_ID) {
-	                if(Filter.isMustCallNumber(aContext, gsmCallHandlerId, number)) {
+	                ProcessedNumber processed = Filter.processNumber(aContext, gsmCallHandlerId, number);
+	                if(processed.mustCall) {
 	                    Log.d(THIS_FILE, "Filtering to force pass number along");
 	                    // Pass the call to pstn handle
-	                    setResultData(Filter.rewritePhoneNumber(aContext, gsmCallHandlerId, number));
+	                    setResultData(processed.number);
 	                    return;
 	                }
 	            }
@@ -27,10 +27,13 @@ import com.csipsimple.utils.PreferencesWrapper;
 
 import android.content.ContentProvider;
 import android.content.ContentValues;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
+import android.preference.PreferenceManager;
 import android.text.TextUtils;
 
 /**
@@ -44,6 +47,20 @@ import android.text.TextUtils;
 public class PreferenceProvider extends ContentProvider {
 
 	private PreferencesWrapper prefs;
+	
+	/**
+	 * Listen for any change done to preferences, through this provider or directly 
+	 * by the UI, and notify it to other processes so that they can drop their snapshot.
+	 * Must be kept as a field since shared preferences only keep weak references to listeners.
+	 */
+	private final OnSharedPreferenceChangeListener prefsChangeListener = new OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            if(!TextUtils.isEmpty(key)) {
+                getContext().getContentResolver().notifyChange(Uri.withAppendedPath(SipConfigManager.PREF_ID_URI_BASE, key), null);
+            }
+        }
+    };
 
 
 	private static final int PREFS = 1;
@@ -65,6 +82,7 @@ public class PreferenceProvider extends ContentProvider {
 	@Override
 	public boolean onCreate() {
 		prefs = new PreferencesWrapper(getContext());
+		PreferenceManager.getDefaultSharedPreferences(getContext()).registerOnSharedPreferenceChangeListener(prefsChangeListener);
 		return true;
 	}
 
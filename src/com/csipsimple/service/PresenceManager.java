@@ -21,53 +21,110 @@
 
 package com.csipsimple.service;
 
-import android.database.ContentObserver;
-import android.database.Cursor;
 import android.os.Handler;
+import android.os.HandlerThread;
 
 import com.csipsimple.api.SipManager;
 import com.csipsimple.api.SipProfile;
+import com.csipsimple.api.SipProfileState;
+import com.csipsimple.db.AccountStatusStore;
+import com.csipsimple.db.AccountStatusStore.AccountStatusChange;
+import com.csipsimple.db.AccountStatusStore.OnAccountStatusChangeListener;
+import com.csipsimple.models.BuddyPresence;
 import com.csipsimple.service.SipService.SameThreadException;
 import com.csipsimple.service.SipService.SipRunnable;
-import com.csipsimple.utils.AccountListUtils;
-import com.csipsimple.utils.AccountListUtils.AccountStatusDisplay;
 import com.csipsimple.utils.Log;
+import com.csipsimple.utils.Threading;
 import com.csipsimple.utils.contacts.ContactsWrapper;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Presence engine of the sip stack.<br/>
+ * Buddies of accounts available for calls are added to and removed from the
+ * stack by batches of bulk executor tasks. Presence notified by the stack is
+ * kept in an in-memory table and written back to contacts with one batch per
+ * burst of notifications.
+ */
 public class PresenceManager {
     private static final String THIS_FILE = "PresenceManager";
 
-    private static final String[] ACC_PROJECTION = new String[] {
-            SipProfile.FIELD_ID,
-            SipProfile.FIELD_DISPLAY_NAME,
-            SipProfile.FIELD_WIZARD
-    };
-    
+    /**
+     * Number of buddies added or removed by one executor task
+     */
+    private static final int BUDDIES_BATCH_SIZE = 16;
+    /**
+     * Delay during which presence changes are gathered before being written to contacts
+     */
+    private static final long PRESENCE_FLUSH_DELAY = 1000;
 
-    private SipService service;
+    private volatile SipService service;
 
     private final Handler mHandler = new Handler();
     private ArrayList<SipProfile> addedAccounts = new ArrayList<SipProfile>();
 
-    private AccountStatusContentObserver statusObserver;
+    private AccountStatusListener statusListener;
+
+    /**
+     * Latest presence of buddies, by uri without sip: scheme
+     */
+    private final ConcurrentHashMap<String, BuddyPresence> presences = new ConcurrentHashMap<String, BuddyPresence>();
+    /**
+     * Presences not yet written to contacts. Also guards the writer thread.
+     */
+    private final LinkedHashMap<String, BuddyPresence> pendingPresences = new LinkedHashMap<String, BuddyPresence>();
+    private HandlerThread writerThread;
+    private Handler writerHandler;
+    private boolean flushScheduled = false;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushPresences();
+        }
+    };
 
     public synchronized void startMonitoring(SipService srv) {
         service = srv;
-        if(statusObserver == null) {
-            statusObserver = new AccountStatusContentObserver(mHandler);
-            service.getContentResolver().registerContentObserver(SipProfile.ACCOUNT_STATUS_URI,
-                    true, statusObserver);
+        synchronized (pendingPresences) {
+            if(writerThread == null) {
+                writerThread = new HandlerThread("PresenceWriter");
+                writerThread.start();
+                writerHandler = new Handler(writerThread.getLooper());
+            }
+        }
+        if(statusListener == null) {
+            statusListener = new AccountStatusListener();
+            AccountStatusStore.getInstance().addListener(statusListener);
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateRegistrations();
+                }
+            });
         }
     }
 
     public synchronized void stopMonitoring() {
-        if (statusObserver != null) {
-            service.getContentResolver().unregisterContentObserver(statusObserver);
-            statusObserver = null;
+        if (statusListener != null) {
+            AccountStatusStore.getInstance().removeListener(statusListener);
+            statusListener = null;
+        }
+        synchronized (pendingPresences) {
+            if(writerHandler != null) {
+                writerHandler.removeCallbacks(flushRunnable);
+            }
+            Threading.stopHandlerThread(writerThread, false);
+            writerThread = null;
+            writerHandler = null;
+            flushScheduled = false;
         }
+        // Write what remains from this thread
+        flushPresences();
+        presences.clear();
         service = null;
     }
     
@@ -92,48 +149,60 @@ public class PresenceManager {
      */
     private synchronized void addBuddiesForAccount(SipProfile acc) {
         // Get buddies uris for this account
-        final List<String> toAdd = getBuddiesForAccount(acc);
-
-        if (toAdd.size() > 0 && service != null) {
-            service.getExecutor().execute(new SipRunnable() {
+        List<String> toAdd = getBuddiesForAccount(acc);
 
+        executeBuddiesBatches(toAdd, true);
+        addedAccounts.add(acc);
+    }
+    
+    
+    /**
+     * Add or remove buddies in the stack, by batches run as bulk executor
+     * tasks so that calls are not delayed by a long list
+     * @param buddiesUris the buddies uris without sip: scheme
+     * @param add true to add buddies, false to remove them
+     */
+    private void executeBuddiesBatches(List<String> buddiesUris, final boolean add) {
+        SipService srv = service;
+        if(srv == null) {
+            return;
+        }
+        for (int start = 0; start < buddiesUris.size(); start += BUDDIES_BATCH_SIZE) {
+            int end = Math.min(start + BUDDIES_BATCH_SIZE, buddiesUris.size());
+            final List<String> batch = new ArrayList<String>(buddiesUris.subList(start, end));
+            srv.getExecutor().executeBulk(new SipRunnable() {
                 @Override
                 protected void doRun() throws SameThreadException {
-
-                    for (String csipUri : toAdd) {
-                        service.addBuddy("sip:" + csipUri);
+                    SipService currentService = service;
+                    if(currentService == null) {
+                        return;
+                    }
+                    for (String csipUri : batch) {
+                        if(add) {
+                            currentService.addBuddy("sip:" + csipUri);
+                        }else {
+                            currentService.removeBuddy("sip:" + csipUri);
+                        }
                     }
                 }
             });
         }
-        addedAccounts.add(acc);
     }
     
-    
     /**
      * Delete buddies for a given account
      * @param acc
      */
     private synchronized void deleteBuddiesForAccount(SipProfile acc) {
         // Get buddies uris for this account
-        final List<String> toDel = getBuddiesForAccount(acc);
+        List<String> toDel = getBuddiesForAccount(acc);
 
         if (toDel.size() > 0 && service != null) {
             for (String csipUri : toDel) {
-                ContactsWrapper.getInstance().updateCSipPresence(service, csipUri, SipManager.PresenceStatus.UNKNOWN, "");
+                presences.remove(csipUri);
+                queuePresence(new BuddyPresence(csipUri, SipManager.PresenceStatus.UNKNOWN, ""));
             }
-            
-            service.getExecutor().execute(new SipRunnable() {
-
-                @Override
-                protected void doRun() throws SameThreadException {
-                    if(service != null) {
-                        for (String csipUri : toDel) {
-                            service.removeBuddy("sip:" + csipUri);
-                        }
-                    }
-                }
-            });
+            executeBuddiesBatches(toDel, false);
         }
         // Find the correct account to remove
         int toRemoveIndex = -1;
@@ -152,75 +221,92 @@ public class PresenceManager {
     }
 
     /**
-     * Update internal state of registered account
-     * Push buddies for registered account
-     * Remove buddies for offline accounts
+     * Whether buddies of an account should be monitored
+     * @param state the status of the account, null if the account has no status
+     * @return true if the account is available for calls
      */
-    private synchronized void updateRegistrations() {
+    private static boolean isAvailableForCalls(SipProfileState state) {
+        return state != null && state.isValidForCall()
+                && state.getAddedStatus() >= SipManager.SUCCESS;
+    }
+
+    private SipProfile getAddedAccount(long accountId) {
+        for (SipProfile addedAcc : addedAccounts) {
+            if (addedAcc.id == accountId) {
+                return addedAcc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Update internal state of one account
+     * Push buddies if registered
+     * Remove buddies if offline
+     * @param accountId the account id in database
+     * @param state the current status of the account, null if the account has no status
+     */
+    private synchronized void updateRegistration(long accountId, SipProfileState state) {
         if(service == null) {
             // Nothing to do at this point
             return;
         }
-        Cursor c = service.getContentResolver().query(SipProfile.ACCOUNT_URI, ACC_PROJECTION,
-                SipProfile.FIELD_ACTIVE + "=?", new String[] {
-                    "1"
-                }, null);
-
-        ArrayList<SipProfile> accToAdd = new ArrayList<SipProfile>();
-        ArrayList<SipProfile> accToRemove = new ArrayList<SipProfile>();
-        ArrayList<Long> alreadyAddedAcc = new ArrayList<Long>();
-        for (SipProfile addedAcc : addedAccounts) {
-            alreadyAddedAcc.add(addedAcc.id);
-        }
-        // Decide which accounts should be removed, added, left unchanged
-        if (c != null && c.getCount() > 0) {
-            try {
-                if (c.moveToFirst()) {
-                    do {
-                        final SipProfile acc = new SipProfile(c);
-
-                        AccountStatusDisplay accountStatusDisplay = AccountListUtils
-                                .getAccountDisplay(service, acc.id);
-                        if (accountStatusDisplay.availableForCalls) {
-                            if (!alreadyAddedAcc.contains(acc.id)) {
-                                accToAdd.add(acc);
-                            }
-                        } else {
-                            if (alreadyAddedAcc.contains(acc.id)) {
-                                accToRemove.add(acc);
-                            }
-                        }
-                    } while (c.moveToNext());
+        SipProfile addedAcc = getAddedAccount(accountId);
+        if (isAvailableForCalls(state)) {
+            if (addedAcc == null) {
+                SipProfile acc = new SipProfile();
+                acc.id = accountId;
+                acc.wizard = state.getWizard();
+                if (state.getDisplayName() != null) {
+                    acc.display_name = state.getDisplayName().toString();
                 }
-            } catch (Exception e) {
-                Log.e(THIS_FILE, "Error on looping over sip profiles", e);
-            } finally {
-                c.close();
+                addBuddiesForAccount(acc);
             }
-        }else if(c != null) {
-            c.close();
+        } else if (addedAcc != null) {
+            deleteBuddiesForAccount(addedAcc);
         }
+    }
 
-        for(SipProfile acc : accToRemove) {
-            deleteBuddiesForAccount(acc);
+    /**
+     * Update internal state of all accounts
+     * Push buddies for registered account
+     * Remove buddies for offline accounts
+     */
+    private synchronized void updateRegistrations() {
+        if(service == null) {
+            // Nothing to do at this point
+            return;
         }
-
-        for(SipProfile acc : accToAdd) {
-            addBuddiesForAccount(acc);
+        ArrayList<Long> knownAccounts = new ArrayList<Long>();
+        for (SipProfileState state : AccountStatusStore.getInstance().getAll()) {
+            knownAccounts.add((long) state.getAccountId());
+            updateRegistration(state.getAccountId(), state);
+        }
+        for (SipProfile addedAcc : new ArrayList<SipProfile>(addedAccounts)) {
+            if (!knownAccounts.contains(addedAcc.id)) {
+                deleteBuddiesForAccount(addedAcc);
+            }
         }
     }
 
     /**
-     * Observer for changes of account registration status
+     * Listener for changes of account registration status.
+     * Only accounts becoming available or unavailable are updated.
      */
-    class AccountStatusContentObserver extends ContentObserver {
+    class AccountStatusListener implements OnAccountStatusChangeListener {
 
-        public AccountStatusContentObserver(Handler h) {
-            super(h);
-        }
-
-        public void onChange(boolean selfChange) {
-            updateRegistrations();
+        @Override
+        public void onAccountStatusChanged(AccountStatusChange change) {
+            final long accountId = change.getAccountId();
+            final SipProfileState current = change.getCurrent();
+            if (isAvailableForCalls(change.getPrevious()) != isAvailableForCalls(current)) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateRegistration(accountId, current);
+                    }
+                });
+            }
         }
     }
     
@@ -233,9 +319,72 @@ public class PresenceManager {
      */
     public void changeBuddyState(String buddyUri, int monitorPres, SipManager.PresenceStatus presStatus, String statusText) {
         if(service != null) {
-            ContactsWrapper.getInstance().updateCSipPresence(service, buddyUri.replace("sip:", ""), presStatus, statusText);
+            BuddyPresence presence = new BuddyPresence(buddyUri.replace("sip:", ""), presStatus, statusText);
+            BuddyPresence previous = presences.put(presence.getBuddyUri(), presence);
+            if(!presence.equals(previous)) {
+                queuePresence(presence);
+            }
         }
         
     }
+    
+    /**
+     * Get the latest presence of a buddy.
+     * @param buddyUri the buddy uri, with or without sip: scheme
+     * @return the presence, null if no presence was notified for this buddy
+     */
+    public BuddyPresence getBuddyPresence(String buddyUri) {
+        return presences.get(buddyUri.replace("sip:", ""));
+    }
+    
+    /**
+     * Get the latest presence of all buddies.
+     * @return a new list of presences
+     */
+    public List<BuddyPresence> getBuddiesPresences() {
+        return new ArrayList<BuddyPresence>(presences.values());
+    }
+    
+    /**
+     * Queue a presence to write to contacts. Presences queued during
+     * {@link #PRESENCE_FLUSH_DELAY} are written together, only the latest
+     * one of each buddy.
+     * @param presence the presence to write
+     */
+    private void queuePresence(BuddyPresence presence) {
+        boolean flushNow = false;
+        synchronized (pendingPresences) {
+            pendingPresences.put(presence.getBuddyUri(), presence);
+            if(writerHandler == null) {
+                flushNow = true;
+            }else if(!flushScheduled) {
+                flushScheduled = true;
+                writerHandler.postDelayed(flushRunnable, PRESENCE_FLUSH_DELAY);
+            }
+        }
+        if(flushNow) {
+            flushPresences();
+        }
+    }
+    
+    /**
+     * Write pending presences to contacts in one batch.
+     */
+    private void flushPresences() {
+        List<BuddyPresence> toWrite;
+        synchronized (pendingPresences) {
+            flushScheduled = false;
+            if(pendingPresences.isEmpty()) {
+                return;
+            }
+            toWrite = new ArrayList<BuddyPresence>(pendingPresences.values());
+            pendingPresences.clear();
+        }
+        SipService srv = service;
+        if(srv != null) {
+            ContactsWrapper.getInstance().updateCSipPresences(srv, toWrite);
+            Log.d(THIS_FILE, "Written " + toWrite.size() + " buddies presence");
+        }
+    }
 
 }
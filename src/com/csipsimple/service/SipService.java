@@ -28,7 +28,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
-import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo.DetailedState;
@@ -45,14 +44,19 @@ import android.os.Parcelable;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
+import android.text.TextUtils;
+import android.util.SparseArray;
 import android.widget.Toast;
 
 import com.csipsimple.R;
 import com.csipsimple.api.ISipConfiguration;
+import com.csipsimple.api.ISipLevelsListener;
 import com.csipsimple.api.ISipService;
 import com.csipsimple.api.MediaState;
+import com.csipsimple.api.MediaStreamStats;
 import com.csipsimple.api.SipCallSession;
 import com.csipsimple.api.SipConfigManager;
 import com.csipsimple.api.SipManager;
@@ -61,8 +65,13 @@ import com.csipsimple.api.SipMessage;
 import com.csipsimple.api.SipProfile;
 import com.csipsimple.api.SipProfileState;
 import com.csipsimple.api.SipUri;
+import com.csipsimple.db.AccountStatusStore;
+import com.csipsimple.db.AccountStatusStore.AccountStatusChange;
+import com.csipsimple.db.AccountStatusStore.OnAccountStatusChangeListener;
 import com.csipsimple.db.DBProvider;
+import com.csipsimple.models.BuddyPresence;
 import com.csipsimple.models.Filter;
+import com.csipsimple.models.SipProfileCache;
 import com.csipsimple.pjsip.PjSipCalls;
 import com.csipsimple.pjsip.PjSipService;
 import com.csipsimple.pjsip.UAStateReceiver;
@@ -80,6 +89,7 @@ import org.pjsip.pjsua.pjsua;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
@@ -108,7 +118,7 @@ public class SipService extends Service {
 		public void sipStart() throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
 			Log.d(THIS_FILE, "Start required from third party app/serv");
-			getExecutor().execute(new StartRunnable());
+			getExecutor().executeBarrier(new StartRunnable());
 		}
 
         /**
@@ -117,7 +127,7 @@ public class SipService extends Service {
 		@Override
 		public void sipStop() throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new StopRunnable());
+			getExecutor().executeBarrier(new StopRunnable());
 		}
 
         /**
@@ -138,7 +148,7 @@ public class SipService extends Service {
 		public void askThreadedRestart() throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
 			Log.d(THIS_FILE, "Restart required from third part app/serv");
-			getExecutor().execute(new RestartRunnable());
+			getExecutor().executeBarrier(new RestartRunnable());
 		};
 
         /**
@@ -147,7 +157,7 @@ public class SipService extends Service {
 		@Override
 		public void addAllAccounts() throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeBarrier(new SipRunnable() {
 				@Override
 				public void doRun() throws SameThreadException {
 					SipService.this.addAllAccounts();
@@ -161,7 +171,7 @@ public class SipService extends Service {
 		@Override
 		public void removeAllAccounts() throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeBarrier(new SipRunnable() {
 				@Override
 				public void doRun() throws SameThreadException {
 					SipService.this.unregisterAllAccounts(true);
@@ -176,7 +186,7 @@ public class SipService extends Service {
 		@Override
 		public void reAddAllAccounts() throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeBarrier(new SipRunnable() {
 				@Override
 				public void doRun() throws SameThreadException {
 					SipService.this.reAddAllAccounts();
@@ -195,7 +205,7 @@ public class SipService extends Service {
 			final SipProfile acc = getAccount(accountId);
 			if(acc != null) {
 				final int ren = renew;
-				getExecutor().execute(new SipRunnable() {
+				getExecutor().executeBarrier(new SipRunnable() {
 					@Override
 					public void doRun() throws SameThreadException {
 						SipService.this.setAccountRegistration(acc, ren, false);
@@ -255,7 +265,7 @@ public class SipService extends Service {
                     return;
                 }
             }
-            getExecutor().execute(new SipRunnable() {
+            getExecutor().executeUrgent(new SipRunnable() {
                 @Override
                 protected void doRun() throws SameThreadException {
                     pjService.makeCall(callee, accountId, options);
@@ -310,7 +320,7 @@ public class SipService extends Service {
 					return (Integer) pjService.callAnswer(callId, status);
 				}
 			};
-			getExecutor().execute(action);
+			getExecutor().executeForCall(callId, action);
 			//return (Integer) action.getResult();
 			return SipManager.SUCCESS;
 		}
@@ -328,7 +338,7 @@ public class SipService extends Service {
 					return (Integer) pjService.callHangup(callId, status);
 				}
 			};
-			getExecutor().execute(action);
+			getExecutor().executeForCall(callId, action);
 			//return (Integer) action.getResult();
 			
 			return SipManager.SUCCESS;
@@ -347,7 +357,7 @@ public class SipService extends Service {
 					return (Integer) pjService.callXfer(callId, callee);
 				}
 			};
-			getExecutor().execute(action);
+			getExecutor().executeForCall(callId, action);
 			return (Integer) action.getResult();
 		}
 
@@ -364,7 +374,7 @@ public class SipService extends Service {
 					return (Integer) pjService.callXferReplace(callId, otherCallId, options);
 				}
 			};
-			getExecutor().execute(action);
+			getExecutor().executeForCall(callId, action);
 			return (Integer) action.getResult();
 		}
 
@@ -381,7 +391,7 @@ public class SipService extends Service {
 					return (Integer) pjService.sendDtmf(callId, keyCode);
 				}
 			};
-			getExecutor().execute(action);
+			getExecutor().executeForCall(callId, action);
 			return (Integer) action.getResult();
 		}
 
@@ -398,7 +408,7 @@ public class SipService extends Service {
 					return (Integer) pjService.callHold(callId);
 				}
 			};
-			getExecutor().execute(action);
+			getExecutor().executeForCall(callId, action);
 			return (Integer) action.getResult();
 		}
 
@@ -415,7 +425,7 @@ public class SipService extends Service {
 					return (Integer) pjService.callReinvite(callId, unhold);
 				}
 			};
-			getExecutor().execute(action);
+			getExecutor().executeForCall(callId, action);
 			return (Integer) action.getResult();
 		}
 		
@@ -434,7 +444,7 @@ public class SipService extends Service {
 		@Override
 		public void setBluetoothOn(final boolean on) throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeUrgent(new SipRunnable() {
 				@Override
 				protected void doRun() throws SameThreadException {
 					pjService.setBluetoothOn(on);
@@ -448,7 +458,7 @@ public class SipService extends Service {
 		@Override
 		public void setMicrophoneMute(final boolean on) throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeUrgent(new SipRunnable() {
 				@Override
 				protected void doRun() throws SameThreadException {
 					pjService.setMicrophoneMute(on);
@@ -462,7 +472,7 @@ public class SipService extends Service {
 		@Override
 		public void setSpeakerphoneOn(final boolean on) throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeUrgent(new SipRunnable() {
 				@Override
 				protected void doRun() throws SameThreadException {
 					pjService.setSpeakerphoneOn(on);
@@ -489,7 +499,7 @@ public class SipService extends Service {
 		@Override
 		public void confAdjustTxLevel(final int port, final float value) throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeUrgent(new SipRunnable() {
 				@Override
 				protected void doRun() throws SameThreadException {
 					if(pjService == null) {
@@ -506,7 +516,7 @@ public class SipService extends Service {
 		@Override
 		public void confAdjustRxLevel(final int port, final float value) throws RemoteException {
 			SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
-			getExecutor().execute(new SipRunnable() {
+			getExecutor().executeUrgent(new SipRunnable() {
 				@Override
 				protected void doRun() throws SameThreadException {
 					if(pjService == null) {
@@ -575,7 +585,7 @@ public class SipService extends Service {
             if (pjService == null) {
                 return;
             }
-            getExecutor().execute(new SipRunnable() {
+            getExecutor().executeForCall(callId, new SipRunnable() {
                 @Override
                 protected void doRun() throws SameThreadException {
                     pjService.startRecording(callId);
@@ -592,7 +602,7 @@ public class SipService extends Service {
             if (pjService == null) {
                 return;
             }
-            getExecutor().execute(new SipRunnable() {
+            getExecutor().executeForCall(callId, new SipRunnable() {
                 @Override
                 protected void doRun() throws SameThreadException {
                     pjService.stopRecording(callId);
@@ -789,7 +799,7 @@ public class SipService extends Service {
                     return (Long) pjService.getRxTxLevel(port);
                 }
             };
-            getExecutor().execute(action);
+            getExecutor().executeUrgent(action);
             return (Long) action.getResult();
         }
 
@@ -805,7 +815,7 @@ public class SipService extends Service {
         public void updateCallOptions(final int callId, final Bundle options) throws RemoteException {
             // TODO Auto-generated method stub
 
-            getExecutor().execute(new SipRunnable() {
+            getExecutor().executeForCall(callId, new SipRunnable() {
                 @Override
                 protected void doRun() throws SameThreadException {
                     pjService.updateCallOptions(callId, options);
@@ -813,6 +823,74 @@ public class SipService extends Service {
             });
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getCallsVersion() throws RemoteException {
+            SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
+            if(pjService != null) {
+                return pjService.getCallsVersion();
+            }
+            return 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getBuddyPresence(String buddyUri) throws RemoteException {
+            SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
+            BuddyPresence buddyPresence = (presenceMgr != null) ? presenceMgr.getBuddyPresence(buddyUri) : null;
+            if(buddyPresence != null) {
+                return buddyPresence.getStatus().ordinal();
+            }
+            return PresenceStatus.UNKNOWN.ordinal();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getBuddyPresenceStatus(String buddyUri) throws RemoteException {
+            SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
+            BuddyPresence buddyPresence = (presenceMgr != null) ? presenceMgr.getBuddyPresence(buddyUri) : null;
+            if(buddyPresence != null) {
+                return buddyPresence.getStatusText();
+            }
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void registerLevelsListener(ISipLevelsListener listener) throws RemoteException {
+            SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
+            levelMeter.register(listener);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void unregisterLevelsListener(ISipLevelsListener listener) throws RemoteException {
+            SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
+            levelMeter.unregister(listener);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public MediaStreamStats[] getCallStats(int callId) throws RemoteException {
+            SipService.this.enforceCallingOrSelfPermission(SipManager.PERMISSION_USE_SIP, null);
+            if (pjService == null) {
+                return new MediaStreamStats[0];
+            }
+            return pjService.getCallStats(callId);
+        }
+
 
 
 		
@@ -877,20 +955,45 @@ public class SipService extends Service {
 	
 	
 
-	private AccountStatusContentObserver statusObserver = null;
+	private AccountStatusListener statusListener = null;
 
     public PresenceManager presenceMgr;
+    private LevelMeter levelMeter;
 
     private BroadcastReceiver serviceReceiver;
 	
-	class AccountStatusContentObserver extends ContentObserver {
-		public AccountStatusContentObserver(Handler h) {
-			super(h);
-		}
+	/**
+	 * Refresh registrations state when an account status change affects it :
+	 * account added or removed, becoming valid or invalid for calls, or
+	 * infos displayed for a valid account.
+	 */
+	class AccountStatusListener implements OnAccountStatusChangeListener {
+		private final Runnable updateRegistrationsRunnable = new Runnable() {
+			@Override
+			public void run() {
+				updateRegistrationsState();
+			}
+		};
 
-		public void onChange(boolean selfChange) {
-			Log.d(THIS_FILE, "Accounts status.onChange( " + selfChange + ")");
-			updateRegistrationsState();
+		@Override
+		public void onAccountStatusChanged(AccountStatusChange change) {
+			SipProfileState current = change.getCurrent();
+			long bringUpTime = accountsBringUpTime;
+			if(bringUpTime > 0 && current != null && !TextUtils.isEmpty(current.getRegUri())
+					&& current.isValidForCall()) {
+				accountsBringUpTime = 0;
+				Log.i(THIS_FILE, "First registration " + (SystemClock.elapsedRealtime() - bringUpTime)
+						+ " ms after accounts bring up");
+			}
+			boolean needUpdate = change.getPrevious() == null || current == null
+					|| change.isValidForCallChanged()
+					|| (current.isValidForCall() && change.hasChanged(AccountStatusChange.CHANGED_PROFILE));
+			if(needUpdate) {
+				Log.d(THIS_FILE, "Accounts status changed " + change);
+				// Several changes in a row lead to one update
+				serviceHandler.removeCallbacks(updateRegistrationsRunnable);
+				serviceHandler.post(updateRegistrationsRunnable);
+			}
 		}
 	}
 	
@@ -967,6 +1070,7 @@ public class SipService extends Service {
 		Log.d(THIS_FILE, "Service has been setup ? "+ hasSetup);
 		
 		presenceMgr = new PresenceManager();
+		levelMeter = new LevelMeter(this);
         registerServiceBroadcasts();
 		
 		if(!hasSetup) {
@@ -985,11 +1089,12 @@ public class SipService extends Service {
 		unregisterBroadcasts();
 		unregisterServiceBroadcasts();
 		notificationManager.onServiceDestroy();
-		getExecutor().execute(new FinalizeDestroyRunnable());
+		levelMeter.stop();
+		getExecutor().executeBarrier(new FinalizeDestroyRunnable());
 	}
 	
 	public void cleanStop () {
-		getExecutor().execute(new DestroyRunnable());
+		getExecutor().executeBarrier(new DestroyRunnable());
 	}
 	
 	private void applyComponentEnablingState(boolean active) {
@@ -1064,9 +1169,9 @@ public class SipService extends Service {
 					| */PhoneStateListener.LISTEN_CALL_STATE );
 		}
 		// Content observer
-		if(statusObserver == null) {
-        	statusObserver = new AccountStatusContentObserver(serviceHandler);
-    		getContentResolver().registerContentObserver(SipProfile.ACCOUNT_STATUS_URI, true, statusObserver);
+		if(statusListener == null) {
+		    statusListener = new AccountStatusListener();
+		    AccountStatusStore.getInstance().addListener(statusListener);
 		}
 		
 	}
@@ -1094,9 +1199,9 @@ public class SipService extends Service {
 			telephonyManager.listen(phoneConnectivityReceiver, PhoneStateListener.LISTEN_NONE);
 			phoneConnectivityReceiver = null;
 		}
-		if(statusObserver != null) {
-    		getContentResolver().unregisterContentObserver(statusObserver);
-    		statusObserver = null;
+		if(statusListener != null) {
+		    AccountStatusStore.getInstance().removeListener(statusListener);
+		    statusListener = null;
     	}
 		
 	}
@@ -1108,6 +1213,9 @@ public class SipService extends Service {
     @Override
 	public void onStart(Intent intent, int startId) {
 		super.onStart(intent, startId);
+		// Callers may have changed preferences right before starting us, and
+		// the change notification of the provider is asynchronous
+		PreferencesProviderWrapper.invalidateSnapshot();
 		if(intent != null) {
     		Parcelable p = intent.getParcelableExtra(SipManager.EXTRA_OUTGOING_ACTIVITY);
     		if(p != null) {
@@ -1133,7 +1241,7 @@ public class SipService extends Service {
 		
 		//if(directConnect) {
 			Log.d(THIS_FILE, "Direct sip start");
-			getExecutor().execute(new StartRunnable());
+			getExecutor().executeBarrier(new StartRunnable());
 			/*
 		}else {
 			Log.d(THIS_FILE, "Defered SIP start !!");
@@ -1325,26 +1433,30 @@ public class SipService extends Service {
 	
 	private boolean hasSomeActiveAccount = false;
 	/**
-	 * Add accounts from database
+	 * Time accounts were last brought up, 0 once the first registration
+	 * following it succeeded
+	 */
+	private volatile long accountsBringUpTime = 0;
+	
+	/**
+	 * Add accounts from database.<br/>
+	 * All active accounts are added, by order of priority so that first
+	 * accounts of the list register first.
 	 */
 	private void addAllAccounts() throws SameThreadException {
 		Log.d(THIS_FILE, "We are adding all accounts right now....");
 
-		boolean hasSomeSuccess = false;
+		ArrayList<SipProfile> accounts = new ArrayList<SipProfile>();
 		Cursor c = getContentResolver().query(SipProfile.ACCOUNT_URI, DBProvider.ACCOUNT_FULL_PROJECTION, 
-				SipProfile.FIELD_ACTIVE + "=?", new String[] {"1"}, null);
+				SipProfile.FIELD_ACTIVE + "=?", new String[] {"1"}, SipProfile.FIELD_PRIORITY + " ASC");
 		if (c != null) {
 			try {
-				int index = 0;
 				if(c.getCount() > 0) {
     				c.moveToFirst();
+    				SipProfile.CursorBinder binder = new SipProfile.CursorBinder(c);
     				do {
-    					SipProfile account = new SipProfile(c);
-    					if (pjService != null && pjService.addAccount(account) ) {
-    						hasSomeSuccess = true;
-    					}
-    					index ++;
-    				} while (c.moveToNext() && index < 10);
+    					accounts.add(binder.newProfile(c));
+    				} while (c.moveToNext());
 				}
 			} catch (Exception e) {
 				Log.e(THIS_FILE, "Error on looping over sip profiles", e);
@@ -1353,6 +1465,15 @@ public class SipService extends Service {
 			}
 		}
 		
+		boolean hasSomeSuccess = false;
+		if (pjService != null && accounts.size() > 0) {
+			accountsBringUpTime = SystemClock.elapsedRealtime();
+			int added = pjService.addAccounts(accounts);
+			Log.d(THIS_FILE, "Added " + added + " of " + accounts.size() + " accounts in "
+					+ (SystemClock.elapsedRealtime() - accountsBringUpTime) + " ms");
+			hasSomeSuccess = (added > 0);
+		}
+		
 		hasSomeActiveAccount = hasSomeSuccess;
 
 		if (hasSomeSuccess) {
@@ -1390,8 +1511,9 @@ public class SipService extends Service {
 		if (c != null) {
 			try {
 				c.moveToFirst();
+				SipProfile.CursorBinder binder = new SipProfile.CursorBinder(c);
 				do {
-					SipProfile account = new SipProfile(c);
+					SipProfile account = binder.newProfile(c);
 					setAccountRegistration(account, 0, false);
 				} while (c.moveToNext() );
 			} catch (Exception e) {
@@ -1407,6 +1529,18 @@ public class SipService extends Service {
 		}
 	}
 
+	/**
+	 * Renew registrations of all accounts, keeping them in the stack.
+	 * @return true if done, false if the stack is not started
+	 */
+	public boolean reRegisterAllAccounts() throws SameThreadException {
+		if(pjService == null || !pjService.isCreated()) {
+			return false;
+		}
+		pjService.reRegisterAllAccounts();
+		return true;
+	}
+
 	private void reAddAllAccounts() throws SameThreadException {
 		Log.d(THIS_FILE, "RE REGISTER ALL ACCOUNTS");
 		unregisterAllAccounts(false);
@@ -1427,22 +1561,9 @@ public class SipService extends Service {
 	public void updateRegistrationsState() {
 		Log.d(THIS_FILE, "Update registration state");
 		ArrayList<SipProfileState> activeProfilesState = new ArrayList<SipProfileState>();
-		Cursor c = getContentResolver().query(SipProfile.ACCOUNT_STATUS_URI, null, null, null, null);
-		if (c != null) {
-			try {
-				if(c.getCount() > 0) {
-					c.moveToFirst();
-					do {
-						SipProfileState ps = new SipProfileState(c);
-						if(ps.isValidForCall()) {
-							activeProfilesState.add(ps);
-						}
-					} while ( c.moveToNext() );
-				}
-			} catch (Exception e) {
-				Log.e(THIS_FILE, "Error on looping over sip profiles", e);
-			} finally {
-				c.close();
+		for(SipProfileState ps : AccountStatusStore.getInstance().getAll()) {
+			if(ps.isValidForCall()) {
+				activeProfilesState.add(ps);
 			}
 		}
 		
@@ -1519,6 +1640,18 @@ public class SipService extends Service {
         return retVal;
     }
 
+    /**
+     * Sample conference bridge signal levels, from the level meter thread
+     * @param levels the array to fill, see {@link PjSipService#getConfLevels(long[])}
+     * @return the number of samples written
+     */
+    public int getConfLevels(long[] levels) {
+        if(pjService != null) {
+            return pjService.getConfLevels(levels);
+        }
+        return 0;
+    }
+
     /**
      * Remove a buddy from buddies
      * @param buddyUri the sip uri of the buddy to remove
@@ -1663,9 +1796,14 @@ public class SipService extends Service {
         }
 	};
 	
+	/**
+	 * Get an account with all its fields filled.
+	 * Profiles are cached until the account row changes in database so the returned profile must not be modified.
+	 * @param accountId the account id in database
+	 * @return the profile, with {@link SipProfile#INVALID_ID} as id if not found
+	 */
 	public SipProfile getAccount(long accountId) {
-		// TODO : create cache at this point to not requery each time as far as it's a service query
-		return SipProfile.getProfileFromDbId(this, accountId, DBProvider.ACCOUNT_FULL_PROJECTION);
+		return SipProfileCache.getProfile(this, accountId);
 	}
 	
 
@@ -1737,32 +1875,285 @@ public class SipService extends Service {
     
     
 
-    // Executes immediate tasks in a single executorThread.
-    // Hold/release wake lock for running tasks
+    /**
+     * Executor of tasks touching the sip stack.<br/>
+     * All tasks run on the single executor thread, which keeps the
+     * {@link SameThreadException} contract. Pending tasks are spread in lanes :
+     * the next task run is always taken from the most urgent non empty lane,
+     * so that call control is not delayed by bulk work queued before.<br/>
+     * Tasks about one call run in the urgent lane in the order they were
+     * queued, one at a time : while a task of a call is pending, next tasks
+     * of this call wait in the call queue. Calls are hence served round robin.<br/>
+     * Stack life cycle tasks are barriers : they run after all tasks queued
+     * before them, whatever their lane, and no task queued after them, even
+     * urgent, runs before them.
+     */
     public static class SipServiceExecutor extends Handler {
+        /**
+         * Lane of call control tasks
+         */
+        public static final int LANE_URGENT = 0;
+        /**
+         * Lane of other tasks
+         */
+        public static final int LANE_NORMAL = 1;
+        /**
+         * Lane of bulk tasks, run when no other task is pending
+         */
+        public static final int LANE_BULK = 2;
+        private static final int LANES_COUNT = 3;
+        
+        private static final int MSG_RUN_NEXT = 0;
+        private static final int MSG_QUEUE_DELAYED = 1;
+        
+        /**
+         * Wait above which an urgent task is reported
+         */
+        private static final long URGENT_WAIT_WARNING = 500;
+        
+        private static final String[] LANE_NAMES = new String[] {
+            "urgent", "normal", "bulk"
+        };
+        
         WeakReference<SipService> handlerService;
         
+        private final Lane[] lanes = new Lane[LANES_COUNT];
+        /**
+         * Tasks of calls waiting for the previous task of the same call.
+         * A call is present as long as one of its tasks is pending.
+         */
+        private final SparseArray<LinkedList<QueuedTask>> callsQueues = new SparseArray<LinkedList<QueuedTask>>();
+        /**
+         * Pending barrier tasks, in queue order
+         */
+        private final LinkedList<QueuedTask> barriers = new LinkedList<QueuedTask>();
+        private long nextSequence = 0;
+        
         SipServiceExecutor(SipService s) {
             super(createLooper());
             handlerService = new WeakReference<SipService>(s);
+            for(int i = 0; i < LANES_COUNT; i++) {
+                lanes[i] = new Lane();
+            }
         }
 
+        /**
+         * Execute a task in the normal lane.
+         * @param task the task to run
+         */
         public void execute(Runnable task) {
-            SipService s = handlerService.get();
-            if(s != null) {
-                s.sipWakeLock.acquire(task);
+            execute(task, LANE_NORMAL);
+        }
+        
+        /**
+         * Execute a task.
+         * @param task the task to run
+         * @param lane one of LANE_* constants
+         */
+        public void execute(Runnable task, int lane) {
+            acquireWakeLock(task);
+            queue(new QueuedTask(task, lane, SipCallSession.INVALID_CALL_ID));
+        }
+        
+        /**
+         * Execute a stack life cycle task, as start, stop or accounts setup.
+         * It runs in the normal lane once all tasks queued before it have
+         * run, and tasks queued after it wait for it whatever their lane.
+         * @param task the task to run
+         */
+        public void executeBarrier(Runnable task) {
+            acquireWakeLock(task);
+            QueuedTask queuedTask = new QueuedTask(task, LANE_NORMAL, SipCallSession.INVALID_CALL_ID);
+            queuedTask.barrier = true;
+            queue(queuedTask);
+        }
+        
+        /**
+         * Execute a call control task that is not related to one call in particular.
+         * @param task the task to run
+         */
+        public void executeUrgent(Runnable task) {
+            execute(task, LANE_URGENT);
+        }
+        
+        /**
+         * Execute a bulk task, run once no other task is pending.
+         * Long work should be split in several bulk tasks.
+         * @param task the task to run
+         */
+        public void executeBulk(Runnable task) {
+            execute(task, LANE_BULK);
+        }
+        
+        /**
+         * Execute a task about a call. It is run in the urgent lane, after
+         * other tasks of this call queued before.
+         * @param callId the call the task is about
+         * @param task the task to run
+         */
+        public void executeForCall(int callId, Runnable task) {
+            if(callId == SipCallSession.INVALID_CALL_ID) {
+                executeUrgent(task);
+                return;
+            }
+            acquireWakeLock(task);
+            queueForCall(callId, task);
+        }
+
+        /**
+         * Execute a task after a delay, in the normal lane. 
+         * The wake lock is held while the task is pending.
+         * @param task the task to run, must not be already pending
+         * @param delayMillis delay before running the task
+         */
+        public void executeDelayed(Runnable task, long delayMillis) {
+            acquireWakeLock(task);
+            sendMessageDelayed(Message.obtain(this, MSG_QUEUE_DELAYED, SipCallSession.INVALID_CALL_ID, 0, task), delayMillis);
+        }
+        
+        /**
+         * Execute a task about a call after a delay. When the delay expires the
+         * task is queued as with {@link #executeForCall(int, Runnable)}.
+         * The wake lock is held while the task is pending.
+         * @param callId the call the task is about
+         * @param task the task to run, must not be already pending
+         * @param delayMillis delay before running the task
+         */
+        public void executeForCallDelayed(int callId, Runnable task, long delayMillis) {
+            acquireWakeLock(task);
+            sendMessageDelayed(Message.obtain(this, MSG_QUEUE_DELAYED, callId, 0, task), delayMillis);
+        }
+        
+        /**
+         * Cancel a delayed task whose delay has not yet expired.
+         * A task already queued for execution is not cancelled.
+         * @param task the task passed to executeDelayed or executeForCallDelayed
+         */
+        public void cancelDelayed(Runnable task) {
+            if(hasMessages(MSG_QUEUE_DELAYED, task)) {
+                removeMessages(MSG_QUEUE_DELAYED, task);
+                SipService s = handlerService.get();
+                if(s != null) {
+                    s.sipWakeLock.release(task);
+                }
+            }
+        }
+        
+        private void queueForCall(int callId, Runnable task) {
+            QueuedTask queuedTask = new QueuedTask(task, LANE_URGENT, callId);
+            synchronized (lanes) {
+                LinkedList<QueuedTask> callQueue = callsQueues.get(callId);
+                if(callQueue != null) {
+                    callQueue.add(queuedTask);
+                    return;
+                }
+                callsQueues.put(callId, new LinkedList<QueuedTask>());
+            }
+            queue(queuedTask);
+        }
+        
+        /**
+         * Get metrics of a lane.
+         * @param lane one of LANE_* constants
+         * @return a snapshot of the lane metrics
+         */
+        public QueueStats getQueueStats(int lane) {
+            synchronized (lanes) {
+                return new QueueStats(LANE_NAMES[lane], lanes[lane]);
             }
-            Message.obtain(this, 0/* don't care */, task).sendToTarget();
         }
 
         @Override
         public void handleMessage(Message msg) {
-	        if (msg.obj instanceof Runnable) {
-                executeInternal((Runnable) msg.obj);
+            if(msg.what == MSG_RUN_NEXT) {
+                runNext();
+            } else if (msg.what == MSG_QUEUE_DELAYED && msg.obj instanceof Runnable) {
+                // Wake lock is already held since the task was scheduled
+                if(msg.arg1 == SipCallSession.INVALID_CALL_ID) {
+                    queue(new QueuedTask((Runnable) msg.obj, LANE_NORMAL, SipCallSession.INVALID_CALL_ID));
+                } else {
+                    queueForCall(msg.arg1, (Runnable) msg.obj);
+                }
             } else {
                 Log.w(THIS_FILE, "can't handle msg: " + msg);
             }
         }
+        
+        private void acquireWakeLock(Runnable task) {
+            SipService s = handlerService.get();
+            if(s != null) {
+                s.sipWakeLock.acquire(task);
+            }
+        }
+        
+        private void queue(QueuedTask queuedTask) {
+            synchronized (lanes) {
+                queuedTask.sequence = nextSequence++;
+                lanes[queuedTask.lane].add(queuedTask);
+                if(queuedTask.barrier) {
+                    barriers.add(queuedTask);
+                }
+            }
+            // One message per queued task, each one runs the most urgent pending task
+            sendEmptyMessage(MSG_RUN_NEXT);
+        }
+        
+        private void runNext() {
+            QueuedTask queuedTask = null;
+            long wait = 0;
+            synchronized (lanes) {
+                QueuedTask barrier = barriers.isEmpty() ? null : barriers.getFirst();
+                Lane fromLane = null;
+                for(Lane lane : lanes) {
+                    if(!lane.tasks.isEmpty()
+                            && (barrier == null || lane.tasks.getFirst().sequence < barrier.sequence)) {
+                        fromLane = lane;
+                        break;
+                    }
+                }
+                if(fromLane == null && barrier != null) {
+                    // All tasks queued before the barrier have run, so it is
+                    // now first of its lane
+                    fromLane = lanes[barrier.lane];
+                    barriers.removeFirst();
+                }
+                if(fromLane != null) {
+                    queuedTask = fromLane.tasks.removeFirst();
+                    wait = SystemClock.uptimeMillis() - queuedTask.queueTime;
+                    fromLane.onDequeued(wait);
+                }
+            }
+            if(queuedTask == null) {
+                return;
+            }
+            if(queuedTask.lane == LANE_URGENT && wait > URGENT_WAIT_WARNING) {
+                Log.w(THIS_FILE, "Urgent task waited " + wait + " ms : " + getQueueStats(LANE_URGENT));
+            }
+            try {
+                executeInternal(queuedTask.task);
+            } finally {
+                if(queuedTask.callId != SipCallSession.INVALID_CALL_ID) {
+                    onCallTaskDone(queuedTask.callId);
+                }
+            }
+        }
+        
+        private void onCallTaskDone(int callId) {
+            QueuedTask nextTask = null;
+            synchronized (lanes) {
+                LinkedList<QueuedTask> callQueue = callsQueues.get(callId);
+                if(callQueue == null || callQueue.isEmpty()) {
+                    callsQueues.remove(callId);
+                } else {
+                    nextTask = callQueue.removeFirst();
+                }
+            }
+            if(nextTask != null) {
+                // Queued at the end of lane, after other calls tasks
+                nextTask.queueTime = SystemClock.uptimeMillis();
+                queue(nextTask);
+            }
+        }
 
         private void executeInternal(Runnable task) {
             try {
@@ -1777,6 +2168,106 @@ public class SipService extends Service {
                 }
             }
         }
+        
+        private static final class QueuedTask {
+            final Runnable task;
+            final int lane;
+            final int callId;
+            long queueTime;
+            /**
+             * Order in which the task was queued in its lane
+             */
+            long sequence;
+            boolean barrier = false;
+            
+            QueuedTask(Runnable aTask, int aLane, int aCallId) {
+                task = aTask;
+                lane = aLane;
+                callId = aCallId;
+                queueTime = SystemClock.uptimeMillis();
+            }
+        }
+        
+        private static final class Lane {
+            final LinkedList<QueuedTask> tasks = new LinkedList<QueuedTask>();
+            int maxDepth = 0;
+            long executed = 0;
+            long totalWait = 0;
+            long maxWait = 0;
+            
+            void add(QueuedTask queuedTask) {
+                tasks.add(queuedTask);
+                maxDepth = Math.max(maxDepth, tasks.size());
+            }
+            
+            void onDequeued(long wait) {
+                executed ++;
+                totalWait += wait;
+                maxWait = Math.max(maxWait, wait);
+            }
+        }
+        
+        /**
+         * Metrics of an executor lane.
+         */
+        public static final class QueueStats {
+            private final String name;
+            private final int depth;
+            private final int maxDepth;
+            private final long executed;
+            private final long totalWait;
+            private final long maxWait;
+            
+            private QueueStats(String aName, Lane lane) {
+                name = aName;
+                depth = lane.tasks.size();
+                maxDepth = lane.maxDepth;
+                executed = lane.executed;
+                totalWait = lane.totalWait;
+                maxWait = lane.maxWait;
+            }
+            
+            /**
+             * @return number of tasks currently pending
+             */
+            public int getDepth() {
+                return depth;
+            }
+            
+            /**
+             * @return highest number of tasks pending at once
+             */
+            public int getMaxDepth() {
+                return maxDepth;
+            }
+            
+            /**
+             * @return number of tasks run
+             */
+            public long getExecutedCount() {
+                return executed;
+            }
+            
+            /**
+             * @return average wait in ms of tasks run, between queue and run
+             */
+            public long getAverageWait() {
+                return executed > 0 ? totalWait / executed : 0;
+            }
+            
+            /**
+             * @return longest wait in ms of tasks run
+             */
+            public long getMaxWait() {
+                return maxWait;
+            }
+            
+            @Override
+            public String toString() {
+                return name + " lane : depth " + depth + " (max " + maxDepth + "), "
+                        + executed + " run, wait " + getAverageWait() + " ms (max " + maxWait + " ms)";
+            }
+        }
     }
 	
     
@@ -1847,6 +2338,11 @@ public class SipService extends Service {
 		@Override
 		protected void doRun() throws SameThreadException {
 			
+			if(mExecutor != null) {
+				Log.d(THIS_FILE, "Executor " + mExecutor.getQueueStats(SipServiceExecutor.LANE_URGENT));
+				Log.d(THIS_FILE, "Executor " + mExecutor.getQueueStats(SipServiceExecutor.LANE_NORMAL));
+				Log.d(THIS_FILE, "Executor " + mExecutor.getQueueStats(SipServiceExecutor.LANE_BULK));
+			}
 			mExecutor = null;
 			
 			Log.d(THIS_FILE, "Destroy sip stack");
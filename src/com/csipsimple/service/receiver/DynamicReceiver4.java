@@ -26,6 +26,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.SystemClock;
 
 import com.csipsimple.api.SipConfigManager;
 import com.csipsimple.api.SipManager;
@@ -35,14 +36,6 @@ import com.csipsimple.service.SipService.SameThreadException;
 import com.csipsimple.service.SipService.SipRunnable;
 import com.csipsimple.utils.Log;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
-
 public class DynamicReceiver4 extends BroadcastReceiver {
 
     private static final String THIS_FILE = "DynamicReceiver";
@@ -59,13 +52,65 @@ public class DynamicReceiver4 extends BroadcastReceiver {
     
     // Store current state
     private String mNetworkType;
-    private boolean mConnected = false;
-    private String mRoutes = "";
+    private volatile RouteTable mRoutes = RouteTable.EMPTY;
+    /**
+     * Network state the sip stack was last set up for
+     */
+    private NetworkState appliedState;
+    
+    /**
+     * Max time a network transition can be postponed by new network events
+     */
+    private static final long MAX_TRANSITION_DELAY_FACTOR = 4;
+    private volatile boolean monitoring = false;
+    private boolean transitionPending = false;
+    private long transitionFirstEventTime = 0;
+    private long transitionDeadline = 0;
+    
+    // Counters
+    private int networkEventsCount = 0;
+    private int coalescedEventsCount = 0;
+    private int restartsCount = 0;
+    private int reRegistrationsCount = 0;
+    private int avoidedRestartsCount = 0;
     
     private boolean hasStartedWifi = false;
 
 
-    private Timer pollingTimer;
+    /**
+     * Shortest interval between two checks of routes, used after a network change
+     */
+    private static final long MIN_ROUTES_POLLING_INTERVAL = 15 * 1000;
+    private long maxRoutesPollingInterval = 0;
+    private long routesPollingInterval = 0;
+    
+    /**
+     * Check routes, less and less often while they don't change.
+     * It runs on sip executor looper without wake lock. Delays are counted in
+     * uptime, so no check is done while the device sleeps.
+     */
+    private final Runnable routesPollingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if(!monitoring) {
+                return;
+            }
+            RouteTable currentRoutes = RouteTable.read();
+            if(!currentRoutes.equals(mRoutes)) {
+                Log.d(THIS_FILE, "Route changed : " + mRoutes + " -> " + currentRoutes);
+                // Run the handler in SipServiceExecutor to be protected by wake lock
+                service.getExecutor().executeBarrier(new SipRunnable()  {
+                    public void doRun() throws SameThreadException {
+                        onConnectivityChanged(null, false);
+                    }
+                });
+                routesPollingInterval = MIN_ROUTES_POLLING_INTERVAL;
+            } else {
+                routesPollingInterval = Math.min(routesPollingInterval * 2, maxRoutesPollingInterval);
+            }
+            service.getExecutor().postDelayed(this, routesPollingInterval);
+        }
+    };
 
     
     /**
@@ -91,7 +136,7 @@ public class DynamicReceiver4 extends BroadcastReceiver {
     @Override
     public void onReceive(final Context context, final Intent intent) {
         // Run the handler in SipServiceExecutor to be protected by wake lock
-        service.getExecutor().execute(new SipRunnable()  {
+        service.getExecutor().executeBarrier(new SipRunnable()  {
             public void doRun() throws SameThreadException {
                 onReceiveInternal(context, intent, compatIsInitialStickyBroadcast(intent));
             }
@@ -134,44 +179,74 @@ public class DynamicReceiver4 extends BroadcastReceiver {
     }
     
 
-    private static final String PROC_NET_ROUTE = "/proc/net/route";
-    private String dumpRoutes() {
-        String routes = "";
-        FileReader fr = null;
-        try {
-            fr = new FileReader(PROC_NET_ROUTE);
-            if(fr != null) {
-                StringBuffer contentBuf = new StringBuffer();
-                BufferedReader buf = new BufferedReader(fr);
-                String line;
-                while ((line = buf.readLine()) != null) {
-                    contentBuf.append(line);
-                }
-                routes = contentBuf.toString();
-            }
-        } catch (FileNotFoundException e) {
-            Log.e(THIS_FILE, "No route file found routes", e);
-        } catch (IOException e) {
-            Log.e(THIS_FILE, "Unable to read route file", e);
-        }finally {
-            try {
-                fr.close();
-            } catch (IOException e) {
-                Log.e(THIS_FILE, "Unable to close route file", e);
-            }
+    /**
+     * Treat the fact that the connectivity has changed.<br/>
+     * Changes are not applied right now. Events received during the network
+     * change debounce window are coalesced and only the network state at the
+     * end of the window is applied.
+     * @param info Network info
+     * @param isSticky whether this is the initial sticky broadcast, that only gives current state
+     * @throws SameThreadException
+     */
+    private void onConnectivityChanged(NetworkInfo info, boolean isSticky) throws SameThreadException {
+        NetworkState currentState = captureNetworkState(info);
+        restartRoutesPolling();
+        
+        if(isSticky || appliedState == null) {
+            Log.d(THIS_FILE, "Initial network state " + currentState);
+            appliedState = currentState;
+            return;
+        }
+        
+        networkEventsCount ++;
+        // Ignore the event if the network is not changed.
+        if (!transitionPending && currentState.equals(appliedState)) {
+            return;
         }
         
-        return routes;
+        long now = SystemClock.elapsedRealtime();
+        long window = service.getPrefs().getPreferenceIntegerValue(SipConfigManager.NETWORK_CHANGE_DEBOUNCE);
+        transitionDeadline = now + window;
+        if(transitionPending) {
+            coalescedEventsCount ++;
+            return;
+        }
+        transitionPending = true;
+        transitionFirstEventTime = now;
+        scheduleTransition(window);
+    }
+    
+    private void scheduleTransition(long delay) {
+        // Use a new runnable each time since it holds the wake lock while pending
+        service.getExecutor().executeDelayed(new SipRunnable() {
+            @Override
+            protected void doRun() throws SameThreadException {
+                onTransitionTimeout();
+            }
+        }, delay);
+    }
+    
+    private void onTransitionTimeout() throws SameThreadException {
+        if(!monitoring) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        long window = service.getPrefs().getPreferenceIntegerValue(SipConfigManager.NETWORK_CHANGE_DEBOUNCE);
+        if(now < transitionDeadline 
+                && now - transitionFirstEventTime < window * MAX_TRANSITION_DELAY_FACTOR) {
+            // Network still changing, wait for it to settle
+            scheduleTransition(transitionDeadline - now);
+            return;
+        }
+        transitionPending = false;
+        applyNetworkState(captureNetworkState(null));
     }
-
     
     /**
-     * Treat the fact that the connectivity has changed
-     * @param info Network info
-     * @param incomingOnly start only if for outgoing 
-     * @throws SameThreadException
+     * Get the current state of the network.
+     * @param info Network info received, null to use active network
      */
-    private void onConnectivityChanged(NetworkInfo info, boolean isSticky) throws SameThreadException {
+    private NetworkState captureNetworkState(NetworkInfo info) {
         // We only care about the default network, and getActiveNetworkInfo()
         // is the only way to distinguish them. However, as broadcasts are
         // delivered asynchronously, we might miss DISCONNECTED events from
@@ -186,78 +261,95 @@ public class DynamicReceiver4 extends BroadcastReceiver {
 
         boolean connected = (info != null && info.isConnected() && service.isConnectivityValid());
         String networkType = connected ? info.getTypeName() : "null";
-        String currentRoutes = dumpRoutes();
-        String oldRoutes;
-        synchronized (mRoutes) {
-            oldRoutes = mRoutes;
-        }
-        
-        // Ignore the event if the current active network is not changed.
-        if (connected == mConnected && networkType.equals(mNetworkType) && currentRoutes.equals(oldRoutes)) {
+        RouteTable currentRoutes = RouteTable.read();
+        mRoutes = currentRoutes;
+        mNetworkType = networkType;
+        return NetworkState.capture(connected, networkType, currentRoutes);
+    }
+    
+    /**
+     * Adapt the sip stack to a new network state, doing as little as possible.
+     * <ul>
+     * <li>Not connected : stop the stack</li>
+     * <li>Active network, interfaces or addresses the stack may bind to
+     * changed : restart the stack, as transports can't be bound again to
+     * other addresses</li>
+     * <li>Only routes or unused addresses changed : register again</li>
+     * </ul>
+     * Temporary IPv6 addresses are never part of the state, and other IPv6
+     * addresses only count when IPv6 is enabled.
+     * @param newState the network state to apply
+     * @throws SameThreadException
+     */
+    private void applyNetworkState(NetworkState newState) throws SameThreadException {
+        NetworkState oldState = appliedState;
+        if(newState.equals(oldState)) {
+            Log.d(THIS_FILE, "Network back to " + newState + ", nothing to do");
+            avoidedRestartsCount ++;
+            logCounters();
             return;
         }
-        if(Log.getLogLevel() >= 4) {
-            if(!networkType.equals(mNetworkType)) {
-                Log.d(THIS_FILE, "onConnectivityChanged(): " + mNetworkType +
-                            " -> " + networkType);
-            }else {
-                Log.d(THIS_FILE, "Route changed : "+ mRoutes+" -> "+currentRoutes);
+        Log.d(THIS_FILE, "Network changed : " + oldState + " -> " + newState);
+        appliedState = newState;
+        
+        if(!newState.connected) {
+            Log.d(THIS_FILE, "We are not connected, stop");
+            if(service.stopSipStack()) {
+                service.stopSelf();
             }
+            logCounters();
+            return;
         }
-        // Now process the event
-        synchronized (mRoutes) {
-            mRoutes = currentRoutes;
-        }
-        mConnected = connected;
-        mNetworkType = networkType;
-
-        if(!isSticky) {
-            if (connected) {
-                service.restartSipStack();
-            } else {
-                Log.d(THIS_FILE, "We are not connected, stop");
-                if(service.stopSipStack()) {
-                    service.stopSelf();
-                }
-            }
+        
+        if(newState.hasSameInterfaces(oldState)
+                && newState.hasSameStackAddresses(oldState, service.getPrefs().useIPv6())
+                && service.reRegisterAllAccounts()) {
+            // Transports are still bound to valid addresses
+            reRegistrationsCount ++;
+            avoidedRestartsCount ++;
+        } else {
+            restartsCount ++;
+            service.restartSipStack();
         }
+        logCounters();
     }
     
+    /**
+     * Log network changes counters, once per applied transition.
+     */
+    private void logCounters() {
+        Log.i(THIS_FILE, "Network events : " + networkEventsCount
+                + ", coalesced : " + coalescedEventsCount
+                + ", restarts : " + restartsCount
+                + ", re-registrations : " + reRegistrationsCount
+                + ", avoided restarts : " + avoidedRestartsCount);
+    }
     
+    /**
+     * Check routes soon again, as other changes may follow a network change.
+     */
+    private void restartRoutesPolling() {
+        if(monitoring && maxRoutesPollingInterval > 0) {
+            routesPollingInterval = MIN_ROUTES_POLLING_INTERVAL;
+            service.getExecutor().removeCallbacks(routesPollingRunnable);
+            service.getExecutor().postDelayed(routesPollingRunnable, routesPollingInterval);
+        }
+    }
     
     public void startMonitoring() {
+        monitoring = true;
         int pollingIntervalMin = service.getPrefs().getPreferenceIntegerValue(SipConfigManager.NETWORK_ROUTES_POLLING);
 
         Log.d(THIS_FILE, "Start monitoring of route file ? " + pollingIntervalMin);
         if(pollingIntervalMin > 0) {
-            pollingTimer = new Timer("RouteChangeMonitor", true);
-            pollingTimer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    String currentRoutes = dumpRoutes();
-                    String oldRoutes;
-                    synchronized (mRoutes) {
-                        oldRoutes = mRoutes;
-                    }
-                    if(!currentRoutes.equalsIgnoreCase(oldRoutes)) {
-                        Log.d(THIS_FILE, "Route changed");
-                        // Run the handler in SipServiceExecutor to be protected by wake lock
-                        service.getExecutor().execute(new SipRunnable()  {
-                            public void doRun() throws SameThreadException {
-                                onConnectivityChanged(null, false);
-                            }
-                        });
-                    }
-                }
-            }, new Date(), pollingIntervalMin * 60 * 1000);
+            maxRoutesPollingInterval = Math.max(pollingIntervalMin * 60 * 1000L, MIN_ROUTES_POLLING_INTERVAL);
+            restartRoutesPolling();
         }
     }
     
     public void stopMonitoring() {
-        if(pollingTimer != null) {
-            pollingTimer.cancel();
-            pollingTimer.purge();
-            pollingTimer = null;
-        }
+        monitoring = false;
+        maxRoutesPollingInterval = 0;
+        service.getExecutor().removeCallbacks(routesPollingRunnable);
     }
 }
@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.service.receiver;
+
+import com.csipsimple.utils.Log;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable snapshot of the network as seen by the sip stack : active network,
+ * network interfaces with their addresses and routes.<br/>
+ * Temporary IPv6 addresses are not part of the state : they are rotated
+ * regularly for privacy and the stack never binds to them.
+ */
+final class NetworkState {
+
+    private static final String THIS_FILE = "NetworkState";
+
+    private static final String PROC_NET_IF_INET6 = "/proc/net/if_inet6";
+    // Columns of IPv6 addresses file
+    private static final int COL_ADDRESS = 0;
+    private static final int COL_FLAGS = 4;
+    /**
+     * Temporary address flag, see linux/if_addr.h
+     */
+    private static final int IFA_F_TEMPORARY = 0x01;
+
+    final boolean connected;
+    final String networkType;
+    /**
+     * Names of interfaces having at least one usable address
+     */
+    final Set<String> interfaces;
+    /**
+     * Usable IPv4 addresses of all interfaces
+     */
+    final Set<String> ipv4Addresses;
+    /**
+     * Usable IPv6 addresses of all interfaces, temporary ones excluded
+     */
+    final Set<String> ipv6Addresses;
+    final RouteTable routes;
+
+    private NetworkState(boolean aConnected, String aNetworkType, Set<String> aInterfaces,
+            Set<String> aIpv4Addresses, Set<String> aIpv6Addresses, RouteTable aRoutes) {
+        connected = aConnected;
+        networkType = aNetworkType;
+        interfaces = aInterfaces;
+        ipv4Addresses = aIpv4Addresses;
+        ipv6Addresses = aIpv6Addresses;
+        routes = aRoutes;
+    }
+
+    /**
+     * Capture current network state.
+     *
+     * @param connected whether the active network is connected and valid for sip
+     * @param networkType the type name of the active network
+     * @param routes the current routes
+     * @return the network state
+     */
+    static NetworkState capture(boolean connected, String networkType, RouteTable routes) {
+        Set<String> interfaces = new TreeSet<String>();
+        Set<String> ipv4Addresses = new TreeSet<String>();
+        Set<String> ipv6Addresses = new TreeSet<String>();
+        if (connected) {
+            Set<String> temporaryAddresses = readTemporaryIpv6Addresses();
+            try {
+                Enumeration<NetworkInterface> nis = NetworkInterface.getNetworkInterfaces();
+                while (nis != null && nis.hasMoreElements()) {
+                    NetworkInterface ni = nis.nextElement();
+                    Enumeration<InetAddress> ias = ni.getInetAddresses();
+                    while (ias.hasMoreElements()) {
+                        InetAddress ia = ias.nextElement();
+                        if (ia.isLoopbackAddress() || ia.isLinkLocalAddress()) {
+                            continue;
+                        }
+                        if (ia instanceof Inet4Address) {
+                            ipv4Addresses.add(ia.getHostAddress());
+                        } else if (ia instanceof Inet6Address
+                                && !temporaryAddresses.contains(toHex(ia.getAddress()))) {
+                            ipv6Addresses.add(ia.getHostAddress());
+                        } else {
+                            continue;
+                        }
+                        interfaces.add(ni.getName());
+                    }
+                }
+            } catch (SocketException e) {
+                Log.e(THIS_FILE, "Unable to list network interfaces", e);
+            }
+        }
+        return new NetworkState(connected, networkType, interfaces, ipv4Addresses,
+                ipv6Addresses, routes);
+    }
+
+    /**
+     * Read temporary IPv6 addresses from the kernel, as java does not tell
+     * them apart.
+     *
+     * @return the addresses as 32 lower case hex digits, empty if not readable
+     */
+    private static Set<String> readTemporaryIpv6Addresses() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(PROC_NET_IF_INET6), 1024);
+            Set<String> addresses = new HashSet<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cols = line.trim().split("\\s+");
+                if (cols.length <= COL_FLAGS) {
+                    continue;
+                }
+                try {
+                    if ((Integer.parseInt(cols[COL_FLAGS], 16) & IFA_F_TEMPORARY) != 0) {
+                        addresses.add(cols[COL_ADDRESS].toLowerCase());
+                    }
+                } catch (NumberFormatException e) {
+                    // Not an address line
+                }
+            }
+            return addresses;
+        } catch (FileNotFoundException e) {
+            // No IPv6 in kernel
+        } catch (IOException e) {
+            Log.e(THIS_FILE, "Unable to read IPv6 addresses", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param other the state to compare to
+     * @return true if active network and its interfaces are the same, so
+     *         that transports can be kept
+     */
+    boolean hasSameInterfaces(NetworkState other) {
+        return connected == other.connected && networkType.equals(other.networkType)
+                && interfaces.equals(other.interfaces);
+    }
+
+    /**
+     * @param other the state to compare to
+     * @param withIpv6 whether IPv6 addresses are used by the stack
+     * @return true if addresses the stack may bind to are the same
+     */
+    boolean hasSameStackAddresses(NetworkState other, boolean withIpv6) {
+        return ipv4Addresses.equals(other.ipv4Addresses)
+                && (!withIpv6 || ipv6Addresses.equals(other.ipv6Addresses));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof NetworkState)) {
+            return false;
+        }
+        NetworkState other = (NetworkState) o;
+        return hasSameInterfaces(other) && hasSameStackAddresses(other, true)
+                && routes.equals(other.routes);
+    }
+
+    @Override
+    public int hashCode() {
+        return networkType.hashCode() ^ ipv4Addresses.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return networkType + (connected ? " " : " (disconnected) ") + ipv4Addresses
+                + ipv6Addresses;
+    }
+}
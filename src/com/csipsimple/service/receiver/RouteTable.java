@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.service.receiver;
+
+import android.text.TextUtils;
+
+import com.csipsimple.utils.Log;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Parsed content of the kernel routing table.<br/>
+ * Only what matters for the sip stack is kept : the default route and the
+ * set of interfaces having routes up. Other changes of the table, like
+ * usage counters, are ignored.
+ */
+final class RouteTable {
+
+    private static final String THIS_FILE = "RouteTable";
+
+    private static final String PROC_NET_ROUTE = "/proc/net/route";
+
+    // Columns of route file
+    private static final int COL_IFACE = 0;
+    private static final int COL_DESTINATION = 1;
+    private static final int COL_GATEWAY = 2;
+    private static final int COL_FLAGS = 3;
+    private static final int COL_MASK = 7;
+
+    /**
+     * Route is usable flag, see linux/route.h
+     */
+    private static final int RTF_UP = 0x0001;
+
+    private static final String ANY_ADDRESS = "00000000";
+
+    static final RouteTable EMPTY = new RouteTable(null, null, Collections.<String> emptySet());
+
+    final String defaultInterface;
+    final String defaultGateway;
+    final Set<String> interfaces;
+
+    private RouteTable(String aDefaultInterface, String aDefaultGateway, Set<String> aInterfaces) {
+        defaultInterface = aDefaultInterface;
+        defaultGateway = aDefaultGateway;
+        interfaces = aInterfaces;
+    }
+
+    /**
+     * Read the current routing table.
+     *
+     * @return the parsed table, {@link #EMPTY} if not readable
+     */
+    static RouteTable read() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(PROC_NET_ROUTE), 1024);
+            // Skip header line
+            String line = reader.readLine();
+            String defaultInterface = null;
+            String defaultGateway = null;
+            Set<String> interfaces = new TreeSet<String>();
+            while ((line = reader.readLine()) != null) {
+                String[] cols = line.trim().split("\\s+");
+                if (cols.length <= COL_MASK) {
+                    continue;
+                }
+                int flags;
+                try {
+                    flags = Integer.parseInt(cols[COL_FLAGS], 16);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if ((flags & RTF_UP) == 0) {
+                    continue;
+                }
+                interfaces.add(cols[COL_IFACE]);
+                if (defaultInterface == null && ANY_ADDRESS.equals(cols[COL_DESTINATION])
+                        && ANY_ADDRESS.equals(cols[COL_MASK])) {
+                    defaultInterface = cols[COL_IFACE];
+                    defaultGateway = cols[COL_GATEWAY];
+                }
+            }
+            return new RouteTable(defaultInterface, defaultGateway, interfaces);
+        } catch (FileNotFoundException e) {
+            Log.e(THIS_FILE, "No route file found routes", e);
+        } catch (IOException e) {
+            Log.e(THIS_FILE, "Unable to read route file", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Log.e(THIS_FILE, "Unable to close route file", e);
+                }
+            }
+        }
+        return EMPTY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RouteTable)) {
+            return false;
+        }
+        RouteTable other = (RouteTable) o;
+        return TextUtils.equals(defaultInterface, other.defaultInterface)
+                && TextUtils.equals(defaultGateway, other.defaultGateway)
+                && interfaces.equals(other.interfaces);
+    }
+
+    @Override
+    public int hashCode() {
+        return interfaces.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "default " + defaultInterface + " via " + defaultGateway + ", interfaces " + interfaces;
+    }
+}
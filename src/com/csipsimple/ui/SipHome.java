@@ -540,8 +540,9 @@ public class SipHome extends SherlockFragmentActivity implements
 	        List<HashMap<String, String>> accountData = new LinkedList<HashMap<String, String>>();
 	        if (c != null) {
 	            try {
+	                SipProfile.CursorBinder binder = new SipProfile.CursorBinder(c);
 	                while (c.moveToNext()) {
-	                    SipProfile account = new SipProfile(c);
+	                    SipProfile account = binder.newProfile(c);
 	                    Map<String, String> map = new HashMap<String, String>();
 	                    map.put("displayName", account.display_name);
 	                    map.put("accountId", account.acc_id);
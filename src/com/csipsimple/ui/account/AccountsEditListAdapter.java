@@ -64,6 +64,13 @@ public class AccountsEditListAdapter extends SimpleCursorAdapter implements OnCl
 
     private static final String THIS_FILE = "AccEditListAd";
 
+    /**
+     * Binder of the current cursor, so that column indexes are not resolved
+     * again for each row
+     */
+    private SipProfile.CursorBinder profileBinder = null;
+    private Cursor profileBinderCursor = null;
+
     public AccountsEditListAdapter(Context context, Cursor c) {
         super(context,
                 R.layout.accounts_edit_list_item, c,
@@ -79,6 +86,20 @@ public class AccountsEditListAdapter extends SimpleCursorAdapter implements OnCl
         checkListener = l;
     }
 
+    /**
+     * Get the profile of the current row of a cursor of this adapter.
+     * 
+     * @param cursor the cursor, on the row to read
+     * @return the profile of the row
+     */
+    public SipProfile getProfile(Cursor cursor) {
+        if (profileBinder == null || profileBinderCursor != cursor) {
+            profileBinder = new SipProfile.CursorBinder(cursor);
+            profileBinderCursor = cursor;
+        }
+        return profileBinder.newProfile(cursor);
+    }
+
     private AccountListItemViews tagRowView(View view) {
         AccountListItemViews tagView = new AccountListItemViews();
         tagView.labelView = (TextView) view.findViewById(R.id.AccTextView);
@@ -105,7 +126,7 @@ public class AccountsEditListAdapter extends SimpleCursorAdapter implements OnCl
         }
 
         // Get the view object and account object for the row
-        final SipProfile account = new SipProfile(cursor);
+        final SipProfile account = getProfile(cursor);
         AccountRowTag tagIndicator = new AccountRowTag();
         tagIndicator.accountId = account.id;
         tagIndicator.activated = account.active;
@@ -486,12 +486,12 @@ public class AccountsEditListFragment extends CSSListFragment implements /*OnQui
             Log.e(THIS_FILE, "bad menuInfo", e);
             return null;
         }
-        Cursor c = (Cursor) getListAdapter().getItem(info.position - getListView().getHeaderViewsCount());
+        Cursor c = (Cursor) mAdapter.getItem(info.position - getListView().getHeaderViewsCount());
         if (c == null) {
             // For some reason the requested item isn't available, do nothing
             return null;
         }
-        return new SipProfile(c);
+        return mAdapter.getProfile(c);
     }
     
 	@Override
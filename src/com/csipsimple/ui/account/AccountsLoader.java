@@ -32,6 +32,7 @@ import android.text.TextUtils;
 
 import com.csipsimple.api.SipProfile;
 import com.csipsimple.models.Filter;
+import com.csipsimple.models.Filter.ProcessedNumber;
 import com.csipsimple.utils.AccountListUtils;
 import com.csipsimple.utils.AccountListUtils.AccountStatusDisplay;
 import com.csipsimple.utils.CallHandlerPlugin;
@@ -148,8 +149,9 @@ public class AccountsLoader extends AsyncTaskLoader<Cursor> {
             // Note that we keep processing external call handlers voluntarily cause we may encounter a sip account that doesn't register
             // But is in force call mode
             for(SipProfile acc : accounts) {
-                if(Filter.isCallableNumber(getContext(), acc.id, numberToCall)) {
-                    boolean forceCall = Filter.isMustCallNumber(getContext(), acc.id, numberToCall);
+                ProcessedNumber processed = Filter.processNumber(getContext(), acc.id, numberToCall);
+                if(processed.canCall) {
+                    boolean forceCall = processed.mustCall;
                     prefinalAccounts.add(new FilteredProfile(acc, forceCall));
                     if(forceCall) {
                         break;
@@ -158,8 +160,9 @@ public class AccountsLoader extends AsyncTaskLoader<Cursor> {
             }
             for(Entry<String, String> extEnt : externalHandlers.entrySet() ) {
                 long accId = CallHandlerPlugin.getAccountIdForCallHandler(getContext(), extEnt.getKey());
-                if(Filter.isCallableNumber(getContext(), accId, numberToCall)) {
-                    boolean forceCall = Filter.isMustCallNumber(getContext(), accId, numberToCall);
+                ProcessedNumber processed = Filter.processNumber(getContext(), accId, numberToCall);
+                if(processed.canCall) {
+                    boolean forceCall = processed.mustCall;
                     prefinalAccounts.add(new FilteredProfile(extEnt.getKey(), forceCall));
                     if(forceCall) {
                         break;
@@ -50,6 +50,18 @@ public class DialerAutocompleteDetailsFragment extends SherlockListFragment {
         proposeRestoreFromBundle(getArguments());
     }
     
+    @Override
+    public void onResume() {
+        super.onResume();
+        autoCompleteAdapter.onResume();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        autoCompleteAdapter.onPause();
+    }
+    
     private void proposeRestoreFromBundle(Bundle b) {
         if(b != null && b.containsKey(EXTRA_FILTER_CONSTRAINT)) {
             filter(b.getCharSequence(EXTRA_FILTER_CONSTRAINT));
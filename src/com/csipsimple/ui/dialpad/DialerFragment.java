@@ -239,6 +239,13 @@ public class DialerFragment extends SherlockFragment implements OnClickListener,
         if(callBar != null) {
             callBar.setVideoEnabled(prefsWrapper.getPreferenceBooleanValue(SipConfigManager.USE_VIDEO));
         }
+        autoCompleteAdapter.onResume();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        autoCompleteAdapter.onPause();
     }
 
     private void applyTheme(View v) {
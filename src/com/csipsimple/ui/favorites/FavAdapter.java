@@ -68,6 +68,14 @@ public class FavAdapter extends ResourceCursorAdapter implements OnClickListener
 
 
     private static final String THIS_FILE = "FavAdapter";
+
+    /**
+     * Binder of the current cursor for group rows. They all come from header
+     * cursors with the same projection, so that column indexes are resolved
+     * once per merged cursor and not for each row.
+     */
+    private SipProfile.CursorBinder profileBinder = null;
+    private Cursor profileBinderCursor = null;
     
 
     /** Listener for the primary action in the list, opens the call details. */
@@ -146,7 +154,11 @@ public class FavAdapter extends ResourceCursorAdapter implements OnClickListener
             PresenceStatusSpinner presSpinner = (PresenceStatusSpinner) view.findViewById(R.id.header_presence_spinner);
             
             // Get datas
-            SipProfile acc = new SipProfile(cursor);
+            if (profileBinder == null || profileBinderCursor != cursor) {
+                profileBinder = new SipProfile.CursorBinder(cursor);
+                profileBinderCursor = cursor;
+            }
+            SipProfile acc = profileBinder.newProfile(cursor);
             
             final Long profileId = cv.getAsLong(BaseColumns._ID);
             final String groupName = acc.android_group;
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.ui.incall;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.os.RemoteException;
+
+import com.csipsimple.api.ISipService;
+import com.csipsimple.api.SipCallSession;
+import com.csipsimple.api.SipManager;
+import com.csipsimple.utils.Log;
+
+/**
+ * Local copy of the calls of the sip service.<br/>
+ * It is kept up to date with the changes carried by
+ * {@link SipManager#ACTION_SIP_CALL_CHANGED} broadcasts. All calls are only
+ * retrieved from the service when a broadcast was missed. Not thread safe.
+ */
+final class CallsMirror {
+
+    private static final String THIS_FILE = "CallsMirror";
+
+    private SipCallSession[] calls = null;
+    /**
+     * Version of the calls, -1 if unknown
+     */
+    private int version = -1;
+
+    /**
+     * @return the calls, null if not retrieved yet. Must not be modified.
+     */
+    SipCallSession[] getCalls() {
+        return calls;
+    }
+
+    /**
+     * Retrieve all calls from the service.
+     * 
+     * @param service the sip service
+     * @throws RemoteException
+     */
+    void reload(ISipService service) throws RemoteException {
+        version = service.getCallsVersion();
+        calls = service.getCalls();
+    }
+
+    /**
+     * Forget calls, for example when service is disconnected.
+     */
+    void clear() {
+        calls = null;
+        version = -1;
+    }
+
+    /**
+     * Apply a call changed broadcast.
+     * 
+     * @param intent the {@link SipManager#ACTION_SIP_CALL_CHANGED} intent
+     * @param service the sip service to retrieve all calls from if a change
+     *            was missed
+     * @return true if calls changed
+     * @throws RemoteException
+     */
+    boolean onCallChanged(Intent intent, ISipService service) throws RemoteException {
+        int previousVersion = intent.getIntExtra(SipManager.EXTRA_CALLS_PREVIOUS_VERSION, -1);
+        int newVersion = intent.getIntExtra(SipManager.EXTRA_CALLS_VERSION, -1);
+        Parcelable[] changed = intent.getParcelableArrayExtra(SipManager.EXTRA_CALLS_CHANGED);
+
+        if (calls != null && newVersion != -1) {
+            if (newVersion == version) {
+                // Already known, for example retrieved after this broadcast was sent
+                return false;
+            }
+            if (previousVersion == version && changed != null && apply(changed)) {
+                version = newVersion;
+                return changed.length > 0;
+            }
+        }
+        Log.d(THIS_FILE, "Calls changes missed, retrieve all calls");
+        reload(service);
+        return true;
+    }
+
+    /**
+     * @return false if changes could not be applied, calls being unchanged
+     */
+    private boolean apply(Parcelable[] changed) {
+        SipCallSession[] previousCalls = calls;
+        for (Parcelable changes : changed) {
+            if (!apply((Bundle) changes)) {
+                calls = previousCalls;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean apply(Bundle changes) {
+        int callId = SipCallSession.getChangesCallId(changes);
+        for (int i = 0; i < calls.length; i++) {
+            if (calls[i] != null && calls[i].getCallId() == callId) {
+                SipCallSession[] newCalls = calls.clone();
+                newCalls[i] = calls[i].withChanges(changes);
+                calls = newCalls;
+                return true;
+            }
+        }
+        if (!SipCallSession.hasAllValues(changes)) {
+            // Changes of a call not known here
+            return false;
+        }
+        SipCallSession session = new SipCallSession().withChanges(changes);
+        // Keep calls ordered by id as the service does
+        int index = 0;
+        while (index < calls.length && calls[index] != null
+                && calls[index].getCallId() < session.getCallId()) {
+            index++;
+        }
+        SipCallSession[] newCalls = new SipCallSession[calls.length + 1];
+        System.arraycopy(calls, 0, newCalls, 0, index);
+        newCalls[index] = session;
+        System.arraycopy(calls, index, newCalls, index + 1, calls.length - index);
+        calls = newCalls;
+        return true;
+    }
+}
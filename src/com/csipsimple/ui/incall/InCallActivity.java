@@ -88,6 +88,10 @@ public class InCallActivity extends SherlockFragmentActivity implements IOnCallA
 
     private Object callMutex = new Object();
     private SipCallSession[] callsInfo = null;
+    /**
+     * Calls of the service, updated from call changed broadcasts
+     */
+    private final CallsMirror callsMirror = new CallsMirror();
     private MediaState lastMediaState;
     
     
@@ -757,8 +761,11 @@ public class InCallActivity extends SherlockFragmentActivity implements IOnCallA
                 if (service != null) {
                     try {
                         synchronized (callMutex) {
-                            callsInfo = service.getCalls();
-                            runOnUiThread(new UpdateUIFromCallRunnable());
+                            // Skip ui update if nothing changed since last retrieved calls
+                            if (callsMirror.onCallChanged(intent, service)) {
+                                callsInfo = callsMirror.getCalls();
+                                runOnUiThread(new UpdateUIFromCallRunnable());
+                            }
                         }
                     } catch (RemoteException e) {
                         Log.e(THIS_FILE, "Not able to retrieve calls");
@@ -799,7 +806,10 @@ public class InCallActivity extends SherlockFragmentActivity implements IOnCallA
             try {
                 // Log.d(THIS_FILE,
                 // "Service started get real call info "+callInfo.getCallId());
-                callsInfo = service.getCalls();
+                synchronized (callMutex) {
+                    callsMirror.reload(service);
+                    callsInfo = callsMirror.getCalls();
+                }
                 serviceConnected = true;
 
                 runOnUiThread(new UpdateUIFromCallRunnable());
@@ -812,7 +822,10 @@ public class InCallActivity extends SherlockFragmentActivity implements IOnCallA
         @Override
         public void onServiceDisconnected(ComponentName arg0) {
             serviceConnected = false;
-            callsInfo = null;
+            synchronized (callMutex) {
+                callsInfo = null;
+                callsMirror.clear();
+            }
         }
     };
     private AlertDialog infoDialog;
@@ -45,6 +45,7 @@ import android.widget.SeekBar;
 import android.widget.SeekBar.OnSeekBarChangeListener;
 
 import com.csipsimple.R;
+import com.csipsimple.api.ISipLevelsListener;
 import com.csipsimple.api.ISipService;
 import com.csipsimple.api.SipCallSession;
 import com.csipsimple.api.SipConfigManager;
@@ -117,16 +118,19 @@ public class InCallMediaControl extends Activity implements OnSeekBarChangeListe
 		}
 		
 		registerReceiver(callStateReceiver, new IntentFilter(SipManager.ACTION_SIP_CALL_CHANGED));
-        if (monitorThread == null) {
-            monitorThread = new MonitorThread();
-            monitorThread.start();
-        }
 		
 	}
 	
 	@Override
 	protected void onPause() {
 		super.onPause();
+		if(sipService != null) {
+			try {
+				sipService.unregisterLevelsListener(levelsListener);
+			} catch (RemoteException e) {
+				Log.e(THIS_FILE, "Problem with remote service", e);
+			}
+		}
 		try {
 			unbindService(sipConnection);
 		}catch(Exception e) {
@@ -143,11 +147,6 @@ public class InCallMediaControl extends Activity implements OnSeekBarChangeListe
 		}catch (IllegalArgumentException e) {
 			//That's the case if not registered (early quit)
 		}
-
-        if (monitorThread != null) {
-            monitorThread.markFinished();
-            monitorThread = null;
-        }
 		sipService = null;
 	}
 	
@@ -161,7 +160,10 @@ public class InCallMediaControl extends Activity implements OnSeekBarChangeListe
 			if(action.equals(SipManager.ACTION_SIP_CALL_CHANGED)){
 				if(sipService != null) {
 					try {
-						SipCallSession[] callsInfo = sipService.getCalls();
+						if(!callsMirror.onCallChanged(intent, sipService)) {
+							return;
+						}
+						SipCallSession[] callsInfo = callsMirror.getCalls();
 						SipCallSession currentCallInfo = null;
 						if(callsInfo != null) {
 							for(SipCallSession callInfo : callsInfo) {
@@ -257,12 +259,18 @@ public class InCallMediaControl extends Activity implements OnSeekBarChangeListe
 	
 	
     private ISipService sipService;
+    private final CallsMirror callsMirror = new CallsMirror();
 	private ServiceConnection sipConnection = new ServiceConnection(){
 		@Override
 		public void onServiceConnected(ComponentName arg0, IBinder arg1) {
 			Log.d(THIS_FILE, "SipService is connected");
 			sipService = ISipService.Stub.asInterface(arg1);
 			updateUIFromMedia();
+			try {
+				sipService.registerLevelsListener(levelsListener);
+			} catch (RemoteException e) {
+				Log.e(THIS_FILE, "Problem with remote service", e);
+			}
 		}
 		@Override
 		public void onServiceDisconnected(ComponentName arg0) {
@@ -379,43 +387,19 @@ public class InCallMediaControl extends Activity implements OnSeekBarChangeListe
 		}
 	}
 
-    private MonitorThread monitorThread;
-
-    private class MonitorThread extends Thread {
-        private boolean finished = false;
-
-        public synchronized void markFinished() {
-            finished = true;
-        }
-
+    private final ISipLevelsListener levelsListener = new ISipLevelsListener.Stub() {
         @Override
-        public void run() {
-            super.run();
-            while (true) {
-                if (sipService != null) {
-                    try {
-                        long value = sipService.confGetRxTxLevel(0);
-                        runOnUiThread(new UpdateConfLevelRunnable((int) ((value >> 8) & 0xff), (int) (value & 0xff)));
-                    } catch (RemoteException e) {
-                        Log.e(THIS_FILE, "Problem with remote service", e);
-                        break;
-                    }
-                }
-
-                // End of loop, sleep for a while and exit if necessary
-                try {
-                    sleep(100);
-                } catch (InterruptedException e) {
-                    Log.e(THIS_FILE, "Interupted monitor thread", e);
-                }
-                synchronized (this) {
-                    if (finished) {
-                        break;
-                    }
+        public void onLevels(long[] levels) throws RemoteException {
+            // Display the latest sample of sound device port
+            for (int i = levels.length - 1; i >= 0; i--) {
+                long value = levels[i];
+                if ((value >> 16) == 0) {
+                    runOnUiThread(new UpdateConfLevelRunnable((int) ((value >> 8) & 0xff), (int) (value & 0xff)));
+                    break;
                 }
             }
         }
-    }
+    };
 
     private class UpdateConfLevelRunnable implements Runnable {
         private final int mRx, mTx;
@@ -36,6 +36,7 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.csipsimple.R;
+import com.csipsimple.api.ISipLevelsListener;
 import com.csipsimple.api.ISipService;
 import com.csipsimple.api.SipManager;
 import com.csipsimple.service.SipService;
@@ -68,6 +69,7 @@ public class AudioTester extends Activity implements OnClickListener {
             service = ISipService.Stub.asInterface(arg1);
             if (service != null) {
                 try {
+                    service.registerLevelsListener(levelsListener);
                     int res = service.startLoopbackTest();
                     if (res == SipManager.SUCCESS) {
                         currentStatus = R.string.test_audio_ongoing;
@@ -100,10 +102,6 @@ public class AudioTester extends Activity implements OnClickListener {
         currentStatus = R.string.test_audio_prepare;
         updateStatusDisplay();
         bindService(new Intent(this, SipService.class), connection, Context.BIND_AUTO_CREATE);
-        if (monitorThread == null) {
-            monitorThread = new MonitorThread();
-            monitorThread.start();
-        }
     }
 
     @Override
@@ -111,6 +109,7 @@ public class AudioTester extends Activity implements OnClickListener {
         super.onPause();
         if (service != null) {
             try {
+                service.unregisterLevelsListener(levelsListener);
                 service.stopLoopbackTest();
             } catch (RemoteException e) {
                 Log.e(THIS_FILE, "Error in test", e);
@@ -120,10 +119,6 @@ public class AudioTester extends Activity implements OnClickListener {
         if (connection != null) {
             unbindService(connection);
         }
-        if (monitorThread != null) {
-            monitorThread.markFinished();
-            monitorThread = null;
-        }
     }
 
     private void updateStatusDisplay() {
@@ -132,57 +127,33 @@ public class AudioTester extends Activity implements OnClickListener {
         }
     }
 
-    private MonitorThread monitorThread;
-
-    private class MonitorThread extends Thread {
-        private boolean finished = false;
-
-        public synchronized void markFinished() {
-            finished = true;
+    private final ISipLevelsListener levelsListener = new ISipLevelsListener.Stub() {
+        @Override
+        public void onLevels(long[] levels) throws RemoteException {
+            // Display the latest sample of sound device port
+            for (int i = levels.length - 1; i >= 0; i--) {
+                long value = levels[i];
+                if ((value >> 16) == 0) {
+                    runOnUiThread(new UpdateConfLevelRunnable((int) ((value >> 8) & 0xff), (int) (value & 0xff)));
+                    break;
+                }
+            }
         }
+    };
 
+    private class UpdateConfLevelRunnable implements Runnable {
+        private final int mRx;
+        private final int mTx;
+        UpdateConfLevelRunnable(int rx, int tx){
+            mRx = rx;
+            mTx = tx;
+        }
         @Override
         public void run() {
-            super.run();
-            while (true) {
-                if (service != null) {
-                    try {
-                        long value = service.confGetRxTxLevel(0);
-                        runOnUiThread(new UpdateConfLevelRunnable((int) ((value >> 8) & 0xff), (int) (value & 0xff)));
-                    } catch (RemoteException e) {
-                        Log.e(THIS_FILE, "Problem with remote service", e);
-                        break;
-                    }
-                }
-
-                // End of loop, sleep for a while and exit if necessary
-                try {
-                    sleep(100);
-                } catch (InterruptedException e) {
-                    Log.e(THIS_FILE, "Interupted monitor thread", e);
-                }
-                synchronized (this) {
-                    if (finished) {
-                        break;
-                    }
-                }
-            }
+            rxProgress.setProgress(mRx);
+            txProgress.setProgress(mTx);
         }
         
-        private class UpdateConfLevelRunnable implements Runnable {
-            private final int mRx;
-            private final int mTx;
-            UpdateConfLevelRunnable(int rx, int tx){
-                mRx = rx;
-                mTx = tx;
-            }
-            @Override
-            public void run() {
-                rxProgress.setProgress(mRx);
-                txProgress.setProgress(mTx);
-            }
-            
-        }
     }
 
     @Override
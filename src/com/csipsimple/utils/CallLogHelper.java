@@ -28,6 +28,7 @@ import android.content.Intent;
 import android.net.Uri;
 import android.provider.CallLog;
 
+import com.csipsimple.api.MediaStreamStats;
 import com.csipsimple.api.SipCallSession;
 import com.csipsimple.api.SipManager;
 import com.csipsimple.models.CallerInfo;
@@ -105,6 +106,14 @@ public class CallLogHelper {
         cv.put(SipManager.CALLLOG_PROFILE_ID_FIELD, call.getAccId());
         cv.put(SipManager.CALLLOG_STATUS_CODE_FIELD, call.getLastStatusCode());
         cv.put(SipManager.CALLLOG_STATUS_TEXT_FIELD, call.getLastStatusComment());
+        MediaStreamStats stats = call.getMediaStats();
+        if(stats != null) {
+            cv.put(SipManager.CALLLOG_CODEC_FIELD, stats.codec);
+            cv.put(SipManager.CALLLOG_RX_LOSS_FIELD, stats.getRxLossPermil());
+            cv.put(SipManager.CALLLOG_TX_LOSS_FIELD, stats.getTxLossPermil());
+            cv.put(SipManager.CALLLOG_JITTER_FIELD, stats.rxJitterMean / 1000);
+            cv.put(SipManager.CALLLOG_RTT_FIELD, stats.rttMean / 1000);
+        }
 
 		CallerInfo callerInfo = CallerInfo.getCallerInfoFromSipUri(context, remoteContact);
 		if(callerInfo != null) {
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.csipsimple.api.SipManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write behind queue for call logs.<br/>
+ * Call logs are kept in memory for a short delay and written together :
+ * our own call logs with one bulk insert, that is one database transaction,
+ * native call logs one by one since each inserted uri has to be announced.
+ */
+public class CallLogWriter {
+
+	private static final String THIS_FILE = "CallLogWriter";
+
+	/**
+	 * Delay before pending call logs are written
+	 */
+	private static final long FLUSH_DELAY_MS = 500;
+	/**
+	 * Number of pending call logs that triggers an immediate write
+	 */
+	private static final int FLUSH_THRESHOLD = 10;
+
+	private final Context context;
+	private HandlerThread writerThread;
+	private Handler writerHandler;
+
+	private List<ContentValues> pendingCallLogs = new ArrayList<ContentValues>();
+	private List<ContentValues[]> pendingNativeCallLogs = new ArrayList<ContentValues[]>();
+
+	private final Runnable flushRunnable = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	public CallLogWriter(Context ctxt) {
+		context = ctxt;
+	}
+
+	/**
+	 * Start the writer thread.
+	 */
+	public synchronized void start() {
+		if(writerThread == null) {
+			writerThread = new HandlerThread("CallLogWriter");
+			writerThread.start();
+			writerHandler = new Handler(writerThread.getLooper());
+		}
+	}
+
+	/**
+	 * Stop the writer thread. Pending call logs are written from the calling thread.
+	 */
+	public void stop() {
+		synchronized (this) {
+			if(writerHandler != null) {
+				writerHandler.removeCallbacks(flushRunnable);
+			}
+			Threading.stopHandlerThread(writerThread, false);
+			writerThread = null;
+			writerHandler = null;
+		}
+		flush();
+	}
+
+	/**
+	 * Queue a call log.
+	 * @param values the values to insert in our call logs
+	 * @param nativeValues the values to insert in native call logs, null if not to be inserted there
+	 * @param extraValues extra values for native call log announce. See {@link CallLogHelper#addCallLog(Context, ContentValues, ContentValues)}
+	 */
+	public void addCallLog(ContentValues values, ContentValues nativeValues, ContentValues extraValues) {
+		boolean flushNow = false;
+		synchronized (this) {
+			pendingCallLogs.add(values);
+			if(nativeValues != null) {
+				pendingNativeCallLogs.add(new ContentValues[] {nativeValues, extraValues});
+			}
+			if(writerHandler != null) {
+				writerHandler.removeCallbacks(flushRunnable);
+				if(pendingCallLogs.size() >= FLUSH_THRESHOLD) {
+					writerHandler.post(flushRunnable);
+				}else {
+					writerHandler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+				}
+			}else {
+				flushNow = true;
+			}
+		}
+		if(flushNow) {
+			Log.w(THIS_FILE, "Writer not started, write call log now");
+			flush();
+		}
+	}
+
+	/**
+	 * Write all pending call logs.
+	 */
+	private void flush() {
+		List<ContentValues> callLogs;
+		List<ContentValues[]> nativeCallLogs;
+		synchronized (this) {
+			if(pendingCallLogs.isEmpty() && pendingNativeCallLogs.isEmpty()) {
+				return;
+			}
+			callLogs = pendingCallLogs;
+			nativeCallLogs = pendingNativeCallLogs;
+			pendingCallLogs = new ArrayList<ContentValues>();
+			pendingNativeCallLogs = new ArrayList<ContentValues[]>();
+		}
+
+		if(!callLogs.isEmpty()) {
+			try {
+				context.getContentResolver().bulkInsert(SipManager.CALLLOG_URI,
+						callLogs.toArray(new ContentValues[callLogs.size()]));
+			}catch(Exception e) {
+				Log.e(THIS_FILE, "Impossible to write call logs", e);
+			}
+		}
+		for(ContentValues[] nativeCallLog : nativeCallLogs) {
+			try {
+				CallLogHelper.addCallLog(context, nativeCallLog[0], nativeCallLog[1]);
+			}catch(Exception e) {
+				Log.e(THIS_FILE, "Impossible to write native call log", e);
+			}
+		}
+		Log.d(THIS_FILE, "Written " + callLogs.size() + " call logs and " + nativeCallLogs.size() + " native call logs");
+	}
+}
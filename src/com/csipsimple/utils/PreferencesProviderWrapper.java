@@ -26,6 +26,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.database.ContentObserver;
 import android.media.AudioManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
@@ -41,7 +42,10 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class PreferencesProviderWrapper {
 
@@ -57,10 +61,131 @@ public class PreferencesProviderWrapper {
 	public static final String HAS_BEEN_QUIT = PreferencesWrapper.HAS_BEEN_QUIT;
 	public static final String HAS_ALREADY_SETUP_SERVICE = PreferencesWrapper.HAS_ALREADY_SETUP_SERVICE;
 
+	/**
+	 * Values already read from the preference provider by this process.
+	 * Shared by all wrappers of the process and dropped each time the provider notifies a change.
+	 */
+	private static final AtomicReference<PreferencesSnapshot> SNAPSHOT = new AtomicReference<PreferencesSnapshot>(PreferencesSnapshot.EMPTY);
+	private static final AtomicInteger SNAPSHOT_HITS = new AtomicInteger(0);
+	private static final AtomicInteger SNAPSHOT_MISSES = new AtomicInteger(0);
+	private static ContentObserver snapshotObserver = null;
+	/**
+	 * Control flags written by another process right before it talks to this one.
+	 * The change notification may come too late, so they are always read from the provider.
+	 */
+	private static final List<String> UNCACHED_KEYS = Arrays.asList(HAS_BEEN_QUIT, HAS_ALREADY_SETUP_SERVICE);
+
 	public PreferencesProviderWrapper(Context aContext) {
 	    context = aContext;
 		resolver = aContext.getContentResolver();
 		connectivityManager = (ConnectivityManager) aContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+		registerSnapshotObserver(aContext);
+	}
+	
+	private static synchronized void registerSnapshotObserver(Context aContext) {
+	    if(snapshotObserver == null) {
+	        snapshotObserver = new ContentObserver(null) {
+	            @Override
+	            public void onChange(boolean selfChange) {
+	                invalidateSnapshot();
+	            }
+	            
+	            @Override
+	            public void onChange(boolean selfChange, Uri uri) {
+	                // Since api 16 we know which preference changed
+	                if(uri != null && uri.getPathSegments().size() > 1) {
+	                    invalidateSnapshot(uri.getLastPathSegment());
+	                }else {
+	                    invalidateSnapshot();
+	                }
+	            }
+	        };
+	        aContext.getApplicationContext().getContentResolver().registerContentObserver(SipConfigManager.PREF_URI, true, snapshotObserver);
+	    }
+	}
+	
+	/**
+	 * Drop all values cached in this process.
+	 * Next reads will go back to the preference provider.
+	 */
+	public static void invalidateSnapshot() {
+	    PreferencesSnapshot current;
+	    do {
+	        current = SNAPSHOT.get();
+	    } while(!SNAPSHOT.compareAndSet(current, current.cleared()));
+	}
+	
+	/**
+	 * Drop the values cached in this process for one preference key.
+	 * @param key the preference key that changed
+	 */
+	public static void invalidateSnapshot(String key) {
+	    PreferencesSnapshot current;
+	    do {
+	        current = SNAPSHOT.get();
+	    } while(!SNAPSHOT.compareAndSet(current, current.without(key)));
+	}
+	
+	/**
+	 * @return the snapshot of preferences currently published in this process
+	 */
+	public static PreferencesSnapshot getSnapshot() {
+	    return SNAPSHOT.get();
+	}
+	
+	/**
+	 * @return number of reads served by the snapshot without querying the provider
+	 */
+	public static int getSnapshotHits() {
+	    return SNAPSHOT_HITS.get();
+	}
+	
+	/**
+	 * @return number of reads that had to query the provider
+	 */
+	public static int getSnapshotMisses() {
+	    return SNAPSHOT_MISSES.get();
+	}
+	
+	/**
+	 * Get a preference value from the snapshot of this process or from the
+	 * preference provider if not yet known.
+	 * @param type the type of the preference (String, Boolean, Float or Integer)
+	 * @param key the preference key
+	 * @return the value without default applied, null if the provider has no value for it
+	 */
+	private Object getSnapshotValue(Class<?> type, String key) {
+	    if(UNCACHED_KEYS.contains(key)) {
+	        SNAPSHOT_MISSES.incrementAndGet();
+	        return readProviderValue(type, key);
+	    }
+	    PreferencesSnapshot snapshot = SNAPSHOT.get();
+	    if(snapshot.contains(type, key)) {
+	        SNAPSHOT_HITS.incrementAndGet();
+	        return snapshot.get(type, key);
+	    }
+	    SNAPSHOT_MISSES.incrementAndGet();
+	    Object value = readProviderValue(type, key);
+	    // Publish unless preferences changed while we were reading from provider
+	    PreferencesSnapshot current = SNAPSHOT.get();
+	    while(current.getGeneration() == snapshot.getGeneration() && !current.contains(type, key)) {
+	        if(SNAPSHOT.compareAndSet(current, current.with(type, key, value))) {
+	            break;
+	        }
+	        current = SNAPSHOT.get();
+	    }
+	    return value;
+	}
+	
+	private Object readProviderValue(Class<?> type, String key) {
+	    if(type == Boolean.class) {
+	        return SipConfigManager.getPreferenceBooleanValue(context, key, null);
+	    }else if(type == Float.class) {
+	        return SipConfigManager.getPreferenceFloatValue(context, key, null);
+	    }else if(type == Integer.class) {
+	        return SipConfigManager.getPreferenceIntegerValue(context, key, null);
+	    }
+	    return SipConfigManager.getPreferenceStringValue(context, key, null);
 	}
 	
 
@@ -70,47 +195,68 @@ public class PreferencesProviderWrapper {
 	public void resetAllDefaultValues() {
 		Uri uri = SipConfigManager.RAZ_URI;
 		resolver.update(uri, new ContentValues(), null, null);
+		invalidateSnapshot();
 	}
 	
 	// Api compat part
 	public boolean getPreferenceBooleanValue(String string, boolean b) {
-        return SipConfigManager.getPreferenceBooleanValue(context, string, b);
+	    Boolean value = (Boolean) getSnapshotValue(Boolean.class, string);
+        return (value != null) ? value : b;
     }
 
     public boolean getPreferenceBooleanValue(String string) {
-        return SipConfigManager.getPreferenceBooleanValue(context, string);
+        return (Boolean) getSnapshotValue(Boolean.class, string);
     }
     
     public String getPreferenceStringValue(String key) {
-        return SipConfigManager.getPreferenceStringValue(context, key);
+        return (String) getSnapshotValue(String.class, key);
     }
     public String getPreferenceStringValue(String key, String defaultVal) {
-        return SipConfigManager.getPreferenceStringValue(context, key, defaultVal);
+        String value = (String) getSnapshotValue(String.class, key);
+        return (value != null) ? value : defaultVal;
     }
 
 
     public int getPreferenceIntegerValue(String key) {
-        return SipConfigManager.getPreferenceIntegerValue(context, key);
+        return (Integer) getSnapshotValue(Integer.class, key);
+    }
+    
+    public int getPreferenceIntegerValue(String key, int defaultVal) {
+        Integer value = (Integer) getSnapshotValue(Integer.class, key);
+        return (value != null) ? value : defaultVal;
+    }
+    
+    /**
+     * Get integer preference value
+     * @param key the key preference to retrieve
+     * @return the value or null if not set
+     */
+    public Integer getPreferenceIntegerValueOrNull(String key) {
+        return (Integer) getSnapshotValue(Integer.class, key);
     }
 
     public float getPreferenceFloatValue(String key) {
-        return SipConfigManager.getPreferenceFloatValue(context, key);
+        return (Float) getSnapshotValue(Float.class, key);
     }
     
     public float getPreferenceFloatValue(String key, float f) {
-        return SipConfigManager.getPreferenceFloatValue(context, key, f);
+        Float value = (Float) getSnapshotValue(Float.class, key);
+        return (value != null) ? value : f;
     }
     
     public void setPreferenceStringValue(String key, String newValue) {
         SipConfigManager.setPreferenceStringValue(context, key, newValue);
+        invalidateSnapshot(key);
     }
 
     public void setPreferenceBooleanValue(String key, boolean newValue) {
         SipConfigManager.setPreferenceBooleanValue(context, key, newValue);
+        invalidateSnapshot(key);
     }
     
     public void setPreferenceFloatValue(String key, float newValue) {
         SipConfigManager.setPreferenceFloatValue(context, key, newValue);
+        invalidateSnapshot(key);
     }
 	
 	// Network part
@@ -248,7 +394,7 @@ public class PreferencesProviderWrapper {
 	
 
     public int getLogLevel() {
-		int prefsValue = SipConfigManager.getPreferenceIntegerValue(context, SipConfigManager.LOG_LEVEL, 1);
+		int prefsValue = getPreferenceIntegerValue(SipConfigManager.LOG_LEVEL, 1);
 		if(prefsValue <= 6 && prefsValue >= 1) {
 			return prefsValue;
 		}
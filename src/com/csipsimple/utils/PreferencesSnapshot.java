@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.utils;
+
+import java.util.HashMap;
+
+/**
+ * Immutable view of the preferences values already retrieved by the current process.<br/>
+ * A snapshot is never modified once published. Adding or dropping a value
+ * creates a new snapshot so that readers can use it without any lock.
+ */
+public final class PreferencesSnapshot {
+
+    /**
+     * Marker stored for keys the provider has no value for.
+     */
+    private static final Object NO_VALUE = new Object();
+
+    private static final Class<?>[] TYPES = new Class<?>[] {
+            String.class, Boolean.class, Float.class, Integer.class
+    };
+
+    public static final PreferencesSnapshot EMPTY = new PreferencesSnapshot(0, 0, emptyValues());
+
+    private final int version;
+    private final int generation;
+    /**
+     * One map per supported type, indexed as {@link #TYPES}
+     */
+    private final HashMap<String, Object>[] values;
+
+    private PreferencesSnapshot(int aVersion, int aGeneration, HashMap<String, Object>[] aValues) {
+        version = aVersion;
+        generation = aGeneration;
+        values = aValues;
+    }
+
+    /**
+     * @return the version of this snapshot. Incremented on each publication.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the generation of this snapshot. Incremented each time values
+     *         are dropped because preferences changed.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return number of values held by this snapshot
+     */
+    public int size() {
+        int size = 0;
+        for (HashMap<String, Object> typedValues : values) {
+            size += typedValues.size();
+        }
+        return size;
+    }
+
+    /**
+     * Whether this snapshot already knows the value of a key for a given type.
+     *
+     * @param type the class the value was retrieved as
+     * @param key the preference key
+     * @return true if {@link #get(Class, String)} is meaningful
+     */
+    public boolean contains(Class<?> type, String key) {
+        return values[getTypeIndex(type)].containsKey(key);
+    }
+
+    /**
+     * Get a value retrieved before.
+     *
+     * @param type the class the value was retrieved as
+     * @param key the preference key
+     * @return the value or null if the provider has no value for this key or if
+     *         the value is not part of this snapshot
+     */
+    public Object get(Class<?> type, String key) {
+        Object value = values[getTypeIndex(type)].get(key);
+        if (value == NO_VALUE) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Create a new snapshot with one more value.
+     *
+     * @param type the class the value was retrieved as
+     * @param key the preference key
+     * @param value the value, null if the provider has no value for this key
+     * @return the new snapshot
+     */
+    public PreferencesSnapshot with(Class<?> type, String key, Object value) {
+        int typeIndex = getTypeIndex(type);
+        HashMap<String, Object>[] newValues = values.clone();
+        newValues[typeIndex] = new HashMap<String, Object>(values[typeIndex]);
+        newValues[typeIndex].put(key, (value != null) ? value : NO_VALUE);
+        return new PreferencesSnapshot(version + 1, generation, newValues);
+    }
+
+    /**
+     * Create a new snapshot of the next generation without any value for a key.
+     *
+     * @param key the preference key to drop for all types
+     * @return the new snapshot
+     */
+    public PreferencesSnapshot without(String key) {
+        HashMap<String, Object>[] newValues = values.clone();
+        for (int i = 0; i < TYPES.length; i++) {
+            if (values[i].containsKey(key)) {
+                newValues[i] = new HashMap<String, Object>(values[i]);
+                newValues[i].remove(key);
+            }
+        }
+        return new PreferencesSnapshot(version + 1, generation + 1, newValues);
+    }
+
+    /**
+     * Create a new empty snapshot of the next generation.
+     *
+     * @return the new snapshot
+     */
+    public PreferencesSnapshot cleared() {
+        return new PreferencesSnapshot(version + 1, generation + 1, emptyValues());
+    }
+
+    private static int getTypeIndex(Class<?> type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i] == type) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported preference type " + type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, Object>[] emptyValues() {
+        HashMap<String, Object>[] newValues = new HashMap[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            newValues[i] = new HashMap<String, Object>();
+        }
+        return newValues;
+    }
+}
@@ -114,6 +114,7 @@ public class PreferencesWrapper {
 		put(SipConfigManager.TLS_PASSWORD, "");
 		put(SipConfigManager.TLS_METHOD, "0");
 		put(SipConfigManager.NETWORK_ROUTES_POLLING, "0");
+		put(SipConfigManager.NETWORK_CHANGE_DEBOUNCE, "2000");
 		
 		put(SipConfigManager.DSCP_VAL, "26");
 		put(SipConfigManager.DTMF_MODE, "0");
@@ -182,6 +183,7 @@ public class PreferencesWrapper {
         put(SipConfigManager.AUTO_CONNECT_SPEAKER, false);
         put(SipConfigManager.AUTO_DETECT_SPEAKER, false);
 		put(SipConfigManager.CODECS_PER_BANDWIDTH, true);
+		put(SipConfigManager.ADAPTIVE_MEDIA, false);
 		put(SipConfigManager.RESTART_AUDIO_ON_ROUTING_CHANGES, true);
         put(SipConfigManager.SETUP_AUDIO_BEFORE_INIT, true);
 		
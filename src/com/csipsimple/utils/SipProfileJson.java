@@ -105,8 +105,9 @@ public final class SipProfileJson {
                 DBProvider.ACCOUNT_FULL_PROJECTION, null, null, null);
         if (c != null) {
             try {
+                SipProfile.CursorBinder binder = new SipProfile.CursorBinder(c);
                 while (c.moveToNext()) {
-                    SipProfile account = new SipProfile(c);
+                    SipProfile account = binder.newProfile(c);
                     JSONObject p = serializeSipProfile(ctxt, account);
                     try {
                         jsonSipProfiles.put(jsonSipProfiles.length(), p);
@@ -21,9 +21,6 @@
 
 package com.csipsimple.utils;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.pjsip.pjsua.pjsua;
 
 import android.app.AlarmManager;
@@ -33,8 +30,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.PowerManager;
 import android.os.SystemClock;
+import android.util.SparseIntArray;
 
 import com.csipsimple.service.SipService;
 import com.csipsimple.service.SipWakeLock;
@@ -54,7 +54,35 @@ public class TimerWrapper extends BroadcastReceiver {
 	
 	private boolean serviceRegistered = false;
 	
-	private final List<Integer> scheduleEntries = new ArrayList<Integer>();
+	/**
+	 * Fires due within this delay after the one received are done in the same wake up
+	 */
+	private static final int COALESCE_WINDOW_MS = 50;
+	/**
+	 * Fires done more than this delay after their due time are counted as late
+	 */
+	private static final int LATE_THRESHOLD_MS = 500;
+	
+	/**
+	 * Pending entries, mapped to their due time relative to {@link #timeBase}
+	 */
+	private final SparseIntArray scheduleEntries = new SparseIntArray();
+	private long timeBase = SystemClock.elapsedRealtime();
+	/**
+	 * Time base is moved forward when relative times reach this delay, far before int overflow
+	 */
+	private static final long REBASE_THRESHOLD_MS = 1L << 30;
+	
+	/**
+	 * Thread firing pjsip timers. It is registered once to pjlib by native
+	 * pj_timer_fire with a thread descriptor allocated for its whole life.
+	 */
+	private HandlerThread dispatcherThread;
+	private Handler dispatcher;
+	
+	private int firesCount = 0;
+	private int lateFiresCount = 0;
+	private int coalescedFiresCount = 0;
 	
 	
 	private TimerWrapper(SipService ctxt) {
@@ -107,11 +135,15 @@ public class TimerWrapper extends BroadcastReceiver {
 		}
 		
 		if(alarmManager != null) {
-			for(Integer entryId : scheduleEntries) {
-				alarmManager.cancel(getPendingIntentForTimer(entryId));
+			for(int i = 0; i < scheduleEntries.size(); i++) {
+				alarmManager.cancel(getPendingIntentForTimer(scheduleEntries.keyAt(i)));
 			}
 		}
 		scheduleEntries.clear();
+		
+		Threading.stopHandlerThread(dispatcherThread, false);
+		dispatcherThread = null;
+		dispatcher = null;
 //		hashOffset ++;
 //		hashOffset = hashOffset % 10;
 	}
@@ -145,7 +177,7 @@ public class TimerWrapper extends BroadcastReceiver {
 		
 		// Cancel previous reg anyway
 		alarmManager.cancel(pendingIntent);
-		scheduleEntries.remove((Integer) entryId);
+		scheduleEntries.delete(entryId);
 		
 		
 		long firstTime = SystemClock.elapsedRealtime();
@@ -159,14 +191,32 @@ public class TimerWrapper extends BroadcastReceiver {
 		// Push next
         Log.v(THIS_FILE, "Schedule " + entryId + " in " + intervalMs + "ms");
 		alarmManager.set(alarmType, firstTime, pendingIntent);
-		scheduleEntries.add((Integer) entryId);
+		scheduleEntries.put(entryId, toRelativeTime(firstTime));
 		return 1;
 	}
 	
+	/**
+	 * Get a time relative to {@link #timeBase}, moving the time base and pending
+	 * entries due times forward once the service has been running long enough.
+	 * @param time the elapsed realtime, not before now
+	 * @return the time relative to the time base
+	 */
+	private int toRelativeTime(long time) {
+		if(time - timeBase >= REBASE_THRESHOLD_MS) {
+			long newTimeBase = SystemClock.elapsedRealtime();
+			int shift = (int) (newTimeBase - timeBase);
+			for(int i = 0; i < scheduleEntries.size(); i++) {
+				scheduleEntries.put(scheduleEntries.keyAt(i), scheduleEntries.valueAt(i) - shift);
+			}
+			timeBase = newTimeBase;
+		}
+		return (int) (time - timeBase);
+	}
+	
 	private synchronized int doCancel(int entryId) {
         Log.v(THIS_FILE, "Cancel " + entryId );
 		alarmManager.cancel(getPendingIntentForTimer(entryId));
-		scheduleEntries.remove((Integer) entryId);
+		scheduleEntries.delete(entryId);
 		return 1;
 	}
 	
@@ -189,9 +239,77 @@ public class TimerWrapper extends BroadcastReceiver {
 		}
 	}
 	
-	public void treatAlarm(int entry) {
-		TimerJob t = new TimerJob(entry);
-		t.start();
+	public synchronized void treatAlarm(int entry) {
+		if(dispatcher == null) {
+			dispatcherThread = new HandlerThread("TimerWrapper.Dispatcher");
+			dispatcherThread.start();
+			dispatcher = new Handler(dispatcherThread.getLooper());
+		}
+		TimerJob job = new TimerJob(entry);
+		if(!dispatcher.post(job)) {
+			wakeLock.release(job);
+		}
+	}
+	
+	/**
+	 * Remove from pending entries the entry received and all entries due soon after.
+	 * Alarms of the entries coalesced are cancelled.
+	 * @param entryId the entry received
+	 * @return entries to fire ordered by due time, first one being the entry received if still pending
+	 */
+	private synchronized int[] takeEntriesToFire(int entryId) {
+		int now = toRelativeTime(SystemClock.elapsedRealtime());
+		int entryIndex = scheduleEntries.indexOfKey(entryId);
+		if(entryIndex < 0) {
+			return new int[0];
+		}
+		int dueTime = scheduleEntries.valueAt(entryIndex);
+		scheduleEntries.delete(entryId);
+		countFire(now, dueTime);
+		
+		// Collect other entries due in the coalesce window
+		int coalesceLimit = Math.max(now, dueTime) + COALESCE_WINDOW_MS;
+		int nbrEntries = scheduleEntries.size();
+		int[] coalesced = new int[nbrEntries];
+		int[] coalescedDueTimes = new int[nbrEntries];
+		int nbrCoalesced = 0;
+		for(int i = 0; i < nbrEntries; i++) {
+			int otherDueTime = scheduleEntries.valueAt(i);
+			if(otherDueTime <= coalesceLimit) {
+				// Insertion sort by due time
+				int pos = nbrCoalesced;
+				while(pos > 0 && coalescedDueTimes[pos - 1] > otherDueTime) {
+					coalesced[pos] = coalesced[pos - 1];
+					coalescedDueTimes[pos] = coalescedDueTimes[pos - 1];
+					pos --;
+				}
+				coalesced[pos] = scheduleEntries.keyAt(i);
+				coalescedDueTimes[pos] = otherDueTime;
+				nbrCoalesced ++;
+			}
+		}
+		
+		int[] toFire = new int[nbrCoalesced + 1];
+		toFire[0] = entryId;
+		for(int i = 0; i < nbrCoalesced; i++) {
+			int otherEntryId = coalesced[i];
+			toFire[i + 1] = otherEntryId;
+			scheduleEntries.delete(otherEntryId);
+			alarmManager.cancel(getPendingIntentForTimer(otherEntryId));
+			countFire(now, coalescedDueTimes[i]);
+			coalescedFiresCount ++;
+		}
+		if(nbrCoalesced > 0) {
+			Log.v(THIS_FILE, "Coalesce " + nbrCoalesced + " fires with " + entryId);
+		}
+		return toFire;
+	}
+	
+	private void countFire(int now, int dueTime) {
+		firesCount ++;
+		if(now - dueTime > LATE_THRESHOLD_MS) {
+			lateFiresCount ++;
+		}
 	}
 	
 	//private final Handler handler = new Handler();
@@ -231,13 +349,51 @@ public class TimerWrapper extends BroadcastReceiver {
 		return singleton.doCancel(entryId);
 	}
 	
+	/**
+	 * @return number of timer entries fired
+	 */
+	public static int getFiresCount() {
+		TimerWrapper timer = singleton;
+		if(timer == null) {
+			return 0;
+		}
+		synchronized (timer) {
+			return timer.firesCount;
+		}
+	}
+	
+	/**
+	 * @return number of timer entries fired more than {@link #LATE_THRESHOLD_MS} after their due time
+	 */
+	public static int getLateFiresCount() {
+		TimerWrapper timer = singleton;
+		if(timer == null) {
+			return 0;
+		}
+		synchronized (timer) {
+			return timer.lateFiresCount;
+		}
+	}
+	
+	/**
+	 * @return number of timer entries fired in the wake up of another entry
+	 */
+	public static int getCoalescedFiresCount() {
+		TimerWrapper timer = singleton;
+		if(timer == null) {
+			return 0;
+		}
+		synchronized (timer) {
+			return timer.coalescedFiresCount;
+		}
+	}
+	
 	
 
-	private class TimerJob extends Thread {
+	private class TimerJob implements Runnable {
 		private final int entryId;
 		
 		public TimerJob(int anEntry) {
-			super("TimerJob");
 			entryId = anEntry;
 			wakeLock.acquire(this);
 		}
@@ -250,20 +406,17 @@ public class TimerWrapper extends BroadcastReceiver {
 			
 			
 			try {
-			    boolean doFire = false;
-			    synchronized (TimerWrapper.this) {
-	                if(scheduleEntries.contains(entryId)) {
-	                    scheduleEntries.remove((Integer) entryId);
-	                    doFire = true;
-	                }
-                }
-			    if(doFire) {
-			        pjsua.pj_timer_fire(entryId);
-			    }else {
+			    int[] toFire = takeEntriesToFire(entryId);
+			    if(toFire.length == 0) {
 			        Log.w(THIS_FILE, "Fire from old run " + entryId);
 			    }
-			}catch(Exception e) {
-				Log.e(THIS_FILE, "Native error ", e);
+			    for(int entryToFire : toFire) {
+			        try {
+			            pjsua.pj_timer_fire(entryToFire);
+			        }catch(Exception e) {
+			            Log.e(THIS_FILE, "Native error ", e);
+			        }
+			    }
 			}finally {
 				wakeLock.release(this);
 			}
@@ -41,6 +41,7 @@ import android.widget.SectionIndexer;
 import com.csipsimple.R;
 import com.csipsimple.api.SipProfile;
 import com.csipsimple.models.Filter;
+import com.csipsimple.utils.Compatibility;
 
 /**
  * This adapter is used to filter contacts on both name and number.
@@ -50,6 +51,7 @@ public class ContactsSearchAdapter extends CursorAdapter implements SectionIndex
     private final Context mContext;
     private long currentAccId = SipProfile.INVALID_ID;
     AlphabetIndexer alphaIndexer;
+    private SmartDialContacts smartDial = null;
 
     
     public ContactsSearchAdapter(Context context) {
@@ -60,7 +62,27 @@ public class ContactsSearchAdapter extends CursorAdapter implements SectionIndex
         // See MessageFragment for an example.
         super(context, null, false /* no auto-requery */);
         mContext = context;
-        
+        if (Compatibility.isCompatible(5)) {
+            smartDial = SmartDialContacts.getInstance(context);
+        }
+    }
+
+    /**
+     * Start using the dial pad search, to be called when the adapter is shown.
+     */
+    public void onResume() {
+        if (smartDial != null) {
+            smartDial.acquire();
+        }
+    }
+
+    /**
+     * Stop using the dial pad search, to be called when the adapter is hidden.
+     */
+    public void onPause() {
+        if (smartDial != null) {
+            smartDial.release();
+        }
     }
     
     public final void setSelectedAccount(long accId) {
@@ -81,7 +103,13 @@ public class ContactsSearchAdapter extends CursorAdapter implements SectionIndex
 
     @Override
     public Cursor runQueryOnBackgroundThread(CharSequence constraint) {
-        Cursor c = ContactsWrapper.getInstance().searchContact(mContext, constraint);
+        Cursor c = null;
+        if (smartDial != null) {
+            c = smartDial.search(constraint);
+        }
+        if (c == null) {
+            c = ContactsWrapper.getInstance().searchContact(mContext, constraint);
+        }
         
         if(alphaIndexer == null) {
             alphaIndexer = new AlphabetIndexer(c, ContactsWrapper.getInstance().getContactIndexableColumnIndex(c),
@@ -96,7 +124,11 @@ public class ContactsSearchAdapter extends CursorAdapter implements SectionIndex
     public final CharSequence convertToString(Cursor cursor) {
     	CharSequence number = ContactsWrapper.getInstance().transformToSipUri(mContext, cursor);
     	if(!TextUtils.isEmpty(number)) {
-    	    String stripNbr = PhoneNumberUtils.stripSeparators(number.toString());
+    	    String stripNbr = number.toString();
+    	    if (stripNbr.indexOf('@') < 0) {
+    	        // Sip addresses have no separators to strip
+    	        stripNbr = PhoneNumberUtils.stripSeparators(stripNbr);
+    	    }
 			return Filter.rewritePhoneNumber(mContext, currentAccId, stripNbr);
     	}
     	return number;
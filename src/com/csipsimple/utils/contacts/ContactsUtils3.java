@@ -45,6 +45,7 @@ import android.widget.TextView;
 
 import com.csipsimple.R;
 import com.csipsimple.api.SipManager;
+import com.csipsimple.models.BuddyPresence;
 import com.csipsimple.models.CallerInfo;
 import com.csipsimple.utils.Log;
 
@@ -373,6 +374,11 @@ public class ContactsUtils3 extends ContactsWrapper {
         
     }
 
+    @Override
+    public void updateCSipPresences(Context ctxt, List<BuddyPresence> presences) {
+        // Not supported
+    }
+
     @Override
     public Intent getAddContactIntent(String displayName, String csipUri) {
 
@@ -416,4 +422,15 @@ public class ContactsUtils3 extends ContactsWrapper {
         // TODO Auto-generated method stub
         return new ArrayList<String>();
     }
+
+    @Override
+    public Uri getContactsChangesUri() {
+        return Contacts.CONTENT_URI;
+    }
+
+    @Override
+    public long getContactsDataFingerprint(Context ctxt) {
+        // No status updates written here, every change is a data change
+        return UNKNOWN_FINGERPRINT;
+    }
 }
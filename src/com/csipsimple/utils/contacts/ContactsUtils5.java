@@ -56,6 +56,7 @@ import android.widget.TextView;
 import com.csipsimple.R;
 import com.csipsimple.api.SipManager;
 import com.csipsimple.api.SipUri;
+import com.csipsimple.models.BuddyPresence;
 import com.csipsimple.models.CallerInfo;
 import com.csipsimple.utils.Compatibility;
 import com.csipsimple.utils.ContactsAsyncHelper;
@@ -64,6 +65,8 @@ import com.csipsimple.utils.PreferencesProviderWrapper;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 @TargetApi(5)
@@ -87,6 +90,11 @@ public class ContactsUtils5 extends ContactsWrapper {
     private static final String SORT_ORDER = Contacts.TIMES_CONTACTED + " DESC,"
             + Contacts.DISPLAY_NAME + "," + CommonDataKinds.Phone.TYPE;
     private static final String THIS_FILE = "ContactsUtils5";
+    /**
+     * Maximum status updates applied in one batch, so that the contacts
+     * provider transaction stays short
+     */
+    private static final int MAX_PRESENCES_PER_BATCH = 100;
 
     public Bitmap getContactPhoto(Context ctxt, Uri uri, boolean hiRes, Integer defaultResource) {
         Bitmap img = null;
@@ -639,22 +647,163 @@ public class ContactsUtils5 extends ContactsWrapper {
         return c;
     }
 
+    /**
+     * Sip uris of groups members, by group name. Cleared when contacts data
+     * change, but not on status updates.
+     */
+    private final HashMap<String, List<String>> groupsCSipPhones = new HashMap<String, List<String>>();
+    private ContactsDataObserver groupsObserver = null;
+    /**
+     * Incremented when contacts change, so that results queried meanwhile are not cached
+     */
+    private int groupsGeneration = 0;
+
     @Override
     public List<String> getCSipPhonesByGroup(Context ctxt, String groupName) {
+        if (TextUtils.isEmpty(groupName)) {
+            return new ArrayList<String>();
+        }
+        int generation;
+        synchronized (groupsCSipPhones) {
+            List<String> cached = groupsCSipPhones.get(groupName);
+            if (cached != null) {
+                return new ArrayList<String>(cached);
+            }
+            if (groupsObserver == null) {
+                groupsObserver = new ContactsDataObserver(ctxt) {
+                    @Override
+                    protected void onContactsDataChange() {
+                        synchronized (groupsCSipPhones) {
+                            groupsCSipPhones.clear();
+                            groupsGeneration++;
+                        }
+                    }
+                };
+                groupsObserver.register();
+            }
+            generation = groupsGeneration;
+        }
 
-        Cursor contacts = getContactsByGroup(ctxt, groupName);
+        List<String> results = queryCSipPhonesByGroup(ctxt, groupName);
+        if (results != null) {
+            synchronized (groupsCSipPhones) {
+                if (generation == groupsGeneration) {
+                    groupsCSipPhones.put(groupName, new ArrayList<String>(results));
+                }
+            }
+            return results;
+        }
+        return new ArrayList<String>();
+    }
+
+    /**
+     * Get the first csip uri of each contact of a group.<br/>
+     * Group members are read in one data query, then their csip entries in
+     * one data query sorted by contact, instead of one query per contact of
+     * the group.
+     *
+     * @param ctxt the context
+     * @param groupName the name of the group
+     * @return the sip uris, null in case of error
+     */
+    private List<String> queryCSipPhonesByGroup(Context ctxt, String groupName) {
+        ContentResolver cr = ctxt.getContentResolver();
+        // Groups with this name, as for Contacts.CONTENT_GROUP_URI
+        StringBuilder groupIds = new StringBuilder();
+        Cursor groups = null;
+        try {
+            groups = cr.query(Groups.CONTENT_URI, new String[] {
+                    Groups._ID
+            }, Groups.TITLE + "=? AND " + Groups.DELETED + "=0", new String[] {
+                    groupName
+            }, null);
+            while (groups != null && groups.moveToNext()) {
+                if (groupIds.length() > 0) {
+                    groupIds.append(',');
+                }
+                groupIds.append(groups.getLong(0));
+            }
+        } catch (Exception e) {
+            Log.e(THIS_FILE, "Error while retrieving group", e);
+            return null;
+        } finally {
+            if (groups != null) {
+                groups.close();
+            }
+        }
         ArrayList<String> results = new ArrayList<String>();
-        if (contacts != null) {
-            try {
-                while (contacts.moveToNext()) {
-                    List<String> res = getCSipPhonesContact(ctxt, contacts.getLong(contacts
-                            .getColumnIndex(Contacts._ID)));
-                    results.addAll(res);
+        if (groupIds.length() == 0) {
+            return results;
+        }
+
+        // Contacts members of these groups
+        StringBuilder memberIds = new StringBuilder();
+        Cursor members = null;
+        try {
+            members = cr.query(Data.CONTENT_URI, new String[] {
+                    Data.CONTACT_ID
+            }, Data.MIMETYPE + "='" + CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE + "' "
+                    + " AND "
+                    + CommonDataKinds.GroupMembership.GROUP_ROW_ID + " IN (" + groupIds + ")",
+                    null, null);
+            HashSet<Long> contactIds = new HashSet<Long>();
+            while (members != null && members.moveToNext()) {
+                long contactId = members.getLong(0);
+                if (contactIds.add(contactId)) {
+                    if (memberIds.length() > 0) {
+                        memberIds.append(',');
+                    }
+                    memberIds.append(contactId);
                 }
-            } catch (Exception e) {
-                Log.e(THIS_FILE, "Error while looping on contacts", e);
-            } finally {
-                contacts.close();
+            }
+        } catch (Exception e) {
+            Log.e(THIS_FILE, "Error while retrieving group members", e);
+            return null;
+        } finally {
+            if (members != null) {
+                members.close();
+            }
+        }
+        if (memberIds.length() == 0) {
+            return results;
+        }
+
+        // Csip entries of members only
+        String selection = Data.MIMETYPE + "='" + CommonDataKinds.Im.CONTENT_ITEM_TYPE + "' "
+                + " AND "
+                + CommonDataKinds.Im.PROTOCOL + "=" + CommonDataKinds.Im.PROTOCOL_CUSTOM
+                + " AND "
+                + " LOWER(" + CommonDataKinds.Im.CUSTOM_PROTOCOL + ")='" + SipManager.PROTOCOL_CSIP + "'"
+                + " AND "
+                + Data.CONTACT_ID + " IN (" + memberIds + ")";
+        Cursor dataCursor = null;
+        try {
+            dataCursor = cr.query(Data.CONTENT_URI, new String[] {
+                    Data.CONTACT_ID,
+                    CommonDataKinds.Im.DATA
+            }, selection, null, Data.DISPLAY_NAME + " ASC, " + Data.CONTACT_ID);
+            if (dataCursor == null) {
+                return results;
+            }
+            long currentContact = -1;
+            while (dataCursor.moveToNext()) {
+                long contactId = dataCursor.getLong(0);
+                if (contactId == currentContact) {
+                    // First csip entry of this contact already found
+                    continue;
+                }
+                String val = dataCursor.getString(1);
+                if (!TextUtils.isEmpty(val)) {
+                    results.add(val);
+                    currentContact = contactId;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(THIS_FILE, "Error while looping on data", e);
+            return null;
+        } finally {
+            if (dataCursor != null) {
+                dataCursor.close();
             }
         }
         return results;
@@ -702,89 +851,84 @@ public class ContactsUtils5 extends ContactsWrapper {
     @Override
     public void updateCSipPresence(Context ctxt, String buddyUri,
             SipManager.PresenceStatus presStatus, String statusText) {
+        List<BuddyPresence> presences = new ArrayList<BuddyPresence>(1);
+        presences.add(new BuddyPresence(buddyUri, presStatus, statusText));
+        updateCSipPresences(ctxt, presences);
+    }
 
-        if (Compatibility.isCompatible(8)) {
-            // if(csipDatasId.containsKey(buddyUri)) {
-            // long dataId = csipDatasId.get(buddyUri);
-            int presence = StatusUpdates.OFFLINE;
-            String correspondingPresence = "";
-            switch (presStatus) {
-                case ONLINE:
-                    presence = StatusUpdates.AVAILABLE;
-                    correspondingPresence = ctxt.getString(R.string.online);
-                    break;
-                case OFFLINE:
-                    presence = StatusUpdates.INVISIBLE;
-                    correspondingPresence = ctxt.getString(R.string.offline);
-                    break;
-                case AWAY:
-                    presence = StatusUpdates.AWAY;
-                    correspondingPresence = ctxt.getString(R.string.away);
-                    break;
-                case BUSY:
-                    presence = StatusUpdates.DO_NOT_DISTURB;
-                    correspondingPresence = ctxt.getString(R.string.busy);
-                    break;
-                default:
-                    break;
-            }
-            if(TextUtils.isEmpty(statusText)) {
-                statusText = correspondingPresence;
-            }
-
-            ArrayList<ContentProviderOperation> operationList = new ArrayList<ContentProviderOperation>();
-
-            ContentProviderOperation.Builder builder = ContentProviderOperation
-                    .newInsert(StatusUpdates.CONTENT_URI);
-            // builder.withValue(StatusUpdates.DATA_ID, dataId);
-            builder.withValue(StatusUpdates.CUSTOM_PROTOCOL, SipManager.PROTOCOL_CSIP);
-            builder.withValue(StatusUpdates.PROTOCOL, CommonDataKinds.Im.PROTOCOL_CUSTOM);
-            builder.withValue(StatusUpdates.IM_HANDLE, buddyUri);
-            builder.withValue(StatusUpdates.STATUS, statusText);
-            builder.withValue(StatusUpdates.PRESENCE, presence);
-
-            if (Compatibility.isCompatible(11)) {
-                builder.withValue(StatusUpdates.CHAT_CAPABILITY, StatusUpdates.CAPABILITY_HAS_VOICE);
-            }
+    @Override
+    public void updateCSipPresences(Context ctxt, List<BuddyPresence> presences) {
 
+        if (Compatibility.isCompatible(8) && presences.size() > 0) {
             String pkg = PreferencesProviderWrapper.getCurrentPackageInfos(ctxt).applicationInfo.packageName;
-            builder.withValue(StatusUpdates.STATUS_RES_PACKAGE, pkg);
-            builder.withValue(StatusUpdates.STATUS_LABEL, R.string.app_name);
-            builder.withValue(StatusUpdates.STATUS_ICON, R.drawable.ic_launcher_phone);
-            builder.withValue(StatusUpdates.STATUS_TIMESTAMP, System.currentTimeMillis());
-            operationList.add(builder.build());
-            /*
-             * builder = ContentProviderOperation.newUpdate(Data.CONTENT_URI);
-             * builder.withSelection(Data._ID + " = '" + dataId + "'", null);
-             * builder.withValue(CommonDataKinds.Im.PRESENCE, presence);
-             * operationList.add(builder.build());
-             */
-            try {
-                ctxt.getContentResolver().applyBatch(ContactsContract.AUTHORITY, operationList);
-            } catch (RemoteException e) {
-                Log.e(THIS_FILE, "Can't update status", e);
-            } catch (OperationApplicationException e) {
-                Log.e(THIS_FILE, "Can't update status", e);
+            long timestamp = System.currentTimeMillis();
+            int total = presences.size();
+            for (int start = 0; start < total; start += MAX_PRESENCES_PER_BATCH) {
+                int end = Math.min(start + MAX_PRESENCES_PER_BATCH, total);
+                ArrayList<ContentProviderOperation> operationList = new ArrayList<ContentProviderOperation>(end - start);
+                for (BuddyPresence buddyPresence : presences.subList(start, end)) {
+                    operationList.add(buildPresenceOperation(ctxt, pkg, timestamp, buddyPresence));
+                }
+                try {
+                    ctxt.getContentResolver().applyBatch(ContactsContract.AUTHORITY, operationList);
+                } catch (RemoteException e) {
+                    Log.e(THIS_FILE, "Can't update status of presences " + start + " to " + end, e);
+                } catch (OperationApplicationException e) {
+                    Log.e(THIS_FILE, "Can't update status of presences " + start + " to " + end, e);
+                }
             }
+        }
+    }
+
+    /**
+     * Build the status update insert for one buddy presence.
+     */
+    private ContentProviderOperation buildPresenceOperation(Context ctxt, String pkg, long timestamp,
+            BuddyPresence buddyPresence) {
+        int presence = StatusUpdates.OFFLINE;
+        String correspondingPresence = "";
+        switch (buddyPresence.getStatus()) {
+            case ONLINE:
+                presence = StatusUpdates.AVAILABLE;
+                correspondingPresence = ctxt.getString(R.string.online);
+                break;
+            case OFFLINE:
+                presence = StatusUpdates.INVISIBLE;
+                correspondingPresence = ctxt.getString(R.string.offline);
+                break;
+            case AWAY:
+                presence = StatusUpdates.AWAY;
+                correspondingPresence = ctxt.getString(R.string.away);
+                break;
+            case BUSY:
+                presence = StatusUpdates.DO_NOT_DISTURB;
+                correspondingPresence = ctxt.getString(R.string.busy);
+                break;
+            default:
+                break;
+        }
+        String statusText = buddyPresence.getStatusText();
+        if(TextUtils.isEmpty(statusText)) {
+            statusText = correspondingPresence;
+        }
 
-            // }
+        ContentProviderOperation.Builder builder = ContentProviderOperation
+                .newInsert(StatusUpdates.CONTENT_URI);
+        builder.withValue(StatusUpdates.CUSTOM_PROTOCOL, SipManager.PROTOCOL_CSIP);
+        builder.withValue(StatusUpdates.PROTOCOL, CommonDataKinds.Im.PROTOCOL_CUSTOM);
+        builder.withValue(StatusUpdates.IM_HANDLE, buddyPresence.getBuddyUri());
+        builder.withValue(StatusUpdates.STATUS, statusText);
+        builder.withValue(StatusUpdates.PRESENCE, presence);
 
-            /*
-             * Uri dataUri = Data.CONTENT_URI; String dataQuery = Data.MIMETYPE
-             * + "='" + CommonDataKinds.Im.CONTENT_ITEM_TYPE + "' " + " AND " +
-             * CommonDataKinds.Im.PROTOCOL + "=" +
-             * CommonDataKinds.Im.PROTOCOL_CUSTOM + " AND " +
-             * CommonDataKinds.Im.CUSTOM_PROTOCOL + "='csip'" + " AND " +
-             * CommonDataKinds.Im.DATA + "=?"; ContentValues presenceValues =
-             * new ContentValues(); int val = CommonDataKinds.Im.OFFLINE; switch
-             * (presStatus) { case ONLINE: val = CommonDataKinds.Im.AVAILABLE;
-             * break; case OFFLINE: // TODO -- is that good? val =
-             * CommonDataKinds.Im.AWAY; break; default: break; }
-             * presenceValues.put(CommonDataKinds.Im.PRESENCE_STATUS, val);
-             * ctxt.getContentResolver().update(dataUri, presenceValues,
-             * dataQuery, new String[] {buddyUri});
-             */
+        if (Compatibility.isCompatible(11)) {
+            builder.withValue(StatusUpdates.CHAT_CAPABILITY, StatusUpdates.CAPABILITY_HAS_VOICE);
         }
+
+        builder.withValue(StatusUpdates.STATUS_RES_PACKAGE, pkg);
+        builder.withValue(StatusUpdates.STATUS_LABEL, R.string.app_name);
+        builder.withValue(StatusUpdates.STATUS_ICON, R.drawable.ic_launcher_phone);
+        builder.withValue(StatusUpdates.STATUS_TIMESTAMP, timestamp);
+        return builder.build();
     }
 
     @Override
@@ -925,4 +1069,42 @@ public class ContactsUtils5 extends ContactsWrapper {
         return false;
     }
 
+    @Override
+    public Uri getContactsChangesUri() {
+        return ContactsContract.AUTHORITY_URI;
+    }
+
+    /**
+     * Raw contacts versions are increased when raw contacts or their data
+     * change, while status updates are stored aside.
+     */
+    @Override
+    public long getContactsDataFingerprint(Context ctxt) {
+        Cursor c = null;
+        try {
+            c = ctxt.getContentResolver().query(RawContacts.CONTENT_URI, new String[] {
+                    RawContacts._ID,
+                    RawContacts.CONTACT_ID,
+                    RawContacts.VERSION
+            }, null, null, RawContacts._ID);
+            if (c == null) {
+                return UNKNOWN_FINGERPRINT;
+            }
+            long fingerprint = 0;
+            while (c.moveToNext()) {
+                fingerprint = 31 * fingerprint + c.getLong(0);
+                fingerprint = 31 * fingerprint + c.getLong(1);
+                fingerprint = 31 * fingerprint + c.getLong(2);
+            }
+            return fingerprint;
+        } catch (Exception e) {
+            Log.e(THIS_FILE, "Error while reading raw contacts versions", e);
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return UNKNOWN_FINGERPRINT;
+    }
+
 }
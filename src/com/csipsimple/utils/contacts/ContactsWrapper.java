@@ -25,6 +25,7 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.net.Uri;
@@ -34,6 +35,7 @@ import android.widget.ArrayAdapter;
 
 import com.csipsimple.R;
 import com.csipsimple.api.SipManager;
+import com.csipsimple.models.BuddyPresence;
 import com.csipsimple.models.CallerInfo;
 import com.csipsimple.utils.Compatibility;
 
@@ -162,6 +164,12 @@ public abstract class ContactsWrapper {
      */
     public abstract void updateCSipPresence(Context ctxt, String buddyUri, SipManager.PresenceStatus presStatus, String statusText);
 
+    /**
+     * Push back several presence status to the contact database at once
+     * @param presences the presences to update
+     */
+    public abstract void updateCSipPresences(Context ctxt, List<BuddyPresence> presences);
+
     /**
      * Get the column index of the column that should be used to index the list (the display name usually)
      * @param c the cursor pointing to datas
@@ -396,5 +404,69 @@ public abstract class ContactsWrapper {
      * @return Caller information of the current application user
      */
     public abstract CallerInfo findSelfInfo(Context ctxt);
+    
+    /**
+     * Get the uri notified each time contacts change
+     * @return the uri to observe, including descendants
+     */
+    public abstract Uri getContactsChangesUri();
+    
+    /**
+     * Fingerprint value when contacts data can't be fingerprinted
+     */
+    public static final long UNKNOWN_FINGERPRINT = -1;
+    
+    /**
+     * Get a fingerprint of contacts data. It changes when a contact or its
+     * data is edited, added or removed, but not on status updates.
+     * @param ctxt The application context
+     * @return the fingerprint, or {@link #UNKNOWN_FINGERPRINT}
+     */
+    public abstract long getContactsDataFingerprint(Context ctxt);
+    
+    /**
+     * Observer of contacts data changes.<br/>
+     * The contacts provider notifies the same uri for any change, so that
+     * status updates, as presence written for buddies, are filtered out by
+     * comparing {@link #getContactsDataFingerprint(Context)} between changes.
+     */
+    public static abstract class ContactsDataObserver extends ContentObserver {
+        private final Context mContext;
+        private long fingerprint = UNKNOWN_FINGERPRINT;
+        
+        public ContactsDataObserver(Context ctxt) {
+            super(null);
+            mContext = ctxt.getApplicationContext();
+        }
+        
+        /**
+         * Start observing contacts changes
+         */
+        public void register() {
+            mContext.getContentResolver().registerContentObserver(
+                    getInstance().getContactsChangesUri(), true, this);
+            synchronized (this) {
+                fingerprint = getInstance().getContactsDataFingerprint(mContext);
+            }
+        }
+        
+        @Override
+        public void onChange(boolean selfChange) {
+            synchronized (this) {
+                long newFingerprint = getInstance().getContactsDataFingerprint(mContext);
+                if (newFingerprint != UNKNOWN_FINGERPRINT && newFingerprint == fingerprint) {
+                    // Only status updates changed
+                    return;
+                }
+                fingerprint = newFingerprint;
+            }
+            onContactsDataChange();
+        }
+        
+        /**
+         * Called when contacts data may have changed
+         */
+        protected abstract void onContactsDataChange();
+    }
 
 }
@@ -0,0 +1,387 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.utils.contacts;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.provider.CallLog;
+import android.provider.ContactsContract.CommonDataKinds;
+import android.provider.ContactsContract.Data;
+import android.text.TextUtils;
+
+import com.csipsimple.api.SipManager;
+import com.csipsimple.api.SipUri;
+import com.csipsimple.api.SipUri.ParsedSipContactInfos;
+import com.csipsimple.utils.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dial pad search over contacts phone numbers, contacts sip addresses and our
+ * call logs.<br/>
+ * Entries are loaded in a background thread into a {@link SmartDialIndex},
+ * so that searching while typing digits does no provider query. Contacts and
+ * call logs are only observed while a client uses the search, see
+ * {@link #acquire()}. A change only marks entries as stale, and they are
+ * loaded again at the next search, so that bursts of presence updates do not
+ * load them again and again. Until the first load is done, or for
+ * constraints that are not digits, {@link #search(CharSequence)} returns null
+ * and the caller falls back to a provider query.<br/>
+ * Results have the columns of {@link ContactsWrapper#searchContact(Context, CharSequence)}
+ * and are sorted by name.
+ */
+public class SmartDialContacts {
+
+    private static final String THIS_FILE = "SmartDialContacts";
+
+    /**
+     * Number of most recent call logs loaded
+     */
+    private static final int MAX_CALL_LOGS = 200;
+    /**
+     * Label of sip addresses entries
+     */
+    private static final String SIP_LABEL = "SIP";
+    /**
+     * Label of call logs entries, shown as no label
+     */
+    private static final String NO_LABEL = "\u00A0";
+
+    private static final String[] COLUMNS = {
+            CommonDataKinds.Phone._ID,
+            CommonDataKinds.Phone.CONTACT_ID,
+            CommonDataKinds.Phone.TYPE,
+            CommonDataKinds.Phone.NUMBER,
+            CommonDataKinds.Phone.LABEL,
+            CommonDataKinds.Phone.DISPLAY_NAME,
+    };
+
+    private static SmartDialContacts instance;
+
+    private final Context context;
+    private final Handler loaderHandler;
+    private final ContentObserver observer;
+    private volatile Entries entries = null;
+    /**
+     * Whether contacts or call logs changed since entries were loaded
+     */
+    private volatile boolean stale = true;
+    /**
+     * Number of clients using the search
+     */
+    private int clients = 0;
+
+    private final Runnable loadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            load();
+        }
+    };
+
+    /**
+     * Get the search, loading it at first call.
+     *
+     * @param ctxt a context
+     * @return the search instance of the process
+     */
+    public static synchronized SmartDialContacts getInstance(Context ctxt) {
+        if (instance == null) {
+            instance = new SmartDialContacts(ctxt.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmartDialContacts(Context ctxt) {
+        context = ctxt;
+        HandlerThread thread = new HandlerThread("SmartDialLoader");
+        thread.start();
+        loaderHandler = new Handler(thread.getLooper());
+
+        observer = new ContentObserver(loaderHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                stale = true;
+            }
+        };
+    }
+
+    /**
+     * Start using the search. Contacts and call logs are observed and entries
+     * are loaded until the last client calls {@link #release()}.
+     */
+    public synchronized void acquire() {
+        clients++;
+        if (clients == 1) {
+            ContentResolver cr = context.getContentResolver();
+            cr.registerContentObserver(ContactsWrapper.getInstance().getContactsChangesUri(), true,
+                    observer);
+            cr.registerContentObserver(SipManager.CALLLOG_URI, true, observer);
+            if (stale) {
+                requestLoad();
+            }
+        }
+    }
+
+    /**
+     * Stop using the search. Once no client remains, changes are not
+     * observed anymore and entries are released.
+     */
+    public synchronized void release() {
+        if (clients == 0) {
+            return;
+        }
+        clients--;
+        if (clients == 0) {
+            context.getContentResolver().unregisterContentObserver(observer);
+            loaderHandler.removeCallbacks(loadRunnable);
+            entries = null;
+            stale = true;
+        }
+    }
+
+    private void requestLoad() {
+        loaderHandler.removeCallbacks(loadRunnable);
+        loaderHandler.post(loadRunnable);
+    }
+
+    /**
+     * Search entries matching dial pad digits.
+     *
+     * @param constraint the digits typed, separators are ignored
+     * @return the matching entries, null if the constraint is empty or not
+     *         only digits, or if entries are not loaded yet. Stale entries
+     *         are used while they are loaded again.
+     */
+    public Cursor search(CharSequence constraint) {
+        if (stale) {
+            synchronized (this) {
+                if (clients > 0) {
+                    requestLoad();
+                }
+            }
+        }
+        Entries current = entries;
+        if (current == null || constraint == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(constraint.length());
+        for (int i = 0; i < constraint.length(); i++) {
+            char c = constraint.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c != ' ' && c != '-' && c != '(' && c != ')' && c != '.' && c != '+') {
+                return null;
+            }
+        }
+        if (digits.length() == 0) {
+            return null;
+        }
+        int[] matches = current.index.query(digits);
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, matches.length);
+        for (int ordinal : matches) {
+            Entry entry = current.list.get(ordinal);
+            cursor.addRow(new Object[] {
+                    entry.id, entry.contactId, entry.type, entry.number, entry.label, entry.name
+            });
+        }
+        return cursor;
+    }
+
+    private static class Entry {
+        long id;
+        long contactId;
+        int type;
+        String number;
+        String label;
+        String name;
+        /**
+         * Digits or user name matched against the dial pad
+         */
+        String key;
+    }
+
+    private static class Entries {
+        final List<Entry> list;
+        final SmartDialIndex index;
+
+        Entries(List<Entry> aList, SmartDialIndex aIndex) {
+            list = aList;
+            index = aIndex;
+        }
+    }
+
+    private static final Comparator<Entry> NAME_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            return String.CASE_INSENSITIVE_ORDER.compare(lhs.name, rhs.name);
+        }
+    };
+
+    /**
+     * Load entries from providers and build the index.
+     */
+    private void load() {
+        if (!stale) {
+            return;
+        }
+        // Changes from now on are to be loaded by next load
+        stale = false;
+        long start = SystemClock.uptimeMillis();
+        List<Entry> list = new ArrayList<Entry>();
+        try {
+            loadPhones(list);
+            loadSipAddresses(list);
+            loadCallLogs(list);
+        } catch (Exception e) {
+            Log.e(THIS_FILE, "Unable to load dial pad entries", e);
+            stale = true;
+            return;
+        }
+        Collections.sort(list, NAME_ORDER);
+        SmartDialIndex.Builder builder = new SmartDialIndex.Builder();
+        for (Entry entry : list) {
+            builder.add(entry.name, entry.key);
+        }
+        synchronized (this) {
+            if (clients == 0) {
+                // Released while loading
+                return;
+            }
+            entries = new Entries(list, builder.build());
+        }
+        Log.d(THIS_FILE, "Loaded " + list.size() + " entries in "
+                + (SystemClock.uptimeMillis() - start) + " ms");
+    }
+
+    private void loadPhones(List<Entry> list) {
+        Cursor c = context.getContentResolver().query(CommonDataKinds.Phone.CONTENT_URI, COLUMNS,
+                null, null, null);
+        if (c == null) {
+            return;
+        }
+        try {
+            while (c.moveToNext()) {
+                Entry entry = new Entry();
+                entry.id = c.getLong(0);
+                entry.contactId = c.getLong(1);
+                entry.type = c.getInt(2);
+                entry.number = c.getString(3);
+                entry.label = c.getString(4);
+                entry.name = nonNull(c.getString(5), entry.number);
+                entry.key = entry.number;
+                list.add(entry);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private void loadSipAddresses(List<Entry> list) {
+        String selection = Data.MIMETYPE + "='" + CommonDataKinds.Im.CONTENT_ITEM_TYPE + "' "
+                + " AND "
+                + CommonDataKinds.Im.PROTOCOL + "=" + CommonDataKinds.Im.PROTOCOL_CUSTOM
+                + " AND "
+                + " LOWER(" + CommonDataKinds.Im.CUSTOM_PROTOCOL + ")='" + SipManager.PROTOCOL_CSIP + "'";
+        Cursor c = context.getContentResolver().query(Data.CONTENT_URI, new String[] {
+                Data._ID,
+                Data.CONTACT_ID,
+                CommonDataKinds.Im.DATA,
+                Data.DISPLAY_NAME
+        }, selection, null, null);
+        if (c == null) {
+            return;
+        }
+        try {
+            while (c.moveToNext()) {
+                String address = c.getString(2);
+                if (TextUtils.isEmpty(address)) {
+                    continue;
+                }
+                Entry entry = new Entry();
+                entry.id = c.getLong(0);
+                entry.contactId = c.getLong(1);
+                entry.type = CommonDataKinds.Phone.TYPE_CUSTOM;
+                entry.number = address;
+                entry.label = SIP_LABEL;
+                entry.name = nonNull(c.getString(3), address);
+                entry.key = SipUri.parseSipContact(address).userName;
+                list.add(entry);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private void loadCallLogs(List<Entry> list) {
+        Cursor c = context.getContentResolver().query(SipManager.CALLLOG_URI, new String[] {
+                CallLog.Calls._ID,
+                CallLog.Calls.NUMBER,
+                CallLog.Calls.CACHED_NAME
+        }, null, null, CallLog.Calls.DEFAULT_SORT_ORDER);
+        if (c == null) {
+            return;
+        }
+        Set<String> seen = new HashSet<String>();
+        try {
+            while (c.moveToNext() && seen.size() < MAX_CALL_LOGS) {
+                String remoteContact = c.getString(1);
+                if (TextUtils.isEmpty(remoteContact)) {
+                    continue;
+                }
+                String address = SipUri.getCanonicalSipContact(remoteContact, false);
+                if (!seen.add(address)) {
+                    continue;
+                }
+                ParsedSipContactInfos infos = SipUri.parseSipContact(remoteContact);
+                Entry entry = new Entry();
+                entry.id = c.getLong(0);
+                entry.contactId = -1;
+                entry.type = CommonDataKinds.Phone.TYPE_CUSTOM;
+                entry.number = address;
+                entry.label = NO_LABEL;
+                entry.name = nonNull(c.getString(2), SipUri.getDisplayedSimpleContact(remoteContact));
+                entry.key = infos.userName;
+                list.add(entry);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private static String nonNull(String value, String fallback) {
+        if (!TextUtils.isEmpty(value)) {
+            return value;
+        }
+        return (fallback != null) ? fallback : "";
+    }
+}
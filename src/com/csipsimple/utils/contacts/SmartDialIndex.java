@@ -0,0 +1,306 @@
+/**
+ * Copyright (C) 2010-2012 Regis Montoya (aka r3gis - www.r3gis.fr)
+ * This file is part of CSipSimple.
+ *
+ *  CSipSimple is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  If you own a pjsip commercial license you can also redistribute it
+ *  and/or modify it under the terms of the GNU Lesser General Public License
+ *  as an android library.
+ *
+ *  CSipSimple is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with CSipSimple.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.csipsimple.utils.contacts;
+
+/**
+ * Immutable index of entries by dial pad digits.<br/>
+ * Each entry has a name and a number turned into keys of dial pad digits.
+ * All keys are kept in one char array, and the positions where a match may
+ * start are sorted by the key suffix starting there. A query is then a binary
+ * search followed by a scan of matching positions, with no allocation but
+ * the result.<br/>
+ * Matches start at each word of the name, so that a query may also continue
+ * on next words, at the initials of the name, and anywhere in the number.
+ */
+public final class SmartDialIndex {
+
+    /**
+     * End of a key, lower than any digit
+     */
+    private static final char END = '\0';
+
+    private final int size;
+    private final char[] keys;
+    /**
+     * Positions where a match may start, sorted by suffix
+     */
+    private final int[] starts;
+    /**
+     * Entry of each start
+     */
+    private final int[] owners;
+
+    private SmartDialIndex(int aSize, char[] aKeys, int[] aStarts, int[] aOwners) {
+        size = aSize;
+        keys = aKeys;
+        starts = aStarts;
+        owners = aOwners;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find entries matching dial pad digits.
+     *
+     * @param digits the digits, only '0' to '9'
+     * @return ordinals of matching entries, in ascending order
+     */
+    public int[] query(CharSequence digits) {
+        if (digits.length() == 0) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        // Lower bound of matching starts
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToQuery(starts[mid], digits) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        boolean[] matches = new boolean[size];
+        int count = 0;
+        for (int i = low; i < starts.length && compareToQuery(starts[i], digits) == 0; i++) {
+            int owner = owners[i];
+            if (!matches[owner]) {
+                matches[owner] = true;
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        for (int i = 0, j = 0; j < count; i++) {
+            if (matches[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 0 if the key suffix at position starts with the query, the sign
+     *         of their order otherwise
+     */
+    private int compareToQuery(int position, CharSequence digits) {
+        int length = digits.length();
+        for (int i = 0; i < length; i++) {
+            char c = keys[position + i];
+            char d = digits.charAt(i);
+            if (c != d) {
+                return c - d;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Convert a char to its dial pad digit.
+     *
+     * @param c the char
+     * @return the digit of the key, 0 if the char is neither a latin letter
+     *         nor a digit
+     */
+    public static char toDialpadDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            c = (char) (c + ('a' - 'A'));
+        }
+        if (c < 'a' || c > 'z') {
+            return 0;
+        }
+        if (c <= 'o') {
+            return (char) ('2' + (c - 'a') / 3);
+        }
+        if (c <= 's') {
+            return '7';
+        }
+        if (c <= 'v') {
+            return '8';
+        }
+        return '9';
+    }
+
+    /**
+     * Builder of an index. Entries get ordinals in the order they are added.
+     */
+    public static final class Builder {
+        private final StringBuilder keys = new StringBuilder();
+        private int[] starts = new int[256];
+        private int[] owners = new int[256];
+        private int count = 0;
+        private int size = 0;
+        private final StringBuilder initials = new StringBuilder();
+
+        /**
+         * Add an entry.
+         *
+         * @param name the name, may be null
+         * @param number the number or user part of a sip address, letters are
+         *            turned into digits. May be null.
+         * @return the ordinal of the entry
+         */
+        public int add(String name, String number) {
+            int ordinal = size++;
+            if (name != null) {
+                addName(name, ordinal);
+            }
+            if (number != null) {
+                addNumber(number, ordinal);
+            }
+            return ordinal;
+        }
+
+        private void addName(String name, int ordinal) {
+            int keyStart = keys.length();
+            boolean inWord = false;
+            initials.setLength(0);
+            for (int i = 0; i < name.length(); i++) {
+                char d = toDialpadDigit(name.charAt(i));
+                if (d == 0) {
+                    inWord = false;
+                    continue;
+                }
+                if (!inWord) {
+                    addStart(keys.length(), ordinal);
+                    initials.append(d);
+                    inWord = true;
+                }
+                keys.append(d);
+            }
+            if (keys.length() == keyStart) {
+                return;
+            }
+            keys.append(END);
+            if (initials.length() > 1) {
+                addStart(keys.length(), ordinal);
+                keys.append(initials).append(END);
+            }
+        }
+
+        private void addNumber(String number, int ordinal) {
+            int keyStart = keys.length();
+            for (int i = 0; i < number.length(); i++) {
+                char d = toDialpadDigit(number.charAt(i));
+                if (d != 0) {
+                    addStart(keys.length(), ordinal);
+                    keys.append(d);
+                }
+            }
+            if (keys.length() > keyStart) {
+                keys.append(END);
+            }
+        }
+
+        private void addStart(int position, int ordinal) {
+            if (count == starts.length) {
+                int[] newStarts = new int[count * 2];
+                int[] newOwners = new int[count * 2];
+                System.arraycopy(starts, 0, newStarts, 0, count);
+                System.arraycopy(owners, 0, newOwners, 0, count);
+                starts = newStarts;
+                owners = newOwners;
+            }
+            starts[count] = position;
+            owners[count] = ordinal;
+            count++;
+        }
+
+        /**
+         * @return the index of entries added so far
+         */
+        public SmartDialIndex build() {
+            char[] keysArray = new char[keys.length()];
+            keys.getChars(0, keysArray.length, keysArray, 0);
+            int[] sortedStarts = new int[count];
+            int[] sortedOwners = new int[count];
+            System.arraycopy(starts, 0, sortedStarts, 0, count);
+            System.arraycopy(owners, 0, sortedOwners, 0, count);
+            sort(keysArray, sortedStarts, sortedOwners);
+            return new SmartDialIndex(size, keysArray, sortedStarts, sortedOwners);
+        }
+
+        /**
+         * Bottom up merge sort of starts by suffix, owners following.
+         */
+        private static void sort(char[] keys, int[] starts, int[] owners) {
+            int n = starts.length;
+            int[] srcStarts = starts;
+            int[] srcOwners = owners;
+            int[] dstStarts = new int[n];
+            int[] dstOwners = new int[n];
+            for (int width = 1; width < n; width *= 2) {
+                for (int left = 0; left < n; left += 2 * width) {
+                    int mid = Math.min(left + width, n);
+                    int right = Math.min(left + 2 * width, n);
+                    int i = left;
+                    int j = mid;
+                    for (int k = left; k < right; k++) {
+                        if (i < mid && (j >= right || compareSuffixes(keys, srcStarts[i], srcStarts[j]) <= 0)) {
+                            dstStarts[k] = srcStarts[i];
+                            dstOwners[k] = srcOwners[i];
+                            i++;
+                        } else {
+                            dstStarts[k] = srcStarts[j];
+                            dstOwners[k] = srcOwners[j];
+                            j++;
+                        }
+                    }
+                }
+                int[] tmp = srcStarts;
+                srcStarts = dstStarts;
+                dstStarts = tmp;
+                tmp = srcOwners;
+                srcOwners = dstOwners;
+                dstOwners = tmp;
+            }
+            if (srcStarts != starts) {
+                System.arraycopy(srcStarts, 0, starts, 0, n);
+                System.arraycopy(srcOwners, 0, owners, 0, n);
+            }
+        }
+
+        private static int compareSuffixes(char[] keys, int a, int b) {
+            while (true) {
+                char ca = keys[a++];
+                char cb = keys[b++];
+                if (ca != cb) {
+                    return ca - cb;
+                }
+                if (ca == END) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -202,8 +202,9 @@ public class AccountChooserButton extends LinearLayout implements OnClickListene
         if (c != null) {
             try {
                 if (c.moveToFirst()) {
+                    SipProfile.CursorBinder binder = new SipProfile.CursorBinder(c);
                     do {
-                        final SipProfile account = new SipProfile(c);
+                        final SipProfile account = binder.newProfile(c);
                         AccountStatusDisplay accountStatusDisplay = AccountListUtils
                                 .getAccountDisplay(getContext(), account.id);
                         if (accountStatusDisplay.availableForCalls) {
@@ -300,8 +301,9 @@ public class AccountChooserButton extends LinearLayout implements OnClickListene
         if (c != null) {
             try {
                 if (c.getCount() > 0 && c.moveToFirst()) {
+                    SipProfile.CursorBinder binder = new SipProfile.CursorBinder(c);
                     do {
-                        final SipProfile acc = new SipProfile(c);
+                        final SipProfile acc = binder.newProfile(c);
 
                         AccountStatusDisplay accountStatusDisplay = AccountListUtils
                                 .getAccountDisplay(getContext(), acc.id);
@@ -0,0 +1,162 @@
+/* ----------------------------------------------------------------------------
+ * This file was automatically generated by SWIG (http://www.swig.org).
+ * Version 2.0.4
+ *
+ * Do not make changes to this file unless you know what you are doing--modify
+ * the SWIG interface file instead.
+ * ----------------------------------------------------------------------------- */
+
+package org.pjsip.pjsua;
+
+public class csipsimple_stream_stats {
+  private long swigCPtr;
+  protected boolean swigCMemOwn;
+
+  public csipsimple_stream_stats(long cPtr, boolean cMemoryOwn) {
+    swigCMemOwn = cMemoryOwn;
+    swigCPtr = cPtr;
+  }
+
+  public static long getCPtr(csipsimple_stream_stats obj) {
+    return (obj == null) ? 0 : obj.swigCPtr;
+  }
+
+  protected void finalize() {
+    delete();
+  }
+
+  public synchronized void delete() {
+    if (swigCPtr != 0) {
+      if (swigCMemOwn) {
+        swigCMemOwn = false;
+        pjsuaJNI.delete_csipsimple_stream_stats(swigCPtr);
+      }
+      swigCPtr = 0;
+    }
+  }
+
+  public void setCodec(String value) {
+    pjsuaJNI.csipsimple_stream_stats_codec_set(swigCPtr, this, value);
+  }
+
+  public String getCodec() {
+    return pjsuaJNI.csipsimple_stream_stats_codec_get(swigCPtr, this);
+  }
+
+  public void setClock_rate(int value) {
+    pjsuaJNI.csipsimple_stream_stats_clock_rate_set(swigCPtr, this, value);
+  }
+
+  public int getClock_rate() {
+    return pjsuaJNI.csipsimple_stream_stats_clock_rate_get(swigCPtr, this);
+  }
+
+  public void setPtime(int value) {
+    pjsuaJNI.csipsimple_stream_stats_ptime_set(swigCPtr, this, value);
+  }
+
+  public int getPtime() {
+    return pjsuaJNI.csipsimple_stream_stats_ptime_get(swigCPtr, this);
+  }
+
+  public void setRx_packets(int value) {
+    pjsuaJNI.csipsimple_stream_stats_rx_packets_set(swigCPtr, this, value);
+  }
+
+  public int getRx_packets() {
+    return pjsuaJNI.csipsimple_stream_stats_rx_packets_get(swigCPtr, this);
+  }
+
+  public void setRx_loss(int value) {
+    pjsuaJNI.csipsimple_stream_stats_rx_loss_set(swigCPtr, this, value);
+  }
+
+  public int getRx_loss() {
+    return pjsuaJNI.csipsimple_stream_stats_rx_loss_get(swigCPtr, this);
+  }
+
+  public void setRx_jitter_mean(int value) {
+    pjsuaJNI.csipsimple_stream_stats_rx_jitter_mean_set(swigCPtr, this, value);
+  }
+
+  public int getRx_jitter_mean() {
+    return pjsuaJNI.csipsimple_stream_stats_rx_jitter_mean_get(swigCPtr, this);
+  }
+
+  public void setRx_jitter_max(int value) {
+    pjsuaJNI.csipsimple_stream_stats_rx_jitter_max_set(swigCPtr, this, value);
+  }
+
+  public int getRx_jitter_max() {
+    return pjsuaJNI.csipsimple_stream_stats_rx_jitter_max_get(swigCPtr, this);
+  }
+
+  public void setTx_packets(int value) {
+    pjsuaJNI.csipsimple_stream_stats_tx_packets_set(swigCPtr, this, value);
+  }
+
+  public int getTx_packets() {
+    return pjsuaJNI.csipsimple_stream_stats_tx_packets_get(swigCPtr, this);
+  }
+
+  public void setTx_loss(int value) {
+    pjsuaJNI.csipsimple_stream_stats_tx_loss_set(swigCPtr, this, value);
+  }
+
+  public int getTx_loss() {
+    return pjsuaJNI.csipsimple_stream_stats_tx_loss_get(swigCPtr, this);
+  }
+
+  public void setTx_jitter_mean(int value) {
+    pjsuaJNI.csipsimple_stream_stats_tx_jitter_mean_set(swigCPtr, this, value);
+  }
+
+  public int getTx_jitter_mean() {
+    return pjsuaJNI.csipsimple_stream_stats_tx_jitter_mean_get(swigCPtr, this);
+  }
+
+  public void setRtt_mean(int value) {
+    pjsuaJNI.csipsimple_stream_stats_rtt_mean_set(swigCPtr, this, value);
+  }
+
+  public int getRtt_mean() {
+    return pjsuaJNI.csipsimple_stream_stats_rtt_mean_get(swigCPtr, this);
+  }
+
+  public void setRtt_last(int value) {
+    pjsuaJNI.csipsimple_stream_stats_rtt_last_set(swigCPtr, this, value);
+  }
+
+  public int getRtt_last() {
+    return pjsuaJNI.csipsimple_stream_stats_rtt_last_get(swigCPtr, this);
+  }
+
+  public void setJb_size(int value) {
+    pjsuaJNI.csipsimple_stream_stats_jb_size_set(swigCPtr, this, value);
+  }
+
+  public int getJb_size() {
+    return pjsuaJNI.csipsimple_stream_stats_jb_size_get(swigCPtr, this);
+  }
+
+  public void setJb_prefetch(int value) {
+    pjsuaJNI.csipsimple_stream_stats_jb_prefetch_set(swigCPtr, this, value);
+  }
+
+  public int getJb_prefetch() {
+    return pjsuaJNI.csipsimple_stream_stats_jb_prefetch_get(swigCPtr, this);
+  }
+
+  public void setJb_avg_delay(int value) {
+    pjsuaJNI.csipsimple_stream_stats_jb_avg_delay_set(swigCPtr, this, value);
+  }
+
+  public int getJb_avg_delay() {
+    return pjsuaJNI.csipsimple_stream_stats_jb_avg_delay_get(swigCPtr, this);
+  }
+
+  public csipsimple_stream_stats() {
+    this(pjsuaJNI.new_csipsimple_stream_stats(), true);
+  }
+
+}
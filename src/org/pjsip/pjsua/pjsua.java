@@ -752,6 +752,14 @@ public class pjsua implements pjsuaConstants {
     return new pj_str_t(pjsuaJNI.call_secure_info(call_id), true);
   }
 
+  public static int call_get_audio_stats(int call_id, csipsimple_stream_stats stats) {
+    return pjsuaJNI.call_get_audio_stats(call_id, csipsimple_stream_stats.getCPtr(stats), stats);
+  }
+
+  public static int call_get_flat_info(int call_id, int[] values, byte[] strings) {
+    return pjsuaJNI.call_get_flat_info(call_id, values, strings);
+  }
+
   public static pj_str_t get_error_message(int status) {
     return new pj_str_t(pjsuaJNI.get_error_message(status), true);
   }
@@ -760,6 +768,10 @@ public class pjsua implements pjsuaConstants {
     return pjsuaJNI.get_event_status_code(pjsip_event.getCPtr(e), e);
   }
 
+  public static int csipsimple_register_thread() {
+    return pjsuaJNI.csipsimple_register_thread();
+  }
+
   public static void csipsimple_config_default(csipsimple_config css_cfg) {
     pjsuaJNI.csipsimple_config_default(csipsimple_config.getCPtr(css_cfg), css_cfg);
   }
@@ -1236,11 +1236,46 @@ public class pjsuaJNI {
   public final static native long csipsimple_acc_config_p_preferred_identity_get(long jarg1, csipsimple_acc_config jarg1_);
   public final static native long new_csipsimple_acc_config();
   public final static native void delete_csipsimple_acc_config(long jarg1);
+  public final static native void csipsimple_stream_stats_codec_set(long jarg1, csipsimple_stream_stats jarg1_, String jarg2);
+  public final static native String csipsimple_stream_stats_codec_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_clock_rate_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_clock_rate_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_ptime_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_ptime_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_rx_packets_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_rx_packets_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_rx_loss_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_rx_loss_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_rx_jitter_mean_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_rx_jitter_mean_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_rx_jitter_max_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_rx_jitter_max_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_tx_packets_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_tx_packets_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_tx_loss_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_tx_loss_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_tx_jitter_mean_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_tx_jitter_mean_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_rtt_mean_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_rtt_mean_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_rtt_last_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_rtt_last_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_jb_size_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_jb_size_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_jb_prefetch_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_jb_prefetch_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native void csipsimple_stream_stats_jb_avg_delay_set(long jarg1, csipsimple_stream_stats jarg1_, int jarg2);
+  public final static native int csipsimple_stream_stats_jb_avg_delay_get(long jarg1, csipsimple_stream_stats jarg1_);
+  public final static native long new_csipsimple_stream_stats();
+  public final static native void delete_csipsimple_stream_stats(long jarg1);
   public final static native int send_dtmf_info(int jarg1, long jarg2, pj_str_t jarg2_);
   public final static native long call_dump__SWIG_1(int jarg1, int jarg2, String jarg3);
   public final static native long call_secure_info(int jarg1);
+  public final static native int call_get_audio_stats(int jarg1, long jarg2, csipsimple_stream_stats jarg2_);
+  public final static native int call_get_flat_info(int jarg1, int[] jarg2, byte[] jarg3);
   public final static native long get_error_message(int jarg1);
   public final static native int get_event_status_code(long jarg1, pjsip_event jarg1_);
+  public final static native int csipsimple_register_thread();
   public final static native void csipsimple_config_default(long jarg1, csipsimple_config jarg1_);
   public final static native void csipsimple_acc_config_default(long jarg1, csipsimple_acc_config jarg1_);
   public final static native int csipsimple_init(long jarg1, pjsua_config jarg1_, long jarg2, pjsua_logging_config jarg2_, long jarg3, pjsua_media_config jarg3_, long jarg4, csipsimple_config jarg4_, Object jarg5);